@@ -0,0 +1,146 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import edu.yu.einstein.genplay.core.manager.project.ProjectChromosomes;
+import edu.yu.einstein.genplay.core.manager.project.ProjectManager;
+import edu.yu.einstein.genplay.core.operation.Operation;
+import edu.yu.einstein.genplay.dataStructure.chromosome.Chromosome;
+import edu.yu.einstein.genplay.dataStructure.enums.SCWListType;
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.binList.BinList;
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.binList.BinListBuilder;
+import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
+
+/**
+ * Aggregates the bins of a {@link BinList} into bins a specified number of times larger.
+ * The score of a new bin is the sum of the scores of the bins it contains.
+ * Since the binning of the read counts spreads the score of a window over the bases it covers,
+ * the result is the same as binning the original data with the larger bin size without having to read the whole genome again.
+ * The new bins are aggregated in parallel by the {@link ChunkPool}.
+ * @author Julien Lajugie
+ */
+public class AggregateBinList implements Operation<BinList> {
+
+	private final BinList 		binList;			// input bin list
+	private final int 			factor;				// number of input bins in a new bin
+	private volatile boolean	stopped = false;	// true if the operation must be stopped
+
+
+	/**
+	 * Creates an instance of {@link AggregateBinList}
+	 * @param binList input bin list
+	 * @param factor number of input bins in a new bin
+	 */
+	public AggregateBinList(BinList binList, int factor) {
+		if (factor < 1) {
+			throw new IllegalArgumentException("The aggregation factor must be positive");
+		}
+		this.binList = binList;
+		this.factor = factor;
+	}
+
+
+	/**
+	 * The new bins of each chromosome are split in chunks aggregated in parallel by the {@link ChunkPool}.
+	 * The scores of the chunks are then added to the new list in coordinate order.
+	 */
+	@Override
+	public BinList compute() throws Exception {
+		if (factor == 1) {
+			return binList;
+		}
+		ProjectChromosomes projectChromosomes = ProjectManager.getInstance().getProjectChromosomes();
+		ChunkPool pool = ChunkPool.getInstance();
+		long newBinCount = 0;
+		for (Chromosome chromosome: projectChromosomes) {
+			newBinCount += binList.get(chromosome).size() / factor;
+		}
+		int chunkSize = pool.computeChunkSize(newBinCount);
+		List<ChromosomeChunk> chunks = new ArrayList<ChromosomeChunk>();
+		List<Callable<float[]>> chunkList = new ArrayList<Callable<float[]>>();
+		for (Chromosome chromosome: projectChromosomes) {
+			final ListView<ScoredChromosomeWindow> currentList = binList.get(chromosome);
+			// like the binning, an incomplete bin at the end of the chromosome is dropped
+			for (final ChromosomeChunk chunk: ChromosomeChunk.split(chromosome, currentList.size() / factor, chunkSize)) {
+				Callable<float[]> currentChunk = new Callable<float[]>() {
+
+					@Override
+					public float[] call() throws Exception {
+						float[] scores = new float[chunk.size()];
+						for (int i = 0; (i < scores.length) && !stopped; i++) {
+							int firstBin = (chunk.getStart() + i) * factor;
+							float score = 0;
+							for (int j = firstBin; j < (firstBin + factor); j++) {
+								score += currentList.get(j).getScore();
+							}
+							scores[i] = score;
+						}
+						return scores;
+					}
+				};
+				chunks.add(chunk);
+				chunkList.add(currentChunk);
+			}
+		}
+		List<float[]> chunkScores = pool.invokeAll(chunkList);
+		if (stopped) {
+			return null;
+		}
+		BinListBuilder resultListBuilder = new BinListBuilder(binList.getBinSize() * factor);
+		for (int i = 0; i < chunks.size(); i++) {
+			Chromosome chromosome = chunks.get(i).getChromosome();
+			for (float score: chunkScores.get(i)) {
+				resultListBuilder.addElementToBuild(chromosome, score);
+			}
+		}
+		return (BinList) resultListBuilder.getSCWList();
+	}
+
+
+	@Override
+	public String getDescription() {
+		return "Operation: Aggregate Bins";
+	}
+
+
+	@Override
+	public String getProcessingDescription() {
+		return "Aggregating Bins";
+	}
+
+
+	@Override
+	public int getStepCount() {
+		return 1 + BinList.getCreationStepCount(SCWListType.BIN);
+	}
+
+
+	@Override
+	public void stop() {
+		stopped = true;
+	}
+}
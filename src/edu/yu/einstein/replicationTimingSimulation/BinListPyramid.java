@@ -0,0 +1,114 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.binList.BinList;
+
+/**
+ * Multi-resolution pyramid of a binned track.
+ * The level 0 of the pyramid is the track binned with the base bin size and each level has bins twice as large as the previous one.
+ * The levels are built the first time they are needed by aggregating the bins of the previous level.
+ * A bin size that is a multiple of the base bin size is read from the largest level with a bin size that divides it.
+ * @author Julien Lajugie
+ */
+public class BinListPyramid {
+
+	private final List<BinList> levels;	// levels of the pyramid, level i has bins of size base bin size * 2^i
+
+
+	/**
+	 * Creates an instance of {@link BinListPyramid}
+	 * @param baseList track binned with the smallest bin size of the pyramid
+	 */
+	public BinListPyramid(BinList baseList) {
+		levels = new ArrayList<BinList>();
+		levels.add(baseList);
+	}
+
+
+	/**
+	 * Computes the greatest common divisor of the specified bin sizes.
+	 * All the bin sizes can be read from a pyramid with this base bin size.
+	 * @param binSizes bin sizes
+	 * @return the greatest common divisor of the bin sizes
+	 */
+	public static int computeBaseBinSize(int[] binSizes) {
+		int baseBinSize = 0;
+		for (int binSize: binSizes) {
+			if (binSize <= 0) {
+				throw new IllegalArgumentException("Invalid bin size: " + binSize);
+			}
+			int a = baseBinSize;
+			int b = binSize;
+			while (b != 0) {
+				int tmp = a % b;
+				a = b;
+				b = tmp;
+			}
+			baseBinSize = a;
+		}
+		return baseBinSize;
+	}
+
+
+	/**
+	 * @return the bin size of the level 0 of the pyramid
+	 */
+	public int getBaseBinSize() {
+		return levels.get(0).getBinSize();
+	}
+
+
+	/**
+	 * @param binSize a bin size multiple of the base bin size
+	 * @return the track binned with the specified bin size
+	 * @throws Exception
+	 */
+	public BinList getBinList(int binSize) throws Exception {
+		int baseBinSize = getBaseBinSize();
+		if ((binSize <= 0) || ((binSize % baseBinSize) != 0)) {
+			throw new IllegalArgumentException("The bin size " + binSize + " is not a multiple of the base bin size " + baseBinSize);
+		}
+		int factor = binSize / baseBinSize;
+		// the largest power of 2 that divides the factor is its lowest set bit
+		int levelFactor = Integer.lowestOneBit(factor);
+		BinList level = getLevel(Integer.numberOfTrailingZeros(levelFactor));
+		return new AggregateBinList(level, factor / levelFactor).compute();
+	}
+
+
+	/**
+	 * @param levelIndex index of a level
+	 * @return the level with the specified index. The level and the levels under it are built if needed
+	 * @throws Exception
+	 */
+	private synchronized BinList getLevel(int levelIndex) throws Exception {
+		while (levels.size() <= levelIndex) {
+			BinList previousLevel = levels.get(levels.size() - 1);
+			levels.add(new AggregateBinList(previousLevel, 2).compute());
+		}
+		return levels.get(levelIndex);
+	}
+}
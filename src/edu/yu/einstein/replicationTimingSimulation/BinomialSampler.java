@@ -0,0 +1,270 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import cern.jet.random.Normal;
+import cern.jet.random.engine.MersenneTwister;
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * Draws binomial random numbers for arrays of (n, p) pairs.
+ * Unlike the Colt {@link cern.jet.random.Binomial} static sampler the sampler is not synchronized and doesn't cache a setup
+ * for the last (n, p) pair, so each thread should own its sampler and the pairs can change at each draw for free.
+ * The algorithm is chosen for each draw:
+ * <ul>
+ * <li>inversion by sequential search when the mean is small (n * min(p, 1 - p) < {@value #INVERSION_MAX_MEAN})</li>
+ * <li>BTPE (Kachitvichyanukul and Schmeiser, 1988) otherwise</li>
+ * <li>optionally a rounded normal deviate when n is large enough for the Berry-Esseen bound of the normal approximation
+ * to be smaller than a maximum error</li>
+ * </ul>
+ * @author Julien Lajugie
+ */
+public class BinomialSampler {
+
+	/** Draws with a mean smaller than this value use the inversion algorithm */
+	public final static double INVERSION_MAX_MEAN = 30;
+
+	/** Number of windows drawn with each seed by the seeded operations, so their draws don't depend on the number of threads */
+	public final static int WINDOWS_PER_SEED = 16384;
+
+	private final static double 	BERRY_ESSEEN_CONSTANT = 0.4748;	// constant of the Berry-Esseen bound for binomial distributions
+
+	private final RandomEngine 	engine;					// uniform random number generator
+	private final Normal 		normal;					// standard normal random number generator of the normal approximation
+	private final double 		maxApproximationError;	// maximum distance between the binomial and normal cumulative distributions, 0 to never approximate
+
+
+	/**
+	 * Creates an instance of {@link BinomialSampler}
+	 * @param seed seed of the sampler
+	 * @param maxApproximationError maximum distance between the binomial and normal cumulative distributions
+	 * when a draw is approximated with a normal deviate, 0 to never approximate
+	 */
+	public BinomialSampler(int seed, double maxApproximationError) {
+		if (!(maxApproximationError >= 0)) {
+			throw new IllegalArgumentException("Invalid maximum approximation error: " + maxApproximationError);
+		}
+		engine = new MersenneTwister(seed);
+		normal = new Normal(0, 1, engine);
+		this.maxApproximationError = maxApproximationError;
+	}
+
+
+	/**
+	 * Derives the seed of the sampler of a chunk of windows from the seed of an operation.
+	 * The parameters are mixed so the samplers of consecutive chunks don't draw correlated numbers
+	 * @param seed seed of the operation
+	 * @param chromosomeIndex index of the chromosome of the chunk
+	 * @param chunkIndex index of the chunk in its chromosome
+	 * @return the seed of the sampler of the chunk
+	 */
+	public static int computeSeed(long seed, int chromosomeIndex, int chunkIndex) {
+		seed = (seed * 31) + chromosomeIndex;
+		seed = (seed * 31) + chunkIndex;
+		// SplitMix64 finalizer
+		seed = (seed ^ (seed >>> 30)) * 0xbf58476d1ce4e5b9L;
+		seed = (seed ^ (seed >>> 27)) * 0x94d049bb133111ebL;
+		seed = seed ^ (seed >>> 31);
+		return (int) (seed ^ (seed >>> 32));
+	}
+
+
+	/**
+	 * @param n number of trials
+	 * @param p probability of success, smaller or equal to 0.5
+	 * @return a binomial random number drawn with the BTPE algorithm.
+	 * Ported from the step numbering of Kachitvichyanukul and Schmeiser
+	 */
+	private int drawBTPE(int n, double p) {
+		double q = 1 - p;
+		double nrq = n * p * q;
+		double fm = (n * p) + p;
+		double m = Math.floor(fm);
+		double p1 = Math.floor((2.195 * Math.sqrt(nrq)) - (4.6 * q)) + 0.5;
+		double xm = m + 0.5;
+		double xl = xm - p1;
+		double xr = xm + p1;
+		double c = 0.134 + (20.5 / (15.3 + m));
+		double a = (fm - xl) / (fm - (xl * p));
+		double laml = a * (1 + (a / 2));
+		a = (xr - fm) / (xr * q);
+		double lamr = a * (1 + (a / 2));
+		double p2 = p1 * (1 + (2 * c));
+		double p3 = p2 + (c / laml);
+		double p4 = p3 + (c / lamr);
+		while (true) {
+			// step 1: triangular region, accepted without test
+			double u = engine.raw() * p4;
+			double v = engine.raw();
+			double y;
+			if (u <= p1) {
+				return (int) Math.floor((xm - (p1 * v)) + u);
+			}
+			if (u <= p2) {
+				// step 2: parallelograms
+				double x = xl + ((u - p1) / c);
+				v = ((v * c) + 1) - (Math.abs((m - x) + 0.5) / p1);
+				if (v > 1) {
+					continue;
+				}
+				y = Math.floor(x);
+			} else if (u <= p3) {
+				// step 3: left exponential tail
+				y = Math.floor(xl + (Math.log(v) / laml));
+				if (y < 0) {
+					continue;
+				}
+				v = v * (u - p2) * laml;
+			} else {
+				// step 4: right exponential tail
+				y = Math.floor(xr - (Math.log(v) / lamr));
+				if (y > n) {
+					continue;
+				}
+				v = v * (u - p3) * lamr;
+			}
+			double k = Math.abs(y - m);
+			if ((k <= 20) || (k >= ((nrq / 2) - 1))) {
+				// step 5.1: explicit evaluation of the density ratio
+				double s = p / q;
+				a = s * (n + 1);
+				double f = 1;
+				if (m < y) {
+					for (double i = m + 1; i <= y; i++) {
+						f *= (a / i) - s;
+					}
+				} else if (m > y) {
+					for (double i = y + 1; i <= m; i++) {
+						f /= (a / i) - s;
+					}
+				}
+				if (v <= f) {
+					return (int) y;
+				}
+				continue;
+			}
+			// step 5.2: squeezing with the bounds of the log of the density ratio
+			double rho = (k / nrq) * ((((k * ((k / 3) + 0.625)) + 0.16666666666666666) / nrq) + 0.5);
+			double t = (-k * k) / (2 * nrq);
+			double logV = Math.log(v);
+			if (logV < (t - rho)) {
+				return (int) y;
+			}
+			if (logV > (t + rho)) {
+				continue;
+			}
+			// step 5.3: final acceptance with the Stirling approximation of the factorials
+			double x1 = y + 1;
+			double f1 = m + 1;
+			double z = (n + 1) - m;
+			double w = (n - y) + 1;
+			double bound = (xm * Math.log(f1 / x1))
+					+ ((((n - m) + 0.5) * Math.log(z / w)))
+					+ ((y - m) * Math.log((w * p) / (x1 * q)))
+					+ stirlingCorrection(f1) + stirlingCorrection(z) + stirlingCorrection(x1) + stirlingCorrection(w);
+			if (logV <= bound) {
+				return (int) y;
+			}
+		}
+	}
+
+
+	/**
+	 * @param n number of trials
+	 * @param p probability of success, smaller or equal to 0.5
+	 * @return a binomial random number drawn by inversion of the cumulative distribution, starting from 0
+	 */
+	private int drawInversion(int n, double p) {
+		double q = 1 - p;
+		double q0 = Math.exp(n * Math.log(q));
+		double mean = n * p;
+		// the search restarts if it goes too far in the tail because of rounding errors
+		double bound = Math.min(n, mean + (10 * Math.sqrt((mean * q) + 1)));
+		int x = 0;
+		double px = q0;
+		double u = engine.raw();
+		while (u > px) {
+			x++;
+			if (x > bound) {
+				x = 0;
+				px = q0;
+				u = engine.raw();
+			} else {
+				u -= px;
+				px = ((n - x) + 1) * p * px / (x * q);
+			}
+		}
+		return x;
+	}
+
+
+	/**
+	 * @param n number of trials
+	 * @param p probability of success
+	 * @return a binomial random number
+	 */
+	public int nextInt(int n, double p) {
+		if ((n <= 0) || (p <= 0)) {
+			return 0;
+		}
+		if (p >= 1) {
+			return n;
+		}
+		// the draw is made with the smallest of p and 1 - p
+		double r = Math.min(p, 1 - p);
+		double variance = n * r * (1 - r);
+		int draw;
+		if ((maxApproximationError > 0) && (((BERRY_ESSEEN_CONSTANT * ((r * r) + ((1 - r) * (1 - r)))) / Math.sqrt(variance)) <= maxApproximationError)) {
+			double normalDraw = Math.floor((n * r) + (Math.sqrt(variance) * normal.nextDouble()) + 0.5);
+			draw = (int) Math.max(0, Math.min(n, normalDraw));
+		} else if ((n * r) < INVERSION_MAX_MEAN) {
+			draw = drawInversion(n, r);
+		} else {
+			draw = drawBTPE(n, r);
+		}
+		return r == p ? draw : n - draw;
+	}
+
+
+	/**
+	 * Draws a binomial random number for each (n, p) pair of the input arrays
+	 * @param n numbers of trials
+	 * @param p probabilities of success
+	 * @param result array filled with the random numbers
+	 * @param length number of elements of the arrays to draw
+	 */
+	public void nextInts(int[] n, double[] p, int[] result, int length) {
+		for (int i = 0; i < length; i++) {
+			result[i] = nextInt(n[i], p[i]);
+		}
+	}
+
+
+	/**
+	 * @param x a value
+	 * @return the correction of the Stirling approximation of the log of the factorial used by the final acceptance step of BTPE
+	 */
+	private static double stirlingCorrection(double x) {
+		double x2 = x * x;
+		return (13680. - ((462. - ((132. - ((99. - (140. / x2)) / x2)) / x2)) / x2)) / x / 166320.;
+	}
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.yu.einstein.genplay.dataStructure.chromosome.Chromosome;
+
+/**
+ * Range of consecutive elements of a chromosome processed as one task.
+ * The chromosomes are split in chunks of balanced sizes so the large chromosomes don't set the wall time of the operations
+ * and so there are enough tasks to keep all the threads busy.
+ * @author Julien Lajugie
+ */
+public class ChromosomeChunk {
+
+	private final Chromosome 	chromosome;	// chromosome of the chunk
+	private final int 			index;		// index of the chunk in the chromosome
+	private final int 			start;		// index of the first element of the chunk
+	private final int 			stop;		// index after the last element of the chunk
+
+
+	/**
+	 * Creates an instance of {@link ChromosomeChunk}
+	 * @param chromosome chromosome of the chunk
+	 * @param index index of the chunk in the chromosome
+	 * @param start index of the first element of the chunk
+	 * @param stop index after the last element of the chunk
+	 */
+	public ChromosomeChunk(Chromosome chromosome, int index, int start, int stop) {
+		this.chromosome = chromosome;
+		this.index = index;
+		this.start = start;
+		this.stop = stop;
+	}
+
+
+	/**
+	 * Splits the elements of a chromosome in chunks.
+	 * The chunks have the same size give or take one element and are not larger than the specified size.
+	 * @param chromosome a chromosome
+	 * @param elementCount number of elements of the chromosome
+	 * @param maxChunkSize maximum number of elements of a chunk
+	 * @return the chunks of the chromosome in coordinate order. An empty list if the chromosome has no element
+	 */
+	public static List<ChromosomeChunk> split(Chromosome chromosome, int elementCount, int maxChunkSize) {
+		List<ChromosomeChunk> chunks = new ArrayList<ChromosomeChunk>();
+		if (elementCount <= 0) {
+			return chunks;
+		}
+		int chunkCount = (int) (((long) elementCount + maxChunkSize - 1) / maxChunkSize);
+		int chunkStart = 0;
+		for (int i = 0; i < chunkCount; i++) {
+			int chunkStop = (int) (((long) elementCount * (i + 1)) / chunkCount);
+			chunks.add(new ChromosomeChunk(chromosome, i, chunkStart, chunkStop));
+			chunkStart = chunkStop;
+		}
+		return chunks;
+	}
+
+
+	/**
+	 * @return the chromosome of the chunk
+	 */
+	public Chromosome getChromosome() {
+		return chromosome;
+	}
+
+
+	/**
+	 * @return the index of the chunk in the chromosome
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+
+	/**
+	 * @return the index of the first element of the chunk
+	 */
+	public int getStart() {
+		return start;
+	}
+
+
+	/**
+	 * @return the index after the last element of the chunk
+	 */
+	public int getStop() {
+		return stop;
+	}
+
+
+	/**
+	 * @return the number of elements of the chunk
+	 */
+	public int size() {
+		return stop - start;
+	}
+
+
+	@Override
+	public String toString() {
+		return chromosome.getName() + "[" + start + ", " + stop + ")";
+	}
+}
@@ -0,0 +1,237 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Work-stealing pool of threads running the chunks of the operations split with {@link ChromosomeChunk}.
+ * Each worker has its own queue of tasks. A worker takes the tasks from the head of its queue
+ * and steals from the tail of the queues of the other workers when its queue is empty so no worker stays idle
+ * while another one still has a backlog.
+ * Unlike the GenPlay {@link edu.yu.einstein.genplay.core.operationPool.OperationPool} the number of tasks
+ * is not limited to the number of chromosomes.
+ * @author Julien Lajugie
+ */
+public final class ChunkPool {
+
+	private final static int CHUNKS_PER_THREAD 	= 8;		// number of chunks per thread targeted when the chunk size is computed
+	private final static int MIN_CHUNK_SIZE 	= 4096;		// minimum number of elements of a chunk
+
+	private static ChunkPool instance = null;	// instance of the singleton
+
+	private final Worker[] 	workers;					// worker threads of the pool
+	private final Object 	lock = new Object();		// lock used by the idle workers to wait for tasks
+	private int 			pendingTaskCount = 0;		// number of tasks queued and not started yet (guarded by lock)
+	private int 			activeWorkerCount = 0;		// number of workers running a task (guarded by lock)
+	private int 			nextWorkerIndex = 0;		// index of the worker receiving the next task (guarded by lock)
+
+
+	/**
+	 * Thread of the pool with its queue of tasks
+	 * @author Julien Lajugie
+	 */
+	private class Worker extends Thread {
+
+		private final int 							index;	// index of the worker in the pool
+		private final LinkedBlockingDeque<Runnable> tasks;	// queue of the tasks of the worker
+
+
+		/**
+		 * Creates an instance of {@link Worker}
+		 * @param index index of the worker in the pool
+		 */
+		private Worker(int index) {
+			super("chunk-pool-" + index);
+			this.index = index;
+			tasks = new LinkedBlockingDeque<Runnable>();
+			setDaemon(true);
+		}
+
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					Runnable task = tasks.pollFirst();
+					if (task == null) {
+						task = steal(index);
+					}
+					if (task != null) {
+						synchronized (lock) {
+							pendingTaskCount--;
+							activeWorkerCount++;
+						}
+						try {
+							task.run();
+						} finally {
+							synchronized (lock) {
+								activeWorkerCount--;
+							}
+						}
+					} else {
+						synchronized (lock) {
+							while (pendingTaskCount == 0) {
+								lock.wait();
+							}
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				// the worker ends when it's interrupted
+			}
+		}
+	}
+
+
+	/**
+	 * @return the instance of the singleton {@link ChunkPool}
+	 */
+	public static synchronized ChunkPool getInstance() {
+		if (instance == null) {
+			instance = new ChunkPool(Runtime.getRuntime().availableProcessors());
+		}
+		return instance;
+	}
+
+
+	/**
+	 * Private constructor of the singleton
+	 * @param threadCount number of threads of the pool
+	 */
+	private ChunkPool(int threadCount) {
+		workers = new Worker[Math.max(1, threadCount)];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker(i);
+			workers[i].start();
+		}
+	}
+
+
+	/**
+	 * Cancels the tasks that are not started yet. The cancelled tasks stay in the queues and are skipped by the workers
+	 * @param futures futures of the tasks
+	 */
+	private static void cancelAll(List<? extends Future<?>> futures) {
+		for (Future<?> future: futures) {
+			future.cancel(false);
+		}
+	}
+
+
+	/**
+	 * Computes a chunk size that splits the specified number of elements in enough chunks to balance the work between the threads
+	 * @param elementCount total number of elements to process
+	 * @return the maximum number of elements of a chunk
+	 */
+	public int computeChunkSize(long elementCount) {
+		long chunkCount = (long) workers.length * CHUNKS_PER_THREAD;
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_CHUNK_SIZE, (elementCount + chunkCount - 1) / chunkCount));
+	}
+
+
+	/**
+	 * @return the number of workers running a task
+	 */
+	public int getActiveWorkerCount() {
+		synchronized (lock) {
+			return activeWorkerCount;
+		}
+	}
+
+
+	/**
+	 * @return the number of tasks queued and not started yet
+	 */
+	public int getQueueDepth() {
+		synchronized (lock) {
+			return pendingTaskCount;
+		}
+	}
+
+
+	/**
+	 * @return the number of threads of the pool
+	 */
+	public int getThreadCount() {
+		return workers.length;
+	}
+
+
+	/**
+	 * Runs the specified tasks and waits until they are all done.
+	 * If the calling thread is interrupted the tasks that are not started yet are cancelled.
+	 * @param <T> type of the result of the tasks
+	 * @param tasks tasks to run
+	 * @return the results of the tasks in the order of the tasks
+	 * @throws InterruptedException
+	 * @throws ExecutionException if a task threw an exception
+	 */
+	public <T> List<T> invokeAll(List<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+		List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+		synchronized (lock) {
+			for (Callable<T> task: tasks) {
+				FutureTask<T> future = new FutureTask<T>(task);
+				futures.add(future);
+				workers[nextWorkerIndex].tasks.addLast(future);
+				nextWorkerIndex = (nextWorkerIndex + 1) % workers.length;
+				pendingTaskCount++;
+			}
+			lock.notifyAll();
+		}
+		List<T> results = new ArrayList<T>(futures.size());
+		try {
+			for (Future<T> future: futures) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			cancelAll(futures);
+			throw e;
+		} catch (ExecutionException e) {
+			cancelAll(futures);
+			throw e;
+		}
+		return results;
+	}
+
+
+	/**
+	 * Steals a task from the tail of the queue of another worker
+	 * @param thiefIndex index of the worker looking for a task
+	 * @return a task or null if all the queues are empty
+	 */
+	private Runnable steal(int thiefIndex) {
+		for (int i = 1; i < workers.length; i++) {
+			Runnable task = workers[(thiefIndex + i) % workers.length].tasks.pollLast();
+			if (task != null) {
+				return task;
+			}
+		}
+		return null;
+	}
+}
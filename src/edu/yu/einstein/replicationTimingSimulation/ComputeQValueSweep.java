@@ -0,0 +1,161 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import edu.yu.einstein.genplay.core.operation.Operation;
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWList;
+import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
+
+/**
+ * Computes the {@link QValueSweep} of a simulation from the islands generated and the q-values of all the islands found.
+ * The overlaps between the islands found and the islands generated are computed once for all the cutoffs
+ * by walking through both sorted lists of each chromosome together.
+ * The windows of the q-value list with a score of 0 are the gaps of the list, not islands, and are skipped like
+ * during the conversion of the filtered islands into a mask.
+ * @author Julien Lajugie
+ */
+public class ComputeQValueSweep implements Operation<QValueSweep> {
+
+	private final SCWList 		islandMasks;		// mask containing the islands generated
+	private final SCWList 		islandsQValues;		// islands found scored with their q-values
+	private volatile boolean	stopped = false;	// true if the operation must be stopped
+
+
+	/**
+	 * Creates an instance of {@link ComputeQValueSweep}
+	 * @param islandMasks mask containing the islands generated
+	 * @param islandsQValues islands found scored with their q-values
+	 */
+	public ComputeQValueSweep(SCWList islandMasks, SCWList islandsQValues) {
+		this.islandMasks = islandMasks;
+		this.islandsQValues = islandsQValues;
+	}
+
+
+	/**
+	 * The chromosomes are processed in parallel
+	 */
+	@Override
+	public QValueSweep compute() throws Exception {
+		List<Callable<float[][]>> chromosomeList = new ArrayList<Callable<float[][]>>();
+		for (int i = 0; i < islandMasks.size(); i++) {
+			final ListView<ScoredChromosomeWindow> currentGeneratedIslands = islandMasks.get(i);
+			final ListView<ScoredChromosomeWindow> currentFoundIslands = islandsQValues.get(i);
+			Callable<float[][]> currentThread = new Callable<float[][]>() {
+
+				@Override
+				public float[][] call() throws Exception {
+					float[] truePositives = new float[currentFoundIslands.size()];
+					float[] falsePositives = new float[currentFoundIslands.size()];
+					float[] detections = new float[currentGeneratedIslands.size()];
+					Arrays.fill(detections, Float.POSITIVE_INFINITY);
+					int truePositiveCount = 0;
+					int falsePositiveCount = 0;
+					// first generated island that can overlap the current island found
+					int generatedIndex = 0;
+					for (int j = 0; (j < currentFoundIslands.size()) && !stopped; j++) {
+						ScoredChromosomeWindow foundIsland = currentFoundIslands.get(j);
+						float qValue = foundIsland.getScore();
+						if (qValue != 0) {
+							while ((generatedIndex < currentGeneratedIslands.size()) && (currentGeneratedIslands.get(generatedIndex).getStop() <= foundIsland.getStart())) {
+								generatedIndex++;
+							}
+							boolean hasOverlap = false;
+							for (int k = generatedIndex; (k < currentGeneratedIslands.size()) && (currentGeneratedIslands.get(k).getStart() < foundIsland.getStop()); k++) {
+								hasOverlap = true;
+								// a q-value that is not a number passes all the cutoffs
+								if (Float.isNaN(qValue) || (qValue < detections[k])) {
+									detections[k] = Float.isNaN(qValue) ? Float.NEGATIVE_INFINITY : qValue;
+								}
+							}
+							if (hasOverlap) {
+								truePositives[truePositiveCount] = qValue;
+								truePositiveCount++;
+							} else {
+								falsePositives[falsePositiveCount] = qValue;
+								falsePositiveCount++;
+							}
+						}
+					}
+					float[][] result = {Arrays.copyOf(truePositives, truePositiveCount), Arrays.copyOf(falsePositives, falsePositiveCount), detections};
+					return result;
+				}
+			};
+			chromosomeList.add(currentThread);
+		}
+		List<float[][]> result = ChunkPool.getInstance().invokeAll(chromosomeList);
+		if (stopped) {
+			return null;
+		}
+		return new QValueSweep(concatenate(result, 0), concatenate(result, 1), concatenate(result, 2));
+	}
+
+
+	/**
+	 * @param chromosomeArrays arrays of each chromosome
+	 * @param index index of the array to concatenate in the arrays of the chromosomes
+	 * @return the concatenation of the specified array of each chromosome
+	 */
+	private static float[] concatenate(List<float[][]> chromosomeArrays, int index) {
+		int length = 0;
+		for (float[][] currentArrays: chromosomeArrays) {
+			length += currentArrays[index].length;
+		}
+		float[] result = new float[length];
+		int offset = 0;
+		for (float[][] currentArrays: chromosomeArrays) {
+			System.arraycopy(currentArrays[index], 0, result, offset, currentArrays[index].length);
+			offset += currentArrays[index].length;
+		}
+		return result;
+	}
+
+
+	@Override
+	public String getDescription() {
+		return "Operation: Compute Q-Value Sweep";
+	}
+
+
+	@Override
+	public String getProcessingDescription() {
+		return "Computing Q-Value Sweep";
+	}
+
+
+	@Override
+	public int getStepCount() {
+		return 1;
+	}
+
+
+	@Override
+	public void stop() {
+		stopped = true;
+	}
+}
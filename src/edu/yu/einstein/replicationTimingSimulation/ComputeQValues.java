@@ -36,7 +36,6 @@ import edu.yu.einstein.genplay.dataStructure.chromosome.Chromosome;
 import edu.yu.einstein.genplay.dataStructure.list.chromosomeWideList.SCWListView.dense.DenseSCWListViewBuilder;
 import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWList;
 import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWListBuilder;
-import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.geneList.GeneList;
 
 /**
  * Computes the q-values from the p-values of the fisher exact test
@@ -45,25 +44,19 @@ import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.geneList.GeneLi
  */
 public class ComputeQValues implements Operation<SCWList> {
 
-	private final GeneList 	controlIslandsS;
-	private final GeneList 	controlIslandsG1;
-	private final GeneList 	sampleIslandsS;
-	private final GeneList 	sampleIslandsG1;
+	private final static long R_PROCESS_POLLING_INTERVAL = 100;	// time between two checks of the state of the R process (ms)
+
+	private final IslandCoverageTable 	islandCoverages;	// read counts (a, b, c, d) of the islands
+	private volatile Process 			rProcess = null;	// R process computing the q-values, null if not running
+	private volatile boolean 			stopped = false;	// true if the operation must be stopped
 
 
 	/**
 	 * Creates an instance of {@link ComputeQValues}
-	 * @param controlIslandsS
-	 * @param controlIslandsG1
-	 * @param sampleIslandsS
-	 * @param sampleIslandsG1
+	 * @param islandCoverages read counts (a, b, c, d) of the islands
 	 */
-	public ComputeQValues(GeneList controlIslandsS, GeneList controlIslandsG1,
-			GeneList sampleIslandsS, GeneList sampleIslandsG1) {
-		this.controlIslandsS = controlIslandsS;
-		this.controlIslandsG1 = controlIslandsG1;
-		this.sampleIslandsS = sampleIslandsS;
-		this.sampleIslandsG1 = sampleIslandsG1;
+	public ComputeQValues(IslandCoverageTable islandCoverages) {
+		this.islandCoverages = islandCoverages;
 	}
 
 
@@ -113,13 +106,13 @@ public class ComputeQValues implements Operation<SCWList> {
 
 		//Write the data
 		PrintWriter dout = new PrintWriter(tmpD);
-		for (int i = 0; i < controlIslandsS.size(); i++) {
-			for (int j = 0; j < controlIslandsS.size(i); j++) {
-				long a = (long) sampleIslandsS.get(i, j).getScore();
-				long b = (long) sampleIslandsG1.get(i, j).getScore();
-				long c = (long) controlIslandsS.get(i, j).getScore();
-				long d = (long) controlIslandsG1.get(i, j).getScore();
-				if ((a != 0) || (b != 0) || (c != 0) || (d != 0)) {
+		for (int i = 0; i < islandCoverages.getChromosomeCount(); i++) {
+			for (int j = 0; j < islandCoverages.getIslandCount(i); j++) {
+				if (!islandCoverages.isEmpty(i, j)) {
+					long a = islandCoverages.getSampleS(i, j);
+					long b = islandCoverages.getSampleG1(i, j);
+					long c = islandCoverages.getControlS(i, j);
+					long d = islandCoverages.getControlG1(i, j);
 					dout.println(a + "\t" + b + "\t" + c + "\t" + d);
 				}
 			}
@@ -128,20 +121,25 @@ public class ComputeQValues implements Operation<SCWList> {
 		//Run the R command
 		String cmd = "R CMD BATCH " + tmpScript.getAbsolutePath() + " " + tmpOut.getAbsolutePath();
 		System.out.println(cmd);
-		Runtime.getRuntime().exec(cmd).waitFor();
+		if (stopped) {
+			throw new InterruptedException("Operation stopped: " + getDescription());
+		}
+		rProcess = Runtime.getRuntime().exec(cmd);
+		try {
+			waitForRProcess();
+		} finally {
+			rProcess.destroy();
+			rProcess = null;
+		}
 		//Read the output
 		BufferedReader in = new BufferedReader(new FileReader(tmpR));
 		DenseSCWListViewBuilder prototypeBuilder = new DenseSCWListViewBuilder();
 		SCWListBuilder resultListBuilder = new SCWListBuilder(prototypeBuilder);
 		ProjectChromosomes projectChromosomes = ProjectManager.getInstance().getProjectChromosomes();
-		for (int i = 0; i < controlIslandsS.size(); i++) {
+		for (int i = 0; i < islandCoverages.getChromosomeCount(); i++) {
 			Chromosome currentChromo = projectChromosomes.get(i);
-			for (int j = 0; j < controlIslandsS.size(i); j++) {
-				long a = (long) sampleIslandsS.get(i, j).getScore();
-				long b = (long) sampleIslandsG1.get(i, j).getScore();
-				long c = (long) controlIslandsS.get(i, j).getScore();
-				long d = (long) controlIslandsG1.get(i, j).getScore();
-				if ((a != 0) || (b != 0) || (c != 0) || (d != 0)) {
+			for (int j = 0; j < islandCoverages.getIslandCount(i); j++) {
+				if (!islandCoverages.isEmpty(i, j)) {
 					// pValues in first column, qValues in second column
 					String[] cols = in.readLine().split(" ", 2);
 					double qValue = Double.parseDouble(cols[1]);
@@ -149,8 +147,8 @@ public class ComputeQValues implements Operation<SCWList> {
 					if (qValue < Float.MIN_NORMAL) {
 						qValue = Float.MIN_NORMAL;
 					}
-					int start = controlIslandsS.get(i, j).getStart();
-					int stop = controlIslandsS.get(i, j).getStop();
+					int start = islandCoverages.getStart(i, j);
+					int stop = islandCoverages.getStop(i, j);
 					resultListBuilder.addElementToBuild(currentChromo, start, stop, (float) qValue);
 				}
 			}
@@ -162,6 +160,38 @@ public class ComputeQValues implements Operation<SCWList> {
 
 	@Override
 	public void stop() {
-		// this operation cannot be stop
+		stopped = true;
+		Process process = rProcess;
+		if (process != null) {
+			process.destroy();
+		}
+	}
+
+
+	/**
+	 * Waits for the R process to terminate.
+	 * The process is polled so the wait ends as soon as the operation is stopped or the thread is interrupted.
+	 * @throws InterruptedException if the operation is stopped or the thread interrupted before the end of the process
+	 * @throws IOException if the R process failed
+	 */
+	private void waitForRProcess() throws InterruptedException, IOException {
+		while (true) {
+			try {
+				int exitValue = rProcess.exitValue();
+				if (stopped) {
+					throw new InterruptedException("Operation stopped: " + getDescription());
+				}
+				if (exitValue != 0) {
+					throw new IOException("R exited with status " + exitValue);
+				}
+				return;
+			} catch (IllegalThreadStateException e) {
+				// the process is still running
+				if (stopped) {
+					throw new InterruptedException("Operation stopped: " + getDescription());
+				}
+				Thread.sleep(R_PROCESS_POLLING_INTERVAL);
+			}
+		}
 	}
 }
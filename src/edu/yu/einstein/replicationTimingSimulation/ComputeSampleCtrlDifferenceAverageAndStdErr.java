@@ -16,23 +16,26 @@ public class ComputeSampleCtrlDifferenceAverageAndStdErr implements Operation<Do
 
 	private final BinList 	differenceList;		// list containing the differences between the sample and the control
 	private final SCWList 	filteredIslands;	// islands found during the simulation
-	private boolean			stopped = false;	// true if the operation must be stopped
+	private final int 		binSize;			// size of the bins of the difference list
+	private volatile boolean	stopped = false;	// true if the operation must be stopped
 
 
 	/**
 	 * Creates an instance of {@link ComputeSampleCtrlDifferenceAverageAndStdErr}
 	 * @param differenceList list containing the differences between the sample and the control
 	 * @param islands islands found during the simulation
+	 * @param binSize size of the bins of the difference list
 	 */
-	public ComputeSampleCtrlDifferenceAverageAndStdErr(BinList differenceList, SCWList filteredIslands) {
+	public ComputeSampleCtrlDifferenceAverageAndStdErr(BinList differenceList, SCWList filteredIslands, int binSize) {
 		this.differenceList = differenceList;
 		this.filteredIslands = filteredIslands;
+		this.binSize = binSize;
 	}
 
 
 	@Override
 	public Double[] compute() throws Exception {
-		BinList filteredIslandsBinList = new SCWLOConvertIntoBinList(filteredIslands, 500, ScoreOperation.ADDITION).compute();
+		BinList filteredIslandsBinList = new SCWLOConvertIntoBinList(filteredIslands, binSize, ScoreOperation.ADDITION).compute();
 		if (stopped) {
 			return null;
 		}
@@ -22,7 +22,6 @@
 package edu.yu.einstein.replicationTimingSimulation;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -30,7 +29,6 @@ import java.util.concurrent.ExecutionException;
 import edu.yu.einstein.genplay.core.manager.project.ProjectChromosomes;
 import edu.yu.einstein.genplay.core.manager.project.ProjectManager;
 import edu.yu.einstein.genplay.core.operation.Operation;
-import edu.yu.einstein.genplay.core.operationPool.OperationPool;
 import edu.yu.einstein.genplay.dataStructure.chromosome.Chromosome;
 import edu.yu.einstein.genplay.dataStructure.chromosomeWindow.ChromosomeWindow;
 import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWList;
@@ -48,11 +46,15 @@ public class ComputeSimulationResult implements Operation<SimulationResult> {
 
 	private final int 		islandSize;						// size of the islands used in the simulation
 	private final double 	percentageReadsAdded;			// number of reads added to the island (eg: 0.1 if there were 10% more reads)
+	private final int 		binSize;						// size of the bins used in the simulation
+	private final int 		gaussianWidth;					// moving window width of the gaussian smoothing used in the simulation
+	private final IslandFinderParameters islandFinderParameters;	// parameters of the island finder used in the simulation
 	private final SCWList 	islandMasks;					// scw list containing the island generated
 	private final SCWList 	islandsFound;					// scw list containing the island found during the simulation
 	private final double	sampleCtrlAverageDifference;	// average difference between S and G1 on the island after gaussing
 	private final double	sampleCtrlDifferenceStdErr;		// standard error difference between the sample on the islands after gaussing
-	private boolean			stopped = false;				// true if the operation must be stopped
+	private final QValueSweep	qValueSweep;				// false positives and false negatives at every q-value cutoff, null if not available
+	private volatile boolean	stopped = false;				// true if the operation must be stopped
 
 
 	/**
@@ -62,20 +64,29 @@ public class ComputeSimulationResult implements Operation<SimulationResult> {
 	 * The false negatives are the islands that are in the islands generated but not in the islands found
 	 * @param islandSize size of the islands used in the simulation
 	 * @param percentageReadsAdded number of reads added to the island (eg: 0.1 if there were 10% more reads)
+	 * @param binSize size of the bins used in the simulation
+	 * @param gaussianWidth moving window width of the gaussian smoothing used in the simulation
+	 * @param islandFinderParameters parameters of the island finder used in the simulation
 	 * @param islandMasks mask containing the island generated
 	 * @param islandsFound gene list containing the island found during the simulation
 	 * @param sampleCtrlAverageDifference average difference between the sample on the islands after gaussing
 	 * @param sampleCtrlDifferenceStdErr standard error difference between the sample on the islands after gaussing
+	 * @param qValueSweep false positives and false negatives at every q-value cutoff, null if not available
 	 */
-	public ComputeSimulationResult(int islandSize, double percentageReadsAdded,
+	public ComputeSimulationResult(int islandSize, double percentageReadsAdded, int binSize, int gaussianWidth, IslandFinderParameters islandFinderParameters,
 			SCWList islandMasks, SCWList islandsFound,
-			double sampleCtrlAverageDifference, double  sampleCtrlDifferenceStdErr) {
+			double sampleCtrlAverageDifference, double  sampleCtrlDifferenceStdErr,
+			QValueSweep qValueSweep) {
 		this.islandSize = islandSize;
 		this.percentageReadsAdded = percentageReadsAdded;
+		this.binSize = binSize;
+		this.gaussianWidth = gaussianWidth;
+		this.islandFinderParameters = islandFinderParameters;
 		this.islandMasks = islandMasks;
 		this.islandsFound = islandsFound;
 		this.sampleCtrlAverageDifference = sampleCtrlAverageDifference;
 		this.sampleCtrlDifferenceStdErr = sampleCtrlDifferenceStdErr;
+		this.qValueSweep = qValueSweep;
 	}
 
 
@@ -88,46 +99,46 @@ public class ComputeSimulationResult implements Operation<SimulationResult> {
 		int falseNegativeCount = 0;
 
 		ProjectChromosomes projectChromosomes = ProjectManager.getInstance().getProjectChromosomes();
-		final OperationPool op = OperationPool.getInstance();
-		final Collection<Callable<int[]>> threadList = new ArrayList<Callable<int[]>>();
+		ChunkPool pool = ChunkPool.getInstance();
+		int chunkSize = pool.computeChunkSize(islandCreatedCount + islandFoundCount);
+		final List<Callable<int[]>> chunkList = new ArrayList<Callable<int[]>>();
 
 		for(final Chromosome currentChromosome : projectChromosomes) {
 			final ListView<ScoredChromosomeWindow> currentGeneratedIslands = islandMasks.get(currentChromosome);
 			final ListView<ScoredChromosomeWindow> currentFoundIslands = islandsFound.get(currentChromosome);
-			Callable<int[]> currentThread = new Callable<int[]>() {
-
-				@Override
-				public int[] call() throws Exception {
-					// array for the result, the first element corresponds the false positives, the second to the false negatives
-					int[] result = new int[2];
-					// count false positives
-					for (ChromosomeWindow foundWindow: currentFoundIslands) {
-						if (stopped) {
-							return null;
-						}
-						if (!hasOverlap(foundWindow, currentGeneratedIslands)) {
-							result[0]++;
+			// count false positives
+			for (final ChromosomeChunk chunk: ChromosomeChunk.split(currentChromosome, currentFoundIslands.size(), chunkSize)) {
+				chunkList.add(new Callable<int[]>() {
+					@Override
+					public int[] call() throws Exception {
+						// array for the result, the first element corresponds the false positives, the second to the false negatives
+						int[] result = new int[2];
+						for (int i = chunk.getStart(); (i < chunk.getStop()) && !stopped; i++) {
+							if (!hasOverlap(currentFoundIslands.get(i), currentGeneratedIslands)) {
+								result[0]++;
+							}
 						}
+						return result;
 					}
-					if (stopped) {
-						return null;
-					}
-					// count false negatives
-					for (ChromosomeWindow generatedWindow: currentGeneratedIslands) {
-						if (stopped) {
-							return null;
-						}
-						if (!hasOverlap(generatedWindow, currentFoundIslands)) {
-							result[1]++;
+				});
+			}
+			// count false negatives
+			for (final ChromosomeChunk chunk: ChromosomeChunk.split(currentChromosome, currentGeneratedIslands.size(), chunkSize)) {
+				chunkList.add(new Callable<int[]>() {
+					@Override
+					public int[] call() throws Exception {
+						int[] result = new int[2];
+						for (int i = chunk.getStart(); (i < chunk.getStop()) && !stopped; i++) {
+							if (!hasOverlap(currentGeneratedIslands.get(i), currentFoundIslands)) {
+								result[1]++;
+							}
 						}
+						return result;
 					}
-					op.notifyDone();
-					return result;
-				}
-			};
-			threadList.add(currentThread);
+				});
+			}
 		}
-		List<int[]> result = op.startPool(threadList);
+		List<int[]> result = pool.invokeAll(chunkList);
 		// sum up false positives and false negatives
 		for (int[] currentResult: result) {
 			falsePositiveCount += currentResult[0];
@@ -140,7 +151,7 @@ public class ComputeSimulationResult implements Operation<SimulationResult> {
 			islandAverageSize = (int) (islandSizeSum / islandFoundCount);
 		}
 		double islandSizeStdErr = computeIslandSizeStdErr(islandFoundCount, islandAverageSize);
-		return new SimulationResult(islandSize, percentageReadsAdded, islandCreatedCount, islandFoundCount, falsePositiveCount, falseNegativeCount, islandAverageSize, islandSizeStdErr, sampleCtrlAverageDifference, sampleCtrlDifferenceStdErr);
+		return new SimulationResult(islandSize, percentageReadsAdded, binSize, gaussianWidth, islandFinderParameters, islandCreatedCount, islandFoundCount, falsePositiveCount, falseNegativeCount, islandAverageSize, islandSizeStdErr, sampleCtrlAverageDifference, sampleCtrlDifferenceStdErr, qValueSweep);
 	}
 
 
@@ -154,8 +165,7 @@ public class ComputeSimulationResult implements Operation<SimulationResult> {
 	private double computeIslandSizeStdErr(int islandFoundCount, final double islandAverageSize) throws InterruptedException, ExecutionException {
 		// compute the std deviation of the island length
 		ProjectChromosomes projectChromosomes = ProjectManager.getInstance().getProjectChromosomes();
-		final OperationPool op = OperationPool.getInstance();
-		final Collection<Callable<Double>> threadList = new ArrayList<Callable<Double>>();
+		final List<Callable<Double>> threadList = new ArrayList<Callable<Double>>();
 
 		for(final Chromosome currentChromosome : projectChromosomes) {
 			final ListView<ScoredChromosomeWindow> currentFoundIslands = islandsFound.get(currentChromosome);
@@ -167,17 +177,17 @@ public class ComputeSimulationResult implements Operation<SimulationResult> {
 					// compute standard error
 					for (ChromosomeWindow generatedWindow: currentFoundIslands) {
 						if (stopped) {
-							return null;
+							break;
 						}
 						result += Math.pow(generatedWindow.getSize() - islandAverageSize, 2);
-						}
-					op.notifyDone();
+					}
 					return result;
 				}
 			};
 			threadList.add(currentThread);
 		}
-		List<Double> result = op.startPool(threadList);
+		// the sums are computed per chromosome and added in chromosome order so the rounding doesn't depend on the chunks
+		List<Double> result = ChunkPool.getInstance().invokeAll(threadList);
 		double islandStdDev = 0;
 		// sum up false positives and false negatives
 		for (Double currentResult: result) {
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pool of {@link ControlReplicate} generated once per batch and shared by all the simulations of the batch.
+ * The replicates are drawn in turn so each replicate is used by the same number of simulations.
+ * @author Julien Lajugie
+ */
+public class ControlPool {
+
+	private final List<ControlReplicate> 	replicates;		// control replicates of the pool
+	private int 							nextIndex = 0;	// index of the next replicate to draw
+
+
+	/**
+	 * Creates an instance of {@link ControlPool}
+	 * @param replicates control replicates of the pool
+	 */
+	public ControlPool(List<ControlReplicate> replicates) {
+		if ((replicates == null) || replicates.isEmpty()) {
+			throw new IllegalArgumentException("A control pool needs at least one replicate");
+		}
+		this.replicates = Collections.unmodifiableList(new ArrayList<ControlReplicate>(replicates));
+	}
+
+
+	/**
+	 * @return the next control replicate of the pool
+	 */
+	public synchronized ControlReplicate drawReplicate() {
+		ControlReplicate replicate = replicates.get(nextIndex);
+		nextIndex = (nextIndex + 1) % replicates.size();
+		return replicate;
+	}
+
+
+	/**
+	 * @return the number of replicates in the pool
+	 */
+	public int size() {
+		return replicates.size();
+	}
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.binList.BinList;
+
+/**
+ * Control replicate of a simulation: the coverage indexes of the S and G1 data resampled with no reads added
+ * and the S / G1 ratios of the binned and gaussed control lists for each {@link TrackConfiguration} of the batch.
+ * The binned and gaussed S and G1 lists are only needed to compute the ratio so they are not kept.
+ * The coverage indexes keep the resampled lists, stored as compact read counts, and one cumulative sum per window.
+ * @author Julien Lajugie
+ */
+public class ControlReplicate {
+
+	private final CoverageIndex 	controlS;		// coverage of the resampled S phase data
+	private final CoverageIndex 	controlG1;		// coverage of the resampled G1 phase data
+	private final Map<TrackConfiguration, BinList> controlSG1s;	// S / G1 ratios of the binned and gaussed resampled data indexed by track configuration
+
+
+	/**
+	 * Creates an instance of {@link ControlReplicate}
+	 * @param controlS coverage of the resampled S phase data
+	 * @param controlG1 coverage of the resampled G1 phase data
+	 * @param controlSG1s S / G1 ratios of the binned and gaussed resampled data indexed by track configuration
+	 */
+	public ControlReplicate(CoverageIndex controlS, CoverageIndex controlG1, Map<TrackConfiguration, BinList> controlSG1s) {
+		this.controlS = controlS;
+		this.controlG1 = controlG1;
+		this.controlSG1s = Collections.unmodifiableMap(new HashMap<TrackConfiguration, BinList>(controlSG1s));
+	}
+
+
+	/**
+	 * @return the coverage of the resampled G1 phase data
+	 */
+	public CoverageIndex getControlG1() {
+		return controlG1;
+	}
+
+
+	/**
+	 * @return the coverage of the resampled S phase data
+	 */
+	public CoverageIndex getControlS() {
+		return controlS;
+	}
+
+
+	/**
+	 * @param configuration a track configuration
+	 * @return the S / G1 ratio of the resampled data binned and gaussed with the specified configuration
+	 */
+	public BinList getControlSG1(TrackConfiguration configuration) {
+		BinList controlSG1 = controlSG1s.get(configuration);
+		if (controlSG1 == null) {
+			throw new IllegalArgumentException("The control replicate has no data for the configuration " + configuration);
+		}
+		return controlSG1;
+	}
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import edu.yu.einstein.genplay.core.operation.Operation;
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWList;
+import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
+
+/**
+ * Converts a list of read counts into a list of {@link CountSCWListView} storing the counts on 16 bits.
+ * The list is returned as it is when some of its scores are not counts. The chromosomes are converted in parallel.
+ * @author Julien Lajugie
+ */
+public class ConvertIntoCountList implements Operation<SCWList> {
+
+	private final SCWList 		list;				// list to convert
+	private volatile boolean	stopped = false;	// true if the operation must be stopped
+
+
+	/**
+	 * Creates an instance of {@link ConvertIntoCountList}
+	 * @param list list to convert. The windows of the list must be sorted and must not overlap
+	 */
+	public ConvertIntoCountList(SCWList list) {
+		this.list = list;
+	}
+
+
+	/**
+	 * @return a list with the windows of the input list stored in {@link CountSCWListView},
+	 * or the input list if some of its scores are not counts
+	 */
+	@Override
+	public SCWList compute() throws Exception {
+		List<Callable<CountSCWListView>> chromosomeList = new ArrayList<Callable<CountSCWListView>>();
+		for (int i = 0; i < list.size(); i++) {
+			final ListView<ScoredChromosomeWindow> currentList = list.get(i);
+			Callable<CountSCWListView> currentThread = new Callable<CountSCWListView>() {
+
+				@Override
+				public CountSCWListView call() throws Exception {
+					if (stopped) {
+						return null;
+					}
+					if (currentList instanceof CountSCWListView) {
+						return (CountSCWListView) currentList;
+					}
+					return CountSCWListView.createFromListView(currentList);
+				}
+			};
+			chromosomeList.add(currentThread);
+		}
+		List<CountSCWListView> result = ChunkPool.getInstance().invokeAll(chromosomeList);
+		if (stopped) {
+			return null;
+		}
+		if (result.contains(null)) {
+			return list;
+		}
+		return new PrimitiveSCWList(result, list.getSCWListType());
+	}
+
+
+	@Override
+	public String getDescription() {
+		return "Operation: Convert Into Count List";
+	}
+
+
+	@Override
+	public String getProcessingDescription() {
+		return "Converting Into Count List";
+	}
+
+
+	@Override
+	public int getStepCount() {
+		return 1;
+	}
+
+
+	@Override
+	public void stop() {
+		stopped = true;
+	}
+}
@@ -0,0 +1,285 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import edu.yu.einstein.genplay.dataStructure.list.listView.AbstractListView;
+import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.SimpleScoredChromosomeWindow;
+
+/**
+ * {@link ListView} of {@link ScoredChromosomeWindow} storing read counts.
+ * The counts are stored on 16 bits and the few counts that don't fit are stored on 32 bits in sorted overflow arrays.
+ * When each window starts at the stop of the previous one (eg: dense lists with their gaps) only the stops are stored.
+ * The positions are immutable and shared by the views with the same windows (eg: the resampled lists and their input list)
+ * so a view created with {@link #withCounts(CountBuilder)} only takes 2 bytes per window.
+ * The windows are only created when they are retrieved with {@link #get(int)}.
+ * @author Julien Lajugie
+ */
+public final class CountSCWListView extends AbstractListView<ScoredChromosomeWindow> implements ListView<ScoredChromosomeWindow> {
+
+	private static final long serialVersionUID = 6119027533473386421L; // generated ID
+
+	/** Largest count stored on 16 bits, the larger counts are stored in the overflow arrays */
+	public final static int MAX_SHORT_COUNT = Character.MAX_VALUE - 1;
+
+	private final static char OVERFLOW_MARKER = Character.MAX_VALUE;	// 16 bit count of the windows with a count in the overflow arrays
+
+	private final int 		firstStart;			// start of the first window
+	private final int[] 	starts;				// starts of the windows, null if each window starts at the stop of the previous one
+	private final int[] 	stops;				// stops of the windows
+	private final char[] 	counts;				// counts of the windows on 16 bits, OVERFLOW_MARKER for the counts of the overflow arrays
+	private final int[] 	overflowIndexes;	// sorted indexes of the windows with a count larger than MAX_SHORT_COUNT
+	private final int[] 	overflowCounts;		// counts of the windows of the overflow indexes
+	private final int 		size;				// number of windows of the view
+
+
+	/**
+	 * Builder of the counts of a {@link CountSCWListView}.
+	 * The counts can be set by several threads as long as they don't set the same index
+	 * and the view is built once they are all done.
+	 * @author Julien Lajugie
+	 */
+	public static final class CountBuilder {
+
+		private final char[] 				counts;		// counts on 16 bits
+		private final Map<Integer, Integer> overflows;	// counts larger than MAX_SHORT_COUNT indexed by window
+
+
+		/**
+		 * Creates an instance of {@link CountBuilder}
+		 * @param size number of windows
+		 */
+		public CountBuilder(int size) {
+			counts = new char[size];
+			overflows = new TreeMap<Integer, Integer>();
+		}
+
+
+		/**
+		 * Sets the count of a window
+		 * @param index index of the window
+		 * @param count a positive count
+		 */
+		public void set(int index, int count) {
+			if (count <= MAX_SHORT_COUNT) {
+				counts[index] = (char) count;
+			} else {
+				counts[index] = OVERFLOW_MARKER;
+				synchronized (overflows) {
+					overflows.put(index, count);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Creates an instance of {@link CountSCWListView}.
+	 * The arrays are not copied and must not be modified after the creation of the view.
+	 * @param firstStart start of the first window
+	 * @param starts starts of the windows, null if each window starts at the stop of the previous one
+	 * @param stops stops of the windows
+	 * @param counts counts of the windows
+	 * @param overflowIndexes sorted indexes of the windows with a count larger than {@link #MAX_SHORT_COUNT}
+	 * @param overflowCounts counts of the windows of the overflow indexes
+	 * @param size number of windows of the view
+	 */
+	private CountSCWListView(int firstStart, int[] starts, int[] stops, char[] counts, int[] overflowIndexes, int[] overflowCounts, int size) {
+		this.firstStart = firstStart;
+		this.starts = starts;
+		this.stops = stops;
+		this.counts = counts;
+		this.overflowIndexes = overflowIndexes;
+		this.overflowCounts = overflowCounts;
+		this.size = size;
+	}
+
+
+	/**
+	 * Creates a {@link CountSCWListView} with the windows of the specified list view
+	 * @param listView a list view with sorted windows that don't overlap
+	 * @return a {@link CountSCWListView} with the windows of the list view,
+	 * null if some scores of the list view are not counts (negative, not integer or too large to be exact in a float)
+	 */
+	public static CountSCWListView createFromListView(ListView<ScoredChromosomeWindow> listView) {
+		int size = listView.size();
+		int[] starts = new int[size];
+		int[] stops = new int[size];
+		CountBuilder builder = new CountBuilder(size);
+		boolean isContiguous = true;
+		for (int i = 0; i < size; i++) {
+			ScoredChromosomeWindow window = listView.get(i);
+			float score = window.getScore();
+			if (!isCount(score)) {
+				return null;
+			}
+			starts[i] = window.getStart();
+			stops[i] = window.getStop();
+			isContiguous &= (i == 0) || (starts[i] == stops[i - 1]);
+			builder.set(i, (int) score);
+		}
+		int firstStart = size == 0 ? 0 : starts[0];
+		return new CountSCWListView(firstStart, isContiguous ? null : starts, stops, builder.counts, new int[0], new int[0], size).withCounts(builder);
+	}
+
+
+	/**
+	 * Creates a {@link CountSCWListView} with the specified windows and a count of 0 for all the windows.
+	 * The counts are set with {@link #withCounts(CountBuilder)}. The arrays are not copied and must not be modified after the creation of the view.
+	 * @param starts sorted starts of the windows
+	 * @param stops stops of the windows, the windows must not overlap
+	 * @param size number of windows
+	 * @return a new {@link CountSCWListView}
+	 */
+	public static CountSCWListView createWithPositions(int[] starts, int[] stops, int size) {
+		boolean isContiguous = true;
+		for (int i = 1; (i < size) && isContiguous; i++) {
+			isContiguous = starts[i] == stops[i - 1];
+		}
+		int firstStart = size == 0 ? 0 : starts[0];
+		return new CountSCWListView(firstStart, isContiguous ? null : starts, stops, new char[size], new int[0], new int[0], size);
+	}
+
+
+	/**
+	 * @param position a position on the chromosome
+	 * @return the index of the window containing the specified position, -1 if no window contains the position
+	 */
+	public int findWindowIndex(int position) {
+		// first window ending after the position
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (stops[middle] <= position) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return (low < size) && (getStart(low) <= position) ? low : -1;
+	}
+
+
+	@Override
+	public ScoredChromosomeWindow get(int index) {
+		if ((index < 0) || (index >= size)) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return new SimpleScoredChromosomeWindow(getStart(index), stops[index], getCount(index));
+	}
+
+
+	/**
+	 * @param index index of a window
+	 * @return the count of the window
+	 */
+	public int getCount(int index) {
+		char count = counts[index];
+		if (count != OVERFLOW_MARKER) {
+			return count;
+		}
+		int low = 0;
+		int high = overflowIndexes.length - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (overflowIndexes[middle] < index) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return overflowCounts[low];
+	}
+
+
+	/**
+	 * @param index index of a window
+	 * @return the score of the window
+	 */
+	public float getScore(int index) {
+		return getCount(index);
+	}
+
+
+	/**
+	 * @param index index of a window
+	 * @return the start of the window
+	 */
+	public int getStart(int index) {
+		if (starts != null) {
+			return starts[index];
+		}
+		return index == 0 ? firstStart : stops[index - 1];
+	}
+
+
+	/**
+	 * @param index index of a window
+	 * @return the stop of the window
+	 */
+	public int getStop(int index) {
+		return stops[index];
+	}
+
+
+	/**
+	 * @param score a score
+	 * @return true if the score is a count that can be stored in a {@link CountSCWListView}
+	 */
+	public static boolean isCount(float score) {
+		// floats are exact integers up to 2^24
+		return (score >= 0) && (score <= (1 << 24)) && (score == (int) score);
+	}
+
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+
+	/**
+	 * Creates a view with the windows of this view and the counts of the specified builder.
+	 * The positions are shared by the two views.
+	 * @param builder builder with one count per window of this view. The builder must not be used after the call
+	 * @return a new {@link CountSCWListView}
+	 */
+	public CountSCWListView withCounts(CountBuilder builder) {
+		if (builder.counts.length != size) {
+			throw new IllegalArgumentException("The builder has " + builder.counts.length + " counts, the view has " + size + " windows");
+		}
+		int[] newOverflowIndexes = new int[builder.overflows.size()];
+		int[] newOverflowCounts = new int[builder.overflows.size()];
+		int i = 0;
+		for (Map.Entry<Integer, Integer> overflow: builder.overflows.entrySet()) {
+			newOverflowIndexes[i] = overflow.getKey();
+			newOverflowCounts[i] = overflow.getValue();
+			i++;
+		}
+		return new CountSCWListView(firstStart, starts, stops, builder.counts, newOverflowIndexes, newOverflowCounts, size);
+	}
+}
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWList;
+import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
+
+/**
+ * Cumulative coverage of a {@link SCWList}: for each chromosome the sums of the scores of the windows
+ * multiplied by their length, from the first window to each window.
+ * The coverage of any interval is retrieved with two binary searches and a subtraction,
+ * like the base coverage sum of the GenPlay gene scoring operation but without walking through the windows.
+ * The index only stores the cumulative sums, the binary searches run on the windows of the list
+ * (read directly in the primitive arrays of the {@link CountSCWListView} and {@link PrimitiveSCWListView}).
+ * @author Julien Lajugie
+ */
+public class CoverageIndex {
+
+	private final SCWList 		list;					// indexed list
+	private final double[][] 	cumulativeCoverages;	// coverage of the windows before each window indexed by chromosome, one more element than windows
+
+
+	/**
+	 * Creates an instance of {@link CoverageIndex}. The chromosomes are indexed in parallel.
+	 * @param list a {@link SCWList} with sorted windows that don't overlap. The list is kept by the index
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public CoverageIndex(final SCWList list) throws InterruptedException, ExecutionException {
+		this.list = list;
+		int chromosomeCount = list.size();
+		cumulativeCoverages = new double[chromosomeCount][];
+		List<Callable<Void>> chromosomeList = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < chromosomeCount; i++) {
+			final int chromosomeIndex = i;
+			Callable<Void> currentThread = new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					ListView<ScoredChromosomeWindow> listView = list.get(chromosomeIndex);
+					int size = listView.size();
+					double[] currentCoverages = new double[size + 1];
+					for (int j = 0; j < size; j++) {
+						currentCoverages[j + 1] = currentCoverages[j] + ((getStop(listView, j) - getStart(listView, j)) * (double) getScore(listView, j));
+					}
+					cumulativeCoverages[chromosomeIndex] = currentCoverages;
+					return null;
+				}
+			};
+			chromosomeList.add(currentThread);
+		}
+		ChunkPool.getInstance().invokeAll(chromosomeList);
+	}
+
+
+	/**
+	 * @param chromosomeIndex index of a chromosome
+	 * @param start start of an interval
+	 * @param stop stop of an interval
+	 * @return the sum of the scores of the windows overlapping the interval multiplied by the length of their overlap with the interval
+	 */
+	public double getCoverage(int chromosomeIndex, int start, int stop) {
+		ListView<ScoredChromosomeWindow> listView = list.get(chromosomeIndex);
+		// first window ending after the start of the interval
+		int low = 0;
+		int high = listView.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (getStop(listView, middle) <= start) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		int first = low;
+		// first window starting at or after the stop of the interval
+		high = listView.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (getStart(listView, middle) < stop) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		int last = low;
+		if (first >= last) {
+			return 0;
+		}
+		double[] currentCoverages = cumulativeCoverages[chromosomeIndex];
+		double coverage = currentCoverages[last] - currentCoverages[first];
+		// remove the parts of the first and last windows outside the interval
+		int firstStart = getStart(listView, first);
+		if (firstStart < start) {
+			coverage -= (start - firstStart) * (double) getScore(listView, first);
+		}
+		int lastStop = getStop(listView, last - 1);
+		if (lastStop > stop) {
+			coverage -= (lastStop - stop) * (double) getScore(listView, last - 1);
+		}
+		return coverage;
+	}
+
+
+	/**
+	 * @param listView a list view
+	 * @param index index of a window
+	 * @return the score of the window, read without creating a window object when the list view stores primitive arrays
+	 */
+	private static float getScore(ListView<ScoredChromosomeWindow> listView, int index) {
+		if (listView instanceof CountSCWListView) {
+			return ((CountSCWListView) listView).getScore(index);
+		}
+		if (listView instanceof PrimitiveSCWListView) {
+			return ((PrimitiveSCWListView) listView).getScore(index);
+		}
+		return listView.get(index).getScore();
+	}
+
+
+	/**
+	 * @param listView a list view
+	 * @param index index of a window
+	 * @return the start of the window, read without creating a window object when the list view stores primitive arrays
+	 */
+	private static int getStart(ListView<ScoredChromosomeWindow> listView, int index) {
+		if (listView instanceof CountSCWListView) {
+			return ((CountSCWListView) listView).getStart(index);
+		}
+		if (listView instanceof PrimitiveSCWListView) {
+			return ((PrimitiveSCWListView) listView).getStart(index);
+		}
+		return listView.get(index).getStart();
+	}
+
+
+	/**
+	 * @param listView a list view
+	 * @param index index of a window
+	 * @return the stop of the window, read without creating a window object when the list view stores primitive arrays
+	 */
+	private static int getStop(ListView<ScoredChromosomeWindow> listView, int index) {
+		if (listView instanceof CountSCWListView) {
+			return ((CountSCWListView) listView).getStop(index);
+		}
+		if (listView instanceof PrimitiveSCWListView) {
+			return ((PrimitiveSCWListView) listView).getStop(index);
+		}
+		return listView.get(index).getStop();
+	}
+}
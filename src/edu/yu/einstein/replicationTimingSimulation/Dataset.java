@@ -0,0 +1,212 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWList;
+
+/**
+ * S and G1 phase replication timing data of a sample.
+ * The data are loaded the first time they are needed and can be released once the simulations of the dataset are done.
+ * @author Julien Lajugie
+ */
+public class Dataset {
+
+	private final static Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9._-]+");	// names of the datasets that are safe as directory names
+
+	private final String 	name;		// name of the dataset, used for the output directory. Empty for a single dataset run
+	private final File 		sFile;		// file with replication timing data for the S phase
+	private final File 		g1File;		// file with replication timing data for the G1 phase
+	private final GenomeRegions regions;	// regions where the data are restricted, null to keep the whole genome
+	private SCWList 		sList;		// s phase data, null if not loaded
+	private SCWList 		g1List;		// g1 phase data, null if not loaded
+
+
+	/**
+	 * Creates an instance of {@link Dataset}
+	 * @param name name of the dataset, used for the output directory. Empty for a single dataset run
+	 * @param sFile file with replication timing data for the S phase
+	 * @param g1File file with replication timing data for the G1 phase
+	 */
+	public Dataset(String name, File sFile, File g1File) {
+		this(name, sFile, g1File, null);
+	}
+
+
+	/**
+	 * Creates an instance of {@link Dataset} restricted to the specified regions
+	 * @param name name of the dataset, used for the output directory. Empty for a single dataset run
+	 * @param sFile file with replication timing data for the S phase
+	 * @param g1File file with replication timing data for the G1 phase
+	 * @param regions regions where the data are restricted, null to keep the whole genome
+	 */
+	public Dataset(String name, File sFile, File g1File, GenomeRegions regions) {
+		this.name = name;
+		this.sFile = sFile;
+		this.g1File = g1File;
+		this.regions = regions;
+	}
+
+
+	/**
+	 * @return the g1 phase data. The data are loaded if needed
+	 * @throws Exception
+	 */
+	public synchronized SCWList getG1List() throws Exception {
+		load();
+		return g1List;
+	}
+
+
+	/**
+	 * @return the name of the dataset
+	 */
+	public String getName() {
+		return name;
+	}
+
+
+	/**
+	 * @return the regions where the data are restricted, null if the data are not restricted
+	 */
+	public GenomeRegions getRegions() {
+		return regions;
+	}
+
+
+	/**
+	 * @return the s phase data. The data are loaded if needed
+	 * @throws Exception
+	 */
+	public synchronized SCWList getSList() throws Exception {
+		load();
+		return sList;
+	}
+
+
+	/**
+	 * Loads the S and G1 data if they are not loaded yet.
+	 * The windows outside of the regions of the dataset are removed and the read counts of the regions are stored on 16 bits
+	 * @throws Exception
+	 */
+	private void load() throws Exception {
+		SCWList regionMask = null;
+		if ((regions != null) && ((sList == null) || (g1List == null))) {
+			regionMask = regions.createMask();
+		}
+		if (sList == null) {
+			sList = RunSimulationBatch.loadInputFile(sFile);
+			if (regionMask != null) {
+				sList = new ConvertIntoCountList(SpliceWithMask.createRestrictOperation(sList, regionMask).compute()).compute();
+			}
+		}
+		if (g1List == null) {
+			g1List = RunSimulationBatch.loadInputFile(g1File);
+			if (regionMask != null) {
+				g1List = new ConvertIntoCountList(SpliceWithMask.createRestrictOperation(g1List, regionMask).compute()).compute();
+			}
+		}
+	}
+
+
+	/**
+	 * Reads a manifest file listing datasets.
+	 * Each line of the manifest contains the name of the dataset, the S phase file and the G1 phase file separated by tabs.
+	 * Empty lines and lines starting with '#' are ignored. Relative paths are resolved against the directory of the manifest.
+	 * The names are used as output directories and keys of the results so they must be unique, even ignoring the case,
+	 * and made of letters, digits, '.', '_' and '-' only.
+	 * @param manifestFile manifest file
+	 * @param regions regions where the data of the datasets are restricted, null to keep the whole genome
+	 * @return the list of datasets of the manifest
+	 * @throws IOException if the manifest can't be read or if a line or a name is invalid
+	 */
+	public static List<Dataset> readManifest(File manifestFile, GenomeRegions regions) throws IOException {
+		List<Dataset> datasets = new ArrayList<Dataset>();
+		// line of each dataset indexed by lower case name
+		Map<String, Integer> nameLines = new HashMap<String, Integer>();
+		File manifestDir = manifestFile.getAbsoluteFile().getParentFile();
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader(manifestFile));
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				if (line.trim().isEmpty() || line.trim().startsWith("#")) {
+					continue;
+				}
+				// the line is split before being trimmed so an empty name is not taken for the S file
+				String[] cols = line.split("\t");
+				if (cols.length != 3) {
+					throw new IOException("Invalid manifest line " + lineNumber + ": expected name, S file and G1 file separated by tabs");
+				}
+				String name = cols[0].trim();
+				if (!VALID_NAME.matcher(name).matches() || name.equals(".") || name.equals("..")) {
+					throw new IOException("Invalid dataset name on manifest line " + lineNumber + ": \"" + name + "\" (letters, digits, '.', '_' and '-' only)");
+				}
+				Integer previousLine = nameLines.put(name.toLowerCase(Locale.ENGLISH), lineNumber);
+				if (previousLine != null) {
+					throw new IOException("Duplicate dataset name on manifest line " + lineNumber + ": \"" + name + "\" is already used on line " + previousLine);
+				}
+				datasets.add(new Dataset(name, resolveFile(manifestDir, cols[1].trim()), resolveFile(manifestDir, cols[2].trim()), regions));
+			}
+		} finally {
+			if (reader != null) {
+				reader.close();
+			}
+		}
+		return datasets;
+	}
+
+
+	/**
+	 * Releases the S and G1 data so they can be garbage collected
+	 */
+	public synchronized void release() {
+		sList = null;
+		g1List = null;
+	}
+
+
+	/**
+	 * @param dir directory used to resolve relative paths
+	 * @param path a path
+	 * @return the file with the specified path, resolved against the specified directory if the path is relative
+	 */
+	private static File resolveFile(File dir, String path) {
+		File file = new File(path);
+		if (!file.isAbsolute()) {
+			file = new File(dir, path);
+		}
+		return file;
+	}
+}
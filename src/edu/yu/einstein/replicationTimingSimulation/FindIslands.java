@@ -22,25 +22,20 @@
 package edu.yu.einstein.replicationTimingSimulation;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Callable;
 
 import edu.yu.einstein.genplay.core.manager.project.ProjectChromosomes;
 import edu.yu.einstein.genplay.core.manager.project.ProjectManager;
 import edu.yu.einstein.genplay.core.operation.Operation;
-import edu.yu.einstein.genplay.core.operationPool.OperationPool;
 import edu.yu.einstein.genplay.dataStructure.chromosome.Chromosome;
 import edu.yu.einstein.genplay.dataStructure.enums.Strand;
 import edu.yu.einstein.genplay.dataStructure.gene.Gene;
-import edu.yu.einstein.genplay.dataStructure.gene.SimpleGene;
 import edu.yu.einstein.genplay.dataStructure.list.chromosomeWideList.geneListView.GeneListViewBuilder;
-import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.ListOfListViewBuilder;
 import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWList;
 import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.geneList.GeneList;
 import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.geneList.SimpleGeneList;
 import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
-import edu.yu.einstein.genplay.dataStructure.list.listView.ListViewBuilder;
 import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
 import edu.yu.einstein.genplay.util.ListView.SCWListViews;
 
@@ -52,7 +47,32 @@ import edu.yu.einstein.genplay.util.ListView.SCWListViews;
 public class FindIslands implements Operation<GeneList> {
 
 	private final SCWList	inputList;			// input list
-	private boolean			stopped = false;	// true if the operation must be stopped
+	private volatile boolean	stopped = false;	// true if the operation must be stopped
+
+
+	/**
+	 * Run of consecutive windows with the same sign found in a chunk.
+	 * The runs of consecutive chunks are merged when they have the same sign.
+	 * @author Julien Lajugie
+	 */
+	private static class IslandRun {
+		private final boolean 	isPositive;	// true if the windows of the run are positive
+		private final int 		start;		// start of the first window of the run
+		private int 			stop;		// stop of the last non-null window of the run
+
+
+		/**
+		 * Creates an instance of {@link IslandRun}
+		 * @param isPositive true if the windows of the run are positive
+		 * @param start start of the first window of the run
+		 * @param stop stop of the first window of the run
+		 */
+		private IslandRun(boolean isPositive, int start, int stop) {
+			this.isPositive = isPositive;
+			this.start = start;
+			this.stop = stop;
+		}
+	}
 
 
 	/**
@@ -64,50 +84,100 @@ public class FindIslands implements Operation<GeneList> {
 	}
 
 
+	/**
+	 * Adds an island to the list view of its chromosome
+	 * @param builder builder of the list view of the chromosome
+	 * @param islandRun run of windows of the island
+	 * @throws Exception
+	 */
+	private static void addIsland(GeneListViewBuilder builder, IslandRun islandRun) throws Exception {
+		builder.addElementToBuild(null, Strand.FIVE, islandRun.start, islandRun.stop, 1, islandRun.start, islandRun.stop, SCWListViews.createGenericSCWListView(islandRun.start, islandRun.stop, 1));
+	}
+
+
+	/**
+	 * The chromosomes are split in chunks searched in parallel.
+	 * The runs found in the chunks are stitched in coordinate order so a run crossing the border of a chunk
+	 * gives the same island as if the chromosome was searched in one piece.
+	 */
 	@Override
 	public GeneList compute() throws Exception {
 		ProjectChromosomes projectChromosomes = ProjectManager.getInstance().getProjectChromosomes();
-		final OperationPool op = OperationPool.getInstance();
-		final Collection<Callable<Void>> threadList = new ArrayList<Callable<Void>>();
-		ListViewBuilder<Gene> lvbPrototype = new GeneListViewBuilder();
-		final ListOfListViewBuilder<Gene> resultListBuilder = new ListOfListViewBuilder<Gene>(lvbPrototype);
-
-		for(final Chromosome currentChromosome : projectChromosomes) {
+		ChunkPool pool = ChunkPool.getInstance();
+		long windowCount = 0;
+		for (Chromosome chromosome: projectChromosomes) {
+			windowCount += inputList.get(chromosome).size();
+		}
+		int chunkSize = pool.computeChunkSize(windowCount);
+		List<ChromosomeChunk> chunks = new ArrayList<ChromosomeChunk>();
+		List<Callable<List<IslandRun>>> chunkList = new ArrayList<Callable<List<IslandRun>>>();
+		for (final Chromosome currentChromosome : projectChromosomes) {
 			final ListView<ScoredChromosomeWindow> currentList = inputList.get(currentChromosome);
-			Callable<Void> currentThread = new Callable<Void>() {
+			for (final ChromosomeChunk chunk: ChromosomeChunk.split(currentChromosome, currentList.size(), chunkSize)) {
+				Callable<List<IslandRun>> currentChunk = new Callable<List<IslandRun>>() {
+
+					@Override
+					public List<IslandRun> call() throws Exception {
+						List<IslandRun> runs = new ArrayList<IslandRun>();
+						IslandRun currentRun = null;
+						for (int i = chunk.getStart(); (i < chunk.getStop()) && !stopped; i++) {
+							ScoredChromosomeWindow window = currentList.get(i);
+							// the first window of the chromosome starts an island even if its score is 0
+							if ((i == 0) || (window.getScore() != 0)) {
+								boolean isPositive = window.getScore() > 0;
+								if ((currentRun != null) && (currentRun.isPositive == isPositive)) {
+									currentRun.stop = window.getStop();
+								} else {
+									currentRun = new IslandRun(isPositive, window.getStart(), window.getStop());
+									runs.add(currentRun);
+								}
+							}
+						}
+						return runs;
+					}
+				};
+				chunks.add(chunk);
+				chunkList.add(currentChunk);
+			}
+		}
+		final List<List<IslandRun>> chunkRuns = pool.invokeAll(chunkList);
+		// stitch the runs of the chunks, each chromosome with its own builder
+		List<Callable<ListView<Gene>>> chromosomeList = new ArrayList<Callable<ListView<Gene>>>();
+		int chunkIndex = 0;
+		for (int i = 0; i < projectChromosomes.size(); i++) {
+			final int firstChunkIndex = chunkIndex;
+			while ((chunkIndex < chunks.size()) && chunks.get(chunkIndex).getChromosome().equals(projectChromosomes.get(i))) {
+				chunkIndex++;
+			}
+			final int lastChunkIndex = chunkIndex;
+			Callable<ListView<Gene>> currentThread = new Callable<ListView<Gene>>() {
 
 				@Override
-				public Void call() throws Exception {
-					if (currentList.isEmpty()) {
-						return null;
-					}
-					boolean wasPositive = currentList.get(0).getScore() > 0;
-					int islandStart = currentList.get(0).getStart();
-					int islandStop = currentList.get(0).getStop();
-					int i = 1;
-					while ((i < currentList.size()) && !stopped) {
-						if (currentList.get(i).getScore() != 0) {
-							boolean isPostive = currentList.get(i).getScore() > 0;
-							if (isPostive != wasPositive) {
-								SimpleGene geneToAdd = new SimpleGene(null, Strand.FIVE, islandStart, islandStop, 1,SCWListViews.createGenericSCWListView(islandStart, islandStop, 1));
-								resultListBuilder.addElementToBuild(currentChromosome, geneToAdd);
-								wasPositive = isPostive;
-								islandStart = currentList.get(i).getStart();
+				public ListView<Gene> call() throws Exception {
+					GeneListViewBuilder builder = new GeneListViewBuilder();
+					// merge the runs of consecutive chunks with the same sign
+					IslandRun islandRun = null;
+					for (int j = firstChunkIndex; j < lastChunkIndex; j++) {
+						for (IslandRun run: chunkRuns.get(j)) {
+							if ((islandRun != null) && (islandRun.isPositive == run.isPositive)) {
+								islandRun.stop = run.stop;
+							} else {
+								if (islandRun != null) {
+									addIsland(builder, islandRun);
+								}
+								islandRun = new IslandRun(run.isPositive, run.start, run.stop);
 							}
-							islandStop = currentList.get(i).getStop();
 						}
-						i++;
 					}
-					SimpleGene geneToAdd = new SimpleGene(null, Strand.FIVE, islandStart, islandStop, 1,SCWListViews.createGenericSCWListView(islandStart, islandStop, 1));
-					resultListBuilder.addElementToBuild(currentChromosome, geneToAdd);
-					op.notifyDone();
-					return null;
+					if (islandRun != null) {
+						addIsland(builder, islandRun);
+					}
+					return builder.getListView();
 				}
 			};
-			threadList.add(currentThread);
+			chromosomeList.add(currentThread);
 		}
-		op.startPool(threadList);
-		List<ListView<Gene>> data = resultListBuilder.getGenomicList();
+		List<ListView<Gene>> data = pool.invokeAll(chromosomeList);
 		return new SimpleGeneList(data, null, null);
 	}
 
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.Arrays;
+
+import edu.yu.einstein.genplay.core.operation.Operation;
+import edu.yu.einstein.genplay.core.operation.binList.BLOGauss;
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.binList.BinList;
+
+/**
+ * Gausses a {@link BinList} with several moving window widths.
+ * The widths are processed from the smallest to the largest and each smoothed list is computed from the previous one:
+ * gaussing with a sigma s1 and then with a sigma sqrt(s2^2 - s1^2) is equivalent to gaussing with a sigma s2.
+ * Each width after the first one is computed with a narrower window than a direct gaussing.
+ * @author Julien Lajugie
+ */
+public class GaussScaleSpace implements Operation<BinList[]> {
+
+	private final BinList 			binList;				// input bin list
+	private final int[] 			gaussianWidths;			// moving window widths of the gaussian smoothing
+	private volatile BLOGauss 		currentGauss = null;	// gaussing being computed, null if none
+	private volatile boolean		stopped = false;		// true if the operation must be stopped
+
+
+	/**
+	 * Creates an instance of {@link GaussScaleSpace}
+	 * @param binList input bin list
+	 * @param gaussianWidths moving window widths of the gaussian smoothing
+	 */
+	public GaussScaleSpace(BinList binList, int[] gaussianWidths) {
+		this.binList = binList;
+		this.gaussianWidths = gaussianWidths;
+	}
+
+
+	/**
+	 * @return an array with the input list gaussed with each width, in the order of the widths specified in the constructor
+	 */
+	@Override
+	public BinList[] compute() throws Exception {
+		int[] sortedWidths = gaussianWidths.clone();
+		Arrays.sort(sortedWidths);
+		BinList[] sortedResults = new BinList[sortedWidths.length];
+		BinList previousList = binList;
+		int previousWidth = 0;
+		for (int i = 0; (i < sortedWidths.length) && !stopped; i++) {
+			if ((i > 0) && (sortedWidths[i] == previousWidth)) {
+				sortedResults[i] = previousList;
+			} else {
+				int deltaWidth = (int) Math.round(Math.sqrt(((double) sortedWidths[i] * sortedWidths[i]) - ((double) previousWidth * previousWidth)));
+				currentGauss = new BLOGauss(previousList, deltaWidth, false);
+				if (stopped) {
+					return null;
+				}
+				sortedResults[i] = currentGauss.compute();
+				currentGauss = null;
+				previousList = sortedResults[i];
+				previousWidth = sortedWidths[i];
+			}
+		}
+		if (stopped) {
+			return null;
+		}
+		BinList[] results = new BinList[gaussianWidths.length];
+		for (int i = 0; i < gaussianWidths.length; i++) {
+			results[i] = sortedResults[Arrays.binarySearch(sortedWidths, gaussianWidths[i])];
+		}
+		return results;
+	}
+
+
+	@Override
+	public String getDescription() {
+		return "Operation: Gauss Scale Space";
+	}
+
+
+	@Override
+	public String getProcessingDescription() {
+		return "Gaussing";
+	}
+
+
+	@Override
+	public int getStepCount() {
+		return gaussianWidths.length;
+	}
+
+
+	@Override
+	public void stop() {
+		stopped = true;
+		BLOGauss gauss = currentGauss;
+		if (gauss != null) {
+			gauss.stop();
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.yu.einstein.genplay.core.operation.Operation;
+import edu.yu.einstein.genplay.core.operation.SCWList.SCWLOConvertIntoBinList;
+import edu.yu.einstein.genplay.core.operation.binList.BLOTwoLayers;
+import edu.yu.einstein.genplay.dataStructure.enums.ScoreOperation;
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWList;
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.binList.BinList;
+
+/**
+ * Generates a control replicate: resamples the S and G1 data with no reads added,
+ * bins and gausses the resampled lists with each bin size and gaussian width of the batch and computes their S / G1 ratios.
+ * The resampled lists are binned once with the base bin size and the larger bin sizes are read from a {@link BinListPyramid}.
+ * All the gaussian widths of a bin size are computed in one {@link GaussScaleSpace}.
+ * None of these steps depends on the island size or on the percentage of reads added
+ * so a control replicate can be shared by all the simulations of a batch.
+ * @author Julien Lajugie
+ */
+public class GenerateControlReplicate implements Operation<ControlReplicate> {
+
+	private final SCWList 	sList;				// s phase data
+	private final SCWList 	g1List;				// g1 phase data
+	private final int 		readIncreaseFactor;	// the read count from the input files will be multiplied by this factor
+	private final int[] 	binSizes;			// sizes of the bins of the binned lists
+	private final int[] 	gaussianWidths;		// moving window widths of the gaussian smoothing
+	private final double 	binomialMaxError;	// maximum error of the normal approximation of the binomial draws of the resampling, 0 to always draw exactly
+	private final long 		seed;				// seed of the resampling
+	private final OperationRunner runner = new OperationRunner();	// computes the steps of the operation, stopped with the operation
+
+
+	/**
+	 * Creates an instance of {@link GenerateControlReplicate}
+	 * @param sList s phase data
+	 * @param g1List g1 phase data
+	 * @param readIncreaseFactor the read count from the input files will be multiplied by this factor
+	 * @param binSizes sizes of the bins of the binned lists
+	 * @param gaussianWidths moving window widths of the gaussian smoothing
+	 * @param binomialMaxError maximum error of the normal approximation of the binomial draws of the resampling, 0 to always draw exactly
+	 * @param seed seed of the resampling
+	 */
+	public GenerateControlReplicate(SCWList sList, SCWList g1List, int readIncreaseFactor, int[] binSizes, int[] gaussianWidths, double binomialMaxError, long seed) {
+		this.sList = sList;
+		this.g1List = g1List;
+		this.readIncreaseFactor = readIncreaseFactor;
+		this.binSizes = binSizes;
+		this.gaussianWidths = gaussianWidths;
+		this.binomialMaxError = binomialMaxError;
+		this.seed = seed;
+	}
+
+
+	@Override
+	public ControlReplicate compute() throws Exception {
+		// resample the lists with no reads added
+		SCWList[] resampledList = runner.compute(new ResampleLayers(sList, g1List, 0, readIncreaseFactor, binomialMaxError, seed));
+		SCWList controlS = resampledList[0];
+		SCWList controlG1 = resampledList[1];
+		// bin with the base bin size
+		int baseBinSize = BinListPyramid.computeBaseBinSize(binSizes);
+		BinListPyramid controlSPyramid = new BinListPyramid(runner.compute(new SCWLOConvertIntoBinList(controlS, baseBinSize, ScoreOperation.ADDITION)));
+		BinListPyramid controlG1Pyramid = new BinListPyramid(runner.compute(new SCWLOConvertIntoBinList(controlG1, baseBinSize, ScoreOperation.ADDITION)));
+		Map<TrackConfiguration, BinList> controlSG1s = new HashMap<TrackConfiguration, BinList>();
+		for (int binSize: binSizes) {
+			// gauss and compute S / G1 ratio
+			BinList[] gaussedControlS = runner.compute(new GaussScaleSpace(controlSPyramid.getBinList(binSize), gaussianWidths));
+			BinList[] gaussedControlG1 = runner.compute(new GaussScaleSpace(controlG1Pyramid.getBinList(binSize), gaussianWidths));
+			for (int i = 0; i < gaussianWidths.length; i++) {
+				BinList controlSG1 = (BinList) runner.compute(new BLOTwoLayers(gaussedControlS[i], gaussedControlG1[i], ScoreOperation.DIVISION));
+				controlSG1s.put(new TrackConfiguration(binSize, gaussianWidths[i]), controlSG1);
+			}
+		}
+		return new ControlReplicate(new CoverageIndex(controlS), new CoverageIndex(controlG1), controlSG1s);
+	}
+
+
+	@Override
+	public String getDescription() {
+		return "Operation: Generate Control Replicate";
+	}
+
+
+	@Override
+	public String getProcessingDescription() {
+		return "Generating Control Replicate";
+	}
+
+
+	@Override
+	public int getStepCount() {
+		return 3 + (binSizes.length * (2 + gaussianWidths.length));
+	}
+
+
+	@Override
+	public void stop() {
+		runner.stop();
+	}
+}
@@ -22,91 +22,115 @@
 package edu.yu.einstein.replicationTimingSimulation;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
 
 import edu.yu.einstein.genplay.core.manager.project.ProjectChromosomes;
 import edu.yu.einstein.genplay.core.manager.project.ProjectManager;
 import edu.yu.einstein.genplay.core.operation.Operation;
-import edu.yu.einstein.genplay.core.operation.SCWList.SCWLOConvertIntoSimpleSCWList;
-import edu.yu.einstein.genplay.core.operation.geneList.GLOFilterThreshold;
-import edu.yu.einstein.genplay.core.operation.geneList.GLOScoreFromSCWList;
-import edu.yu.einstein.genplay.core.operationPool.OperationPool;
 import edu.yu.einstein.genplay.dataStructure.chromosome.Chromosome;
-import edu.yu.einstein.genplay.dataStructure.enums.GeneScoreType;
 import edu.yu.einstein.genplay.dataStructure.enums.SCWListType;
-import edu.yu.einstein.genplay.dataStructure.enums.Strand;
-import edu.yu.einstein.genplay.dataStructure.gene.Gene;
-import edu.yu.einstein.genplay.dataStructure.list.chromosomeWideList.geneListView.GeneListViewBuilder;
 import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWList;
-import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SimpleSCWList.SimpleSCWList;
-import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.geneList.GeneList;
-import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.geneList.SimpleGeneList;
 import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
-import edu.yu.einstein.genplay.util.ListView.SCWListViews;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
 
 /**
- * Generates the island used during the simulation
+ * Generates the island used during the simulation.
+ * The islands are either placed on a grid, every stepSize bases from the first base, or at random non-overlapping positions.
+ * The unmappable regions of the genome are read from a {@link MappableRegionIndex}: the grid islands not overlapping
+ * a mappable region are removed and the random islands start in a mappable region.
  * @author Julien Lajugie
  */
 public class GenerateIslands implements Operation<SCWList> {
 
-	private final int 		stepSize;		// size between two islands start positions
-	private final int 		islandSize;		// size of the islands
-	private final SCWList	mappableData;	// input data, islands not overlapping data are removed (correspond to unmappable regions of the genome)
-	private boolean			stopped = false;// true if the operation must be stopped
+	private final static int 	MAX_DRAW_PER_ISLAND = 100;	// number of positions drawn per island before the random placement gives up
+
+	private final int 					stepSize;			// size between two islands start positions, 0 for a random placement
+	private final double 				density;			// number of islands per megabase of mappable genome of a random placement
+	private final int 					islandSize;			// size of the islands
+	private final MappableRegionIndex	mappableRegions;	// mappable regions of the genome, islands not overlapping them are removed
+	private final long 					seed;				// seed of the random placement
+	private volatile boolean			stopped = false;	// true if the operation must be stopped
 
 
 	/**
 	 * Creates an instance of {@link GenerateIslands}
-	 * @param stepSize size between two islands start positions
+	 * @param stepSize size between two islands start positions, 0 for a random placement
+	 * @param density number of islands per megabase of mappable genome of a random placement
 	 * @param islandSize size of the islands
-	 * @param mappleData input data, islands not overlapping data are removed (correspond to unmappable regions of the genome)
+	 * @param mappableRegions mappable regions of the genome, islands not overlapping them are removed
+	 * @param seed seed of the random placement
 	 */
-	public GenerateIslands(int stepSize, int islandSize, SCWList mappleData) {
+	private GenerateIslands(int stepSize, double density, int islandSize, MappableRegionIndex mappableRegions, long seed) {
 		this.stepSize = stepSize;
+		this.density = density;
 		this.islandSize = islandSize;
-		mappableData = mappleData;
+		this.mappableRegions = mappableRegions;
+		this.seed = seed;
 	}
 
 
-	@Override
-	public SCWList compute() throws Exception {
-		final OperationPool op = OperationPool.getInstance();
-		final Collection<Callable<ListView<Gene>>> threadList = new ArrayList<Callable<ListView<Gene>>>();
-		ProjectChromosomes projectChromosomes = ProjectManager.getInstance().getProjectChromosomes();
+	/**
+	 * Creates an operation placing the islands every stepSize bases from the first base of each chromosome
+	 * @param stepSize size between two islands start positions
+	 * @param islandSize size of the islands
+	 * @param mappableRegions mappable regions of the genome, islands not overlapping them are removed
+	 * @return a {@link GenerateIslands} operation
+	 */
+	public static GenerateIslands createGridOperation(int stepSize, int islandSize, MappableRegionIndex mappableRegions) {
+		if (stepSize <= 0) {
+			throw new IllegalArgumentException("Invalid island step size: " + stepSize);
+		}
+		return new GenerateIslands(stepSize, 0, islandSize, mappableRegions, 0);
+	}
 
-		for (final Chromosome currentChr: projectChromosomes) {
-			Callable<ListView<Gene>> currentThread = new Callable<ListView<Gene>>() {
-				@Override
-				public ListView<Gene> call() throws Exception {
-					GeneListViewBuilder lvBuilder = new GeneListViewBuilder();
-					int islandStart = 1;
-					int islandStop = islandStart + islandSize;
-					while ((islandStop < currentChr.getLength()) && !stopped) {
-						lvBuilder.addElementToBuild("", Strand.FIVE, islandStart, islandStop, 1, islandStart, islandStop, SCWListViews.createGenericSCWListView(islandStart, islandStop, 1));
-						islandStart += stepSize;
-						islandStop = islandStart + islandSize;
-					}
-					// tell the operation pool that a chromosome is done
-					op.notifyDone();
-					return lvBuilder.getListView();
-				}
-			};
 
-			threadList.add(currentThread);
+	/**
+	 * Creates an operation placing the islands at random positions.
+	 * The islands start in a mappable region, don't overlap and don't touch each other.
+	 * Two operations created with the same seed place the islands at the same positions.
+	 * @param density number of islands per megabase of mappable genome
+	 * @param islandSize size of the islands
+	 * @param mappableRegions mappable regions of the genome
+	 * @param seed seed of the placement
+	 * @return a {@link GenerateIslands} operation
+	 */
+	public static GenerateIslands createRandomOperation(double density, int islandSize, MappableRegionIndex mappableRegions, long seed) {
+		if (!(density > 0)) {
+			throw new IllegalArgumentException("Invalid island density: " + density);
+		}
+		return new GenerateIslands(0, density, islandSize, mappableRegions, seed);
+	}
+
+
+	/**
+	 * @param chromosome a chromosome
+	 * @return the number of islands generated on the chromosome.
+	 * The islands start every stepSize bases from the first base and must stop before the end of the chromosome
+	 */
+	private int computeIslandCount(Chromosome chromosome) {
+		// the island k is generated if 1 + k * stepSize + islandSize < chromosome length
+		long maxStartOffset = (long) chromosome.getLength() - 1 - islandSize;
+		if (maxStartOffset <= 0) {
+			return 0;
+		}
+		return (int) (((maxStartOffset + stepSize) - 1) / stepSize);
+	}
+
+
+	@Override
+	public SCWList compute() throws Exception {
+		List<ListView<ScoredChromosomeWindow>> result;
+		if (stepSize > 0) {
+			result = placeOnGrid();
+		} else {
+			result = placeAtRandom();
 		}
-		List<ListView<Gene>> result = op.startPool(threadList);
-		if (result != null) {
-			GeneList resultList = new SimpleGeneList(result, null, null);
-			// score the exon of the list
-			resultList = new GLOScoreFromSCWList(resultList, mappableData, GeneScoreType.MAXIMUM_COVERAGE).compute();
-			// remove genes where the score is 0
-			resultList = new GLOFilterThreshold(resultList, Float.MIN_NORMAL, Float.POSITIVE_INFINITY, false).compute();
-			// convert in mask list
-			SCWList resultMaskList = new SCWLOConvertIntoSimpleSCWList(resultList, SCWListType.MASK).compute();
-			return resultMaskList;
+		if (!stopped) {
+			return new PrimitiveSCWList(result, SCWListType.MASK);
 		} else {
 			return null;
 		}
@@ -127,7 +151,113 @@ public class GenerateIslands implements Operation<SCWList> {
 
 	@Override
 	public int getStepCount() {
-		return 3 + SimpleSCWList.getCreationStepCount(SCWListType.MASK);
+		return 1;
+	}
+
+
+	/**
+	 * Draws random positions in the mappable regions until the expected number of islands is placed
+	 * or until too many positions have been rejected because the islands would overlap or would go over the end of the chromosome.
+	 * The islands already placed are stored in sorted maps so a position is accepted or rejected in O(log n)
+	 * @return the islands of each chromosome
+	 */
+	private List<ListView<ScoredChromosomeWindow>> placeAtRandom() {
+		ProjectChromosomes projectChromosomes = ProjectManager.getInstance().getProjectChromosomes();
+		// islands placed on each chromosome, indexed by start position
+		List<TreeMap<Integer, Integer>> islandMaps = new ArrayList<TreeMap<Integer, Integer>>();
+		for (int i = 0; i < projectChromosomes.size(); i++) {
+			islandMaps.add(new TreeMap<Integer, Integer>());
+		}
+		long mappableLength = mappableRegions.getMappableLength();
+		long islandCount = mappableLength == 0 ? 0 : Math.round((density * mappableLength) / 1000000d);
+		long maxDrawCount = islandCount * MAX_DRAW_PER_ISLAND;
+		Random random = new Random(seed);
+		long placedCount = 0;
+		for (long drawCount = 0; (drawCount < maxDrawCount) && (placedCount < islandCount) && !stopped; drawCount++) {
+			long genomeOffset = Math.min((long) (random.nextDouble() * mappableLength), mappableLength - 1);
+			int chromosomeIndex = mappableRegions.getChromosomeIndex(genomeOffset);
+			int islandStart = mappableRegions.getPosition(genomeOffset);
+			int islandStop = islandStart + islandSize;
+			if ((islandStart >= 1) && (islandStop < projectChromosomes.get(chromosomeIndex).getLength())) {
+				TreeMap<Integer, Integer> islandMap = islandMaps.get(chromosomeIndex);
+				Entry<Integer, Integer> previousIsland = islandMap.floorEntry(islandStart);
+				Entry<Integer, Integer> nextIsland = islandMap.ceilingEntry(islandStart);
+				if (((previousIsland == null) || (previousIsland.getValue() < islandStart))
+						&& ((nextIsland == null) || (nextIsland.getKey() > islandStop))) {
+					islandMap.put(islandStart, islandStop);
+					placedCount++;
+				}
+			}
+		}
+		List<ListView<ScoredChromosomeWindow>> result = new ArrayList<ListView<ScoredChromosomeWindow>>();
+		for (TreeMap<Integer, Integer> islandMap: islandMaps) {
+			PrimitiveSCWListViewBuilder lvBuilder = new PrimitiveSCWListViewBuilder(islandMap.size());
+			for (Entry<Integer, Integer> island: islandMap.entrySet()) {
+				lvBuilder.addElementToBuild(island.getKey(), island.getValue(), 1);
+			}
+			result.add(lvBuilder.getListView());
+		}
+		return result;
+	}
+
+
+	/**
+	 * The islands of the chromosomes are generated by chunks in parallel and stitched back in coordinate order
+	 * @return the islands of each chromosome
+	 * @throws Exception
+	 */
+	private List<ListView<ScoredChromosomeWindow>> placeOnGrid() throws Exception {
+		ChunkPool pool = ChunkPool.getInstance();
+		ProjectChromosomes projectChromosomes = ProjectManager.getInstance().getProjectChromosomes();
+		// number of islands of each chromosome
+		int[] islandCounts = new int[projectChromosomes.size()];
+		long islandCount = 0;
+		for (int i = 0; i < projectChromosomes.size(); i++) {
+			islandCounts[i] = computeIslandCount(projectChromosomes.get(i));
+			islandCount += islandCounts[i];
+		}
+		int chunkSize = pool.computeChunkSize(islandCount);
+		List<Callable<int[]>> chunkList = new ArrayList<Callable<int[]>>();
+		List<ChromosomeChunk> chunks = new ArrayList<ChromosomeChunk>();
+		for (int i = 0; i < projectChromosomes.size(); i++) {
+			final int chromosomeIndex = i;
+			for (final ChromosomeChunk chunk: ChromosomeChunk.split(projectChromosomes.get(i), islandCounts[i], chunkSize)) {
+				Callable<int[]> currentChunk = new Callable<int[]>() {
+					@Override
+					public int[] call() throws Exception {
+						// start positions of the islands of the chunk overlapping a mappable region
+						int[] islandStarts = new int[chunk.size()];
+						int mappableCount = 0;
+						for (int j = chunk.getStart(); (j < chunk.getStop()) && !stopped; j++) {
+							int islandStart = 1 + (j * stepSize);
+							if (mappableRegions.isMappable(chromosomeIndex, islandStart, islandStart + islandSize)) {
+								islandStarts[mappableCount] = islandStart;
+								mappableCount++;
+							}
+						}
+						int[] result = new int[mappableCount];
+						System.arraycopy(islandStarts, 0, result, 0, mappableCount);
+						return result;
+					}
+				};
+				chunks.add(chunk);
+				chunkList.add(currentChunk);
+			}
+		}
+		List<int[]> chunkIslands = pool.invokeAll(chunkList);
+		List<ListView<ScoredChromosomeWindow>> result = new ArrayList<ListView<ScoredChromosomeWindow>>();
+		int chunkIndex = 0;
+		for (int i = 0; i < projectChromosomes.size(); i++) {
+			PrimitiveSCWListViewBuilder lvBuilder = new PrimitiveSCWListViewBuilder(islandCounts[i]);
+			while ((chunkIndex < chunks.size()) && chunks.get(chunkIndex).getChromosome().equals(projectChromosomes.get(i))) {
+				for (int islandStart: chunkIslands.get(chunkIndex)) {
+					lvBuilder.addElementToBuild(islandStart, islandStart + islandSize, 1);
+				}
+				chunkIndex++;
+			}
+			result.add(lvBuilder.getListView());
+		}
+		return result;
 	}
 
 
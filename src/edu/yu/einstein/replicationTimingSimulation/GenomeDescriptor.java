@@ -0,0 +1,254 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import edu.yu.einstein.genplay.dataStructure.chromosome.Chromosome;
+import edu.yu.einstein.genplay.dataStructure.chromosome.SimpleChromosome;
+import edu.yu.einstein.genplay.dataStructure.genome.Assembly;
+
+/**
+ * Compact description of a genome assembly: the name of the assembly and the name and length of its chromosomes.
+ * A descriptor can be loaded from a chrom.sizes file (chromosome name and length separated by a tab on each line)
+ * or from a compact binary file written by {@link #write(File)}.
+ * It's much faster to load than the assembly list of GenPlay and it allows to use assemblies that are not in GenPlay.
+ * @author Julien Lajugie
+ */
+public class GenomeDescriptor {
+
+	private final static int 	COMPACT_FORMAT_MAGIC 	= 0x52545347;	// first bytes of a compact descriptor file ("RTSG")
+	private final static int 	COMPACT_FORMAT_VERSION 	= 1;			// version of the compact descriptor format
+	private final static String DATE_FORMAT 			= "MM yyyy";	// format of the date expected by the Assembly class
+
+	private final String 			assemblyName;	// name of the assembly
+	private final String 			assemblyDate;	// date of the assembly (MM yyyy)
+	private final List<Chromosome> 	chromosomes;	// chromosomes of the assembly
+
+
+	/**
+	 * Creates an instance of {@link GenomeDescriptor}
+	 * @param assemblyName name of the assembly
+	 * @param assemblyDate date of the assembly (MM yyyy)
+	 * @param chromosomes chromosomes of the assembly
+	 */
+	public GenomeDescriptor(String assemblyName, String assemblyDate, List<Chromosome> chromosomes) {
+		this.assemblyName = assemblyName;
+		this.assemblyDate = assemblyDate;
+		this.chromosomes = new ArrayList<Chromosome>(chromosomes);
+		Collections.sort(this.chromosomes);
+	}
+
+
+	/**
+	 * @param includePattern regular expression that the chromosome names must match to be kept. Null to keep all the chromosomes
+	 * @param excludePattern regular expression of the names of the chromosomes to remove. Null to remove no chromosome
+	 * @return a new descriptor with only the chromosomes selected by the patterns
+	 */
+	public GenomeDescriptor filter(String includePattern, String excludePattern) {
+		Pattern include = includePattern == null ? null : Pattern.compile(includePattern);
+		Pattern exclude = excludePattern == null ? null : Pattern.compile(excludePattern);
+		List<Chromosome> filteredChromosomes = new ArrayList<Chromosome>();
+		for (Chromosome chromosome: chromosomes) {
+			String name = chromosome.getName();
+			if (((include == null) || include.matcher(name).matches()) && ((exclude == null) || !exclude.matcher(name).matches())) {
+				filteredChromosomes.add(chromosome);
+			}
+		}
+		if (filteredChromosomes.isEmpty()) {
+			throw new IllegalArgumentException("No chromosome of the assembly " + assemblyName + " is selected by the chromosome filters");
+		}
+		return new GenomeDescriptor(assemblyName, assemblyDate, filteredChromosomes);
+	}
+
+
+	/**
+	 * Creates a {@link GenomeDescriptor} from a GenPlay {@link Assembly}
+	 * @param assembly an assembly
+	 * @return a new {@link GenomeDescriptor}
+	 */
+	public static GenomeDescriptor fromAssembly(Assembly assembly) {
+		String date = new SimpleDateFormat(DATE_FORMAT, Locale.US).format(assembly.getDate());
+		return new GenomeDescriptor(assembly.getName(), date, assembly.getChromosomeList());
+	}
+
+
+	/**
+	 * @return the name of the assembly
+	 */
+	public String getAssemblyName() {
+		return assemblyName;
+	}
+
+
+	/**
+	 * @return the chromosomes of the assembly
+	 */
+	public List<Chromosome> getChromosomes() {
+		return Collections.unmodifiableList(chromosomes);
+	}
+
+
+	/**
+	 * Loads a {@link GenomeDescriptor} from a compact descriptor file or from a chrom.sizes file.
+	 * The format of the file is detected automatically.
+	 * @param file a compact descriptor file or a chrom.sizes file
+	 * @return a new {@link GenomeDescriptor}
+	 * @throws IOException
+	 */
+	public static GenomeDescriptor load(File file) throws IOException {
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if ((file.length() >= 4) && (in.readInt() == COMPACT_FORMAT_MAGIC)) {
+				return loadCompact(in, file);
+			}
+		} finally {
+			if (in != null) {
+				in.close();
+			}
+		}
+		return loadChromSizes(file);
+	}
+
+
+	/**
+	 * Loads a chrom.sizes file. Each line contains a chromosome name and its length separated by a tab.
+	 * Extra columns, empty lines and lines starting with '#' are ignored.
+	 * The name of the assembly is the name of the file without the extension.
+	 * @param file a chrom.sizes file
+	 * @return a new {@link GenomeDescriptor}
+	 * @throws IOException
+	 */
+	private static GenomeDescriptor loadChromSizes(File file) throws IOException {
+		List<Chromosome> chromosomes = new ArrayList<Chromosome>();
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader(file));
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] cols = line.split("\\s+");
+				if (cols.length < 2) {
+					throw new IOException("Invalid chrom.sizes line " + lineNumber + ": expected a chromosome name and a length");
+				}
+				try {
+					chromosomes.add(new SimpleChromosome(cols[0], Integer.parseInt(cols[1])));
+				} catch (NumberFormatException e) {
+					throw new IOException("Invalid chromosome length on chrom.sizes line " + lineNumber + ": " + cols[1]);
+				}
+			}
+		} finally {
+			if (reader != null) {
+				reader.close();
+			}
+		}
+		String assemblyName = file.getName();
+		if (assemblyName.indexOf('.') > 0) {
+			assemblyName = assemblyName.substring(0, assemblyName.indexOf('.'));
+		}
+		String date = new SimpleDateFormat(DATE_FORMAT, Locale.US).format(new Date(file.lastModified()));
+		return new GenomeDescriptor(assemblyName, date, chromosomes);
+	}
+
+
+	/**
+	 * Loads a compact descriptor. The magic number of the file has already been read.
+	 * @param in input stream positioned after the magic number
+	 * @param file file being read, used for the error messages
+	 * @return a new {@link GenomeDescriptor}
+	 * @throws IOException
+	 */
+	private static GenomeDescriptor loadCompact(DataInputStream in, File file) throws IOException {
+		int version = in.readInt();
+		if (version != COMPACT_FORMAT_VERSION) {
+			throw new IOException("Unsupported genome descriptor version " + version + " in " + file.getPath());
+		}
+		String assemblyName = in.readUTF();
+		String assemblyDate = in.readUTF();
+		int chromosomeCount = in.readInt();
+		List<Chromosome> chromosomes = new ArrayList<Chromosome>(chromosomeCount);
+		for (int i = 0; i < chromosomeCount; i++) {
+			String name = in.readUTF();
+			int length = in.readInt();
+			chromosomes.add(new SimpleChromosome(name, length));
+		}
+		return new GenomeDescriptor(assemblyName, assemblyDate, chromosomes);
+	}
+
+
+	/**
+	 * @return a GenPlay {@link Assembly} with the chromosomes of the descriptor
+	 */
+	public Assembly toAssembly() {
+		Assembly assembly = new Assembly(assemblyName, assemblyDate);
+		assembly.setChromosomeList(new ArrayList<Chromosome>(chromosomes));
+		return assembly;
+	}
+
+
+	/**
+	 * Writes the descriptor in a compact binary file that can be loaded with {@link #load(File)}
+	 * @param file output file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeInt(COMPACT_FORMAT_MAGIC);
+			out.writeInt(COMPACT_FORMAT_VERSION);
+			out.writeUTF(assemblyName);
+			out.writeUTF(assemblyDate);
+			out.writeInt(chromosomes.size());
+			for (Chromosome chromosome: chromosomes) {
+				out.writeUTF(chromosome.getName());
+				out.writeInt(chromosome.getLength());
+			}
+		} finally {
+			if (out != null) {
+				out.close();
+			}
+		}
+	}
+}
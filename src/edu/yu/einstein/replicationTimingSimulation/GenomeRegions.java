@@ -0,0 +1,250 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
+
+import edu.yu.einstein.genplay.core.manager.project.ProjectChromosomes;
+import edu.yu.einstein.genplay.core.manager.project.ProjectManager;
+import edu.yu.einstein.genplay.dataStructure.chromosome.Chromosome;
+import edu.yu.einstein.genplay.dataStructure.enums.SCWListType;
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWList;
+import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
+
+/**
+ * Regions of the genome where a quick-look simulation is restricted: a subset of the chromosomes or a list of genomic regions.
+ * The genome of the simulation only keeps the chromosomes with a region and the input data are restricted to the regions
+ * so the loading, the resampling, the island generation, the island calling and the FDR step only process the regions.
+ * The counts of the simulation are extrapolated to the genome with the ratio between the length of the genome and the length of the regions.
+ * @author Julien Lajugie
+ */
+public class GenomeRegions {
+
+	private final GenomeDescriptor 	genome;				// genome restricted to the chromosomes with a region
+	private final Map<String, int[]> starts;			// starts of the sorted and merged regions indexed by chromosome name
+	private final Map<String, int[]> stops;				// stops of the sorted and merged regions indexed by chromosome name
+	private final long 				length;				// total length of the regions
+	private final long 				genomeLength;		// length of the genome before the restriction
+
+
+	/**
+	 * Creates an instance of {@link GenomeRegions}
+	 * @param fullGenome genome before the restriction
+	 * @param regions regions (start and stop) indexed by chromosome name. The regions must be in the chromosomes of the genome
+	 */
+	private GenomeRegions(GenomeDescriptor fullGenome, Map<String, List<int[]>> regions) {
+		starts = new LinkedHashMap<String, int[]>();
+		stops = new LinkedHashMap<String, int[]>();
+		StringBuilder includePattern = new StringBuilder();
+		long regionLength = 0;
+		for (Map.Entry<String, List<int[]>> chromosomeRegions: regions.entrySet()) {
+			int[][] sortedRegions = chromosomeRegions.getValue().toArray(new int[chromosomeRegions.getValue().size()][]);
+			Arrays.sort(sortedRegions, new Comparator<int[]>() {
+				@Override
+				public int compare(int[] o1, int[] o2) {
+					return o1[0] < o2[0] ? -1 : (o1[0] == o2[0] ? 0 : 1);
+				}
+			});
+			// merge the regions touching or overlapping each others
+			int[] currentStarts = new int[sortedRegions.length];
+			int[] currentStops = new int[sortedRegions.length];
+			int regionCount = 0;
+			for (int[] region: sortedRegions) {
+				if ((regionCount > 0) && (region[0] <= currentStops[regionCount - 1])) {
+					currentStops[regionCount - 1] = Math.max(currentStops[regionCount - 1], region[1]);
+				} else {
+					currentStarts[regionCount] = region[0];
+					currentStops[regionCount] = region[1];
+					regionCount++;
+				}
+			}
+			for (int i = 0; i < regionCount; i++) {
+				regionLength += currentStops[i] - currentStarts[i];
+			}
+			starts.put(chromosomeRegions.getKey(), Arrays.copyOf(currentStarts, regionCount));
+			stops.put(chromosomeRegions.getKey(), Arrays.copyOf(currentStops, regionCount));
+			includePattern.append(includePattern.length() == 0 ? "" : "|").append(Pattern.quote(chromosomeRegions.getKey()));
+		}
+		length = regionLength;
+		long fullGenomeLength = 0;
+		for (Chromosome chromosome: fullGenome.getChromosomes()) {
+			fullGenomeLength += chromosome.getLength();
+		}
+		genomeLength = fullGenomeLength;
+		genome = fullGenome.filter(includePattern.toString(), null);
+	}
+
+
+	/**
+	 * Adds a region to the regions of its chromosome
+	 * @param regions regions indexed by chromosome name
+	 * @param chromosomeName name of the chromosome of the region
+	 * @param start start of the region
+	 * @param stop stop of the region
+	 */
+	private static void addRegion(Map<String, List<int[]>> regions, String chromosomeName, int start, int stop) {
+		List<int[]> chromosomeRegions = regions.get(chromosomeName);
+		if (chromosomeRegions == null) {
+			chromosomeRegions = new ArrayList<int[]>();
+			regions.put(chromosomeName, chromosomeRegions);
+		}
+		chromosomeRegions.add(new int[] {start, stop});
+	}
+
+
+	/**
+	 * Creates a mask with the regions. The genome of the project must be the genome returned by {@link #getGenome()}
+	 * @return a {@link SCWList} of type {@link SCWListType#MASK} with the regions
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public SCWList createMask() throws InterruptedException, ExecutionException {
+		ProjectChromosomes projectChromosomes = ProjectManager.getInstance().getProjectChromosomes();
+		List<ListView<ScoredChromosomeWindow>> mask = new ArrayList<ListView<ScoredChromosomeWindow>>();
+		for (int i = 0; i < projectChromosomes.size(); i++) {
+			String chromosomeName = projectChromosomes.get(i).getName();
+			int[] currentStarts = starts.containsKey(chromosomeName) ? starts.get(chromosomeName) : new int[0];
+			int[] currentStops = stops.containsKey(chromosomeName) ? stops.get(chromosomeName) : new int[0];
+			PrimitiveSCWListViewBuilder builder = new PrimitiveSCWListViewBuilder(currentStarts.length);
+			for (int j = 0; j < currentStarts.length; j++) {
+				builder.addElementToBuild(currentStarts[j], currentStops[j], 1f);
+			}
+			mask.add(builder.getListView());
+		}
+		return new PrimitiveSCWList(mask, SCWListType.MASK);
+	}
+
+
+	/**
+	 * @return the factor to apply to the counts of the simulations restricted to the regions to extrapolate them to the genome
+	 */
+	public double getExtrapolationFactor() {
+		return genomeLength / (double) length;
+	}
+
+
+	/**
+	 * @return the genome restricted to the chromosomes with a region
+	 */
+	public GenomeDescriptor getGenome() {
+		return genome;
+	}
+
+
+	/**
+	 * @return the total length of the regions
+	 */
+	public long getLength() {
+		return length;
+	}
+
+
+	/**
+	 * Loads the regions of a quick-look simulation
+	 * @param regions comma separated list of chromosome names or BED file with the regions
+	 * @param fullGenome genome before the restriction. The regions are clipped to the chromosomes of the genome
+	 * @return a new {@link GenomeRegions}
+	 * @throws IOException
+	 */
+	public static GenomeRegions load(String regions, GenomeDescriptor fullGenome) throws IOException {
+		Map<String, Chromosome> chromosomes = new LinkedHashMap<String, Chromosome>();
+		for (Chromosome chromosome: fullGenome.getChromosomes()) {
+			chromosomes.put(chromosome.getName(), chromosome);
+		}
+		Map<String, List<int[]>> regionMap = new LinkedHashMap<String, List<int[]>>();
+		File regionFile = new File(regions);
+		if (regionFile.isFile()) {
+			loadBedFile(regionFile, chromosomes, regionMap);
+		} else {
+			for (String chromosomeName: regions.split(",")) {
+				Chromosome chromosome = chromosomes.get(chromosomeName.trim());
+				if (chromosome == null) {
+					throw new IllegalArgumentException("Invalid region: " + chromosomeName.trim() + " is not a chromosome of the genome and is not a file");
+				}
+				// positions are shifted by one base like the positions of the input files
+				addRegion(regionMap, chromosome.getName(), 1, chromosome.getLength() + 1);
+			}
+		}
+		if (regionMap.isEmpty()) {
+			throw new IllegalArgumentException("No region is on a chromosome of the genome: " + regions);
+		}
+		return new GenomeRegions(fullGenome, regionMap);
+	}
+
+
+	/**
+	 * Loads the regions of a BED file. The lines on chromosomes missing from the genome, the empty regions,
+	 * the empty lines and the header lines (comment, track and browser lines) are skipped
+	 * @param file a BED file
+	 * @param chromosomes chromosomes of the genome indexed by name
+	 * @param regions map where the regions are added
+	 * @throws IOException
+	 */
+	private static void loadBedFile(File file, Map<String, Chromosome> chromosomes, Map<String, List<int[]>> regions) throws IOException {
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader(file));
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#") || line.startsWith("track") || line.startsWith("browser")) {
+					continue;
+				}
+				String[] cols = line.split("\\s+");
+				if (cols.length < 3) {
+					throw new IOException("Invalid BED line " + lineNumber + ": expected a chromosome name, a start and a stop");
+				}
+				Chromosome chromosome = chromosomes.get(cols[0]);
+				if (chromosome != null) {
+					try {
+						// positions are shifted by one base like the positions of the input files
+						int start = Math.max(0, Integer.parseInt(cols[1])) + 1;
+						int stop = Math.min(chromosome.getLength(), Integer.parseInt(cols[2])) + 1;
+						if (start < stop) {
+							addRegion(regions, chromosome.getName(), start, stop);
+						}
+					} catch (NumberFormatException e) {
+						throw new IOException("Invalid position on BED line " + lineNumber + ": " + line);
+					}
+				}
+			}
+		} finally {
+			if (reader != null) {
+				reader.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+/**
+ * Read counts of the islands of a simulation in the sample and control S and G1 tracks.
+ * Each island is a row (a, b, c, d) of the contingency tables tested by {@link ComputeQValues} where
+ * a is the sample S count, b the sample G1 count, c the control S count and d the control G1 count.
+ * The table is made of primitive arrays indexed by chromosome and by island.
+ * @author Julien Lajugie
+ */
+public class IslandCoverageTable {
+
+	private final int[][] 	starts;		// starts of the islands
+	private final int[][] 	stops;		// stops of the islands
+	private final long[][] 	sampleS;	// read counts of the islands in the sample S track
+	private final long[][] 	sampleG1;	// read counts of the islands in the sample G1 track
+	private final long[][] 	controlS;	// read counts of the islands in the control S track
+	private final long[][] 	controlG1;	// read counts of the islands in the control G1 track
+
+
+	/**
+	 * Creates an instance of {@link IslandCoverageTable}. The arrays are indexed by chromosome and by island.
+	 * @param starts starts of the islands
+	 * @param stops stops of the islands
+	 * @param sampleS read counts of the islands in the sample S track
+	 * @param sampleG1 read counts of the islands in the sample G1 track
+	 * @param controlS read counts of the islands in the control S track
+	 * @param controlG1 read counts of the islands in the control G1 track
+	 */
+	IslandCoverageTable(int[][] starts, int[][] stops, long[][] sampleS, long[][] sampleG1, long[][] controlS, long[][] controlG1) {
+		this.starts = starts;
+		this.stops = stops;
+		this.sampleS = sampleS;
+		this.sampleG1 = sampleG1;
+		this.controlS = controlS;
+		this.controlG1 = controlG1;
+	}
+
+
+	/**
+	 * @return the number of chromosomes of the table
+	 */
+	public int getChromosomeCount() {
+		return starts.length;
+	}
+
+
+	/**
+	 * @param chromosomeIndex index of a chromosome
+	 * @param islandIndex index of an island on the chromosome
+	 * @return the read count of the island in the control G1 track (d)
+	 */
+	public long getControlG1(int chromosomeIndex, int islandIndex) {
+		return controlG1[chromosomeIndex][islandIndex];
+	}
+
+
+	/**
+	 * @param chromosomeIndex index of a chromosome
+	 * @param islandIndex index of an island on the chromosome
+	 * @return the read count of the island in the control S track (c)
+	 */
+	public long getControlS(int chromosomeIndex, int islandIndex) {
+		return controlS[chromosomeIndex][islandIndex];
+	}
+
+
+	/**
+	 * @param chromosomeIndex index of a chromosome
+	 * @return the number of islands on the chromosome
+	 */
+	public int getIslandCount(int chromosomeIndex) {
+		return starts[chromosomeIndex].length;
+	}
+
+
+	/**
+	 * @param chromosomeIndex index of a chromosome
+	 * @param islandIndex index of an island on the chromosome
+	 * @return the read count of the island in the sample G1 track (b)
+	 */
+	public long getSampleG1(int chromosomeIndex, int islandIndex) {
+		return sampleG1[chromosomeIndex][islandIndex];
+	}
+
+
+	/**
+	 * @param chromosomeIndex index of a chromosome
+	 * @param islandIndex index of an island on the chromosome
+	 * @return the read count of the island in the sample S track (a)
+	 */
+	public long getSampleS(int chromosomeIndex, int islandIndex) {
+		return sampleS[chromosomeIndex][islandIndex];
+	}
+
+
+	/**
+	 * @param chromosomeIndex index of a chromosome
+	 * @param islandIndex index of an island on the chromosome
+	 * @return the start of the island
+	 */
+	public int getStart(int chromosomeIndex, int islandIndex) {
+		return starts[chromosomeIndex][islandIndex];
+	}
+
+
+	/**
+	 * @param chromosomeIndex index of a chromosome
+	 * @param islandIndex index of an island on the chromosome
+	 * @return the stop of the island
+	 */
+	public int getStop(int chromosomeIndex, int islandIndex) {
+		return stops[chromosomeIndex][islandIndex];
+	}
+
+
+	/**
+	 * @param chromosomeIndex index of a chromosome
+	 * @param islandIndex index of an island on the chromosome
+	 * @return true if the island has no read in any of the tracks
+	 */
+	public boolean isEmpty(int chromosomeIndex, int islandIndex) {
+		return (sampleS[chromosomeIndex][islandIndex] == 0) && (sampleG1[chromosomeIndex][islandIndex] == 0)
+				&& (controlS[chromosomeIndex][islandIndex] == 0) && (controlG1[chromosomeIndex][islandIndex] == 0);
+	}
+}
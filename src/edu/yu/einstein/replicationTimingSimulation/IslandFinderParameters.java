@@ -0,0 +1,103 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+/**
+ * Parameters of the GenPlay island finder used to call the islands of the difference between the sample and the control
+ * @author Julien Lajugie
+ */
+public class IslandFinderParameters {
+
+	/** Parameters used when none are specified */
+	public final static IslandFinderParameters DEFAULT = new IslandFinderParameters(0.02f, 500, 50);
+
+	private final float minWindowScore;	// window minimum value parameter of the island finder
+	private final int 	gap;			// gap parameter of the island finder
+	private final int 	minLength;		// island minimum length parameter of the island finder
+
+
+	/**
+	 * Creates an instance of {@link IslandFinderParameters}
+	 * @param minWindowScore window minimum value parameter of the island finder
+	 * @param gap gap parameter of the island finder
+	 * @param minLength island minimum length parameter of the island finder
+	 */
+	public IslandFinderParameters(float minWindowScore, int gap, int minLength) {
+		this.minWindowScore = minWindowScore;
+		this.gap = gap;
+		this.minLength = minLength;
+	}
+
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof IslandFinderParameters)) {
+			return false;
+		}
+		IslandFinderParameters other = (IslandFinderParameters) obj;
+		return (Float.floatToIntBits(minWindowScore) == Float.floatToIntBits(other.minWindowScore))
+				&& (gap == other.gap)
+				&& (minLength == other.minLength);
+	}
+
+
+	/**
+	 * @return the gap parameter of the island finder
+	 */
+	public int getGap() {
+		return gap;
+	}
+
+
+	/**
+	 * @return the island minimum length parameter of the island finder
+	 */
+	public int getMinLength() {
+		return minLength;
+	}
+
+
+	/**
+	 * @return the window minimum value parameter of the island finder
+	 */
+	public float getMinWindowScore() {
+		return minWindowScore;
+	}
+
+
+	@Override
+	public int hashCode() {
+		int hash = Float.floatToIntBits(minWindowScore);
+		hash = (31 * hash) + gap;
+		hash = (31 * hash) + minLength;
+		return hash;
+	}
+
+
+	@Override
+	public String toString() {
+		return "(" + minWindowScore + ", " + minLength + ", " + gap + ")";
+	}
+}
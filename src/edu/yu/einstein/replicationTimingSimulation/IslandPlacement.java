@@ -0,0 +1,116 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+/**
+ * Placement of the islands of a simulation: on a grid with a fixed step or at random positions with a given density.
+ * The placements of a batch share the same {@link MappableRegionIndex} so a new random placement only costs a new seed.
+ * @author Julien Lajugie
+ */
+public class IslandPlacement {
+
+	/** Name of the grid placement on the command line */
+	public final static String GRID_PLACEMENT_NAME = "grid";
+
+	/** Name of the random placement on the command line */
+	public final static String RANDOM_PLACEMENT_NAME = "random";
+
+	private final int 					stepSize;			// size between two islands start positions, 0 for a random placement
+	private final double 				density;			// number of islands per megabase of mappable genome of a random placement
+	private final MappableRegionIndex	mappableRegions;	// mappable regions of the genome
+	private final long 					seed;				// seed of the random placement
+
+
+	/**
+	 * Creates an instance of {@link IslandPlacement}
+	 * @param stepSize size between two islands start positions, 0 for a random placement
+	 * @param density number of islands per megabase of mappable genome of a random placement
+	 * @param mappableRegions mappable regions of the genome
+	 * @param seed seed of the random placement
+	 */
+	private IslandPlacement(int stepSize, double density, MappableRegionIndex mappableRegions, long seed) {
+		this.stepSize = stepSize;
+		this.density = density;
+		this.mappableRegions = mappableRegions;
+		this.seed = seed;
+	}
+
+
+	/**
+	 * Creates a placement of the islands every stepSize bases from the first base of each chromosome
+	 * @param stepSize size between two islands start positions
+	 * @param mappableRegions mappable regions of the genome
+	 * @return a grid {@link IslandPlacement}
+	 */
+	public static IslandPlacement createGridPlacement(int stepSize, MappableRegionIndex mappableRegions) {
+		return new IslandPlacement(stepSize, 0, mappableRegions, 0);
+	}
+
+
+	/**
+	 * Creates a placement of the islands at random non-overlapping positions in the mappable regions
+	 * @param density number of islands per megabase of mappable genome
+	 * @param mappableRegions mappable regions of the genome
+	 * @param seed seed of the placement
+	 * @return a random {@link IslandPlacement}
+	 */
+	public static IslandPlacement createRandomPlacement(double density, MappableRegionIndex mappableRegions, long seed) {
+		return new IslandPlacement(0, density, mappableRegions, seed);
+	}
+
+
+	/**
+	 * @param islandSize size of the islands
+	 * @return an operation generating the islands with this placement
+	 */
+	public GenerateIslands createOperation(int islandSize) {
+		if (isRandom()) {
+			return GenerateIslands.createRandomOperation(density, islandSize, mappableRegions, seed);
+		} else {
+			return GenerateIslands.createGridOperation(stepSize, islandSize, mappableRegions);
+		}
+	}
+
+
+	/**
+	 * @return the mappable regions of the genome
+	 */
+	public MappableRegionIndex getMappableRegions() {
+		return mappableRegions;
+	}
+
+
+	/**
+	 * @return the seed of the random placement
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+
+	/**
+	 * @return true if the islands are placed at random positions, false if they are placed on a grid
+	 */
+	public boolean isRandom() {
+		return stepSize == 0;
+	}
+}
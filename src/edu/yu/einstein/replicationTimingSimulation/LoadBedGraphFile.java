@@ -0,0 +1,568 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import edu.yu.einstein.genplay.core.manager.project.ProjectChromosomes;
+import edu.yu.einstein.genplay.core.manager.project.ProjectManager;
+import edu.yu.einstein.genplay.core.operation.Operation;
+import edu.yu.einstein.genplay.core.pileupFlattener.SimpleSCWPileupFlattener;
+import edu.yu.einstein.genplay.dataStructure.chromosome.Chromosome;
+import edu.yu.einstein.genplay.dataStructure.enums.ScoreOperation;
+import edu.yu.einstein.genplay.dataStructure.list.chromosomeWideList.SCWListView.dense.DenseSCWListViewBuilder;
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWList;
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SimpleSCWList.SimpleSCWList;
+import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
+import edu.yu.einstein.genplay.exception.exceptions.InvalidChromosomeException;
+
+/**
+ * Loads a bedGraph file in a dense {@link SCWList}.
+ * The file is memory-mapped and split at line boundaries in chunks parsed in parallel directly from the bytes of the file.
+ * The lines are handled like the GenPlay bedGraph extractor does: the positions are shifted by one base,
+ * the windows with a score of 0 and the invalid lines are skipped and the stops are shrinked to fit the chromosome length.
+ * The windows overlapping each others are summed like the GenPlay loader does with {@link ScoreOperation#ADDITION}.
+ * @author Julien Lajugie
+ */
+public class LoadBedGraphFile implements Operation<SCWList> {
+
+	private final static int 	MIN_FILE_CHUNK_LENGTH 	= 1 << 20;	// minimum number of bytes of a chunk of the file
+	private final static int 	MAX_FILE_CHUNK_LENGTH 	= 1 << 30;	// maximum number of bytes of a chunk of the file
+	private final static int 	MAX_LINE_LENGTH 		= 1 << 20;	// maximum length of a line, longer lines are truncated
+	private final static int 	FIELD_COUNT 			= 4;		// number of fields of a bedGraph line
+	private final static float[] POWERS_OF_TEN = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f}; // powers of ten exactly representable as floats
+	private final static int 	MAX_EXACT_FLOAT_MANTISSA = 1 << 24;	// mantissas up to this value are exactly representable as floats
+
+	private final File 			file;				// bedGraph file to load
+	private volatile boolean	stopped = false;	// true if the operation must be stopped
+
+
+	/**
+	 * Windows extracted from a chunk of the file in the order of the file
+	 * @author Julien Lajugie
+	 */
+	private static class ParsedChunk {
+		private int[] 	chromosomeIndexes = new int[1024];	// indexes of the chromosomes of the windows
+		private int[] 	starts = new int[1024];				// starts of the windows
+		private int[] 	stops = new int[1024];				// stops of the windows
+		private float[] scores = new float[1024];			// scores of the windows
+		private int 	size = 0;							// number of windows extracted
+
+
+		/**
+		 * Adds a window to the chunk
+		 * @param chromosomeIndex index of the chromosome of the window
+		 * @param start start of the window
+		 * @param stop stop of the window
+		 * @param score score of the window
+		 */
+		private void add(int chromosomeIndex, int start, int stop, float score) {
+			if (size == starts.length) {
+				int newCapacity = starts.length * 2;
+				chromosomeIndexes = Arrays.copyOf(chromosomeIndexes, newCapacity);
+				starts = Arrays.copyOf(starts, newCapacity);
+				stops = Arrays.copyOf(stops, newCapacity);
+				scores = Arrays.copyOf(scores, newCapacity);
+			}
+			chromosomeIndexes[size] = chromosomeIndex;
+			starts[size] = start;
+			stops[size] = stop;
+			scores[size] = score;
+			size++;
+		}
+	}
+
+
+	/**
+	 * Parses the lines starting in a range of bytes of the file.
+	 * The line overlapping the beginning of the range belongs to the previous chunk
+	 * and the line overlapping the end of the range is parsed entirely.
+	 * @author Julien Lajugie
+	 */
+	private class ChunkParser implements Callable<ParsedChunk> {
+
+		private final FileChannel 			channel;			// channel of the file
+		private final long 					chunkStart;			// first byte of the chunk in the file
+		private final long 					chunkStop;			// first byte after the chunk in the file
+		private final ProjectChromosomes 	projectChromosomes;	// chromosomes of the project
+		private final int[] 				fieldStarts = new int[FIELD_COUNT];	// first byte of the fields of the current line
+		private final int[] 				fieldStops = new int[FIELD_COUNT];	// first byte after the fields of the current line
+		private MappedByteBuffer 			buffer;				// mapped bytes of the chunk
+		private byte[] 						lastChromosomeName = new byte[0];	// name of the chromosome of the previous line
+		private int 						lastChromosomeIndex = -1;			// index of the chromosome of the previous line, -1 if invalid
+
+
+		/**
+		 * Creates an instance of {@link ChunkParser}
+		 * @param channel channel of the file
+		 * @param chunkStart first byte of the chunk in the file
+		 * @param chunkStop first byte after the chunk in the file
+		 * @param projectChromosomes chromosomes of the project
+		 */
+		private ChunkParser(FileChannel channel, long chunkStart, long chunkStop, ProjectChromosomes projectChromosomes) {
+			this.channel = channel;
+			this.chunkStart = chunkStart;
+			this.chunkStop = chunkStop;
+			this.projectChromosomes = projectChromosomes;
+		}
+
+
+		@Override
+		public ParsedChunk call() throws Exception {
+			// we map the last byte of the previous chunk to know if the chunk starts with a new line
+			long mapStart = Math.max(0, chunkStart - 1);
+			long mapLength = Math.min(channel.size() - mapStart, (chunkStop - mapStart) + MAX_LINE_LENGTH);
+			buffer = channel.map(MapMode.READ_ONLY, mapStart, mapLength);
+			int limit = buffer.limit();
+			int position = (int) (chunkStart - mapStart);
+			int stop = (int) (chunkStop - mapStart);
+			if ((chunkStart > 0) && (buffer.get(0) != '\n')) {
+				while ((position < limit) && (buffer.get(position) != '\n')) {
+					position++;
+				}
+				position++;
+			}
+			ParsedChunk result = new ParsedChunk();
+			while ((position < stop) && !stopped) {
+				int lineEnd = position;
+				while ((lineEnd < limit) && (buffer.get(lineEnd) != '\n')) {
+					lineEnd++;
+				}
+				parseLine(position, lineEnd, result);
+				position = lineEnd + 1;
+			}
+			return result;
+		}
+
+
+		/**
+		 * @param from first byte of the chromosome name
+		 * @param to first byte after the chromosome name
+		 * @return the index of the chromosome or -1 if the chromosome is not part of the project
+		 */
+		private int findChromosomeIndex(int from, int to) {
+			int length = to - from;
+			boolean isSameChromosome = length == lastChromosomeName.length;
+			for (int i = 0; isSameChromosome && (i < length); i++) {
+				isSameChromosome = buffer.get(from + i) == lastChromosomeName[i];
+			}
+			if (!isSameChromosome) {
+				// the chromosome changes rarely so we only create a string when it does
+				lastChromosomeName = new byte[length];
+				for (int i = 0; i < length; i++) {
+					lastChromosomeName[i] = buffer.get(from + i);
+				}
+				try {
+					Chromosome chromosome = projectChromosomes.get(toString(from, to));
+					lastChromosomeIndex = projectChromosomes.getIndex(chromosome);
+				} catch (InvalidChromosomeException e) {
+					lastChromosomeIndex = -1;
+				}
+			}
+			return lastChromosomeIndex;
+		}
+
+
+		/**
+		 * @param line first byte of the line
+		 * @param lineEnd first byte after the line
+		 * @return true if the line is a header line (comment, track or browser line)
+		 */
+		private boolean isHeaderLine(int line, int lineEnd) {
+			if (startsWithIgnoreCase(line, lineEnd, "chr")) {
+				return false;
+			}
+			return ((line < lineEnd) && (buffer.get(line) == '#'))
+					|| startsWithIgnoreCase(line, lineEnd, "track")
+					|| startsWithIgnoreCase(line, lineEnd, "browser");
+		}
+
+
+		/**
+		 * Parses a float from the bytes of the file.
+		 * The simple decimal numbers are parsed directly from the bytes, the other numbers are parsed by {@link Float#parseFloat(String)}
+		 * @param from first byte of the number
+		 * @param to first byte after the number
+		 * @return the parsed float
+		 * @throws NumberFormatException if the bytes are not a valid number
+		 */
+		private float parseFloat(int from, int to) throws NumberFormatException {
+			from = trimStart(from, to);
+			to = trimStop(from, to);
+			int i = from;
+			boolean isNegative = false;
+			if ((i < to) && ((buffer.get(i) == '-') || (buffer.get(i) == '+'))) {
+				isNegative = buffer.get(i) == '-';
+				i++;
+			}
+			long mantissa = 0;
+			int digitCount = 0;
+			int decimalCount = -1;
+			for (; i < to; i++) {
+				byte currentByte = buffer.get(i);
+				if ((currentByte >= '0') && (currentByte <= '9')) {
+					mantissa = (mantissa * 10) + (currentByte - '0');
+					digitCount++;
+					if (decimalCount >= 0) {
+						decimalCount++;
+					}
+					if (mantissa > MAX_EXACT_FLOAT_MANTISSA) {
+						break;
+					}
+				} else if ((currentByte == '.') && (decimalCount == -1)) {
+					decimalCount = 0;
+				} else {
+					break;
+				}
+			}
+			decimalCount = Math.max(0, decimalCount);
+			if ((i == to) && (digitCount > 0) && (decimalCount < POWERS_OF_TEN.length)) {
+				// the mantissa and the power of ten are exact so the division is correctly rounded like parseFloat
+				float result = mantissa / POWERS_OF_TEN[decimalCount];
+				return isNegative ? -result : result;
+			}
+			return Float.parseFloat(toString(from, to));
+		}
+
+
+		/**
+		 * Parses an integer from the bytes of the file like {@link Integer#parseInt(String)} does
+		 * @param from first byte of the number
+		 * @param to first byte after the number
+		 * @return the parsed integer
+		 * @throws NumberFormatException if the bytes are not a valid integer
+		 */
+		private int parseInt(int from, int to) throws NumberFormatException {
+			from = trimStart(from, to);
+			to = trimStop(from, to);
+			int i = from;
+			boolean isNegative = false;
+			if ((i < to) && ((buffer.get(i) == '-') || (buffer.get(i) == '+'))) {
+				isNegative = buffer.get(i) == '-';
+				i++;
+			}
+			if (i == to) {
+				throw new NumberFormatException("Invalid integer: " + toString(from, to));
+			}
+			long result = 0;
+			for (; i < to; i++) {
+				byte currentByte = buffer.get(i);
+				if ((currentByte < '0') || (currentByte > '9')) {
+					throw new NumberFormatException("Invalid integer: " + toString(from, to));
+				}
+				result = (result * 10) + (currentByte - '0');
+				if (result > (Integer.MAX_VALUE + 1l)) {
+					throw new NumberFormatException("Integer out of range: " + toString(from, to));
+				}
+			}
+			result = isNegative ? -result : result;
+			if (result > Integer.MAX_VALUE) {
+				throw new NumberFormatException("Integer out of range: " + toString(from, to));
+			}
+			return (int) result;
+		}
+
+
+		/**
+		 * Parses a line of the file and adds its window to the result chunk if the line is valid
+		 * @param line first byte of the line
+		 * @param lineEnd first byte after the line
+		 * @param result chunk where the window is added
+		 */
+		private void parseLine(int line, int lineEnd, ParsedChunk result) {
+			if (isHeaderLine(line, lineEnd)) {
+				return;
+			}
+			// fields are separated by one or more tabs
+			int fieldCount = 0;
+			int i = line;
+			while ((i < lineEnd) && (fieldCount < FIELD_COUNT)) {
+				while ((i < lineEnd) && (buffer.get(i) == '\t')) {
+					i++;
+				}
+				if (i < lineEnd) {
+					fieldStarts[fieldCount] = i;
+					while ((i < lineEnd) && (buffer.get(i) != '\t')) {
+						i++;
+					}
+					fieldStops[fieldCount] = i;
+					fieldCount++;
+				}
+			}
+			if (fieldCount < FIELD_COUNT) {
+				return;
+			}
+			int chromosomeIndex = findChromosomeIndex(fieldStarts[0], fieldStops[0]);
+			if (chromosomeIndex == -1) {
+				return;
+			}
+			int start, stop;
+			float score;
+			try {
+				// bedGraph positions are 0-based
+				start = parseInt(fieldStarts[1], fieldStops[1]) + 1;
+				stop = parseInt(fieldStarts[2], fieldStops[2]) + 1;
+				score = parseFloat(fieldStarts[3], fieldStops[3]);
+			} catch (NumberFormatException e) {
+				return;
+			}
+			if (score == 0) {
+				return;
+			}
+			int chromosomeLength = projectChromosomes.get(chromosomeIndex).getLength();
+			if ((start < 0) || (start > (chromosomeLength + 1)) || (start > stop)) {
+				return;
+			}
+			if (stop > (chromosomeLength + 1)) {
+				stop = chromosomeLength;
+			}
+			result.add(chromosomeIndex, start, stop, score);
+		}
+
+
+		/**
+		 * @param from first byte of the line
+		 * @param to first byte after the line
+		 * @param prefix a prefix
+		 * @return true if the line starts with the specified prefix ignoring the case
+		 */
+		private boolean startsWithIgnoreCase(int from, int to, String prefix) {
+			if ((to - from) < prefix.length()) {
+				return false;
+			}
+			for (int i = 0; i < prefix.length(); i++) {
+				if (Character.toLowerCase((char) buffer.get(from + i)) != prefix.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+
+		/**
+		 * @param from first byte
+		 * @param to first byte after the bytes to convert
+		 * @return a string with the specified bytes of the file
+		 */
+		private String toString(int from, int to) {
+			char[] chars = new char[to - from];
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = (char) (buffer.get(from + i) & 0xff);
+			}
+			return new String(chars);
+		}
+
+
+		/**
+		 * @param from first byte
+		 * @param to first byte after the bytes to trim
+		 * @return the first byte that is not a white space like {@link String#trim()} does
+		 */
+		private int trimStart(int from, int to) {
+			while ((from < to) && ((buffer.get(from) & 0xff) <= ' ')) {
+				from++;
+			}
+			return from;
+		}
+
+
+		/**
+		 * @param from first byte
+		 * @param to first byte after the bytes to trim
+		 * @return the first byte after the last byte that is not a white space like {@link String#trim()} does
+		 */
+		private int trimStop(int from, int to) {
+			while ((to > from) && ((buffer.get(to - 1) & 0xff) <= ' ')) {
+				to--;
+			}
+			return to;
+		}
+	}
+
+
+	/**
+	 * Creates an instance of {@link LoadBedGraphFile}
+	 * @param file bedGraph file to load
+	 */
+	public LoadBedGraphFile(File file) {
+		this.file = file;
+	}
+
+
+	/**
+	 * Builds the list view of a chromosome.
+	 * The windows are added directly to the dense list view when they are sorted and don't overlap,
+	 * otherwise they are sorted and flattened with the same pileup flattener as the GenPlay loader
+	 * @param starts starts of the windows of the chromosome in the order of the file
+	 * @param stops stops of the windows of the chromosome in the order of the file
+	 * @param scores scores of the windows of the chromosome in the order of the file
+	 * @return the list view of the chromosome
+	 * @throws Exception
+	 */
+	private ListView<ScoredChromosomeWindow> buildListView(int[] starts, int[] stops, float[] scores) throws Exception {
+		boolean isSorted = true;
+		boolean isFlat = true;
+		for (int i = 0; (i < starts.length) && isSorted; i++) {
+			isSorted = (i == 0) || (starts[i] >= starts[i - 1]);
+			isFlat = isFlat && (starts[i] < stops[i]) && ((i == 0) || (starts[i] >= stops[i - 1]));
+		}
+		if (isSorted && isFlat) {
+			DenseSCWListViewBuilder lvBuilder = new DenseSCWListViewBuilder();
+			for (int i = 0; (i < starts.length) && !stopped; i++) {
+				lvBuilder.addElementToBuild(starts[i], stops[i], scores[i]);
+			}
+			return lvBuilder.getListView();
+		}
+		int[] order = sortByStart(starts);
+		SimpleSCWPileupFlattener flattener = new SimpleSCWPileupFlattener(ScoreOperation.ADDITION, new DenseSCWListViewBuilder());
+		for (int i = 0; (i < order.length) && !stopped; i++) {
+			flattener.addWindow(starts[order[i]], stops[order[i]], scores[order[i]]);
+		}
+		return flattener.getListView();
+	}
+
+
+	/**
+	 * Loads the file
+	 * @return a dense {@link SCWList} with the windows of the file
+	 */
+	@Override
+	public SCWList compute() throws Exception {
+		final ProjectChromosomes projectChromosomes = ProjectManager.getInstance().getProjectChromosomes();
+		ChunkPool pool = ChunkPool.getInstance();
+		List<ParsedChunk> chunks;
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			long fileLength = channel.size();
+			long chunkLength = Math.min(MAX_FILE_CHUNK_LENGTH, Math.max(MIN_FILE_CHUNK_LENGTH, pool.computeChunkSize(fileLength)));
+			List<ChunkParser> chunkList = new ArrayList<ChunkParser>();
+			for (long chunkStart = 0; chunkStart < fileLength; chunkStart += chunkLength) {
+				chunkList.add(new ChunkParser(channel, chunkStart, Math.min(fileLength, chunkStart + chunkLength), projectChromosomes));
+			}
+			chunks = pool.invokeAll(chunkList);
+		} finally {
+			randomAccessFile.close();
+		}
+		if (stopped) {
+			return null;
+		}
+		// gather the windows of each chromosome in the order of the file
+		int chromosomeCount = projectChromosomes.size();
+		int[] windowCounts = new int[chromosomeCount];
+		for (ParsedChunk chunk: chunks) {
+			for (int i = 0; i < chunk.size; i++) {
+				windowCounts[chunk.chromosomeIndexes[i]]++;
+			}
+		}
+		final int[][] starts = new int[chromosomeCount][];
+		final int[][] stops = new int[chromosomeCount][];
+		final float[][] scores = new float[chromosomeCount][];
+		for (int i = 0; i < chromosomeCount; i++) {
+			starts[i] = new int[windowCounts[i]];
+			stops[i] = new int[windowCounts[i]];
+			scores[i] = new float[windowCounts[i]];
+		}
+		int[] windowIndexes = new int[chromosomeCount];
+		for (ParsedChunk chunk: chunks) {
+			for (int i = 0; i < chunk.size; i++) {
+				int chromosomeIndex = chunk.chromosomeIndexes[i];
+				int windowIndex = windowIndexes[chromosomeIndex]++;
+				starts[chromosomeIndex][windowIndex] = chunk.starts[i];
+				stops[chromosomeIndex][windowIndex] = chunk.stops[i];
+				scores[chromosomeIndex][windowIndex] = chunk.scores[i];
+			}
+		}
+		chunks = null;
+		// build the list view of each chromosome
+		List<Callable<ListView<ScoredChromosomeWindow>>> chromosomeList = new ArrayList<Callable<ListView<ScoredChromosomeWindow>>>();
+		for (int i = 0; i < chromosomeCount; i++) {
+			final int chromosomeIndex = i;
+			Callable<ListView<ScoredChromosomeWindow>> currentThread = new Callable<ListView<ScoredChromosomeWindow>>() {
+
+				@Override
+				public ListView<ScoredChromosomeWindow> call() throws Exception {
+					return buildListView(starts[chromosomeIndex], stops[chromosomeIndex], scores[chromosomeIndex]);
+				}
+			};
+			chromosomeList.add(currentThread);
+		}
+		List<ListView<ScoredChromosomeWindow>> result = pool.invokeAll(chromosomeList);
+		if (stopped) {
+			return null;
+		}
+		return new SimpleSCWList(result);
+	}
+
+
+	@Override
+	public String getDescription() {
+		return "Operation: Load BedGraph File";
+	}
+
+
+	@Override
+	public String getProcessingDescription() {
+		return "Loading BedGraph File";
+	}
+
+
+	@Override
+	public int getStepCount() {
+		return 1;
+	}
+
+
+	/**
+	 * Sorts the windows by start position. Windows with the same start stay in the order of the file
+	 * @param starts starts of the windows
+	 * @return the indexes of the windows sorted by start position
+	 */
+	private int[] sortByStart(int[] starts) {
+		// the positions are positive so the start and the index can be packed in a long sorted as a primitive
+		long[] keys = new long[starts.length];
+		for (int i = 0; i < starts.length; i++) {
+			keys[i] = ((long) starts[i] << 32) | i;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[starts.length];
+		for (int i = 0; i < starts.length; i++) {
+			order[i] = (int) keys[i];
+		}
+		return order;
+	}
+
+
+	@Override
+	public void stop() {
+		stopped = true;
+	}
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWList;
+import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
+
+/**
+ * Mappable regions of the genome: for each chromosome the sorted intervals covered by windows with a positive score,
+ * adjacent and overlapping windows being merged, and the cumulative length of the intervals.
+ * An interval overlapping mappable data is found with a binary search and a random mappable position
+ * is drawn with two binary searches, so the islands can be placed and rejected without scanning the data.
+ * @author Julien Lajugie
+ */
+public class MappableRegionIndex {
+
+	private final int[][] 		starts;				// starts of the mappable intervals indexed by chromosome
+	private final int[][] 		stops;				// stops of the mappable intervals indexed by chromosome
+	private final long[][] 		cumulativeLengths;	// length of the mappable intervals before each interval indexed by chromosome, one more element than intervals
+	private final long[] 		genomeLengths;		// mappable length of the chromosomes before each chromosome, one more element than chromosomes
+
+
+	/**
+	 * Creates an instance of {@link MappableRegionIndex}. The chromosomes are indexed in parallel.
+	 * @param list a {@link SCWList} with sorted windows. The windows with a positive score are mappable
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public MappableRegionIndex(final SCWList list) throws InterruptedException, ExecutionException {
+		int chromosomeCount = list.size();
+		starts = new int[chromosomeCount][];
+		stops = new int[chromosomeCount][];
+		cumulativeLengths = new long[chromosomeCount][];
+		List<Callable<Void>> chromosomeList = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < chromosomeCount; i++) {
+			final int chromosomeIndex = i;
+			Callable<Void> currentThread = new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					ListView<ScoredChromosomeWindow> listView = list.get(chromosomeIndex);
+					int[] currentStarts = new int[listView.size()];
+					int[] currentStops = new int[listView.size()];
+					int intervalCount = 0;
+					for (int j = 0; j < listView.size(); j++) {
+						ScoredChromosomeWindow window = listView.get(j);
+						if (window.getScore() > 0) {
+							if ((intervalCount > 0) && (window.getStart() <= currentStops[intervalCount - 1])) {
+								// the window touches or overlaps the previous interval
+								currentStops[intervalCount - 1] = Math.max(currentStops[intervalCount - 1], window.getStop());
+							} else {
+								currentStarts[intervalCount] = window.getStart();
+								currentStops[intervalCount] = window.getStop();
+								intervalCount++;
+							}
+						}
+					}
+					long[] currentLengths = new long[intervalCount + 1];
+					for (int j = 0; j < intervalCount; j++) {
+						currentLengths[j + 1] = currentLengths[j] + (currentStops[j] - currentStarts[j]);
+					}
+					starts[chromosomeIndex] = trim(currentStarts, intervalCount);
+					stops[chromosomeIndex] = trim(currentStops, intervalCount);
+					cumulativeLengths[chromosomeIndex] = currentLengths;
+					return null;
+				}
+			};
+			chromosomeList.add(currentThread);
+		}
+		ChunkPool.getInstance().invokeAll(chromosomeList);
+		genomeLengths = new long[chromosomeCount + 1];
+		for (int i = 0; i < chromosomeCount; i++) {
+			genomeLengths[i + 1] = genomeLengths[i] + cumulativeLengths[i][cumulativeLengths[i].length - 1];
+		}
+	}
+
+
+	/**
+	 * @param genomeOffset an offset in the mappable genome, between 0 and {@link #getMappableLength()} exclusive
+	 * @return the index of the chromosome of the mappable base at the specified offset
+	 */
+	public int getChromosomeIndex(long genomeOffset) {
+		// last chromosome starting at or before the offset with some mappable bases
+		int low = 0;
+		int high = genomeLengths.length - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (genomeLengths[middle + 1] <= genomeOffset) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+
+	/**
+	 * @return the number of mappable bases of the genome
+	 */
+	public long getMappableLength() {
+		return genomeLengths[genomeLengths.length - 1];
+	}
+
+
+	/**
+	 * @param genomeOffset an offset in the mappable genome, between 0 and {@link #getMappableLength()} exclusive
+	 * @return the position on its chromosome of the mappable base at the specified offset.
+	 * The chromosome is returned by {@link #getChromosomeIndex(long)}
+	 */
+	public int getPosition(long genomeOffset) {
+		int chromosomeIndex = getChromosomeIndex(genomeOffset);
+		long chromosomeOffset = genomeOffset - genomeLengths[chromosomeIndex];
+		long[] currentLengths = cumulativeLengths[chromosomeIndex];
+		// interval containing the offset
+		int low = 0;
+		int high = currentLengths.length - 2;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (currentLengths[middle + 1] <= chromosomeOffset) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return starts[chromosomeIndex][low] + (int) (chromosomeOffset - currentLengths[low]);
+	}
+
+
+	/**
+	 * @param chromosomeIndex index of a chromosome
+	 * @param start start of an interval
+	 * @param stop stop of an interval
+	 * @return true if the interval overlaps a mappable region
+	 */
+	public boolean isMappable(int chromosomeIndex, int start, int stop) {
+		int[] currentStops = stops[chromosomeIndex];
+		// first mappable interval ending after the start of the interval
+		int low = 0;
+		int high = currentStops.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (currentStops[middle] <= start) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return (low < currentStops.length) && (starts[chromosomeIndex][low] < stop);
+	}
+
+
+	/**
+	 * @param array an array
+	 * @param length length of the result
+	 * @return the array if it has the specified length, a copy of the first elements of the array otherwise
+	 */
+	private static int[] trim(int[] array, int length) {
+		if (array.length == length) {
+			return array;
+		}
+		int[] result = new int[length];
+		System.arraycopy(array, 0, result, 0, length);
+		return result;
+	}
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.List;
+
+import edu.yu.einstein.genplay.dataStructure.list.listView.AbstractListView;
+import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.SimpleScoredChromosomeWindow;
+
+/**
+ * {@link ListView} of {@link ScoredChromosomeWindow} made of ranges of windows of other list views.
+ * Each range is clipped to an interval: the windows inside the interval are returned as they are
+ * and only the windows crossing the bounds of the interval are recreated with clipped positions.
+ * The windows are never copied when the view is created.
+ * @author Julien Lajugie
+ */
+public final class MaskedSCWListView extends AbstractListView<ScoredChromosomeWindow> implements ListView<ScoredChromosomeWindow> {
+
+	private static final long serialVersionUID = 2816453310729384216L; // generated ID
+
+	private final List<ListView<ScoredChromosomeWindow>> 	sources;		// list views with the windows of the ranges
+	private final int[] 									firstIndexes;	// index of the first window of the ranges in their source
+	private final int[] 									offsets;		// index of the first window of the ranges in this view, plus the size of the view
+	private final int[] 									clipStarts;		// starts of the intervals of the ranges
+	private final int[] 									clipStops;		// stops of the intervals of the ranges
+
+
+	/**
+	 * Creates an instance of {@link MaskedSCWListView}.
+	 * The ranges must be sorted, their intervals must not overlap and the arrays must not be modified after the creation of the view.
+	 * @param sources list views with the windows of the ranges
+	 * @param firstIndexes index of the first window of the ranges in their source
+	 * @param offsets index of the first window of the ranges in this view. The array has one more element set to the size of the view
+	 * @param clipStarts starts of the intervals of the ranges
+	 * @param clipStops stops of the intervals of the ranges
+	 */
+	MaskedSCWListView(List<ListView<ScoredChromosomeWindow>> sources, int[] firstIndexes, int[] offsets, int[] clipStarts, int[] clipStops) {
+		this.sources = sources;
+		this.firstIndexes = firstIndexes;
+		this.offsets = offsets;
+		this.clipStarts = clipStarts;
+		this.clipStops = clipStops;
+	}
+
+
+	@Override
+	public ScoredChromosomeWindow get(int index) {
+		if ((index < 0) || (index >= size())) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		// search the last range starting before the index
+		int low = 0;
+		int high = sources.size() - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (offsets[middle] <= index) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		ScoredChromosomeWindow window = sources.get(low).get(firstIndexes[low] + (index - offsets[low]));
+		if ((window.getStart() >= clipStarts[low]) && (window.getStop() <= clipStops[low])) {
+			return window;
+		}
+		int start = Math.max(window.getStart(), clipStarts[low]);
+		int stop = Math.min(window.getStop(), clipStops[low]);
+		return new SimpleScoredChromosomeWindow(start, stop, window.getScore());
+	}
+
+
+	@Override
+	public int size() {
+		return offsets[offsets.length - 1];
+	}
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.yu.einstein.genplay.core.operation.Operation;
+
+/**
+ * Computes a sequence of operations that can be stopped from another thread.
+ * Operations can be computed concurrently by several threads sharing the runner.
+ * Stopping the runner stops the operations being computed and prevents the next operations from starting.
+ * @author Julien Lajugie
+ */
+class OperationRunner {
+
+	private final Set<Operation<?>> currentOperations = new LinkedHashSet<Operation<?>>();	// operations being computed
+	private volatile boolean 		stopped = false;										// true if the runner must be stopped
+
+
+	/**
+	 * Computes the specified operation
+	 * @param operation an operation
+	 * @return the result of the operation
+	 * @throws InterruptedException if the runner is stopped before or during the operation
+	 * @throws Exception
+	 */
+	public <T> T compute(Operation<T> operation) throws Exception {
+		synchronized (currentOperations) {
+			currentOperations.add(operation);
+		}
+		try {
+			// the runner may have been stopped before the operation was registered
+			if (stopped) {
+				throw new InterruptedException("Operation stopped: " + operation.getDescription());
+			}
+			T result = operation.compute();
+			if (stopped) {
+				throw new InterruptedException("Operation stopped: " + operation.getDescription());
+			}
+			return result;
+		} finally {
+			synchronized (currentOperations) {
+				currentOperations.remove(operation);
+			}
+		}
+	}
+
+
+	/**
+	 * @return true if the runner has been stopped
+	 */
+	public boolean isStopped() {
+		return stopped;
+	}
+
+
+	/**
+	 * Stops the operations being computed and the operations that would start after
+	 */
+	public void stop() {
+		stopped = true;
+		List<Operation<?>> operations;
+		synchronized (currentOperations) {
+			operations = new ArrayList<Operation<?>>(currentOperations);
+		}
+		for (Operation<?> operation: operations) {
+			operation.stop();
+		}
+	}
+}
@@ -0,0 +1,312 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.List;
+
+import cern.jet.stat.Probability;
+
+/**
+ * Surrogate model of the false negative or false positive rate of the simulations over the grid of island sizes and percentages of reads added.
+ * The rate is modeled by a logistic regression on the log of the island size and on the percentage of reads added:
+ * <br/>logit(rate) = b0 + b1 * log(island size) + b2 * percentage of reads added<br/>
+ * The model is fitted by iteratively reweighted least squares on the islands of the successful replicates (binomial observations).
+ * Half a success and half a failure are added to each observation and the slopes are slightly penalized (ridge)
+ * so the fit converges and the confidence intervals stay narrow when the simulated cells are all detected or all missed.
+ * The model gives the rate of the cells that were not simulated and the 95% confidence interval of this rate
+ * used to decide which cells need a simulation. The covariance of the coefficients is inflated by the dispersion of the observations
+ * (pearson chi-square over the degrees of freedom) so a poor fit widens the confidence intervals.
+ * @author Julien Lajugie
+ */
+public class PowerModel {
+
+	private final static int 	PARAMETER_COUNT = 3;		// intercept, log island size and percentage of reads added
+	private final static double RIDGE_PENALTY 	= 1;		// penalty of the standardized slopes
+	private final static double PSEUDO_COUNT 	= 0.5;		// successes and failures added to each observation
+	private final static int 	MAX_ITERATIONS 	= 100;		// maximum number of iterations of the fit
+	private final static double CONVERGENCE 	= 1e-8;		// the fit stops when the largest change of the parameters is smaller than this value
+
+	private final double[] 		means;			// means of the features (used to standardize them)
+	private final double[] 		stdDevs;		// standard deviations of the features (used to standardize them)
+	private final double[] 		coefficients;	// coefficients of the standardized features
+	private final double[][] 	covariance;		// covariance matrix of the coefficients
+
+
+	/**
+	 * Creates an instance of {@link PowerModel}
+	 * @param means means of the features
+	 * @param stdDevs standard deviations of the features
+	 * @param coefficients coefficients of the standardized features
+	 * @param covariance covariance matrix of the coefficients
+	 */
+	private PowerModel(double[] means, double[] stdDevs, double[] coefficients, double[][] covariance) {
+		this.means = means;
+		this.stdDevs = stdDevs;
+		this.coefficients = coefficients;
+		this.covariance = covariance;
+	}
+
+
+	/**
+	 * Computes the half-width of the 95% confidence interval of the rate of a cell.
+	 * The interval is computed on the linear predictor and transformed back to a rate so it stays between 0 and 1
+	 * @param islandSize island size of the cell
+	 * @param percentageReadsAdded percentage of reads added of the cell
+	 * @return the half-width of the confidence interval of the rate of the cell
+	 */
+	public double computeCIHalfWidth(int islandSize, double percentageReadsAdded) {
+		double[] x = computeFeatures(islandSize, percentageReadsAdded);
+		double variance = 0;
+		for (int i = 0; i < PARAMETER_COUNT; i++) {
+			for (int j = 0; j < PARAMETER_COUNT; j++) {
+				variance += x[i] * covariance[i][j] * x[j];
+			}
+		}
+		double z = Probability.normalInverse(1 - (ReplicatedSimulationResult.CONFIDENCE_INTERVAL_ALPHA / 2));
+		double eta = computeLinearPredictor(x);
+		double margin = z * Math.sqrt(variance);
+		return (logistic(eta + margin) - logistic(eta - margin)) / 2;
+	}
+
+
+	/**
+	 * @param islandSize island size of a cell
+	 * @param percentageReadsAdded percentage of reads added of a cell
+	 * @return the standardized features of the cell (with a constant 1 for the intercept)
+	 */
+	private double[] computeFeatures(int islandSize, double percentageReadsAdded) {
+		double[] x = {1, Math.log(islandSize), percentageReadsAdded};
+		for (int i = 1; i < PARAMETER_COUNT; i++) {
+			x[i] = (x[i] - means[i]) / stdDevs[i];
+		}
+		return x;
+	}
+
+
+	/**
+	 * @param x standardized features of a cell
+	 * @return the linear predictor (logit of the rate) of the cell
+	 */
+	private double computeLinearPredictor(double[] x) {
+		double eta = 0;
+		for (int i = 0; i < PARAMETER_COUNT; i++) {
+			eta += coefficients[i] * x[i];
+		}
+		return eta;
+	}
+
+
+	/**
+	 * Fits the model of the false negative rate (missed islands / created islands)
+	 * or of the false positive rate (false positives / islands found) of the specified replicates
+	 * @param replicates results of the simulated cells, the failed replicates are ignored
+	 * @param isFalsePositiveRate true to model the false positive rate, false to model the false negative rate
+	 * @return a {@link PowerModel}, null if there is no island to fit the model
+	 */
+	public static PowerModel fit(List<SimulationResult> replicates, boolean isFalsePositiveRate) {
+		// binomial observations of the replicates
+		int n = 0;
+		double[][] x = new double[replicates.size()][];
+		double[] successes = new double[replicates.size()];
+		double[] trials = new double[replicates.size()];
+		for (SimulationResult replicate: replicates) {
+			int currentTrials = isFalsePositiveRate ? replicate.getIslandFoundCount() : replicate.getIslandCreatedCount();
+			if (!replicate.isFailed() && (currentTrials > 0)) {
+				x[n] = new double[] {1, Math.log(replicate.getIslandSize()), replicate.getPercentageReadsAdded()};
+				successes[n] = (isFalsePositiveRate ? replicate.getFalsePositiveCount() : replicate.getFalseNegativeCount()) + PSEUDO_COUNT;
+				trials[n] = currentTrials + (2 * PSEUDO_COUNT);
+				n++;
+			}
+		}
+		if (n == 0) {
+			return null;
+		}
+		// standardize the features so the penalty is the same for both slopes
+		double[] means = new double[PARAMETER_COUNT];
+		double[] stdDevs = new double[PARAMETER_COUNT];
+		for (int j = 1; j < PARAMETER_COUNT; j++) {
+			for (int i = 0; i < n; i++) {
+				means[j] += x[i][j] / n;
+			}
+			for (int i = 0; i < n; i++) {
+				stdDevs[j] += ((x[i][j] - means[j]) * (x[i][j] - means[j])) / n;
+			}
+			// a feature with a single value is left as it is and its slope is driven to 0 by the penalty
+			stdDevs[j] = stdDevs[j] > 0 ? Math.sqrt(stdDevs[j]) : 1;
+			for (int i = 0; i < n; i++) {
+				x[i][j] = (x[i][j] - means[j]) / stdDevs[j];
+			}
+		}
+		// iteratively reweighted least squares: beta = beta + (X'WX + P)^-1 (X'(y - mu) - P beta)
+		double[] beta = new double[PARAMETER_COUNT];
+		double[][] information = null;
+		for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+			information = new double[PARAMETER_COUNT][PARAMETER_COUNT];
+			double[] score = new double[PARAMETER_COUNT];
+			for (int i = 0; i < n; i++) {
+				double mu = logistic(dot(beta, x[i]));
+				double weight = trials[i] * mu * (1 - mu);
+				for (int j = 0; j < PARAMETER_COUNT; j++) {
+					score[j] += x[i][j] * (successes[i] - (trials[i] * mu));
+					for (int k = 0; k < PARAMETER_COUNT; k++) {
+						information[j][k] += weight * x[i][j] * x[i][k];
+					}
+				}
+			}
+			for (int j = 1; j < PARAMETER_COUNT; j++) {
+				information[j][j] += RIDGE_PENALTY;
+				score[j] -= RIDGE_PENALTY * beta[j];
+			}
+			double[] step = solve(information, score);
+			double maxChange = 0;
+			for (int j = 0; j < PARAMETER_COUNT; j++) {
+				beta[j] += step[j];
+				maxChange = Math.max(maxChange, Math.abs(step[j]));
+			}
+			if (maxChange < CONVERGENCE) {
+				break;
+			}
+		}
+		// quasi-binomial dispersion, never lower than the binomial one
+		double dispersion = 1;
+		if (n > PARAMETER_COUNT) {
+			double chiSquare = 0;
+			for (int i = 0; i < n; i++) {
+				// residuals of the observed counts, without the pseudo counts
+				double mu = logistic(dot(beta, x[i]));
+				double observedTrials = trials[i] - (2 * PSEUDO_COUNT);
+				double residual = (successes[i] - PSEUDO_COUNT) - (observedTrials * mu);
+				chiSquare += (residual * residual) / (observedTrials * mu * (1 - mu));
+			}
+			dispersion = Math.max(1, chiSquare / (n - PARAMETER_COUNT));
+		}
+		double[][] covariance = invert(information);
+		for (double[] row: covariance) {
+			for (int j = 0; j < PARAMETER_COUNT; j++) {
+				row[j] *= dispersion;
+			}
+		}
+		return new PowerModel(means, stdDevs, beta, covariance);
+	}
+
+
+	/**
+	 * @param a a vector
+	 * @param b a vector with the same length
+	 * @return the dot product of the vectors
+	 */
+	private static double dot(double[] a, double[] b) {
+		double result = 0;
+		for (int i = 0; i < a.length; i++) {
+			result += a[i] * b[i];
+		}
+		return result;
+	}
+
+
+	/**
+	 * @param matrix a symmetric positive definite matrix
+	 * @return the inverse of the matrix
+	 */
+	private static double[][] invert(double[][] matrix) {
+		int size = matrix.length;
+		double[][] inverse = new double[size][];
+		double[][] transposed = new double[size][size];
+		for (int j = 0; j < size; j++) {
+			double[] column = new double[size];
+			column[j] = 1;
+			transposed[j] = solve(matrix, column);
+		}
+		for (int i = 0; i < size; i++) {
+			inverse[i] = new double[size];
+			for (int j = 0; j < size; j++) {
+				inverse[i][j] = transposed[j][i];
+			}
+		}
+		return inverse;
+	}
+
+
+	/**
+	 * @param eta a linear predictor
+	 * @return the logistic function of the linear predictor
+	 */
+	private static double logistic(double eta) {
+		return 1 / (1 + Math.exp(-eta));
+	}
+
+
+	/**
+	 * @param islandSize island size of a cell
+	 * @param percentageReadsAdded percentage of reads added of a cell
+	 * @return the rate predicted for the cell
+	 */
+	public double predict(int islandSize, double percentageReadsAdded) {
+		return logistic(computeLinearPredictor(computeFeatures(islandSize, percentageReadsAdded)));
+	}
+
+
+	/**
+	 * Solves a linear system by gaussian elimination with partial pivoting
+	 * @param matrix matrix of the system (not modified)
+	 * @param vector right-hand side of the system (not modified)
+	 * @return the solution of the system
+	 */
+	private static double[] solve(double[][] matrix, double[] vector) {
+		int size = vector.length;
+		double[][] a = new double[size][];
+		double[] b = vector.clone();
+		for (int i = 0; i < size; i++) {
+			a[i] = matrix[i].clone();
+		}
+		for (int i = 0; i < size; i++) {
+			int pivot = i;
+			for (int j = i + 1; j < size; j++) {
+				if (Math.abs(a[j][i]) > Math.abs(a[pivot][i])) {
+					pivot = j;
+				}
+			}
+			double[] tmpRow = a[i];
+			a[i] = a[pivot];
+			a[pivot] = tmpRow;
+			double tmp = b[i];
+			b[i] = b[pivot];
+			b[pivot] = tmp;
+			for (int j = i + 1; j < size; j++) {
+				double ratio = a[j][i] / a[i][i];
+				for (int k = i; k < size; k++) {
+					a[j][k] -= ratio * a[i][k];
+				}
+				b[j] -= ratio * b[i];
+			}
+		}
+		double[] x = new double[size];
+		for (int i = size - 1; i >= 0; i--) {
+			double sum = b[i];
+			for (int j = i + 1; j < size; j++) {
+				sum -= a[i][j] * x[j];
+			}
+			x[i] = sum / a[i][i];
+		}
+		return x;
+	}
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import edu.yu.einstein.genplay.core.manager.project.ProjectChromosomes;
+import edu.yu.einstein.genplay.core.manager.project.ProjectManager;
+import edu.yu.einstein.genplay.dataStructure.chromosome.Chromosome;
+import edu.yu.einstein.genplay.dataStructure.enums.SCWListType;
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWList;
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWListStats.SCWListStats;
+import edu.yu.einstein.genplay.dataStructure.list.listView.AbstractListView;
+import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
+import edu.yu.einstein.genplay.exception.exceptions.InvalidChromosomeException;
+
+/**
+ * {@link SCWList} made of list views built by the operations of this package
+ * (eg: {@link PrimitiveSCWListView}, {@link CountSCWListView} or {@link MaskedSCWListView}), one per chromosome.
+ * The list views are built independently by the threads processing the chromosomes and handed to the list once they are done.
+ * The GenPlay {@link edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SimpleSCWList.SimpleSCWList}
+ * only accepts its own list view types so this class is needed to use these list views.
+ * @author Julien Lajugie
+ */
+public final class PrimitiveSCWList extends AbstractListView<ListView<ScoredChromosomeWindow>> implements SCWList {
+
+	private static final long serialVersionUID = 4210687337236283462L; // generated ID
+
+	private final List<ListView<ScoredChromosomeWindow>> 	data;			// list views of the chromosomes
+	private final SCWListType 								scwListType;	// type of the list
+	private final SCWListStats 								listStats;		// statistics of the list
+
+
+	/**
+	 * Creates an instance of {@link PrimitiveSCWList}
+	 * @param data list views of the chromosomes, in the order of the project chromosomes.
+	 * The windows of the list views must be sorted and must not overlap
+	 * @param scwListType type of the list
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public PrimitiveSCWList(List<? extends ListView<ScoredChromosomeWindow>> data, SCWListType scwListType) throws InterruptedException, ExecutionException {
+		ProjectChromosomes projectChromosomes = ProjectManager.getInstance().getProjectChromosomes();
+		if (data.size() != projectChromosomes.size()) {
+			throw new IllegalArgumentException("The list has " + data.size() + " chromosomes, the project has " + projectChromosomes.size());
+		}
+		this.data = new ArrayList<ListView<ScoredChromosomeWindow>>(data);
+		this.scwListType = scwListType;
+		listStats = new SCWListStats(this);
+	}
+
+
+	@Override
+	public ListView<ScoredChromosomeWindow> get(Chromosome chromosome) throws InvalidChromosomeException {
+		return data.get(ProjectManager.getInstance().getProjectChromosomes().getIndex(chromosome));
+	}
+
+
+	@Override
+	public ScoredChromosomeWindow get(Chromosome chromosome, int index) throws InvalidChromosomeException {
+		return get(chromosome).get(index);
+	}
+
+
+	@Override
+	public ListView<ScoredChromosomeWindow> get(int chromosomeIndex) {
+		return data.get(chromosomeIndex);
+	}
+
+
+	@Override
+	public ScoredChromosomeWindow get(int chromosomeIndex, int index) {
+		return data.get(chromosomeIndex).get(index);
+	}
+
+
+	@Override
+	public int getCreationStepCount() {
+		return 1;
+	}
+
+
+	@Override
+	public float getScore(Chromosome chromosome, int position) {
+		ListView<ScoredChromosomeWindow> listView = data.get(ProjectManager.getInstance().getProjectChromosomes().getIndex(chromosome));
+		if (listView instanceof PrimitiveSCWListView) {
+			PrimitiveSCWListView primitiveListView = (PrimitiveSCWListView) listView;
+			int index = primitiveListView.findWindowIndex(position);
+			return index == -1 ? 0 : primitiveListView.getScore(index);
+		}
+		if (listView instanceof CountSCWListView) {
+			CountSCWListView countListView = (CountSCWListView) listView;
+			int index = countListView.findWindowIndex(position);
+			return index == -1 ? 0 : countListView.getScore(index);
+		}
+		int low = 0;
+		int high = listView.size() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			ScoredChromosomeWindow window = listView.get(middle);
+			if (window.getStop() <= position) {
+				low = middle + 1;
+			} else if (window.getStart() > position) {
+				high = middle - 1;
+			} else {
+				return window.getScore();
+			}
+		}
+		return 0;
+	}
+
+
+	@Override
+	public SCWListType getSCWListType() {
+		return scwListType;
+	}
+
+
+	@Override
+	public SCWListStats getStatistics() {
+		return listStats;
+	}
+
+
+	@Override
+	public int size() {
+		return data.size();
+	}
+
+
+	@Override
+	public int size(Chromosome chromosome) throws InvalidChromosomeException {
+		return get(chromosome).size();
+	}
+
+
+	@Override
+	public int size(int chromosomeIndex) {
+		return data.get(chromosomeIndex).size();
+	}
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import edu.yu.einstein.genplay.dataStructure.list.listView.AbstractListView;
+import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.SimpleScoredChromosomeWindow;
+
+/**
+ * {@link ListView} of {@link ScoredChromosomeWindow} backed by primitive arrays of starts, stops and scores.
+ * The windows are only created when they are retrieved with {@link #get(int)}.
+ * The primitive accessors give access to the windows without creating any object.
+ * @author Julien Lajugie
+ */
+public final class PrimitiveSCWListView extends AbstractListView<ScoredChromosomeWindow> implements ListView<ScoredChromosomeWindow> {
+
+	private static final long serialVersionUID = -3523447265271813216L; // generated ID
+
+	private final int[] 	starts;	// starts of the windows
+	private final int[] 	stops;	// stops of the windows
+	private final float[] 	scores;	// scores of the windows
+	private final int 		size;	// number of windows of the view
+
+
+	/**
+	 * Creates an instance of {@link PrimitiveSCWListView} backed by the specified arrays.
+	 * The arrays are not copied and must not be modified after the creation of the view.
+	 * The windows must be sorted and must not overlap.
+	 * @param starts starts of the windows
+	 * @param stops stops of the windows
+	 * @param scores scores of the windows
+	 * @param size number of windows of the view (the arrays can be larger)
+	 */
+	PrimitiveSCWListView(int[] starts, int[] stops, float[] scores, int size) {
+		this.starts = starts;
+		this.stops = stops;
+		this.scores = scores;
+		this.size = size;
+	}
+
+
+	/**
+	 * @param position a position on the chromosome
+	 * @return the index of the window containing the specified position, -1 if no window contains the position
+	 */
+	public int findWindowIndex(int position) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (stops[middle] <= position) {
+				low = middle + 1;
+			} else if (starts[middle] > position) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+
+	@Override
+	public ScoredChromosomeWindow get(int index) {
+		if ((index < 0) || (index >= size)) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return new SimpleScoredChromosomeWindow(starts[index], stops[index], scores[index]);
+	}
+
+
+	/**
+	 * @param index index of a window
+	 * @return the score of the window
+	 */
+	public float getScore(int index) {
+		return scores[index];
+	}
+
+
+	/**
+	 * @param index index of a window
+	 * @return the start of the window
+	 */
+	public int getStart(int index) {
+		return starts[index];
+	}
+
+
+	/**
+	 * @param index index of a window
+	 * @return the stop of the window
+	 */
+	public int getStop(int index) {
+		return stops[index];
+	}
+
+
+	@Override
+	public int size() {
+		return size;
+	}
+}
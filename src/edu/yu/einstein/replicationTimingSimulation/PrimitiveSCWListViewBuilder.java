@@ -0,0 +1,91 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.Arrays;
+
+import edu.yu.einstein.genplay.exception.exceptions.ElementAddedNotSortedException;
+import edu.yu.einstein.genplay.exception.exceptions.ObjectAlreadyBuiltException;
+
+/**
+ * Builder of a {@link PrimitiveSCWListView}.
+ * The builder is meant to be owned by a single thread building the windows of one chromosome so it's not synchronized.
+ * The arrays are allocated once with the expected number of windows and only grow if more windows are added.
+ * @author Julien Lajugie
+ */
+public final class PrimitiveSCWListViewBuilder {
+
+	private int[] 		starts;			// starts of the windows
+	private int[] 		stops;			// stops of the windows
+	private float[] 	scores;			// scores of the windows
+	private int 		size = 0;		// number of windows added
+	private boolean 	isBuilt = false;// true if the list view has been built
+
+
+	/**
+	 * Creates an instance of {@link PrimitiveSCWListViewBuilder}
+	 * @param capacity expected number of windows
+	 */
+	public PrimitiveSCWListViewBuilder(int capacity) {
+		capacity = Math.max(1, capacity);
+		starts = new int[capacity];
+		stops = new int[capacity];
+		scores = new float[capacity];
+	}
+
+
+	/**
+	 * Adds a window to the list view. The windows must be added sorted by position and must not overlap
+	 * @param start start of the window
+	 * @param stop stop of the window
+	 * @param score score of the window
+	 * @throws ObjectAlreadyBuiltException if the list view has already been built
+	 * @throws ElementAddedNotSortedException if the window starts before the stop of the previous window
+	 */
+	public void addElementToBuild(int start, int stop, float score) throws ObjectAlreadyBuiltException, ElementAddedNotSortedException {
+		if (isBuilt) {
+			throw new ObjectAlreadyBuiltException();
+		}
+		if ((size > 0) && (start < stops[size - 1])) {
+			throw new ElementAddedNotSortedException("The window " + start + "-" + stop + " starts before the end of the previous window");
+		}
+		if (size == starts.length) {
+			int newCapacity = starts.length * 2;
+			starts = Arrays.copyOf(starts, newCapacity);
+			stops = Arrays.copyOf(stops, newCapacity);
+			scores = Arrays.copyOf(scores, newCapacity);
+		}
+		starts[size] = start;
+		stops[size] = stop;
+		scores[size] = score;
+		size++;
+	}
+
+
+	/**
+	 * @return the list view with the windows added to the builder
+	 */
+	public PrimitiveSCWListView getListView() {
+		isBuilt = true;
+		return new PrimitiveSCWListView(starts, stops, scores, size);
+	}
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.Arrays;
+
+/**
+ * False positives and false negatives of a simulation at every q-value cutoff.
+ * The q-values of the islands found are sorted once, split between the islands overlapping a generated island (true positives)
+ * and the other islands (false positives). A generated island is detected at a cutoff when the smallest q-value of the islands
+ * found overlapping it passes the cutoff. The counts at any cutoff are then retrieved with binary searches.
+ * Like the threshold filter of the simulation, a q-value that is not a number passes all the cutoffs.
+ * @author Julien Lajugie
+ */
+public class QValueSweep {
+
+	private final float[] 	truePositiveQValues;	// sorted q-values of the islands found overlapping a generated island
+	private final float[] 	falsePositiveQValues;	// sorted q-values of the islands found not overlapping any generated island
+	private final float[] 	detectionQValues;		// sorted smallest q-values of the islands found overlapping each generated island, infinite if there is none
+
+
+	/**
+	 * Creates an instance of {@link QValueSweep}. The arrays are sorted by the constructor
+	 * @param truePositiveQValues q-values of the islands found overlapping a generated island
+	 * @param falsePositiveQValues q-values of the islands found not overlapping any generated island
+	 * @param detectionQValues smallest q-values of the islands found overlapping each generated island, positive infinity if there is none
+	 */
+	QValueSweep(float[] truePositiveQValues, float[] falsePositiveQValues, float[] detectionQValues) {
+		this.truePositiveQValues = sortQValues(truePositiveQValues);
+		this.falsePositiveQValues = sortQValues(falsePositiveQValues);
+		this.detectionQValues = sortQValues(detectionQValues);
+	}
+
+
+	/**
+	 * @param sortedQValues sorted q-values
+	 * @param cutoff a q-value cutoff
+	 * @return the number of q-values smaller or equal to the cutoff
+	 */
+	private static int countPassing(float[] sortedQValues, float cutoff) {
+		int low = 0;
+		int high = sortedQValues.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sortedQValues[middle] <= cutoff) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+
+	/**
+	 * @return the distinct q-values of the islands found in increasing order.
+	 * These are the cutoffs where the counts of the sweep change, the points of the ROC and precision-recall curves
+	 */
+	public float[] getCurveCutoffs() {
+		float[] qValues = new float[truePositiveQValues.length + falsePositiveQValues.length];
+		System.arraycopy(truePositiveQValues, 0, qValues, 0, truePositiveQValues.length);
+		System.arraycopy(falsePositiveQValues, 0, qValues, truePositiveQValues.length, falsePositiveQValues.length);
+		Arrays.sort(qValues);
+		int distinctCount = 0;
+		for (int i = 0; i < qValues.length; i++) {
+			if ((distinctCount == 0) || (qValues[i] != qValues[distinctCount - 1])) {
+				qValues[distinctCount] = qValues[i];
+				distinctCount++;
+			}
+		}
+		return Arrays.copyOf(qValues, distinctCount);
+	}
+
+
+	/**
+	 * @param cutoff a q-value cutoff
+	 * @return the number of generated islands not overlapping any island found with a q-value passing the cutoff
+	 */
+	public int getFalseNegativeCount(float cutoff) {
+		return detectionQValues.length - countPassing(detectionQValues, cutoff);
+	}
+
+
+	/**
+	 * @param cutoff a q-value cutoff
+	 * @return the false negative rate at the specified cutoff
+	 */
+	public double getFalseNegativeRate(float cutoff) {
+		return getFalseNegativeCount(cutoff) / (double) getIslandCreatedCount();
+	}
+
+
+	/**
+	 * @param cutoff a q-value cutoff
+	 * @return the number of islands found with a q-value passing the cutoff not overlapping any generated island
+	 */
+	public int getFalsePositiveCount(float cutoff) {
+		return countPassing(falsePositiveQValues, cutoff);
+	}
+
+
+	/**
+	 * @param cutoff a q-value cutoff
+	 * @return the false positive rate at the specified cutoff
+	 */
+	public double getFalsePositiveRate(float cutoff) {
+		int islandFoundCount = getIslandFoundCount(cutoff);
+		if (islandFoundCount == 0) {
+			return 0;
+		} else {
+			return getFalsePositiveCount(cutoff) / (double) islandFoundCount;
+		}
+	}
+
+
+	/**
+	 * @return the number of islands generated for the simulation
+	 */
+	public int getIslandCreatedCount() {
+		return detectionQValues.length;
+	}
+
+
+	/**
+	 * @param cutoff a q-value cutoff
+	 * @return the number of islands found with a q-value passing the cutoff
+	 */
+	public int getIslandFoundCount(float cutoff) {
+		return countPassing(truePositiveQValues, cutoff) + countPassing(falsePositiveQValues, cutoff);
+	}
+
+
+	/**
+	 * @param qValues q-values
+	 * @return the q-values sorted, the values that are not numbers are replaced by negative infinity so they pass all the cutoffs
+	 */
+	private static float[] sortQValues(float[] qValues) {
+		for (int i = 0; i < qValues.length; i++) {
+			if (Float.isNaN(qValues[i])) {
+				qValues[i] = Float.NEGATIVE_INFINITY;
+			}
+		}
+		Arrays.sort(qValues);
+		return qValues;
+	}
+}
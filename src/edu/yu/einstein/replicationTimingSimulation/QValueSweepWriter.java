@@ -0,0 +1,133 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Writes the {@link QValueSweep} of the simulations of a batch in two tab separated files of the output directory:
+ * the counts and rates at the cutoffs specified on the command line, and the ROC and precision-recall curves
+ * with a point at each distinct q-value of the islands found. Each replicate of each simulation adds its rows to the files.
+ * @author Julien Lajugie
+ */
+public class QValueSweepWriter {
+
+	/** Name of the file with the results at the specified cutoffs */
+	public final static String CUTOFF_FILE_NAME = "qvalue_cutoffs.txt";
+
+	/** Name of the file with the ROC and precision-recall curves */
+	public final static String CURVE_FILE_NAME = "qvalue_curves.txt";
+
+	private final static String KEY_HEADER = "Bin Size\tGaussian Width\tIF Min Window\tIF Gap\tIF Min Length\tIsland Size\tReads Added\tReplicate\tq-value Cutoff\tIslands Created\tIslands Found";
+
+	private final File 		cutoffFile;	// file with the results at the specified cutoffs
+	private final File 		curveFile;	// file with the ROC and precision-recall curves
+	private final float[] 	cutoffs;	// q-value cutoffs of the cutoff file
+
+
+	/**
+	 * Creates an instance of {@link QValueSweepWriter} and writes the headers of the files.
+	 * Existing files are replaced
+	 * @param outDir output directory
+	 * @param cutoffs q-value cutoffs of the cutoff file
+	 * @throws IOException
+	 */
+	public QValueSweepWriter(File outDir, float[] cutoffs) throws IOException {
+		cutoffFile = new File(outDir, CUTOFF_FILE_NAME);
+		curveFile = new File(outDir, CURVE_FILE_NAME);
+		this.cutoffs = cutoffs;
+		writeLines(cutoffFile, false, KEY_HEADER + "\tFalse Positives\tFalse Negatives\tFalse Positives Rate\tFalse Negatives Rate");
+		writeLines(curveFile, false, KEY_HEADER + "\tFalse Positives\tFalse Negatives\tPrecision\tRecall");
+	}
+
+
+	/**
+	 * Appends the sweep of a replicate to the files. Failed results are skipped
+	 * @param replicate number of the replicate
+	 * @param result result of the replicate
+	 * @throws IOException
+	 */
+	public synchronized void write(int replicate, SimulationResult result) throws IOException {
+		QValueSweep sweep = result.getQValueSweep();
+		if (result.isFailed() || (sweep == null)) {
+			return;
+		}
+		IslandFinderParameters islandFinderParameters = result.getIslandFinderParameters();
+		String key = result.getBinSize() + "\t" + result.getGaussianWidth()
+				+ "\t" + islandFinderParameters.getMinWindowScore() + "\t" + islandFinderParameters.getGap() + "\t" + islandFinderParameters.getMinLength()
+				+ "\t" + result.getIslandSize() + "\t" + result.getPercentageReadsAdded() + "\t" + replicate;
+		StringBuilder lines = new StringBuilder();
+		for (float cutoff: cutoffs) {
+			if (lines.length() > 0) {
+				lines.append('\n');
+			}
+			lines.append(key).append('\t').append(cutoff)
+			.append('\t').append(sweep.getIslandCreatedCount())
+			.append('\t').append(sweep.getIslandFoundCount(cutoff))
+			.append('\t').append(sweep.getFalsePositiveCount(cutoff))
+			.append('\t').append(sweep.getFalseNegativeCount(cutoff))
+			.append('\t').append(sweep.getFalsePositiveRate(cutoff))
+			.append('\t').append(sweep.getFalseNegativeRate(cutoff));
+		}
+		writeLines(cutoffFile, true, lines.toString());
+		lines.setLength(0);
+		for (float cutoff: sweep.getCurveCutoffs()) {
+			if (lines.length() > 0) {
+				lines.append('\n');
+			}
+			lines.append(key).append('\t').append(cutoff)
+			.append('\t').append(sweep.getIslandCreatedCount())
+			.append('\t').append(sweep.getIslandFoundCount(cutoff))
+			.append('\t').append(sweep.getFalsePositiveCount(cutoff))
+			.append('\t').append(sweep.getFalseNegativeCount(cutoff))
+			.append('\t').append(1 - sweep.getFalsePositiveRate(cutoff))
+			.append('\t').append(1 - sweep.getFalseNegativeRate(cutoff));
+		}
+		if (lines.length() > 0) {
+			writeLines(curveFile, true, lines.toString());
+		}
+	}
+
+
+	/**
+	 * Writes lines in a file
+	 * @param file a file
+	 * @param append true to append the lines at the end of the file, false to replace the file
+	 * @param lines lines to write, without the last line separator
+	 * @throws IOException
+	 */
+	private static void writeLines(File file, boolean append, String lines) throws IOException {
+		BufferedWriter writer = null;
+		try {
+			writer = new BufferedWriter(new FileWriter(file, append));
+			writer.write(lines);
+			writer.newLine();
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+		}
+	}
+}
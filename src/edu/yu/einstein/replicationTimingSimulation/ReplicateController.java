@@ -0,0 +1,116 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.Collection;
+
+/**
+ * Decides how many replicates of a simulation are run.
+ * The replicates of a simulation are added until the confidence intervals of the false positive and false negative rates
+ * are narrow enough for all the track configurations, with a minimum and a maximum number of replicates.
+ * This way the simulations far from the detection threshold stop after a few replicates
+ * and the computation time goes to the simulations with uncertain rates.
+ * @author Julien Lajugie
+ */
+public class ReplicateController {
+
+	private final int 		minReplicates;	// minimum number of replicates of a simulation
+	private final int 		maxReplicates;	// maximum number of replicates of a simulation
+	private final double 	ciHalfWidth;	// target half-width of the confidence intervals of the rates
+
+
+	/**
+	 * Creates an instance of {@link ReplicateController}
+	 * @param minReplicates minimum number of replicates of a simulation
+	 * @param maxReplicates maximum number of replicates of a simulation
+	 * @param ciHalfWidth target half-width of the confidence intervals of the false positive and false negative rates
+	 */
+	public ReplicateController(int minReplicates, int maxReplicates, double ciHalfWidth) {
+		if (minReplicates < 1) {
+			throw new IllegalArgumentException("Invalid minimum number of replicates: " + minReplicates);
+		}
+		if (maxReplicates < minReplicates) {
+			throw new IllegalArgumentException("The maximum number of replicates (" + maxReplicates + ") is smaller than the minimum (" + minReplicates + ")");
+		}
+		if (ciHalfWidth <= 0) {
+			throw new IllegalArgumentException("Invalid confidence interval half-width: " + ciHalfWidth);
+		}
+		this.minReplicates = minReplicates;
+		this.maxReplicates = maxReplicates;
+		this.ciHalfWidth = ciHalfWidth;
+	}
+
+
+	/**
+	 * @return the maximum number of replicates of a simulation
+	 */
+	public int getMaxReplicates() {
+		return maxReplicates;
+	}
+
+
+	/**
+	 * @return the minimum number of replicates of a simulation
+	 */
+	public int getMinReplicates() {
+		return minReplicates;
+	}
+
+
+	/**
+	 * @return true if the simulations can have more than one replicate
+	 */
+	public boolean isReplicating() {
+		return maxReplicates > 1;
+	}
+
+
+	/**
+	 * Decides if another replicate of a simulation is needed.
+	 * No replicate is added after a replicate that failed since a failure is likely to happen again (eg: timeout).
+	 * @param results results of the replicates of the simulation, one element per track configuration
+	 * @return true if another replicate of the simulation must be run
+	 */
+	public boolean needsMoreReplicates(Collection<ReplicatedSimulationResult> results) {
+		int replicateCount = 0;
+		for (ReplicatedSimulationResult result: results) {
+			SimulationResult lastReplicate = result.getLastReplicate();
+			if ((lastReplicate != null) && lastReplicate.isFailed()) {
+				return false;
+			}
+			replicateCount = Math.max(replicateCount, result.getReplicateCount());
+		}
+		if (replicateCount < minReplicates) {
+			return true;
+		}
+		if (replicateCount >= maxReplicates) {
+			return false;
+		}
+		for (ReplicatedSimulationResult result: results) {
+			// an interval without data (no island created or found) is infinite and asks for more replicates
+			if (!(result.getFalsePositiveRateCIHalfWidth() <= ciHalfWidth) || !(result.getFalseNegativeRateCIHalfWidth() <= ciHalfWidth)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
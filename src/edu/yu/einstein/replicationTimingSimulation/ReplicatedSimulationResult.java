@@ -0,0 +1,170 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import cern.jet.stat.Probability;
+
+/**
+ * Results of the replicates of a simulation for one track configuration.
+ * The false positive and false negative rates of the replicates are summarized by their mean
+ * and by the half-width of their 95% confidence interval. The intervals are Wilson score intervals on the counts pooled over the replicates
+ * (false positives over islands found and false negatives over islands created) so replicates with the same rate
+ * don't give an empty interval and the interval narrows with the number of islands seen.
+ * @author Julien Lajugie
+ */
+public class ReplicatedSimulationResult {
+
+	/** Significance level of the confidence intervals of the rates */
+	public final static double CONFIDENCE_INTERVAL_ALPHA = 0.05;
+
+	private final TrackConfiguration 		configuration;	// track configuration of the replicates
+	private final List<SimulationResult> 	replicates;		// results of the replicates, failed ones included
+
+
+	/**
+	 * Creates an instance of {@link ReplicatedSimulationResult} with no replicate
+	 * @param configuration track configuration of the replicates
+	 */
+	public ReplicatedSimulationResult(TrackConfiguration configuration) {
+		this.configuration = configuration;
+		replicates = new ArrayList<SimulationResult>();
+	}
+
+
+	/**
+	 * Adds the result of a replicate
+	 * @param result result of a replicate for the configuration of this object
+	 */
+	public void addReplicate(SimulationResult result) {
+		if (!configuration.equals(result.getConfiguration())) {
+			throw new IllegalArgumentException("The replicate configuration (" + result.getConfiguration() + ") doesn't match " + configuration);
+		}
+		replicates.add(result);
+	}
+
+
+	/**
+	 * Computes the half-width of the Wilson score confidence interval of a proportion
+	 * @param successCount number of successes (eg: false positives)
+	 * @param trialCount number of trials (eg: islands found)
+	 * @return the half-width of the confidence interval. Infinity if there is no trial
+	 */
+	private static double computeCIHalfWidth(long successCount, long trialCount) {
+		if (trialCount == 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double n = trialCount;
+		double p = successCount / n;
+		double z = Probability.normalInverse(1 - (CONFIDENCE_INTERVAL_ALPHA / 2));
+		double zSquare = z * z;
+		return (z / (1 + (zSquare / n))) * Math.sqrt(((p * (1 - p)) / n) + (zSquare / (4 * n * n)));
+	}
+
+
+	/**
+	 * @return the track configuration of the replicates
+	 */
+	public TrackConfiguration getConfiguration() {
+		return configuration;
+	}
+
+
+	/**
+	 * @return the half-width of the confidence interval of the false negative rate. Infinity if the successful replicates created no island
+	 */
+	public double getFalseNegativeRateCIHalfWidth() {
+		long falseNegativeCount = 0;
+		long islandCreatedCount = 0;
+		for (SimulationResult replicate: getSuccessfulReplicates()) {
+			falseNegativeCount += replicate.getFalseNegativeCount();
+			islandCreatedCount += replicate.getIslandCreatedCount();
+		}
+		return computeCIHalfWidth(falseNegativeCount, islandCreatedCount);
+	}
+
+
+	/**
+	 * @return the half-width of the confidence interval of the false positive rate. Infinity if the successful replicates found no island
+	 */
+	public double getFalsePositiveRateCIHalfWidth() {
+		long falsePositiveCount = 0;
+		long islandFoundCount = 0;
+		for (SimulationResult replicate: getSuccessfulReplicates()) {
+			falsePositiveCount += replicate.getFalsePositiveCount();
+			islandFoundCount += replicate.getIslandFoundCount();
+		}
+		return computeCIHalfWidth(falsePositiveCount, islandFoundCount);
+	}
+
+
+	/**
+	 * @return the result of the last replicate, null if there is no replicate
+	 */
+	public SimulationResult getLastReplicate() {
+		if (replicates.isEmpty()) {
+			return null;
+		}
+		return replicates.get(replicates.size() - 1);
+	}
+
+
+	/**
+	 * @return the number of replicates, failed ones included
+	 */
+	public int getReplicateCount() {
+		return replicates.size();
+	}
+
+
+	/**
+	 * @return the results of all the replicates, failed ones included
+	 */
+	public List<SimulationResult> getReplicates() {
+		return Collections.unmodifiableList(replicates);
+	}
+
+
+	/**
+	 * @return the results of the replicates that didn't fail
+	 */
+	public List<SimulationResult> getSuccessfulReplicates() {
+		List<SimulationResult> successfulReplicates = new ArrayList<SimulationResult>();
+		for (SimulationResult replicate: replicates) {
+			if (!replicate.isFailed()) {
+				successfulReplicates.add(replicate);
+			}
+		}
+		return successfulReplicates;
+	}
+
+
+	/**
+	 * @return true if all the replicates failed
+	 */
+	public boolean isFailed() {
+		return getSuccessfulReplicates().isEmpty();
+	}
+}
@@ -22,19 +22,15 @@
 package edu.yu.einstein.replicationTimingSimulation;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.Callable;
 
-import cern.jet.random.Binomial;
 import edu.yu.einstein.genplay.core.manager.project.ProjectChromosomes;
 import edu.yu.einstein.genplay.core.manager.project.ProjectManager;
 import edu.yu.einstein.genplay.core.operation.Operation;
-import edu.yu.einstein.genplay.core.operationPool.OperationPool;
 import edu.yu.einstein.genplay.dataStructure.chromosome.Chromosome;
 import edu.yu.einstein.genplay.dataStructure.enums.SCWListType;
 import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWList;
-import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWListBuilder;
-import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SimpleSCWList.SimpleSCWList;
 import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
 import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
 
@@ -49,7 +45,9 @@ public class ResampleLayers implements Operation<SCWList[]>{
 	private final SCWList 	g1List;				// input list with the G1 phase data
 	private final double	percentageToAdd;	// percentage of reads to add in the S phase
 	private final int 		readIncreaseFactor; // multiply all the input reads by this factor
-	private boolean			stopped = false;	// true if the operation must be stopped
+	private final double 	binomialMaxError;	// maximum error of the normal approximation of the binomial draws with a large n, 0 to always draw exactly
+	private final long 		seed;				// seed of the binomial draws
+	private volatile boolean	stopped = false;	// true if the operation must be stopped
 
 
 	/**
@@ -58,67 +56,203 @@ public class ResampleLayers implements Operation<SCWList[]>{
 	 * @param g1List input list with the G1 phase data
 	 * @param percentageToAdd percentage of reads to add in the S phase
 	 * @param readIncreaseFactor multiply all the input reads by this factor
+	 * @param binomialMaxError maximum distance between the binomial and normal cumulative distributions
+	 * when a binomial draw is approximated with a normal deviate, 0 to always draw exactly
+	 * @param seed seed of the binomial draws. Two operations with the same inputs and seed give the same lists
 	 */
-	public ResampleLayers(SCWList sList, SCWList g1List, double percentageToAdd, int readIncreaseFactor) {
+	public ResampleLayers(SCWList sList, SCWList g1List, double percentageToAdd, int readIncreaseFactor, double binomialMaxError, long seed) {
 		this.sList = sList;
 		this.g1List = g1List;
 		this.percentageToAdd = percentageToAdd;
 		this.readIncreaseFactor = readIncreaseFactor;
+		this.binomialMaxError = binomialMaxError;
+		this.seed = seed;
 	}
 
 
 	/**
 	 * Computes the resample lists.
+	 * The chromosomes are split in chunks resampled in parallel.
+	 * The chunks write their windows directly in the primitive arrays of their chromosome,
+	 * each chunk in its own range of indexes, so the result lists are built without synchronization.
+	 * Each chunk collects the (n, p) pairs of its windows and draws them in one batch with its own {@link BinomialSampler}.
+	 * The chunks have {@link BinomialSampler#WINDOWS_PER_SEED} windows and the seed of their sampler is derived from the seed of the operation,
+	 * the chromosome and the chunk so the resampling is reproducible whatever the number of threads.
+	 * When the input lists store read counts in {@link CountSCWListView} the resampled counts are stored the same way
+	 * and the resampled lists share the positions of the windows of the input lists. Otherwise the windows are copied with 32 bit scores.
+	 * The chromosomes where the S and G1 lists have different windows (eg: sparse lists) are read with a {@link WindowMergeJoin}:
+	 * the resampled lists have the intervals of the join, shared by the S and G1 results, and the intervals without reads stay out of the lists.
+	 * The reads of a window split by the join are shared between its intervals so the total of each list is kept.
+	 * Each chunk streams its own join from the start of its first interval.
 	 * @return an array where the first element is the S result {@link SCWList}
 	 * and the second element is the G1 {@link SCWList}
 	 */
 	@Override
 	public SCWList[] compute() throws Exception {
 		ProjectChromosomes projectChromosomes = ProjectManager.getInstance().getProjectChromosomes();
-		final OperationPool op = OperationPool.getInstance();
-		final Collection<Callable<Void>> threadList = new ArrayList<Callable<Void>>();
-		final SCWListBuilder sListBuilder = new SCWListBuilder(sList);
-		final SCWListBuilder g1ListBuilder = new SCWListBuilder(g1List);
-		for (final Chromosome chromosome: projectChromosomes) {
-			final ListView<ScoredChromosomeWindow> currentSList = sList.get(chromosome);
-			final ListView<ScoredChromosomeWindow> currentG1List = g1List.get(chromosome);
-			Callable<Void> currentThread = new Callable<Void>() {
+		ChunkPool pool = ChunkPool.getInstance();
+		boolean isCountList = true;
+		for (Chromosome chromosome: projectChromosomes) {
+			isCountList &= (sList.get(chromosome) instanceof CountSCWListView) && (g1List.get(chromosome) instanceof CountSCWListView);
+		}
+		int chromosomeCount = projectChromosomes.size();
+		// intervals of the join of the chromosomes where the S and G1 lists have different windows, null for the aligned chromosomes
+		final int[][] joinStarts = new int[chromosomeCount][];
+		final int[][] joinStops = new int[chromosomeCount][];
+		List<Callable<Void>> joinList = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < chromosomeCount; i++) {
+			final int chromosomeIndex = i;
+			final ListView<ScoredChromosomeWindow> currentSList = sList.get(projectChromosomes.get(i));
+			final ListView<ScoredChromosomeWindow> currentG1List = g1List.get(projectChromosomes.get(i));
+			joinList.add(new Callable<Void>() {
 
 				@Override
 				public Void call() throws Exception {
-					for (int j = 0; (j < currentSList.size()) && !stopped; j++) {
-						float currentS = currentSList.get(j).getScore() * readIncreaseFactor;
-						float currentG1 = currentG1List.get(j).getScore() * readIncreaseFactor;
-						float newS;
-						float newG1;
-						if (currentS == 0) {
-							newS = 0;
-							newG1 = currentG1;
-						} else if (currentG1 == 0) {
-							newS = (int) (currentS + (currentS * percentageToAdd));
-							newG1 = 0;
-						} else {
-							int oldK = (int) currentS;
-							int oldN = (int) (currentS + currentG1);
-							int readToAdd = (int) Math.round(oldK * percentageToAdd);
-							int newK = oldK + readToAdd;
-							int newN = oldN + readToAdd;
-							newS = Binomial.staticNextInt(newN, newK / (double) newN);
-							newG1 = newN - newS;
-						}
-						sListBuilder.addElementToBuild(chromosome, currentSList.get(j).getStart(), currentSList.get(j).getStop(), newS);
-						g1ListBuilder.addElementToBuild(chromosome, currentG1List.get(j).getStart(), currentG1List.get(j).getStop(), newG1);
+					if (stopped || WindowMergeJoin.isAligned(currentSList, currentG1List)) {
+						return null;
+					}
+					// first pass to count the intervals, second pass to save them
+					int size = 0;
+					WindowMergeJoin join = new WindowMergeJoin(currentSList, currentG1List);
+					while (join.next()) {
+						size++;
+					}
+					int[] starts = new int[size];
+					int[] stops = new int[size];
+					join = new WindowMergeJoin(currentSList, currentG1List);
+					for (int j = 0; join.next(); j++) {
+						starts[j] = join.getStart();
+						stops[j] = join.getStop();
 					}
-					// tell the operation pool that a chromosome is done
-					op.notifyDone();
+					joinStarts[chromosomeIndex] = starts;
+					joinStops[chromosomeIndex] = stops;
 					return null;
 				}
-			};
+			});
+		}
+		pool.invokeAll(joinList);
+		// windows of the result lists indexed by chromosome, the counts are used for the count lists and the other arrays for the other lists
+		final int[][] sStarts = new int[chromosomeCount][];
+		final int[][] sStops = new int[chromosomeCount][];
+		final float[][] sScores = new float[chromosomeCount][];
+		final int[][] g1Starts = new int[chromosomeCount][];
+		final int[][] g1Stops = new int[chromosomeCount][];
+		final float[][] g1Scores = new float[chromosomeCount][];
+		final CountSCWListView.CountBuilder[] sCounts = new CountSCWListView.CountBuilder[chromosomeCount];
+		final CountSCWListView.CountBuilder[] g1Counts = new CountSCWListView.CountBuilder[chromosomeCount];
+		List<Callable<Void>> chunkList = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < chromosomeCount; i++) {
+			final int chromosomeIndex = i;
+			final ListView<ScoredChromosomeWindow> currentSList = sList.get(projectChromosomes.get(i));
+			final ListView<ScoredChromosomeWindow> currentG1List = g1List.get(projectChromosomes.get(i));
+			final boolean isJoined = joinStarts[i] != null;
+			int size = isJoined ? joinStarts[i].length : currentSList.size();
+			if (isCountList) {
+				sCounts[i] = new CountSCWListView.CountBuilder(size);
+				g1Counts[i] = new CountSCWListView.CountBuilder(size);
+			} else if (isJoined) {
+				// the S and G1 results share the intervals of the join
+				sStarts[i] = joinStarts[i];
+				sStops[i] = joinStops[i];
+				sScores[i] = new float[size];
+				g1Starts[i] = joinStarts[i];
+				g1Stops[i] = joinStops[i];
+				g1Scores[i] = new float[size];
+			} else {
+				sStarts[i] = new int[size];
+				sStops[i] = new int[size];
+				sScores[i] = new float[size];
+				g1Starts[i] = new int[size];
+				g1Stops[i] = new int[size];
+				g1Scores[i] = new float[size];
+			}
+			for (final ChromosomeChunk chunk: ChromosomeChunk.split(projectChromosomes.get(i), size, BinomialSampler.WINDOWS_PER_SEED)) {
+				Callable<Void> currentChunk = new Callable<Void>() {
 
-			threadList.add(currentThread);
+					@Override
+					public Void call() throws Exception {
+						float[] newS = sScores[chromosomeIndex];
+						float[] newG1 = g1Scores[chromosomeIndex];
+						CountSCWListView.CountBuilder newSCounts = sCounts[chromosomeIndex];
+						CountSCWListView.CountBuilder newG1Counts = g1Counts[chromosomeIndex];
+						// binomial draws of the chunk
+						int[] drawIndexes = new int[chunk.size()];
+						int[] drawNs = new int[chunk.size()];
+						double[] drawPs = new double[chunk.size()];
+						int drawCount = 0;
+						WindowMergeJoin join = null;
+						if (isJoined && (chunk.size() > 0)) {
+							join = new WindowMergeJoin(currentSList, currentG1List);
+							join.moveTo(joinStarts[chromosomeIndex][chunk.getStart()]);
+						}
+						for (int j = chunk.getStart(); (j < chunk.getStop()) && !stopped; j++) {
+							float currentS;
+							float currentG1;
+							if (isJoined) {
+								join.next();
+								currentS = join.getScore1() * readIncreaseFactor;
+								currentG1 = join.getScore2() * readIncreaseFactor;
+							} else {
+								ScoredChromosomeWindow currentSWindow = currentSList.get(j);
+								ScoredChromosomeWindow currentG1Window = currentG1List.get(j);
+								if (newSCounts == null) {
+									sStarts[chromosomeIndex][j] = currentSWindow.getStart();
+									sStops[chromosomeIndex][j] = currentSWindow.getStop();
+									g1Starts[chromosomeIndex][j] = currentG1Window.getStart();
+									g1Stops[chromosomeIndex][j] = currentG1Window.getStop();
+								}
+								currentS = currentSWindow.getScore() * readIncreaseFactor;
+								currentG1 = currentG1Window.getScore() * readIncreaseFactor;
+							}
+							if (currentS == 0) {
+								setScore(newS, newSCounts, j, 0);
+								setScore(newG1, newG1Counts, j, currentG1);
+							} else if (currentG1 == 0) {
+								setScore(newS, newSCounts, j, (int) (currentS + (currentS * percentageToAdd)));
+								setScore(newG1, newG1Counts, j, 0);
+							} else {
+								int oldK = (int) currentS;
+								int oldN = (int) (currentS + currentG1);
+								int readToAdd = (int) Math.round(oldK * percentageToAdd);
+								int newK = oldK + readToAdd;
+								int newN = oldN + readToAdd;
+								drawIndexes[drawCount] = j;
+								drawNs[drawCount] = newN;
+								drawPs[drawCount] = newK / (double) newN;
+								drawCount++;
+							}
+						}
+						int[] draws = new int[drawCount];
+						int chunkSeed = BinomialSampler.computeSeed(seed, chromosomeIndex, chunk.getIndex());
+						new BinomialSampler(chunkSeed, binomialMaxError).nextInts(drawNs, drawPs, draws, drawCount);
+						for (int j = 0; j < drawCount; j++) {
+							setScore(newS, newSCounts, drawIndexes[j], draws[j]);
+							setScore(newG1, newG1Counts, drawIndexes[j], drawNs[j] - draws[j]);
+						}
+						SimulationMetrics.getInstance().addWindowsProcessed(chunk.size());
+						return null;
+					}
+				};
+				chunkList.add(currentChunk);
+			}
+		}
+		pool.invokeAll(chunkList);
+		List<ListView<ScoredChromosomeWindow>> sListViews = new ArrayList<ListView<ScoredChromosomeWindow>>(chromosomeCount);
+		List<ListView<ScoredChromosomeWindow>> g1ListViews = new ArrayList<ListView<ScoredChromosomeWindow>>(chromosomeCount);
+		for (int i = 0; i < chromosomeCount; i++) {
+			if (isCountList && (joinStarts[i] != null)) {
+				CountSCWListView joinPositions = CountSCWListView.createWithPositions(joinStarts[i], joinStops[i], joinStarts[i].length);
+				sListViews.add(joinPositions.withCounts(sCounts[i]));
+				g1ListViews.add(joinPositions.withCounts(g1Counts[i]));
+			} else if (isCountList) {
+				sListViews.add(((CountSCWListView) sList.get(projectChromosomes.get(i))).withCounts(sCounts[i]));
+				g1ListViews.add(((CountSCWListView) g1List.get(projectChromosomes.get(i))).withCounts(g1Counts[i]));
+			} else {
+				sListViews.add(new PrimitiveSCWListView(sStarts[i], sStops[i], sScores[i], sScores[i].length));
+				g1ListViews.add(new PrimitiveSCWListView(g1Starts[i], g1Stops[i], g1Scores[i], g1Scores[i].length));
+			}
 		}
-		op.startPool(threadList);
-		SCWList[] result = {sListBuilder.getSCWList(), g1ListBuilder.getSCWList()};
+		SCWList[] result = {new PrimitiveSCWList(sListViews, SCWListType.GENERIC), new PrimitiveSCWList(g1ListViews, SCWListType.GENERIC)};
 		return result;
 	}
 
@@ -137,7 +271,23 @@ public class ResampleLayers implements Operation<SCWList[]>{
 
 	@Override
 	public int getStepCount() {
-		return 1 + (SimpleSCWList.getCreationStepCount(SCWListType.GENERIC) * 2);
+		return 1;
+	}
+
+
+	/**
+	 * Sets the resampled score of a window in the scores of a 32 bit list or in the counts of a count list
+	 * @param scores scores of the windows of a 32 bit list, null for a count list
+	 * @param counts counts of the windows of a count list, null for a 32 bit list
+	 * @param index index of the window
+	 * @param score resampled score of the window, an integer for a count list
+	 */
+	private static void setScore(float[] scores, CountSCWListView.CountBuilder counts, int index, float score) {
+		if (counts != null) {
+			counts.set(index, (int) score);
+		} else {
+			scores[index] = score;
+		}
 	}
 
 
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+/**
+ * Parameters identifying a cell of a simulation batch in a {@link ResultStore}:
+ * the dataset, the read increase factor, the island size, the percentage of reads added and the track configuration.
+ * The replicates of a cell share the same key.
+ * @author Julien Lajugie
+ */
+public class ResultKey {
+
+	private final String 				datasetName;			// name of the dataset, empty for a single dataset run
+	private final double 				readIncreaseFactor;		// factor applied to the read counts of the input files (lower than 1 for the thinned inputs)
+	private final int 					islandSize;				// size of the islands
+	private final double 				percentageReadsAdded;	// percentage of reads added in the islands
+	private final TrackConfiguration 	configuration;			// track configuration and island finder parameters
+
+
+	/**
+	 * Creates an instance of {@link ResultKey}
+	 * @param datasetName name of the dataset, empty for a single dataset run
+	 * @param readIncreaseFactor factor applied to the read counts of the input files
+	 * @param islandSize size of the islands
+	 * @param percentageReadsAdded percentage of reads added in the islands
+	 * @param configuration track configuration and island finder parameters
+	 */
+	public ResultKey(String datasetName, double readIncreaseFactor, int islandSize, double percentageReadsAdded, TrackConfiguration configuration) {
+		this.datasetName = datasetName;
+		this.readIncreaseFactor = readIncreaseFactor;
+		this.islandSize = islandSize;
+		this.percentageReadsAdded = percentageReadsAdded;
+		this.configuration = configuration;
+	}
+
+
+	/**
+	 * Creates the key of the result of a simulation
+	 * @param datasetName name of the dataset, empty for a single dataset run
+	 * @param readIncreaseFactor factor applied to the read counts of the input files
+	 * @param result result of a simulation
+	 */
+	public ResultKey(String datasetName, double readIncreaseFactor, SimulationResult result) {
+		this(datasetName, readIncreaseFactor, result.getIslandSize(), result.getPercentageReadsAdded(), result.getConfiguration());
+	}
+
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof ResultKey)) {
+			return false;
+		}
+		ResultKey other = (ResultKey) obj;
+		return datasetName.equals(other.datasetName)
+				&& (Double.doubleToLongBits(readIncreaseFactor) == Double.doubleToLongBits(other.readIncreaseFactor))
+				&& (islandSize == other.islandSize)
+				&& (Double.doubleToLongBits(percentageReadsAdded) == Double.doubleToLongBits(other.percentageReadsAdded))
+				&& configuration.equals(other.configuration);
+	}
+
+
+	/**
+	 * Formats a read increase factor for the names of the output directories and the messages:
+	 * the integer factors are written without decimals
+	 * @param readIncreaseFactor factor applied to the read counts of the input files
+	 * @return the formatted factor
+	 */
+	public static String formatReadIncreaseFactor(double readIncreaseFactor) {
+		if (readIncreaseFactor == Math.rint(readIncreaseFactor)) {
+			return Long.toString((long) readIncreaseFactor);
+		}
+		return Double.toString(readIncreaseFactor);
+	}
+
+
+	/**
+	 * @return the track configuration (bin size, gaussian width and island finder parameters) of the cell
+	 */
+	public TrackConfiguration getConfiguration() {
+		return configuration;
+	}
+
+
+	/**
+	 * @return the name of the dataset, empty for a single dataset run
+	 */
+	public String getDatasetName() {
+		return datasetName;
+	}
+
+
+	/**
+	 * @return the size of the islands
+	 */
+	public int getIslandSize() {
+		return islandSize;
+	}
+
+
+	/**
+	 * @return the percentage of reads added in the islands
+	 */
+	public double getPercentageReadsAdded() {
+		return percentageReadsAdded;
+	}
+
+
+	/**
+	 * @return the factor applied to the read counts of the input files
+	 */
+	public double getReadIncreaseFactor() {
+		return readIncreaseFactor;
+	}
+
+
+	@Override
+	public int hashCode() {
+		long factorBits = Double.doubleToLongBits(readIncreaseFactor);
+		long pctBits = Double.doubleToLongBits(percentageReadsAdded);
+		int hash = datasetName.hashCode();
+		hash = (31 * hash) + (int) (factorBits ^ (factorBits >>> 32));
+		hash = (31 * hash) + islandSize;
+		hash = (31 * hash) + (int) (pctBits ^ (pctBits >>> 32));
+		hash = (31 * hash) + configuration.hashCode();
+		return hash;
+	}
+
+
+	@Override
+	public String toString() {
+		return "dataset=" + datasetName + ", factor=" + formatReadIncreaseFactor(readIncreaseFactor) + ", island=" + islandSize + ", pct=" + percentageReadsAdded + ", " + configuration;
+	}
+}
@@ -0,0 +1,452 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Append-only binary store of the results of the simulations.
+ * The store has one record per dataset, parameters and replicate with all the fields of the {@link SimulationResult}.
+ * Each record is prefixed with its length so a record truncated by a crash is detected and dropped when the store is reopened.
+ * The header of the store has the parameters of the batches writing in the store and a store can't be reopened
+ * by a batch with different parameters so the results of different designs are never mixed.
+ * Each opening of the store is a new run and the records of a run replace all the records of the previous runs with the same key,
+ * so the replicates of a cell always come from a single run.
+ * An index of the offsets of the records by {@link ResultKey} is saved next to the store when the store is closed.
+ * The index is rebuilt by scanning the store when it's missing or out of date.
+ * @author Julien Lajugie
+ */
+public class ResultStore {
+
+	/** Default name of the store file in the output directory of a batch */
+	public final static String DEFAULT_FILE_NAME = "simulation_results.rts";
+
+	private final static int 	STORE_MAGIC 	= 0x52545352;	// first bytes of a store file ("RTSR")
+	private final static int 	INDEX_MAGIC 	= 0x52545349;	// first bytes of an index file ("RTSI")
+	private final static int 	FORMAT_VERSION 	= 1;			// version of the store and index formats
+	private final static String INDEX_EXTENSION = ".idx";		// extension added to the name of the store for the index file
+
+	/** Run number selecting the latest run of each key */
+	public final static int LATEST_RUN = 0;
+
+	private final File 										file;				// store file
+	private final File 										indexFile;			// index file
+	private final Map<ResultKey, SortedMap<Integer, Long>> 	index;				// offsets of the records of the latest run of each key indexed by key and replicate number
+	private final Map<ResultKey, Integer> 					keyRuns;			// latest run of each key
+	private final DataOutputStream 							out;				// stream appending the records to the store
+	private String 											batchParameters;	// parameters of the batches writing in the store
+	private long 											headerLength;		// length of the header of the store in bytes
+	private long 											length;				// length of the store in bytes
+	private int 											lastRun;			// last run with records in the store
+	private final int 										run;				// run of the records appended since the store was opened
+
+
+	/**
+	 * Opens a store to read its records. The store is created if the file doesn't exist
+	 * @param file store file
+	 * @throws IOException
+	 */
+	public ResultStore(File file) throws IOException {
+		this(file, null);
+	}
+
+
+	/**
+	 * Opens a store for a batch. The store is created with the parameters of the batch if the file doesn't exist
+	 * @param file store file
+	 * @param batchParameters parameters of the batch. Null to open a store written with any parameters
+	 * @throws IOException if the store was written by a batch with different parameters
+	 */
+	public ResultStore(File file, String batchParameters) throws IOException {
+		this.file = file;
+		indexFile = new File(file.getPath() + INDEX_EXTENSION);
+		index = new LinkedHashMap<ResultKey, SortedMap<Integer, Long>>();
+		keyRuns = new HashMap<ResultKey, Integer>();
+		if (!file.exists() || (file.length() == 0)) {
+			this.batchParameters = batchParameters == null ? "" : batchParameters;
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream headerOut = new DataOutputStream(bytes);
+			headerOut.writeInt(STORE_MAGIC);
+			headerOut.writeInt(FORMAT_VERSION);
+			headerOut.writeUTF(this.batchParameters);
+			headerOut.close();
+			FileOutputStream fileOut = new FileOutputStream(file);
+			try {
+				bytes.writeTo(fileOut);
+			} finally {
+				fileOut.close();
+			}
+			headerLength = bytes.size();
+			length = headerLength;
+		} else {
+			readHeader();
+			if ((batchParameters != null) && !batchParameters.equals(this.batchParameters)) {
+				throw new IOException("The result store " + file.getPath() + " was written by a batch with different parameters ("
+						+ this.batchParameters + "). Use another output directory or result store");
+			}
+			if (!loadIndex()) {
+				scan();
+			}
+		}
+		run = lastRun + 1;
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+	}
+
+
+	/**
+	 * Appends the result of a replicate of a simulation to the store.
+	 * The first record of a key in the current run replaces the records of the key written by the previous runs
+	 * @param datasetName name of the dataset, empty for a single dataset run
+	 * @param readIncreaseFactor factor applied to the read counts of the input files
+	 * @param replicate replicate number of the result
+	 * @param result result of the simulation
+	 * @throws IOException
+	 */
+	public synchronized void append(String datasetName, double readIncreaseFactor, int replicate, SimulationResult result) throws IOException {
+		ResultKey key = new ResultKey(datasetName, readIncreaseFactor, result);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream recordOut = new DataOutputStream(bytes);
+		writeKey(recordOut, key);
+		recordOut.writeInt(run);
+		recordOut.writeInt(replicate);
+		recordOut.writeBoolean(result.isFailed());
+		if (result.isFailed()) {
+			recordOut.writeUTF(result.getFailureReason());
+		} else {
+			recordOut.writeInt(result.getIslandCreatedCount());
+			recordOut.writeInt(result.getIslandFoundCount());
+			recordOut.writeInt(result.getFalsePositiveCount());
+			recordOut.writeInt(result.getFalseNegativeCount());
+			recordOut.writeInt(result.getIslandAverageSize());
+			recordOut.writeDouble(result.getIslandSizeStdErr());
+			recordOut.writeDouble(result.getSampleCtrlAverageDifference());
+			recordOut.writeDouble(result.getSampleCtrlDifferenceStdErr());
+		}
+		recordOut.close();
+		out.writeInt(bytes.size());
+		bytes.writeTo(out);
+		// the record is flushed right away so it survives a crash of the batch
+		out.flush();
+		indexRecord(key, run, replicate, length);
+		length += 4 + bytes.size();
+	}
+
+
+	/**
+	 * Closes the store and saves its index
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		out.close();
+		DataOutputStream indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+		try {
+			indexOut.writeInt(INDEX_MAGIC);
+			indexOut.writeInt(FORMAT_VERSION);
+			indexOut.writeLong(length);
+			indexOut.writeInt(lastRun);
+			indexOut.writeInt(index.size());
+			for (Map.Entry<ResultKey, SortedMap<Integer, Long>> entry: index.entrySet()) {
+				writeKey(indexOut, entry.getKey());
+				indexOut.writeInt(keyRuns.get(entry.getKey()));
+				indexOut.writeInt(entry.getValue().size());
+				for (Map.Entry<Integer, Long> replicate: entry.getValue().entrySet()) {
+					indexOut.writeInt(replicate.getKey());
+					indexOut.writeLong(replicate.getValue());
+				}
+			}
+		} finally {
+			indexOut.close();
+		}
+	}
+
+
+	/**
+	 * @return the parameters of the batches writing in the store
+	 */
+	public synchronized String getBatchParameters() {
+		return batchParameters;
+	}
+
+
+	/**
+	 * @return the keys of the store in the order they were first appended
+	 */
+	public synchronized List<ResultKey> getKeys() {
+		return new ArrayList<ResultKey>(index.keySet());
+	}
+
+
+	/**
+	 * @param run a run of the store, {@link #LATEST_RUN} for all the keys
+	 * @return the keys whose latest run is the specified run in the order they were first appended
+	 */
+	public synchronized List<ResultKey> getKeys(int run) {
+		List<ResultKey> keys = new ArrayList<ResultKey>();
+		for (ResultKey key: index.keySet()) {
+			if ((run == LATEST_RUN) || (keyRuns.get(key) == run)) {
+				keys.add(key);
+			}
+		}
+		return keys;
+	}
+
+
+	/**
+	 * @param key key of a cell
+	 * @param run run of the replicates, {@link #LATEST_RUN} for the latest run of the cell
+	 * @return the results of the replicates of the specified cell and run ordered by replicate number. An empty list if the cell is not in the store or not in the run
+	 * @throws IOException
+	 */
+	public synchronized List<SimulationResult> getReplicates(ResultKey key, int run) throws IOException {
+		List<SimulationResult> results = new ArrayList<SimulationResult>();
+		SortedMap<Integer, Long> offsets = index.get(key);
+		if ((offsets == null) || ((run != LATEST_RUN) && (keyRuns.get(key) != run))) {
+			return results;
+		}
+		out.flush();
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			for (long offset: offsets.values()) {
+				in.seek(offset);
+				byte[] record = new byte[in.readInt()];
+				in.readFully(record);
+				results.add(readResult(new DataInputStream(new ByteArrayInputStream(record))));
+			}
+		} finally {
+			in.close();
+		}
+		return results;
+	}
+
+
+	/**
+	 * @return the run of the records appended since the store was opened
+	 */
+	public int getRun() {
+		return run;
+	}
+
+
+	/**
+	 * Adds a record to the index. The records of the previous runs with the same key are removed from the index
+	 * @param key key of the record
+	 * @param recordRun run of the record
+	 * @param replicate replicate number of the record
+	 * @param offset offset of the record in the store
+	 */
+	private void indexRecord(ResultKey key, int recordRun, int replicate, long offset) {
+		SortedMap<Integer, Long> offsets = index.get(key);
+		if ((offsets == null) || (keyRuns.get(key) < recordRun)) {
+			offsets = new TreeMap<Integer, Long>();
+			index.put(key, offsets);
+			keyRuns.put(key, recordRun);
+		}
+		offsets.put(replicate, offset);
+		lastRun = Math.max(lastRun, recordRun);
+	}
+
+
+	/**
+	 * Loads the index of the store
+	 * @return true if the index was loaded, false if it's missing, unreadable or out of date
+	 * @throws IOException
+	 */
+	private boolean loadIndex() throws IOException {
+		if (!indexFile.exists()) {
+			return false;
+		}
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+		try {
+			if ((in.readInt() != INDEX_MAGIC) || (in.readInt() != FORMAT_VERSION) || (in.readLong() != file.length())) {
+				return false;
+			}
+			lastRun = in.readInt();
+			int keyCount = in.readInt();
+			for (int i = 0; i < keyCount; i++) {
+				ResultKey key = readKey(in);
+				int keyRun = in.readInt();
+				int replicateCount = in.readInt();
+				for (int j = 0; j < replicateCount; j++) {
+					int replicate = in.readInt();
+					indexRecord(key, keyRun, replicate, in.readLong());
+				}
+			}
+			length = file.length();
+			return true;
+		} catch (IOException e) {
+			index.clear();
+			keyRuns.clear();
+			lastRun = 0;
+			return false;
+		} finally {
+			in.close();
+		}
+	}
+
+
+	/**
+	 * Reads a key
+	 * @param in input positioned at the beginning of a key
+	 * @return a {@link ResultKey}
+	 * @throws IOException
+	 */
+	private static ResultKey readKey(DataInputStream in) throws IOException {
+		String datasetName = in.readUTF();
+		double readIncreaseFactor = in.readDouble();
+		int islandSize = in.readInt();
+		double percentageReadsAdded = in.readDouble();
+		int binSize = in.readInt();
+		int gaussianWidth = in.readInt();
+		IslandFinderParameters islandFinderParameters = new IslandFinderParameters(in.readFloat(), in.readInt(), in.readInt());
+		return new ResultKey(datasetName, readIncreaseFactor, islandSize, percentageReadsAdded, new TrackConfiguration(binSize, gaussianWidth, islandFinderParameters));
+	}
+
+
+	/**
+	 * Reads the result of a record
+	 * @param in input positioned at the beginning of a record (after its length)
+	 * @return the {@link SimulationResult} of the record
+	 * @throws IOException
+	 */
+	private static SimulationResult readResult(DataInputStream in) throws IOException {
+		ResultKey key = readKey(in);
+		int islandSize = key.getIslandSize();
+		double percentageReadsAdded = key.getPercentageReadsAdded();
+		int binSize = key.getConfiguration().getBinSize();
+		int gaussianWidth = key.getConfiguration().getGaussianWidth();
+		IslandFinderParameters islandFinderParameters = key.getConfiguration().getIslandFinderParameters();
+		// run and replicate number
+		in.readInt();
+		in.readInt();
+		if (in.readBoolean()) {
+			return SimulationResult.createFailedResult(islandSize, percentageReadsAdded, binSize, gaussianWidth, islandFinderParameters, in.readUTF());
+		}
+		int islandCreatedCount = in.readInt();
+		int islandFoundCount = in.readInt();
+		int falsePositiveCount = in.readInt();
+		int falseNegativeCount = in.readInt();
+		int islandAverageSize = in.readInt();
+		double islandSizeStdErr = in.readDouble();
+		double sampleCtrlAverageDifference = in.readDouble();
+		double sampleCtrlDifferenceStdErr = in.readDouble();
+		return new SimulationResult(islandSize, percentageReadsAdded, binSize, gaussianWidth, islandFinderParameters,
+				islandCreatedCount, islandFoundCount,
+				falsePositiveCount, falseNegativeCount,
+				islandAverageSize, islandSizeStdErr,
+				sampleCtrlAverageDifference, sampleCtrlDifferenceStdErr,
+				null);
+	}
+
+
+	/**
+	 * Reads the header of the store: its version and the parameters of its batches
+	 * @throws IOException if the file is not a result store or if its version is not supported
+	 */
+	private void readHeader() throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			if ((file.length() < 8) || (in.readInt() != STORE_MAGIC)) {
+				throw new IOException(file.getPath() + " is not a result store");
+			}
+			int fileVersion = in.readInt();
+			if (fileVersion != FORMAT_VERSION) {
+				throw new IOException("Unsupported result store version " + fileVersion + " in " + file.getPath());
+			}
+			batchParameters = in.readUTF();
+			headerLength = in.getFilePointer();
+		} finally {
+			in.close();
+		}
+	}
+
+
+	/**
+	 * Rebuilds the index by scanning the records of the store.
+	 * A truncated record at the end of the store is removed.
+	 * @throws IOException
+	 */
+	private void scan() throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "rw");
+		try {
+			long fileLength = in.length();
+			long offset = headerLength;
+			while ((offset + 4) <= fileLength) {
+				in.seek(offset);
+				int recordLength = in.readInt();
+				if ((recordLength < 0) || ((offset + 4 + recordLength) > fileLength)) {
+					break;
+				}
+				byte[] record = new byte[recordLength];
+				in.readFully(record);
+				DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(record));
+				ResultKey key = readKey(recordIn);
+				int recordRun = recordIn.readInt();
+				indexRecord(key, recordRun, recordIn.readInt(), offset);
+				offset += 4 + recordLength;
+			}
+			if (offset < fileLength) {
+				System.err.println("Truncated record removed at the end of the result store " + file.getPath());
+				in.setLength(offset);
+			}
+			length = offset;
+		} finally {
+			in.close();
+		}
+	}
+
+
+	/**
+	 * Writes a key
+	 * @param out output
+	 * @param key key to write
+	 * @throws IOException
+	 */
+	private static void writeKey(DataOutputStream out, ResultKey key) throws IOException {
+		out.writeUTF(key.getDatasetName());
+		out.writeDouble(key.getReadIncreaseFactor());
+		out.writeInt(key.getIslandSize());
+		out.writeDouble(key.getPercentageReadsAdded());
+		out.writeInt(key.getConfiguration().getBinSize());
+		out.writeInt(key.getConfiguration().getGaussianWidth());
+		IslandFinderParameters islandFinderParameters = key.getConfiguration().getIslandFinderParameters();
+		out.writeFloat(islandFinderParameters.getMinWindowScore());
+		out.writeInt(islandFinderParameters.getGap());
+		out.writeInt(islandFinderParameters.getMinLength());
+	}
+}
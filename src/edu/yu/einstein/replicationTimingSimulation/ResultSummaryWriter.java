@@ -0,0 +1,401 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+
+/**
+ * Renders the summary tables of the simulations from a {@link ResultStore}.
+ * There is one summary file per dataset, read increase factor and track configuration.
+ * Each file has a table per field of the results with the percentages of reads added as rows and the island sizes as columns.
+ * The cells with more than one replicate show the mean of the replicates and the cells missing from the store show NA.
+ * The summaries of a batch show the replicates of the run of the batch and the summaries rendered again from a store
+ * show the replicates of the latest run of each cell.
+ * The summaries of quick-look simulations restricted to some regions of the genome also have the counts extrapolated to the genome.
+ * The summaries of the surrogate runs show the false positive and false negative rates of the cells that were not simulated
+ * estimated by a {@link PowerModel} fitted on the simulated cells, and a table flagging the estimated cells.
+ * The class has a main method to render the summaries of an existing store.
+ * @author Julien Lajugie
+ */
+public class ResultSummaryWriter {
+
+	/**
+	 * Class for JCommander to parse the command line arguments
+	 * @author Julien Lajugie
+	 */
+	public static class Args {
+		@Parameter(names = "-store", description = "Result store file", required = true)
+		private String storeFile;
+
+		@Parameter(names = "-out", description = "Output directory of the summaries (directory of the store if not specified)")
+		private String outDir;
+
+		@Parameter(names = "-extrapolationFactor", description = "Factor applied to the counts of quick-look simulations restricted to some regions to extrapolate them to the genome (1 for simulations on the whole genome)")
+		private double extrapolationFactor = 1;
+
+		@Parameter(names = "-estimateMissingCells", description = "Estimates the false positive and false negative rates of the cells missing from the store with a power model fitted on the simulated cells (for the stores of the surrogate runs)")
+		private boolean estimateMissingCells = false;
+	}
+
+	// different fields of the result of a simulation
+	private final static int ISLAND_CREATED_COUNT = 0;
+	private final static int ISLAND_FOUND_COUNT = 1;
+	private final static int FALSE_POSITIVES_RATE = 2;
+	private final static int FALSE_POSITIVES_COUNT = 3;
+	private final static int FALSE_NEGATIVES_RATE = 4;
+	private final static int FALSE_NEGATIVES_COUNT = 5;
+	private final static int ISLAND_SIZE_MEAN = 6;
+	private final static int ISLAND_SIZE_STD_ERR = 7;
+	private final static int SAMPLE_CTRL_DIFFERENCE_MEAN = 8;
+	private final static int SAMPLE_CTRL_DIFFERENCE_STD_ERR = 9;
+	private final static int REPLICATE_COUNT = 10;
+	private final static int FALSE_POSITIVES_RATE_CI_HALF_WIDTH = 11;
+	private final static int FALSE_NEGATIVES_RATE_CI_HALF_WIDTH = 12;
+	private final static int ESTIMATED_CELL = 13;
+
+	// fields of the result of a simulation that are counts extrapolated to the genome by the quick-look simulations
+	private final static int[] EXTRAPOLATED_FIELDS = {ISLAND_CREATED_COUNT, ISLAND_FOUND_COUNT, FALSE_POSITIVES_COUNT, FALSE_NEGATIVES_COUNT};
+	private final static String[] EXTRAPOLATED_FIELD_TITLES = {"ISLAND CREATED COUNT", "ISLAND FOUND COUNT", "FALSE POSITIVES COUNT", "FALSE NEGATIVES COUNT"};
+
+
+	/**
+	 * @param result result of a simulation
+	 * @param field a field of the result of a simulation
+	 * @return the value of the specified field of the result
+	 */
+	private static Number getResultField(SimulationResult result, int field) {
+		switch (field) {
+		case ISLAND_CREATED_COUNT:
+			return result.getIslandCreatedCount();
+		case ISLAND_FOUND_COUNT:
+			return result.getIslandFoundCount();
+		case FALSE_POSITIVES_RATE:
+			return result.getFalsePositiveRate();
+		case FALSE_POSITIVES_COUNT:
+			return result.getFalsePositiveCount();
+		case FALSE_NEGATIVES_RATE:
+			return result.getFalseNegativeRate();
+		case FALSE_NEGATIVES_COUNT:
+			return result.getFalseNegativeCount();
+		case ISLAND_SIZE_MEAN:
+			return result.getIslandAverageSize();
+		case ISLAND_SIZE_STD_ERR:
+			return result.getIslandSizeStdErr();
+		case SAMPLE_CTRL_DIFFERENCE_MEAN:
+			return result.getSampleCtrlAverageDifference();
+		case SAMPLE_CTRL_DIFFERENCE_STD_ERR:
+			return result.getSampleCtrlDifferenceStdErr();
+		default:
+			throw new InvalidParameterException("Invalid element to print");
+		}
+	}
+
+
+	/**
+	 * Main method, renders the summaries of a result store
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		Args parameters = new Args();
+		new JCommander(parameters, args);
+		try {
+			File storeFile = new File(parameters.storeFile);
+			if (!storeFile.exists()) {
+				throw new IOException("Result store not found: " + storeFile.getPath());
+			}
+			File outDir = parameters.outDir != null ? new File(parameters.outDir) : storeFile.getAbsoluteFile().getParentFile();
+			ResultStore store = new ResultStore(storeFile);
+			try {
+				// track configurations indexed by dataset and read increase factor
+				Map<String, Map<Double, Set<TrackConfiguration>>> datasets = new LinkedHashMap<String, Map<Double, Set<TrackConfiguration>>>();
+				for (ResultKey key: store.getKeys()) {
+					Map<Double, Set<TrackConfiguration>> factors = datasets.get(key.getDatasetName());
+					if (factors == null) {
+						factors = new LinkedHashMap<Double, Set<TrackConfiguration>>();
+						datasets.put(key.getDatasetName(), factors);
+					}
+					Set<TrackConfiguration> configurations = factors.get(key.getReadIncreaseFactor());
+					if (configurations == null) {
+						configurations = new LinkedHashSet<TrackConfiguration>();
+						factors.put(key.getReadIncreaseFactor(), configurations);
+					}
+					configurations.add(key.getConfiguration());
+				}
+				for (Map.Entry<String, Map<Double, Set<TrackConfiguration>>> dataset: datasets.entrySet()) {
+					File datasetDir = dataset.getKey().isEmpty() ? outDir : new File(outDir, dataset.getKey());
+					for (Map.Entry<Double, Set<TrackConfiguration>> factor: dataset.getValue().entrySet()) {
+						File factorDir = new File(datasetDir, ResultKey.formatReadIncreaseFactor(factor.getKey()));
+						if (!factorDir.exists()) {
+							factorDir.mkdirs();
+						}
+						if (parameters.estimateMissingCells) {
+							// same grid as the batch so the cells that were only estimated are rendered again
+							writeSummaries(store, ResultStore.LATEST_RUN, dataset.getKey(), factor.getKey(), factor.getValue(), parameters.extrapolationFactor,
+									RunSimulationBatch.pctReadToAdds, RunSimulationBatch.islandSizes, factorDir);
+						} else {
+							writeSummaries(store, ResultStore.LATEST_RUN, dataset.getKey(), factor.getKey(), factor.getValue(), parameters.extrapolationFactor, factorDir);
+						}
+					}
+				}
+			} finally {
+				store.close();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+
+	/**
+	 * Prints the summary of a track configuration in the specified file
+	 * @param outFile output file
+	 * @param pctReadToAdds percentages of reads added (rows of the tables)
+	 * @param islandSizes island sizes (columns of the tables)
+	 * @param cells results of the replicates of the cells indexed by row and column. Null for the cells missing from the store
+	 * @param falsePositiveModel model estimating the false positive rate of the cells with no successful replicate, null to print NA
+	 * @param falseNegativeModel model estimating the false negative rate of the cells with no successful replicate, null to print NA
+	 * @param extrapolationFactor factor applied to the counts to extrapolate them to the genome, 1 if the simulations are not restricted to some regions
+	 * @throws IOException
+	 */
+	private static void printResult(File outFile, List<Double> pctReadToAdds, List<Integer> islandSizes, ReplicatedSimulationResult[][] cells,
+			PowerModel falsePositiveModel, PowerModel falseNegativeModel, double extrapolationFactor) throws IOException {
+		boolean printReplicateFields = false;
+		for (ReplicatedSimulationResult[] row: cells) {
+			for (ReplicatedSimulationResult cell: row) {
+				printReplicateFields |= (cell != null) && (cell.getReplicateCount() > 1);
+			}
+		}
+		BufferedWriter writer = null;
+		try {
+			writer = new BufferedWriter(new FileWriter(outFile));
+			printResultField(writer, pctReadToAdds, islandSizes, cells, "ISLAND CREATED COUNT", ISLAND_CREATED_COUNT);
+			printResultField(writer, pctReadToAdds, islandSizes, cells, "ISLAND FOUND COUNT", ISLAND_FOUND_COUNT);
+			printResultField(writer, pctReadToAdds, islandSizes, cells, "FALSE POSITIVES RATE", FALSE_POSITIVES_RATE, 1, falsePositiveModel);
+			printResultField(writer, pctReadToAdds, islandSizes, cells, "FALSE POSITIVES COUNT", FALSE_POSITIVES_COUNT);
+			printResultField(writer, pctReadToAdds, islandSizes, cells, "FALSE NEGATIVES RATE", FALSE_NEGATIVES_RATE, 1, falseNegativeModel);
+			printResultField(writer, pctReadToAdds, islandSizes, cells, "FALSE NEGATIVES COUNT", FALSE_NEGATIVES_COUNT);
+			printResultField(writer, pctReadToAdds, islandSizes, cells, "ISLAND SIZE MEAN", ISLAND_SIZE_MEAN);
+			printResultField(writer, pctReadToAdds, islandSizes, cells, "ISLAND SIZE STD ERR", ISLAND_SIZE_STD_ERR);
+			printResultField(writer, pctReadToAdds, islandSizes, cells, "SAMPLE CTRL DIFFERENCE MEAN", SAMPLE_CTRL_DIFFERENCE_MEAN);
+			printResultField(writer, pctReadToAdds, islandSizes, cells, "SAMPLE CTRL DIFFERENCE STD ERR", SAMPLE_CTRL_DIFFERENCE_STD_ERR);
+			if (printReplicateFields) {
+				printResultField(writer, pctReadToAdds, islandSizes, cells, "REPLICATE COUNT", REPLICATE_COUNT);
+				printResultField(writer, pctReadToAdds, islandSizes, cells, "FALSE POSITIVES RATE CI HALF WIDTH", FALSE_POSITIVES_RATE_CI_HALF_WIDTH);
+				printResultField(writer, pctReadToAdds, islandSizes, cells, "FALSE NEGATIVES RATE CI HALF WIDTH", FALSE_NEGATIVES_RATE_CI_HALF_WIDTH);
+			}
+			if (extrapolationFactor != 1) {
+				for (int i = 0; i < EXTRAPOLATED_FIELDS.length; i++) {
+					printResultField(writer, pctReadToAdds, islandSizes, cells, "EXTRAPOLATED " + EXTRAPOLATED_FIELD_TITLES[i], EXTRAPOLATED_FIELDS[i], extrapolationFactor, null);
+				}
+			}
+			if ((falsePositiveModel != null) || (falseNegativeModel != null)) {
+				printResultField(writer, pctReadToAdds, islandSizes, cells, "ESTIMATED CELLS", ESTIMATED_CELL);
+			}
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+		}
+	}
+
+
+	/**
+	 * Prints one of the field of the result of the simulations.
+	 * The field of the cells with more than one replicate is the mean of the successful replicates
+	 * @param writer writer that will write in the file
+	 * @param pctReadToAdds percentages of reads added (rows of the table)
+	 * @param islandSizes island sizes (columns of the table)
+	 * @param cells results of the replicates of the cells indexed by row and column. Null for the cells missing from the store
+	 * @param title title of the field
+	 * @param fieldToPrint field to print
+	 * @throws IOException
+	 */
+	private static void printResultField(BufferedWriter writer, List<Double> pctReadToAdds, List<Integer> islandSizes, ReplicatedSimulationResult[][] cells, String title, int fieldToPrint) throws IOException {
+		printResultField(writer, pctReadToAdds, islandSizes, cells, title, fieldToPrint, 1, null);
+	}
+
+
+	/**
+	 * Prints one of the field of the result of the simulations multiplied by a factor.
+	 * The field of the cells with more than one replicate is the mean of the successful replicates.
+	 * The field of the cells with no successful replicate is estimated by the specified model
+	 * @param writer writer that will write in the file
+	 * @param pctReadToAdds percentages of reads added (rows of the table)
+	 * @param islandSizes island sizes (columns of the table)
+	 * @param cells results of the replicates of the cells indexed by row and column. Null for the cells missing from the store
+	 * @param title title of the field
+	 * @param fieldToPrint field to print
+	 * @param factor factor applied to the field (eg: to extrapolate a count to the genome), 1 to print the field as it is
+	 * @param model model estimating the field of the cells with no successful replicate, null to print NA
+	 * @throws IOException
+	 */
+	private static void printResultField(BufferedWriter writer, List<Double> pctReadToAdds, List<Integer> islandSizes, ReplicatedSimulationResult[][] cells, String title, int fieldToPrint, double factor, PowerModel model) throws IOException {
+		writer.write(title);
+		writer.newLine();
+		for (int islandSize: islandSizes) {
+			writer.write("\t" + islandSize);
+		}
+		writer.newLine();
+		for (int i = 0; i < pctReadToAdds.size(); i++) {
+			writer.write(Double.toString(pctReadToAdds.get(i)));
+			for (int j = 0; j < islandSizes.size(); j++) {
+				ReplicatedSimulationResult cell = cells[i][j];
+				List<SimulationResult> replicates = cell == null ? new ArrayList<SimulationResult>() : cell.getSuccessfulReplicates();
+				if (fieldToPrint == REPLICATE_COUNT) {
+					writer.write("\t" + (cell == null ? 0 : cell.getReplicateCount()));
+				} else if (fieldToPrint == ESTIMATED_CELL) {
+					writer.write("\t" + (replicates.isEmpty() ? 1 : 0));
+				} else if (replicates.isEmpty()) {
+					writer.write(model == null ? "\tNA" : "\t" + model.predict(islandSizes.get(j), pctReadToAdds.get(i)));
+				} else if ((fieldToPrint == FALSE_POSITIVES_RATE_CI_HALF_WIDTH) || (fieldToPrint == FALSE_NEGATIVES_RATE_CI_HALF_WIDTH)) {
+					double ciHalfWidth = fieldToPrint == FALSE_POSITIVES_RATE_CI_HALF_WIDTH ? cell.getFalsePositiveRateCIHalfWidth() : cell.getFalseNegativeRateCIHalfWidth();
+					writer.write(Double.isInfinite(ciHalfWidth) ? "\tNA" : "\t" + ciHalfWidth);
+				} else if ((replicates.size() == 1) && (factor == 1)) {
+					writer.write("\t" + getResultField(replicates.get(0), fieldToPrint));
+				} else {
+					double sum = 0;
+					for (SimulationResult replicate: replicates) {
+						sum += getResultField(replicate, fieldToPrint).doubleValue();
+					}
+					writer.write("\t" + ((sum * factor) / replicates.size()));
+				}
+			}
+			writer.newLine();
+		}
+		writer.newLine();
+	}
+
+
+	/**
+	 * Writes the summaries of a dataset and a read increase factor, one file per track configuration.
+	 * The name of the files is suffixed with the bin size, the gaussian width and the island finder parameters when there is more than one of them.
+	 * @param store store with the results of the simulations
+	 * @param run run of the replicates to write, {@link ResultStore#LATEST_RUN} for the latest run of each cell
+	 * @param datasetName name of the dataset, empty for a single dataset run
+	 * @param readIncreaseFactor factor applied to the read counts of the input files
+	 * @param configurations track configurations to write
+	 * @param extrapolationFactor factor applied to the counts to extrapolate them to the genome, 1 if the simulations are not restricted to some regions
+	 * @param outDir output directory
+	 * @throws IOException
+	 */
+	public static void writeSummaries(ResultStore store, int run, String datasetName, double readIncreaseFactor, Collection<TrackConfiguration> configurations, double extrapolationFactor, File outDir) throws IOException {
+		writeSummaries(store, run, datasetName, readIncreaseFactor, configurations, extrapolationFactor, null, null, outDir);
+	}
+
+
+	/**
+	 * Writes the summaries of a dataset and a read increase factor, one file per track configuration.
+	 * The name of the files is suffixed with the bin size, the gaussian width and the island finder parameters when there is more than one of them.
+	 * When a grid is specified, the tables have a row and a column for each percentage and island size of the grid
+	 * and the false positive and false negative rates of the cells with no successful replicate are estimated by a {@link PowerModel}
+	 * fitted on the replicates of the configuration.
+	 * @param store store with the results of the simulations
+	 * @param run run of the replicates to write, {@link ResultStore#LATEST_RUN} for the latest run of each cell
+	 * @param datasetName name of the dataset, empty for a single dataset run
+	 * @param readIncreaseFactor factor applied to the read counts of the input files
+	 * @param configurations track configurations to write
+	 * @param extrapolationFactor factor applied to the counts to extrapolate them to the genome, 1 if the simulations are not restricted to some regions
+	 * @param pctReadToAdds percentages of reads added of the grid, null to write only the cells of the store without estimates
+	 * @param islandSizes island sizes of the grid, null to write only the cells of the store without estimates
+	 * @param outDir output directory
+	 * @throws IOException
+	 */
+	public static void writeSummaries(ResultStore store, int run, String datasetName, double readIncreaseFactor, Collection<TrackConfiguration> configurations, double extrapolationFactor,
+			double[] pctReadToAdds, int[] islandSizes, File outDir) throws IOException {
+		boolean isEstimated = (pctReadToAdds != null) && (islandSizes != null);
+		Set<Integer> binSizes = new HashSet<Integer>();
+		Set<Integer> gaussianWidths = new HashSet<Integer>();
+		Set<IslandFinderParameters> islandFinderParameters = new HashSet<IslandFinderParameters>();
+		for (TrackConfiguration configuration: configurations) {
+			binSizes.add(configuration.getBinSize());
+			gaussianWidths.add(configuration.getGaussianWidth());
+			islandFinderParameters.add(configuration.getIslandFinderParameters());
+		}
+		List<ResultKey> keys = store.getKeys(run);
+		for (TrackConfiguration configuration: configurations) {
+			// rows and columns of the tables
+			TreeSet<Double> rowSet = new TreeSet<Double>();
+			TreeSet<Integer> columnSet = new TreeSet<Integer>();
+			if (isEstimated) {
+				for (double pctReadToAdd: pctReadToAdds) {
+					rowSet.add(pctReadToAdd);
+				}
+				for (int islandSize: islandSizes) {
+					columnSet.add(islandSize);
+				}
+			}
+			for (ResultKey key: keys) {
+				if (key.getDatasetName().equals(datasetName) && (key.getReadIncreaseFactor() == readIncreaseFactor) && key.getConfiguration().equals(configuration)) {
+					rowSet.add(key.getPercentageReadsAdded());
+					columnSet.add(key.getIslandSize());
+				}
+			}
+			List<Double> rows = new ArrayList<Double>(rowSet);
+			List<Integer> columns = new ArrayList<Integer>(columnSet);
+			List<SimulationResult> simulatedReplicates = new ArrayList<SimulationResult>();
+			ReplicatedSimulationResult[][] cells = new ReplicatedSimulationResult[rows.size()][columns.size()];
+			for (int i = 0; i < rows.size(); i++) {
+				for (int j = 0; j < columns.size(); j++) {
+					ResultKey key = new ResultKey(datasetName, readIncreaseFactor, columns.get(j), rows.get(i), configuration);
+					List<SimulationResult> replicates = store.getReplicates(key, run);
+					if (!replicates.isEmpty()) {
+						cells[i][j] = new ReplicatedSimulationResult(configuration);
+						for (SimulationResult replicate: replicates) {
+							cells[i][j].addReplicate(replicate);
+						}
+						simulatedReplicates.addAll(replicates);
+					}
+				}
+			}
+			PowerModel falsePositiveModel = isEstimated ? PowerModel.fit(simulatedReplicates, true) : null;
+			PowerModel falseNegativeModel = isEstimated ? PowerModel.fit(simulatedReplicates, false) : null;
+			String fileName = "simulation_summary";
+			if (binSizes.size() > 1) {
+				fileName += "_bin" + configuration.getBinSize();
+			}
+			if (gaussianWidths.size() > 1) {
+				fileName += "_width" + configuration.getGaussianWidth();
+			}
+			if (islandFinderParameters.size() > 1) {
+				IslandFinderParameters currentParameters = configuration.getIslandFinderParameters();
+				fileName += "_if" + currentParameters.getMinWindowScore() + "-" + currentParameters.getMinLength() + "-" + currentParameters.getGap();
+			}
+			printResult(new File(outDir, fileName + ".tsv"), rows, columns, cells, falsePositiveModel, falseNegativeModel, extrapolationFactor);
+		}
+	}
+}
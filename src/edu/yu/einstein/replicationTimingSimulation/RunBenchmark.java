@@ -0,0 +1,211 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+
+import edu.yu.einstein.replicationTimingSimulation.SimulationMetrics.StageStatistics;
+
+/**
+ * End-to-end benchmark of the simulations: generates a synthetic dataset with {@link SyntheticDatasetGenerator},
+ * runs {@link RunSimulationBatch} on it in the same JVM and writes the wall time, the throughput and the heap usage
+ * of the batch and of each step of the simulations in the file {@value #REPORT_FILE_NAME} of the output directory.
+ * The throughput of a step is the number of bins of the dataset processed per second by the stages of the step.
+ * @author Julien Lajugie
+ */
+public class RunBenchmark {
+
+	/**
+	 * Command line parameters
+	 * @author Julien Lajugie
+	 */
+	public static class Args {
+		@Parameter(names = "-genome", description = "chrom.sizes file or compact genome descriptor file of the assembly (hg19 from the GenPlay assembly list if not specified)")
+		private String genomeFile = null;
+
+		@Parameter(names = "-chrInclude", description = "Regular expression of the names of the chromosomes to use")
+		private String chrInclude = null;
+
+		@Parameter(names = "-chrExclude", description = "Regular expression of the names of the chromosomes to exclude")
+		private String chrExclude = null;
+
+		@Parameter(names = "-out", description = "Output directory of the dataset, of the results of the batch and of the report", required = true)
+		private String outDir;
+
+		@Parameter(names = "-coverage", description = "Sequencing depth of each phase of the synthetic dataset (eg: 0.5 for 0.5x)")
+		private double coverage = 0.5;
+
+		@Parameter(names = "-readLength", description = "Length of the reads of the synthetic dataset")
+		private int readLength = 50;
+
+		@Parameter(names = "-binSize", description = "Size of the bins of the synthetic dataset")
+		private int binSize = 1000;
+
+		@Parameter(names = "-domainSize", description = "Average size of the replication timing domains of the synthetic dataset")
+		private int domainSize = 1000000;
+
+		@Parameter(names = "-gapFraction", description = "Fraction of the genome in unmappable gaps with no read")
+		private double gapFraction = 0.05;
+
+		@Parameter(names = "-seed", description = "Seed of the synthetic dataset")
+		private long seed = 0;
+
+		@Parameter(names = "-batchArgs", description = "Additional parameters of RunSimulationBatch separated by spaces (eg: \"-binSizes 1000 -minReplicates 1\")")
+		private String batchArgs = "";
+	}
+
+	/** Name of the file of the report */
+	public final static String REPORT_FILE_NAME = "benchmark.txt";
+
+	private final static double MEGABYTE = 1024 * 1024;	// number of bytes in a megabyte
+
+
+	/**
+	 * Main method, runs the benchmark
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		Args parameters = new Args();
+		new JCommander(parameters, args);
+		try {
+			File outDir = new File(parameters.outDir);
+			if (!outDir.exists()) {
+				outDir.mkdirs();
+			}
+			// 1 - generate the dataset, the batch uses the same genome
+			long startTime = System.nanoTime();
+			GenomeDescriptor genome = RunSimulationBatch.loadGenome(parameters.genomeFile, parameters.chrInclude, parameters.chrExclude);
+			File genomeFile = new File(outDir, "genome.rtsg");
+			genome.write(genomeFile);
+			double readsPerBin = SyntheticDatasetGenerator.computeReadsPerBin(parameters.coverage, parameters.readLength, parameters.binSize);
+			SyntheticDatasetGenerator generator = new SyntheticDatasetGenerator(genome, parameters.binSize, readsPerBin, parameters.domainSize, parameters.gapFraction, parameters.seed);
+			File sFile = new File(outDir, SyntheticDatasetGenerator.S_FILE_NAME);
+			File g1File = new File(outDir, SyntheticDatasetGenerator.G1_FILE_NAME);
+			long binCount = generator.write(sFile, g1File);
+			double generationTime = (System.nanoTime() - startTime) / 1e9;
+
+			// 2 - run the batch
+			List<String> batchArgs = new ArrayList<String>();
+			batchArgs.addAll(Arrays.asList("-s", sFile.getPath(), "-g1", g1File.getPath(), "-genome", genomeFile.getPath(), "-out", new File(outDir, "batch").getPath()));
+			if (!parameters.batchArgs.trim().isEmpty()) {
+				batchArgs.addAll(Arrays.asList(parameters.batchArgs.trim().split("\\s+")));
+			}
+			startTime = System.nanoTime();
+			RunSimulationBatch.runBatch(batchArgs.toArray(new String[batchArgs.size()]));
+			double batchTime = (System.nanoTime() - startTime) / 1e9;
+
+			// 3 - write the report
+			List<String> report = new ArrayList<String>();
+			report.add("Genome\t" + genome.getAssemblyName() + " (" + genome.getChromosomes().size() + " chromosomes)");
+			report.add("Mappable Bins\t" + binCount);
+			report.add("Reads per Bin\t" + readsPerBin);
+			report.add("Batch Parameters\t" + parameters.batchArgs);
+			report.add("Generation Time (s)\t" + generationTime);
+			report.add("Batch Time (s)\t" + batchTime);
+			report.addAll(createBatchReport(batchTime, binCount));
+			report.add("");
+			report.addAll(createStageReport(binCount));
+			writeReport(new File(outDir, REPORT_FILE_NAME), report);
+			for (String line: report) {
+				System.out.println(line);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			System.exit(0);
+		}
+	}
+
+
+	/**
+	 * @param batchTime wall time of the batch in seconds
+	 * @param binCount number of bins of the dataset
+	 * @return the lines of the report with the throughput and the heap usage of the whole batch
+	 */
+	private static List<String> createBatchReport(double batchTime, long binCount) {
+		SimulationMetrics metrics = SimulationMetrics.getInstance();
+		List<String> report = new ArrayList<String>();
+		long cellCount = metrics.getCellsCompleted() + metrics.getCellsFailed();
+		report.add("Simulations Completed\t" + metrics.getCellsCompleted());
+		report.add("Simulations Failed\t" + metrics.getCellsFailed());
+		report.add("Simulations per Hour\t" + ((cellCount * 3600) / batchTime));
+		report.add("Bins per Second\t" + ((cellCount * binCount) / batchTime));
+		report.add("Resampled Windows per Second\t" + (metrics.getWindowsProcessed() / batchTime));
+		report.add("Peak Heap (MB)\t" + (metrics.getHeapPeak() / MEGABYTE));
+		report.add("Max Heap (MB)\t" + (metrics.getHeapMax() / MEGABYTE));
+		return report;
+	}
+
+
+	/**
+	 * @param binCount number of bins of the dataset
+	 * @return the lines of the report with the wall time, the throughput and the heap usage of each step of the simulations
+	 */
+	private static List<String> createStageReport(long binCount) {
+		List<String> report = new ArrayList<String>();
+		report.add("Step\tStage Count\tTotal Time (s)\tMean Time (s)\tMax Time (s)\tBins per Second\tMax Heap Used (MB)");
+		for (Map.Entry<String, StageStatistics> entry: SimulationMetrics.getInstance().getStageStatistics().entrySet()) {
+			StageStatistics statistics = entry.getValue();
+			double totalTime = statistics.getTotalSeconds();
+			report.add(entry.getKey()
+					+ "\t" + statistics.getCount()
+					+ "\t" + totalTime
+					+ "\t" + (totalTime / statistics.getCount())
+					+ "\t" + statistics.getMaxSeconds()
+					+ "\t" + (totalTime == 0 ? Double.NaN : (statistics.getCount() * binCount) / totalTime)
+					+ "\t" + (statistics.getMaxHeapUsed() / MEGABYTE));
+		}
+		return report;
+	}
+
+
+	/**
+	 * Writes the report of the benchmark
+	 * @param file output file
+	 * @param report lines of the report
+	 * @throws IOException
+	 */
+	private static void writeReport(File file, List<String> report) throws IOException {
+		BufferedWriter writer = null;
+		try {
+			writer = new BufferedWriter(new FileWriter(file));
+			for (String line: report) {
+				writer.write(line);
+				writer.newLine();
+			}
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+		}
+	}
+}
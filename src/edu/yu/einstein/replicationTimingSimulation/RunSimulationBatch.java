@@ -21,15 +21,24 @@
  *******************************************************************************/
 package edu.yu.einstein.replicationTimingSimulation;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.security.InvalidParameterException;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -43,6 +52,8 @@ import edu.yu.einstein.genplay.core.IO.extractor.Extractor;
 import edu.yu.einstein.genplay.core.IO.extractor.ExtractorFactory;
 import edu.yu.einstein.genplay.core.IO.genomeListLoader.AssemblyListLoader;
 import edu.yu.einstein.genplay.core.manager.project.ProjectManager;
+import edu.yu.einstein.genplay.core.operation.Operation;
+import edu.yu.einstein.genplay.core.operationPool.OperationPool;
 import edu.yu.einstein.genplay.dataStructure.chromosome.Chromosome;
 import edu.yu.einstein.genplay.dataStructure.enums.ScoreOperation;
 import edu.yu.einstein.genplay.dataStructure.enums.ScorePrecision;
@@ -68,50 +79,266 @@ public class RunSimulationBatch {
 		@Parameter(names = "-g1", description = "File with replication timming data for the G1 phase")
 		private String g1File;
 
+		@Parameter(names = "-manifest", description = "Manifest file listing the datasets to process (one dataset per line: name, S phase file and G1 phase file separated by tabs). Replaces -s and -g1")
+		private String manifestFile;
+
+		@Parameter(names = "-datasetThreads", description = "Number of datasets processed in parallel")
+		private int datasetThreads = 1;
+
+		@Parameter(names = "-genome", description = "chrom.sizes file or compact genome descriptor file of the assembly (hg19 from the GenPlay assembly list if not specified)")
+		private String genomeFile;
+
+		@Parameter(names = "-chrInclude", description = "Regular expression of the names of the chromosomes to use")
+		private String chrInclude;
+
+		@Parameter(names = "-chrExclude", description = "Regular expression of the names of the chromosomes to exclude")
+		private String chrExclude;
+
+		@Parameter(names = "-regions", description = "Quick-look mode: comma separated list of chromosome names or BED file with the regions where the simulations are restricted. The counts of the summaries are extrapolated to the genome")
+		private String regions;
+
+		@Parameter(names = "-writeGenome", description = "Writes the compact descriptor of the genome used by the simulation in the specified file")
+		private String writeGenomeFile;
+
 		@Parameter(names = "-out", description = "Output directory for the results of the simulation")
 		private String outDir;
+
+		@Parameter(names = "-controlPoolSize", description = "Number of control replicates generated once per batch and shared by the simulations (0 to generate a new control for each simulation)")
+		private int controlPoolSize = 0;
+
+		@Parameter(names = "-readIncreaseFactors", description = "Comma separated list of the sequencing depths to simulate, relative to the depth of the input files. The read counts are multiplied by the integer factors and thinned by the factors lower than 1, each depth being thinned from the previous one")
+		private String readIncreaseFactors = "1";
+
+		@Parameter(names = "-binSizes", description = "Comma separated list of the bin sizes to simulate. The tracks are binned once and the larger bin sizes are aggregated from the smaller ones")
+		private String binSizes = Integer.toString(SingleSimulation.BIN_SIZE);
+
+		@Parameter(names = "-gaussWidths", description = "Comma separated list of the moving window widths of the gaussian smoothing to simulate. The widths are computed in cascade from the narrowest to the widest")
+		private String gaussWidths = Integer.toString(SingleSimulation.GAUSSIAN_MV_WIDTH);
+
+		@Parameter(names = "-metricsPort", description = "Port of the local HTTP server publishing the live metrics at http://localhost:port/metrics (0 to disable the server, the metrics are always published over JMX)")
+		private int metricsPort = 0;
+
+		@Parameter(names = "-cellTimeout", description = "Maximum duration of a simulation in seconds. A simulation that times out is stopped and recorded as failed. Also the maximum duration of the thinning of a sequencing depth lower than 1, a thinning that times out stops its dataset (0 for no limit)")
+		private int cellTimeout = 0;
+
+		@Parameter(names = "-minReplicates", description = "Minimum number of replicates of each simulation")
+		private int minReplicates = 1;
+
+		@Parameter(names = "-maxReplicates", description = "Maximum number of replicates of each simulation. Replicates are added to a simulation until the confidence intervals of its false positive and false negative rates are narrower than -ciHalfWidth")
+		private int maxReplicates = 1;
+
+		@Parameter(names = "-ciHalfWidth", description = "Target half-width of the 95% confidence intervals of the false positive and false negative rates of the replicated simulations")
+		private double ciHalfWidth = 0.05;
+
+		@Parameter(names = "-surrogate", description = "Surrogate mode: simulates a sparse design of the cells of the grid, fits a model of the false positive and false negative rates on the log of the island size and on the percentage of reads added, and simulates only the cells where the 95% confidence interval of the model is wider than -ciHalfWidth. The rates of the other cells are estimated by the model and flagged in the summaries")
+		private boolean surrogate = false;
+
+		@Parameter(names = "-resultStore", description = "Result store file where the result of each replicate is appended (" + ResultStore.DEFAULT_FILE_NAME + " in the output directory if not specified). The summaries can be rendered again from the store with ResultSummaryWriter. A store only receives the results of batches with the same inputs, genome, regions, island placement, control pool and replicate parameters, the cells simulated again replace the results of the previous batches")
+		private String resultStoreFile;
+
+		@Parameter(names = "-islandPlacement", description = "Placement of the islands: " + IslandPlacement.GRID_PLACEMENT_NAME + " to place an island every 4Mb from the start of the chromosomes or " + IslandPlacement.RANDOM_PLACEMENT_NAME + " to place the islands at random non-overlapping positions in the mappable regions, with a different placement for each replicate")
+		private String islandPlacement = IslandPlacement.GRID_PLACEMENT_NAME;
+
+		@Parameter(names = "-islandDensity", description = "Number of islands per megabase of mappable genome of the random placement")
+		private double islandDensity = 1000000d / SingleSimulation.ISLAND_DISTANCE;
+
+		@Parameter(names = "-islandSeed", description = "Seed of the random placement, of the resampling and of the thinning. The seed of the placement of each replicate is derived from this seed, the dataset, the read increase factor, the island size and the replicate number so the simulations with different percentages of reads added share the same islands. The seeds of the resampling of each replicate, of the control pool and of the thinning of each sequencing depth lower than 1 are derived from this seed")
+		private long islandSeed = 0;
+
+		@Parameter(names = "-binomialMaxError", description = "Maximum distance between the binomial and normal cumulative distributions under which the binomial draws of the resampling and of the thinning are approximated by rounded normal deviates. Speeds up the draws with a large number of reads (0 to always draw exactly)")
+		private double binomialMaxError = 0;
+
+		@Parameter(names = "-qValueCutoffs", description = "Comma separated list of the q-value cutoffs where the false positives and false negatives of each simulation are written in " + QValueSweepWriter.CUTOFF_FILE_NAME + ". The ROC and precision-recall curves of each simulation are written in " + QValueSweepWriter.CURVE_FILE_NAME)
+		private String qValueCutoffs = "0.001,0.01,0.05,0.1,0.2";
+
+		@Parameter(names = "-ifMinWindows", description = "Comma separated list of the window minimum values of the island finder. A result is computed for each combination of the island finder parameters, the difference between the sample and the control is computed once for all the combinations")
+		private String ifMinWindows = Float.toString(IslandFinderParameters.DEFAULT.getMinWindowScore());
+
+		@Parameter(names = "-ifGaps", description = "Comma separated list of the gaps of the island finder")
+		private String ifGaps = Integer.toString(IslandFinderParameters.DEFAULT.getGap());
+
+		@Parameter(names = "-ifMinLengths", description = "Comma separated list of the island minimum lengths of the island finder")
+		private String ifMinLengths = Integer.toString(IslandFinderParameters.DEFAULT.getMinLength());
 	}
 
-	// different fields of the result of a simulation
-	private final static int ISLAND_CREATED_COUNT = 0;
-	private final static int ISLAND_FOUND_COUNT = 1;
-	private final static int FALSE_POSITIVES_RATE = 2;
-	private final static int FALSE_POSITIVES_COUNT = 3;
-	private final static int FALSE_NEGATIVES_RATE = 4;
-	private final static int FALSE_NEGATIVES_COUNT = 5;
-	private final static int ISLAND_SIZE_MEAN = 6;
-	private final static int ISLAND_SIZE_STD_ERR = 7;
-	private final static int SAMPLE_CTRL_DIFFERENCE_MEAN = 8;
-	private final static int SAMPLE_CTRL_DIFFERENCE_STD_ERR = 9;
-
-	// Island sizes to consider for the simulation
-	private final static int[] islandSizes = {125000, 250000, 500000, 1000000, 2000000};
+	// time given to a stopped simulation to release its resources before the batch moves on (ms)
+	private final static long CELL_STOP_GRACE_PERIOD = 30000;
+
+	// Island sizes to consider for the simulation (also the columns of the grid re-rendered by ResultSummaryWriter)
+	final static int[] islandSizes = {125000, 250000, 500000, 1000000, 2000000};
 	//private final static int[] islandSizes = {500000};
 
-	// Percentage of reads to add for the simulation
-	private final static double[] pctReadToAdds = {0, 0.05, 0.1, 0.15, 0.2, 0.3, 0.5};
+	// Percentage of reads to add for the simulation (also the rows of the grid re-rendered by ResultSummaryWriter)
+	final static double[] pctReadToAdds = {0, 0.05, 0.1, 0.15, 0.2, 0.3, 0.5};
 	//private final static double[] pctReadToAdds = {0.15};
 
-	// The read count from the input files will be multiplied by the following factors
-	private final static int[] readIncreaseFactors = {1};
+
+	/**
+	 * Derives the seed of the random island placement of a replicate.
+	 * The parameters are mixed so close seeds of consecutive replicates don't give correlated placements
+	 * @param batchSeed seed of the batch
+	 * @param datasetName name of the dataset
+	 * @param readIncreaseFactor read increase factor of the simulation
+	 * @param islandSize size of the islands of the simulation
+	 * @param replicate number of the replicate
+	 * @return the seed of the island placement of the replicate
+	 */
+	private static long computeIslandSeed(long batchSeed, String datasetName, double readIncreaseFactor, int islandSize, int replicate) {
+		return computeSeed(batchSeed, datasetName, readIncreaseFactor, islandSize, replicate);
+	}
+
+
+	/**
+	 * Derives the seed of the resampling of a replicate.
+	 * Unlike the island placement the resampling of each percentage of reads added has its own seed
+	 * @param batchSeed seed of the batch
+	 * @param datasetName name of the dataset
+	 * @param readIncreaseFactor read increase factor of the simulation
+	 * @param islandSize size of the islands of the simulation
+	 * @param percentageReadsAdded percentage of reads added of the simulation
+	 * @param replicate number of the replicate
+	 * @return the seed of the resampling of the replicate
+	 */
+	private static long computeResampleSeed(long batchSeed, String datasetName, double readIncreaseFactor, int islandSize, double percentageReadsAdded, int replicate) {
+		return computeSeed(batchSeed, datasetName, readIncreaseFactor, islandSize, replicate, Double.doubleToLongBits(percentageReadsAdded));
+	}
+
+
+	/**
+	 * Derives a seed from the seed of the batch, a dataset, a read increase factor and some other values.
+	 * The parameters are mixed so close seeds don't give correlated draws
+	 * @param batchSeed seed of the batch
+	 * @param datasetName name of the dataset
+	 * @param readIncreaseFactor read increase factor
+	 * @param values other values identifying the draws
+	 * @return the derived seed
+	 */
+	private static long computeSeed(long batchSeed, String datasetName, double readIncreaseFactor, long... values) {
+		long seed = batchSeed;
+		seed = (seed * 31) + datasetName.hashCode();
+		// the integer factors give the same seeds as before the fractional factors
+		seed = (seed * 31) + (readIncreaseFactor == Math.rint(readIncreaseFactor) ? (long) readIncreaseFactor : Double.doubleToLongBits(readIncreaseFactor));
+		for (long value: values) {
+			seed = (seed * 31) + value;
+		}
+		// SplitMix64 finalizer
+		seed = (seed ^ (seed >>> 30)) * 0xbf58476d1ce4e5b9L;
+		seed = (seed ^ (seed >>> 27)) * 0x94d049bb133111ebL;
+		return seed ^ (seed >>> 31);
+	}
+
+
+	/**
+	 * Computes an operation through an {@link OperationRunner} on its own thread.
+	 * An operation that doesn't complete before the timeout, or whose calling thread is interrupted, is stopped
+	 * @param operation operation to compute
+	 * @param timeout maximum duration of the operation in seconds. 0 for no limit
+	 * @return the result of the operation
+	 * @throws TimeoutException if the operation timed out
+	 * @throws Exception
+	 */
+	private static <T> T computeWithTimeout(final Operation<T> operation, int timeout) throws Exception {
+		final OperationRunner runner = new OperationRunner();
+		FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				return runner.compute(operation);
+			}
+		});
+		Thread thread = new Thread(task, operation.getProcessingDescription());
+		thread.setDaemon(true);
+		thread.start();
+		try {
+			if (timeout > 0) {
+				return task.get(timeout, TimeUnit.SECONDS);
+			} else {
+				return task.get();
+			}
+		} catch (TimeoutException e) {
+			runner.stop();
+			task.cancel(true);
+			throw new TimeoutException(operation.getDescription() + " timed out after " + timeout + "s");
+		} catch (InterruptedException e) {
+			runner.stop();
+			task.cancel(true);
+			throw e;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Describes the parameters of a batch that change the results of its simulations without being part of the {@link ResultKey}.
+	 * A result store can only receive the results of the batches with the same description
+	 * @param parameters command line parameters
+	 * @return the description of the parameters of the batch
+	 */
+	private static String describeBatch(Args parameters) {
+		String description = "inputs=" + (parameters.manifestFile != null ? parameters.manifestFile : parameters.sFile + "," + parameters.g1File);
+		description += ";genome=" + parameters.genomeFile + ";chrInclude=" + parameters.chrInclude + ";chrExclude=" + parameters.chrExclude;
+		description += ";regions=" + parameters.regions;
+		description += ";islandPlacement=" + parameters.islandPlacement;
+		if (parameters.islandPlacement.equals(IslandPlacement.RANDOM_PLACEMENT_NAME)) {
+			description += ";islandDensity=" + parameters.islandDensity;
+		}
+		description += ";islandSeed=" + parameters.islandSeed + ";binomialMaxError=" + parameters.binomialMaxError;
+		description += ";controlPoolSize=" + parameters.controlPoolSize;
+		description += ";minReplicates=" + parameters.minReplicates + ";maxReplicates=" + parameters.maxReplicates + ";ciHalfWidth=" + parameters.ciHalfWidth;
+		description += ";surrogate=" + parameters.surrogate;
+		return description;
+	}
+
+
+	/**
+	 * Generates a pool of control replicates shared by all the simulations of a batch
+	 * @param poolSize number of control replicates in the pool
+	 * @param sList
+	 * @param g1List
+	 * @param readIncreaseFactor
+	 * @param binSizes sizes of the bins of the binned lists
+	 * @param gaussianWidths moving window widths of the gaussian smoothing
+	 * @param binomialMaxError maximum error of the normal approximation of the binomial draws of the resampling, 0 to always draw exactly
+	 * @param seeds seeds of the resampling of the control replicates, one per replicate of the pool
+	 * @return a {@link ControlPool}
+	 * @throws Exception
+	 */
+	private static ControlPool generateControlPool(int poolSize, SCWList sList, SCWList g1List, int readIncreaseFactor, int[] binSizes, int[] gaussianWidths, double binomialMaxError, long[] seeds) throws Exception {
+		List<ControlReplicate> replicates = new ArrayList<ControlReplicate>();
+		for (int i = 0; i < poolSize; i++) {
+			System.out.println("*** Generating control replicate " + (i + 1) + " / " + poolSize + " ***");
+			replicates.add(new GenerateControlReplicate(sList, g1List, readIncreaseFactor, binSizes, gaussianWidths, binomialMaxError, seeds[i]).compute());
+		}
+		return new ControlPool(replicates);
+	}
 
 
 	/**
-	 * Initializes genplay project manager
+	 * Initializes genplay project manager with the "basic" chromosomes of the hg19 assembly
 	 * @throws ParserConfigurationException
 	 * @throws SAXException
 	 * @throws IOException
 	 */
 	public static void initManagers() throws ParserConfigurationException, SAXException, IOException {
-		AssemblyListLoader listLoader = new AssemblyListLoader();
-		// retrieve human assembly
-		Assembly assembly = listLoader.getCladeList().get("mammal").getGenomeList().get("human").getAssemblyList().get("2009 02 hg19");
+		Assembly assembly = loadHumanAssembly();
 		// keep only the "basic" chromosomes (we don't want the _random)
 		List<Chromosome> chrList = assembly.getChromosomeList();
 		Collections.sort(chrList);
 		chrList = chrList.subList(0, 23);
 		assembly.setChromosomeList(chrList);
-		ProjectManager.getInstance().setAssembly(assembly);
+		initManagers(GenomeDescriptor.fromAssembly(assembly));
+	}
+
+
+	/**
+	 * Initializes genplay project manager with the specified genome
+	 * @param genome descriptor of the genome assembly
+	 */
+	public static void initManagers(GenomeDescriptor genome) {
+		ProjectManager.getInstance().setAssembly(genome.toAssembly());
 		ProjectManager.getInstance().updateChromosomeList();
 		// set the precision of the data to 32 bit
 		PrimitiveList.setScorePrecision(ScorePrecision.PRECISION_32BIT);
@@ -119,15 +346,94 @@ public class RunSimulationBatch {
 
 
 	/**
-	 * Extracts and generates a {@link SCWList} from the specified file
+	 * Initializes genplay project manager with the genome, the chromosome filters and the quick-look regions specified in the command line parameters.
+	 * The genome is restricted to the chromosomes of the quick-look regions
+	 * @param parameters command line parameters
+	 * @return the regions of the quick-look mode, null if the simulations are not restricted to regions
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws IOException
+	 */
+	private static GenomeRegions initManagers(Args parameters) throws ParserConfigurationException, SAXException, IOException {
+		boolean hasFilter = (parameters.chrInclude != null) || (parameters.chrExclude != null);
+		if ((parameters.genomeFile == null) && !hasFilter && (parameters.writeGenomeFile == null) && (parameters.regions == null)) {
+			initManagers();
+			return null;
+		}
+		GenomeDescriptor genome = loadGenome(parameters.genomeFile, parameters.chrInclude, parameters.chrExclude);
+		GenomeRegions regions = null;
+		if (parameters.regions != null) {
+			regions = GenomeRegions.load(parameters.regions, genome);
+			genome = regions.getGenome();
+		}
+		if (parameters.writeGenomeFile != null) {
+			genome.write(new File(parameters.writeGenomeFile));
+		}
+		initManagers(genome);
+		return regions;
+	}
+
+
+	/**
+	 * Loads the genome of a batch
+	 * @param genomeFile chrom.sizes file or compact genome descriptor file of the assembly. Null for the hg19 assembly of the GenPlay assembly list
+	 * @param chrInclude regular expression of the names of the chromosomes to use. Null to use all the chromosomes
+	 * @param chrExclude regular expression of the names of the chromosomes to exclude. Null to exclude no chromosome
+	 * @return the descriptor of the genome. Without file and filter, the "basic" chromosomes of the hg19 assembly
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws IOException
+	 */
+	public static GenomeDescriptor loadGenome(String genomeFile, String chrInclude, String chrExclude) throws ParserConfigurationException, SAXException, IOException {
+		boolean hasFilter = (chrInclude != null) || (chrExclude != null);
+		GenomeDescriptor genome;
+		if (genomeFile != null) {
+			genome = GenomeDescriptor.load(new File(genomeFile));
+		} else if (hasFilter) {
+			genome = GenomeDescriptor.fromAssembly(loadHumanAssembly());
+		} else {
+			// same chromosomes as the default initialization
+			initManagers();
+			genome = GenomeDescriptor.fromAssembly(ProjectManager.getInstance().getAssembly());
+		}
+		if (hasFilter) {
+			genome = genome.filter(chrInclude, chrExclude);
+		}
+		return genome;
+	}
+
+
+	/**
+	 * Loads the hg19 assembly from the GenPlay assembly list
+	 * @return the hg19 assembly with all its chromosomes
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws IOException
+	 */
+	private static Assembly loadHumanAssembly() throws ParserConfigurationException, SAXException, IOException {
+		AssemblyListLoader listLoader = new AssemblyListLoader();
+		return listLoader.getCladeList().get("mammal").getGenomeList().get("human").getAssemblyList().get("2009 02 hg19");
+	}
+
+
+	/**
+	 * Extracts and generates a {@link SCWList} from the specified file.
+	 * The bedGraph files are loaded in parallel by {@link LoadBedGraphFile}, the other formats by the GenPlay extractors.
+	 * The read counts are stored on 16 bits by {@link ConvertIntoCountList}, the other scores stay on 32 bits
 	 * @param file
 	 * @return
 	 * @throws Exception
 	 */
 	public static SCWList loadInputFile(File file) throws Exception {
-		Extractor extractor = ExtractorFactory.getExtractor(file);
-		SCWList scwList = SCWListFactory.createDenseSCWList((SCWReader) extractor, ScoreOperation.ADDITION);
-		return scwList;
+		String extension = file.getName().substring(file.getName().lastIndexOf('.') + 1).toLowerCase();
+		SCWList scwList;
+		if (extension.equals("bgr") || extension.equals("gr") || extension.equals("bedgraph")) {
+			scwList = new LoadBedGraphFile(file).compute();
+		} else {
+			Extractor extractor = ExtractorFactory.getExtractor(file);
+			scwList = SCWListFactory.createDenseSCWList((SCWReader) extractor, ScoreOperation.ADDITION);
+		}
+		return new ConvertIntoCountList(scwList).compute();
 	}
 
 
@@ -136,21 +442,8 @@ public class RunSimulationBatch {
 	 * @param args
 	 */
 	public static void main(String[] args) {
-		Args parameters = new Args();
-		new JCommander(parameters, args);
 		try {
-			File sFile = new File(parameters.sFile);
-			File g1File = new File(parameters.g1File);
-			File outDir = new File(parameters.outDir);
-			if (!outDir.exists()) {
-				outDir.mkdir();
-			}
-			initManagers();
-			SCWList sList = loadInputFile(sFile);
-			SCWList g1List = loadInputFile(g1File);
-			for (int readIncreaseFactor: readIncreaseFactors) {
-				runFactorBatch(readIncreaseFactor, sList, g1List, outDir);
-			}
+			runBatch(args);
 		} catch (Exception e) {
 			e.printStackTrace();
 		} finally {
@@ -160,125 +453,485 @@ public class RunSimulationBatch {
 
 
 	/**
-	 * Prints the result of the simulation in the specified file
-	 * @param outFile
-	 * @param resultList
-	 * @throws IOException
+	 * Parses a comma separated list of doubles
+	 * @param list a comma separated list of doubles
+	 * @return an array with the doubles of the list
 	 */
-	private static void printResult(File outFile, List<SimulationResult> resultList) throws IOException {
-		BufferedWriter writer = null;
+	private static double[] parseDoubleList(String list) {
+		String[] elements = list.split(",");
+		double[] values = new double[elements.length];
+		for (int i = 0; i < elements.length; i++) {
+			try {
+				values[i] = Double.parseDouble(elements[i].trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid double list: " + list);
+			}
+		}
+		return values;
+	}
+
+
+	/**
+	 * Parses a comma separated list of floats
+	 * @param list a comma separated list of floats
+	 * @return an array with the floats of the list
+	 */
+	private static float[] parseFloatList(String list) {
+		String[] elements = list.split(",");
+		float[] values = new float[elements.length];
+		for (int i = 0; i < elements.length; i++) {
+			try {
+				values[i] = Float.parseFloat(elements[i].trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid float list: " + list);
+			}
+		}
+		return values;
+	}
+
+
+	/**
+	 * Parses the lists of island finder parameters
+	 * @param parameters command line parameters
+	 * @return all the combinations of the island finder parameters
+	 */
+	private static IslandFinderParameters[] parseIslandFinderParameters(Args parameters) {
+		List<IslandFinderParameters> islandFinderParameters = new ArrayList<IslandFinderParameters>();
+		for (float minWindowScore: parseFloatList(parameters.ifMinWindows)) {
+			for (int gap: parseIntegerList(parameters.ifGaps)) {
+				for (int minLength: parseIntegerList(parameters.ifMinLengths)) {
+					IslandFinderParameters currentParameters = new IslandFinderParameters(minWindowScore, gap, minLength);
+					if (!islandFinderParameters.contains(currentParameters)) {
+						islandFinderParameters.add(currentParameters);
+					}
+				}
+			}
+		}
+		return islandFinderParameters.toArray(new IslandFinderParameters[islandFinderParameters.size()]);
+	}
+
+
+	/**
+	 * Parses a comma separated list of integers
+	 * @param list a comma separated list of integers
+	 * @return an array with the integers of the list
+	 */
+	private static int[] parseIntegerList(String list) {
+		String[] elements = list.split(",");
+		int[] values = new int[elements.length];
+		for (int i = 0; i < elements.length; i++) {
+			try {
+				values[i] = Integer.parseInt(elements[i].trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid integer list: " + list);
+			}
+		}
+		return values;
+	}
+
+
+	/**
+	 * Parses the list of read increase factors.
+	 * The factors greater than 1 must be integers
+	 * @param parameters command line parameters
+	 * @return the distinct read increase factors sorted from the largest to the smallest
+	 */
+	private static double[] parseReadIncreaseFactors(Args parameters) {
+		double[] readIncreaseFactors = parseDoubleList(parameters.readIncreaseFactors);
+		Arrays.sort(readIncreaseFactors);
+		List<Double> distinctFactors = new ArrayList<Double>();
+		for (int i = readIncreaseFactors.length - 1; i >= 0; i--) {
+			double readIncreaseFactor = readIncreaseFactors[i];
+			if (!(readIncreaseFactor > 0) || ((readIncreaseFactor > 1) && (readIncreaseFactor != Math.rint(readIncreaseFactor)))) {
+				throw new IllegalArgumentException("Invalid read increase factor: " + readIncreaseFactor);
+			}
+			if (!distinctFactors.contains(readIncreaseFactor)) {
+				distinctFactors.add(readIncreaseFactor);
+			}
+		}
+		double[] result = new double[distinctFactors.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = distinctFactors.get(i);
+		}
+		return result;
+	}
+
+
+	/**
+	 * Runs a batch of simulations without exiting the JVM
+	 * @param args command line parameters of the batch
+	 * @throws Exception
+	 */
+	public static void runBatch(String[] args) throws Exception {
+		Args parameters = new Args();
+		new JCommander(parameters, args);
+		File outDir = new File(parameters.outDir);
+		if (!outDir.exists()) {
+			outDir.mkdir();
+		}
+		// check the bin sizes, the gaussian widths and the replicate parameters before starting the simulations
+		new ReplicateController(parameters.minReplicates, parameters.maxReplicates, parameters.ciHalfWidth);
+		parseReadIncreaseFactors(parameters);
+		BinListPyramid.computeBaseBinSize(parseIntegerList(parameters.binSizes));
+		for (int gaussianWidth: parseIntegerList(parameters.gaussWidths)) {
+			if (gaussianWidth <= 0) {
+				throw new IllegalArgumentException("Invalid gaussian width: " + gaussianWidth);
+			}
+		}
+		if (!parameters.islandPlacement.equals(IslandPlacement.GRID_PLACEMENT_NAME) && !parameters.islandPlacement.equals(IslandPlacement.RANDOM_PLACEMENT_NAME)) {
+			throw new IllegalArgumentException("Invalid island placement: " + parameters.islandPlacement);
+		}
+		if (!(parameters.islandDensity > 0)) {
+			throw new IllegalArgumentException("Invalid island density: " + parameters.islandDensity);
+		}
+		if (!(parameters.binomialMaxError >= 0)) {
+			throw new IllegalArgumentException("Invalid binomial maximum error: " + parameters.binomialMaxError);
+		}
+		for (float qValueCutoff: parseFloatList(parameters.qValueCutoffs)) {
+			if (!((qValueCutoff >= 0) && (qValueCutoff <= 1))) {
+				throw new IllegalArgumentException("Invalid q-value cutoff: " + qValueCutoff);
+			}
+		}
+		for (IslandFinderParameters islandFinderParameters: parseIslandFinderParameters(parameters)) {
+			if (!(islandFinderParameters.getMinWindowScore() >= 0) || (islandFinderParameters.getGap() < 0) || (islandFinderParameters.getMinLength() < 0)) {
+				throw new IllegalArgumentException("Invalid island finder parameters: " + islandFinderParameters);
+			}
+		}
+		GenomeRegions regions = initManagers(parameters);
+		if (regions != null) {
+			System.out.println("Quick-look simulations restricted to " + NumberFormat.getIntegerInstance().format(regions.getLength())
+					+ "bp, the counts are extrapolated to the genome with a factor of " + regions.getExtrapolationFactor());
+		}
+		List<Dataset> datasets;
+		if (parameters.manifestFile != null) {
+			datasets = Dataset.readManifest(new File(parameters.manifestFile), regions);
+		} else {
+			datasets = new ArrayList<Dataset>();
+			datasets.add(new Dataset("", new File(parameters.sFile), new File(parameters.g1File), regions));
+		}
+		SimulationMetrics.getInstance().registerMBean();
+		if (parameters.metricsPort > 0) {
+			SimulationMetrics.getInstance().startHttpServer(parameters.metricsPort);
+		}
+		// the operation pool is created lazily and the creation is not thread safe
+		// so we make sure it exists before the datasets start running in parallel
+		OperationPool.getInstance();
+		File resultStoreFile = parameters.resultStoreFile != null ? new File(parameters.resultStoreFile) : new File(outDir, ResultStore.DEFAULT_FILE_NAME);
+		ResultStore resultStore = new ResultStore(resultStoreFile, describeBatch(parameters));
 		try {
-			writer = new BufferedWriter(new FileWriter(outFile));
-			printResultField(writer, resultList, "ISLAND CREATED COUNT", ISLAND_CREATED_COUNT);
-			printResultField(writer, resultList, "ISLAND FOUND COUNT", ISLAND_FOUND_COUNT);
-			printResultField(writer, resultList, "FALSE POSITIVES RATE", FALSE_POSITIVES_RATE);
-			printResultField(writer, resultList, "FALSE POSITIVES COUNT", FALSE_POSITIVES_COUNT);
-			printResultField(writer, resultList, "FALSE NEGATIVES RATE", FALSE_NEGATIVES_RATE);
-			printResultField(writer, resultList, "FALSE NEGATIVES COUNT", FALSE_NEGATIVES_COUNT);
-			printResultField(writer, resultList, "ISLAND SIZE MEAN", ISLAND_SIZE_MEAN);
-			printResultField(writer, resultList, "ISLAND SIZE STD ERR", ISLAND_SIZE_STD_ERR);
-			printResultField(writer, resultList, "SAMPLE CTRL DIFFERENCE MEAN", SAMPLE_CTRL_DIFFERENCE_MEAN);
-			printResultField(writer, resultList, "SAMPLE CTRL DIFFERENCE STD ERR", SAMPLE_CTRL_DIFFERENCE_STD_ERR);
+			runDatasets(datasets, outDir, resultStore, parameters);
 		} finally {
-			if (writer != null) {
-				writer.close();
+			resultStore.close();
+		}
+	}
+
+
+	/**
+	 * Runs the simulations of a dataset for all the read increase factors, from the largest to the smallest.
+	 * The read counts of the factors lower than 1 are thinned from the counts of the previous factor,
+	 * so only the counts of the input files and of the current depth are in memory.
+	 * The data of the dataset are loaded when the dataset starts and released when it's done
+	 * @param dataset dataset to process
+	 * @param outDir output directory of the batch
+	 * @param resultStore store where the results of the simulations are appended
+	 * @param parameters command line parameters
+	 * @throws Exception
+	 */
+	private static void runDataset(Dataset dataset, File outDir, ResultStore resultStore, Args parameters) throws Exception {
+		if (!dataset.getName().isEmpty()) {
+			outDir = new File(outDir, dataset.getName());
+			if (!outDir.exists()) {
+				outDir.mkdir();
 			}
 		}
+		try {
+			SCWList sList = dataset.getSList();
+			SCWList g1List = dataset.getG1List();
+			double listDepth = 1;	// depth of the S and G1 lists relative to the input files
+			for (double readIncreaseFactor: parseReadIncreaseFactors(parameters)) {
+				if (readIncreaseFactor < 1) {
+					// the thinning is seeded so the same command gives the same inputs for each depth
+					long seed = computeSeed(parameters.islandSeed, dataset.getName(), readIncreaseFactor);
+					sList = computeWithTimeout(new ThinReadCounts(sList, readIncreaseFactor / listDepth, parameters.binomialMaxError, seed), parameters.cellTimeout);
+					g1List = computeWithTimeout(new ThinReadCounts(g1List, readIncreaseFactor / listDepth, parameters.binomialMaxError, seed + 1), parameters.cellTimeout);
+					listDepth = readIncreaseFactor;
+				}
+				runFactorBatch(readIncreaseFactor, sList, g1List, dataset, outDir, resultStore, parameters);
+			}
+		} finally {
+			dataset.release();
+		}
 	}
 
 
 	/**
-	 * Prints one of the field of the result of a simulation
-	 * @param writer writer that will write in the file
-	 * @param resultList result of the simulation
-	 * @param title title of the field
-	 * @param fieldToPrint field to print. Can be {@link #FALSE_POSITIVES}, {@link #FALSE_NEGATIVES}, {@link #ISLAND_AVERAGE_SIZE} or {@link #SAMPLE_CTRL_AVERAGE_DIFFERENCE}
-	 * @throws IOException
+	 * Runs the simulations of the specified datasets.
+	 * The datasets are processed in parallel by a pool of threads.
+	 * An error in a dataset is printed and doesn't stop the other datasets.
+	 * @param datasets datasets to process
+	 * @param outDir output directory of the batch
+	 * @param resultStore store where the results of the simulations are appended
+	 * @param parameters command line parameters
+	 * @throws InterruptedException
 	 */
-	private static void printResultField(BufferedWriter writer, List<SimulationResult> resultList, String title, int fieldToPrint) throws IOException {
-		writer.write(title);
-		writer.newLine();
-		for (int islandSize: islandSizes) {
-			writer.write("\t" + islandSize);
-		}
-		writer.newLine();
-		int index = 0;
-		for (int i = 0; i < pctReadToAdds.length; i++) {
-			writer.write(Double.toString(pctReadToAdds[i]));
-			for (int j = 0; j < islandSizes.length; j++) {
-				switch (fieldToPrint) {
-				case ISLAND_CREATED_COUNT:
-					writer.write("\t" + resultList.get(index).getIslandCreatedCount());
-					break;
-				case ISLAND_FOUND_COUNT:
-					writer.write("\t" + resultList.get(index).getIslandFoundCount());
-					break;
-				case FALSE_POSITIVES_RATE:
-					writer.write("\t" + resultList.get(index).getFalsePositiveRate());
-					break;
-				case FALSE_POSITIVES_COUNT:
-					writer.write("\t" + resultList.get(index).getFalsePositiveCount());
-					break;
-				case FALSE_NEGATIVES_RATE:
-					writer.write("\t" + resultList.get(index).getFalseNegativeRate());
-					break;
-				case FALSE_NEGATIVES_COUNT:
-					writer.write("\t" + resultList.get(index).getFalseNegativeCount());
-					break;
-				case ISLAND_SIZE_MEAN:
-					writer.write("\t" + resultList.get(index).getIslandAverageSize());
-					break;
-				case ISLAND_SIZE_STD_ERR:
-					writer.write("\t" + resultList.get(index).getIslandSizeStdErr());
-					break;
-				case SAMPLE_CTRL_DIFFERENCE_MEAN:
-					writer.write("\t" + resultList.get(index).getSampleCtrlAverageDifference());
-					break;
-				case SAMPLE_CTRL_DIFFERENCE_STD_ERR:
-					writer.write("\t" + resultList.get(index).getSampleCtrlDifferenceStdErr());
-					break;
-				default:
-					throw new InvalidParameterException("Invalid element to print");
+	private static void runDatasets(List<Dataset> datasets, final File outDir, final ResultStore resultStore, final Args parameters) throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parameters.datasetThreads));
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (final Dataset dataset: datasets) {
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					runDataset(dataset, outDir, resultStore, parameters);
+					return null;
 				}
-				index++;
+			}));
+		}
+		executor.shutdown();
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				futures.get(i).get();
+			} catch (ExecutionException e) {
+				System.err.println("Dataset " + datasets.get(i).getName() + " failed");
+				e.getCause().printStackTrace();
 			}
-			writer.newLine();
 		}
-		writer.newLine();
 	}
 
 
 	/**
 	 * Runs a batch of simulation for a given increase read increase factor
 	 * @param readIncreaseFactor
-	 * @param sList
-	 * @param g1List
+	 * @param sList S phase list of the dataset, already thinned when the factor is lower than 1
+	 * @param g1List G1 phase list of the dataset, already thinned when the factor is lower than 1
+	 * @param dataset
 	 * @param outDir
+	 * @param resultStore store where the results of the simulations are appended
+	 * @param parameters command line parameters
 	 * @throws Exception
 	 */
-	private static void runFactorBatch(int readIncreaseFactor, SCWList sList, SCWList g1List, File outDir) throws Exception {
+	private static void runFactorBatch(double readIncreaseFactor, SCWList sList, SCWList g1List, Dataset dataset, File outDir, ResultStore resultStore, Args parameters) throws Exception {
+		// the lists of the fractional factors are already thinned so their reads are resampled without multiplication
+		int resampleFactor = readIncreaseFactor < 1 ? 1 : (int) readIncreaseFactor;
 		// create outputDir
-		outDir = new File(outDir, Integer.toString(readIncreaseFactor));
+		outDir = new File(outDir, ResultKey.formatReadIncreaseFactor(readIncreaseFactor));
 		if (!outDir.exists()) {
 			outDir.mkdir();
 		}
-		// output file
-		File outFile = new File(outDir, "simulation_summary.tsv");
+		int[] binSizes = parseIntegerList(parameters.binSizes);
+		int[] gaussianWidths = parseIntegerList(parameters.gaussWidths);
+		IslandFinderParameters[] islandFinderParameters = parseIslandFinderParameters(parameters);
 		// simulation batch
-		System.out.println(">>> Read Increase Factor " + readIncreaseFactor + " batch starting <<<");
-		List<SimulationResult> resultList = new ArrayList<SimulationResult>();
-		for (double pctReadToAdd: pctReadToAdds) {
-			for (int islandSize: islandSizes) {
-				System.out.println("*** Simulation with "
+		String datasetPrefix = dataset.getName().isEmpty() ? "" : "[" + dataset.getName() + "] ";
+		System.out.println(datasetPrefix + ">>> Read Increase Factor " + ResultKey.formatReadIncreaseFactor(readIncreaseFactor) + " batch starting <<<");
+		ControlPool controlPool = null;
+		if (parameters.controlPoolSize > 0) {
+			long[] controlSeeds = new long[parameters.controlPoolSize];
+			for (int i = 0; i < controlSeeds.length; i++) {
+				controlSeeds[i] = computeSeed(parameters.islandSeed, dataset.getName(), readIncreaseFactor, i);
+			}
+			controlPool = generateControlPool(parameters.controlPoolSize, sList, g1List, resampleFactor, binSizes, gaussianWidths, parameters.binomialMaxError, controlSeeds);
+		}
+		// the mappable regions are indexed once and shared by the island placements of all the replicates
+		// they are indexed on the input list so the thinned depths place their islands in the same regions
+		MappableRegionIndex mappableRegions = new MappableRegionIndex(dataset.getG1List());
+		boolean isRandomPlacement = parameters.islandPlacement.equals(IslandPlacement.RANDOM_PLACEMENT_NAME);
+		QValueSweepWriter qValueSweepWriter = new QValueSweepWriter(outDir, parseFloatList(parameters.qValueCutoffs));
+		ReplicateController replicateController = new ReplicateController(parameters.minReplicates, parameters.maxReplicates, parameters.ciHalfWidth);
+		SimulationMetrics metrics = SimulationMetrics.getInstance();
+		List<TrackConfiguration> configurations = new ArrayList<TrackConfiguration>();
+		// replicates of the simulated cells indexed by configuration, used to fit the power models of the surrogate mode
+		Map<TrackConfiguration, List<SimulationResult>> simulatedReplicates = new LinkedHashMap<TrackConfiguration, List<SimulationResult>>();
+		for (int binSize: binSizes) {
+			for (int gaussianWidth: gaussianWidths) {
+				for (IslandFinderParameters currentParameters: islandFinderParameters) {
+					TrackConfiguration configuration = new TrackConfiguration(binSize, gaussianWidth, currentParameters);
+					configurations.add(configuration);
+					simulatedReplicates.put(configuration, new ArrayList<SimulationResult>());
+				}
+			}
+		}
+		// cells of the grid (index of the percentage of reads added, index of the island size) simulated by each round
+		// there is a single round with all the cells, or a round per refinement of the power models in surrogate mode
+		boolean[][] isSimulated = new boolean[pctReadToAdds.length][islandSizes.length];
+		List<int[]> cellsToRun = selectDesignCells(parameters.surrogate);
+		while (!cellsToRun.isEmpty()) {
+			metrics.addCellsToRun(cellsToRun.size() * replicateController.getMinReplicates());
+			for (int[] cell: cellsToRun) {
+				double pctReadToAdd = pctReadToAdds[cell[0]];
+				int islandSize = islandSizes[cell[1]];
+				System.out.println(datasetPrefix + "*** Simulation with "
 						+ (pctReadToAdd * 100)
 						+ "% reads added on islands of "
 						+ NumberFormat.getIntegerInstance().format(islandSize)
 						+ "bp starting ***");
-				SimulationResult result = new SingleSimulation(outDir, islandSize, pctReadToAdd, sList, g1List, readIncreaseFactor).compute();
-				resultList.add(result);
+				Map<TrackConfiguration, ReplicatedSimulationResult> cellResults = new LinkedHashMap<TrackConfiguration, ReplicatedSimulationResult>();
+				for (TrackConfiguration configuration: configurations) {
+					cellResults.put(configuration, new ReplicatedSimulationResult(configuration));
+				}
+				int replicateCount = 0;
+				do {
+					replicateCount++;
+					if (replicateCount > replicateController.getMinReplicates()) {
+						metrics.addCellsToRun(1);
+					}
+					IslandPlacement islandPlacement;
+					if (isRandomPlacement) {
+						long seed = computeIslandSeed(parameters.islandSeed, dataset.getName(), readIncreaseFactor, islandSize, replicateCount);
+						islandPlacement = IslandPlacement.createRandomPlacement(parameters.islandDensity, mappableRegions, seed);
+					} else {
+						islandPlacement = IslandPlacement.createGridPlacement(SingleSimulation.ISLAND_DISTANCE, mappableRegions);
+					}
+					long resampleSeed = computeResampleSeed(parameters.islandSeed, dataset.getName(), readIncreaseFactor, islandSize, pctReadToAdd, replicateCount);
+					SingleSimulation simulation = new SingleSimulation(outDir, islandSize, pctReadToAdd, sList, g1List, resampleFactor, binSizes, gaussianWidths, islandFinderParameters, controlPool, islandPlacement,
+							parameters.binomialMaxError, resampleSeed);
+					List<SimulationResult> results = runSimulation(simulation, islandSize, pctReadToAdd, configurations, parameters.cellTimeout);
+					if (results.get(0).isFailed()) {
+						System.err.println(datasetPrefix + "*** Simulation on islands of " + islandSize + "bp with " + (pctReadToAdd * 100) + "% reads added failed: " + results.get(0).getFailureReason() + " ***");
+					}
+					for (SimulationResult result: results) {
+						cellResults.get(result.getConfiguration()).addReplicate(result);
+						simulatedReplicates.get(result.getConfiguration()).add(result);
+						resultStore.append(dataset.getName(), readIncreaseFactor, replicateCount, result);
+						qValueSweepWriter.write(replicateCount, result);
+					}
+				} while (replicateController.needsMoreReplicates(cellResults.values()));
+				if (replicateController.isReplicating()) {
+					System.out.println(datasetPrefix + "*** Simulation on islands of " + islandSize + "bp with " + (pctReadToAdd * 100) + "% reads added done after " + replicateCount + " replicate(s) ***");
+				}
+				isSimulated[cell[0]][cell[1]] = true;
+			}
+			if (parameters.surrogate) {
+				cellsToRun = selectUncertainCells(isSimulated, simulatedReplicates.values(), parameters.ciHalfWidth);
+				System.out.println(datasetPrefix + "*** Power model: " + cellsToRun.size() + " cell(s) with an uncertain rate ***");
+			} else {
+				cellsToRun = new ArrayList<int[]>();
+			}
+		}
+		// print the summaries of the batch, one file per configuration when there is more than one
+		double extrapolationFactor = dataset.getRegions() == null ? 1 : dataset.getRegions().getExtrapolationFactor();
+		if (parameters.surrogate) {
+			ResultSummaryWriter.writeSummaries(resultStore, resultStore.getRun(), dataset.getName(), readIncreaseFactor, configurations, extrapolationFactor, pctReadToAdds, islandSizes, outDir);
+		} else {
+			ResultSummaryWriter.writeSummaries(resultStore, resultStore.getRun(), dataset.getName(), readIncreaseFactor, configurations, extrapolationFactor, outDir);
+		}
+	}
+
+
+	/**
+	 * Runs a simulation. A simulation that throws an exception or that doesn't complete before the timeout
+	 * is stopped and recorded as failed so it doesn't stall the rest of the batch.
+	 * @param simulation simulation to run
+	 * @param islandSize size of the islands of the simulation
+	 * @param pctReadToAdd percentage of reads added in the islands
+	 * @param configurations track configurations of the simulation
+	 * @param cellTimeout maximum duration of the simulation in seconds. 0 for no limit
+	 * @return the results of the simulation for each configuration or failed results
+	 * @throws InterruptedException
+	 */
+	private static List<SimulationResult> runSimulation(final SingleSimulation simulation, int islandSize, double pctReadToAdd, Collection<TrackConfiguration> configurations, int cellTimeout) throws InterruptedException {
+		SimulationMetrics metrics = SimulationMetrics.getInstance();
+		metrics.cellStarted(simulation.getCellName());
+		FutureTask<List<SimulationResult>> task = new FutureTask<List<SimulationResult>>(new Callable<List<SimulationResult>>() {
+			@Override
+			public List<SimulationResult> call() throws Exception {
+				return simulation.compute();
+			}
+		});
+		Thread thread = new Thread(task, "Simulation " + simulation.getCellName());
+		thread.setDaemon(true);
+		thread.start();
+		String failureReason = null;
+		List<SimulationResult> results = null;
+		try {
+			if (cellTimeout > 0) {
+				results = task.get(cellTimeout, TimeUnit.SECONDS);
+			} else {
+				results = task.get();
+			}
+		} catch (TimeoutException e) {
+			// stop the operations of the simulation and interrupt its thread
+			simulation.stop();
+			task.cancel(true);
+			thread.join(CELL_STOP_GRACE_PERIOD);
+			if (thread.isAlive()) {
+				System.err.println("Simulation " + simulation.getCellName() + " is still running after being stopped");
+			}
+			failureReason = "timed out after " + cellTimeout + "s";
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			failureReason = e.getCause().toString();
+		}
+		if (failureReason != null) {
+			metrics.cellFailed(simulation.getCellName());
+			results = new ArrayList<SimulationResult>();
+			for (TrackConfiguration configuration: configurations) {
+				results.add(SimulationResult.createFailedResult(islandSize, pctReadToAdd, configuration.getBinSize(), configuration.getGaussianWidth(), configuration.getIslandFinderParameters(), failureReason));
+			}
+		} else {
+			metrics.cellCompleted(simulation.getCellName());
+		}
+		return results;
+	}
+
+
+	/**
+	 * Selects the cells of the grid simulated by the first round of a batch.
+	 * In surrogate mode the design is every other percentage of reads added and every other island size,
+	 * with the first and last ones so the power models interpolate the rates of the other cells
+	 * @param isSurrogate true for the sparse design of the surrogate mode, false for all the cells
+	 * @return the cells to simulate (index of the percentage of reads added, index of the island size)
+	 */
+	private static List<int[]> selectDesignCells(boolean isSurrogate) {
+		List<int[]> cells = new ArrayList<int[]>();
+		for (int i = 0; i < pctReadToAdds.length; i++) {
+			for (int j = 0; j < islandSizes.length; j++) {
+				boolean isDesignRow = ((i % 2) == 0) || (i == (pctReadToAdds.length - 1));
+				boolean isDesignColumn = ((j % 2) == 0) || (j == (islandSizes.length - 1));
+				if (!isSurrogate || (isDesignRow && isDesignColumn)) {
+					cells.add(new int[] {i, j});
+				}
+			}
+		}
+		return cells;
+	}
+
+
+	/**
+	 * Fits the power models of the false positive and false negative rates of each configuration
+	 * and selects the cells that were not simulated where one of the models is uncertain
+	 * @param isSimulated cells of the grid already simulated indexed by percentage of reads added and island size
+	 * @param simulatedReplicates replicates of the simulated cells of each configuration
+	 * @param ciHalfWidth maximum half-width of the 95% confidence intervals of the rates estimated by the models
+	 * @return the cells to simulate (index of the percentage of reads added, index of the island size)
+	 */
+	private static List<int[]> selectUncertainCells(boolean[][] isSimulated, Collection<List<SimulationResult>> simulatedReplicates, double ciHalfWidth) {
+		// there is no false negative model when no replicate succeeded and no false positive model when no island was found
+		// in the latter case the false positive rate is 0 and all the cells are left to the false negative model
+		List<PowerModel> models = new ArrayList<PowerModel>();
+		boolean hasFalseNegativeModels = true;
+		for (List<SimulationResult> replicates: simulatedReplicates) {
+			PowerModel falsePositiveModel = PowerModel.fit(replicates, true);
+			PowerModel falseNegativeModel = PowerModel.fit(replicates, false);
+			if (falsePositiveModel != null) {
+				models.add(falsePositiveModel);
+			}
+			models.add(falseNegativeModel);
+			hasFalseNegativeModels &= falseNegativeModel != null;
+		}
+		List<int[]> cells = new ArrayList<int[]>();
+		for (int i = 0; i < pctReadToAdds.length; i++) {
+			for (int j = 0; j < islandSizes.length; j++) {
+				if (!isSimulated[i][j]) {
+					boolean isUncertain = !hasFalseNegativeModels;
+					for (int k = 0; (k < models.size()) && !isUncertain; k++) {
+						isUncertain = !(models.get(k).computeCIHalfWidth(islandSizes[j], pctReadToAdds[i]) <= ciHalfWidth);
+					}
+					if (isUncertain) {
+						cells.add(new int[] {i, j});
+					}
+				}
 			}
 		}
-		// print the result of the batch
-		printResult(outFile, resultList);
+		return cells;
 	}
 }
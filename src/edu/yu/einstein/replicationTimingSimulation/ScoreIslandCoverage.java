@@ -0,0 +1,155 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import edu.yu.einstein.genplay.core.operation.Operation;
+import edu.yu.einstein.genplay.dataStructure.gene.Gene;
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.geneList.GeneList;
+import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
+
+/**
+ * Scores the islands of a simulation with the sample and control S and G1 tracks in one pass.
+ * The score of an island in a track is the base coverage sum of its exons, like the score computed by the GenPlay
+ * {@link edu.yu.einstein.genplay.core.operation.geneList.GLOScoreFromSCWList} operation with the
+ * {@link edu.yu.einstein.genplay.dataStructure.enums.GeneScoreType#BASE_COVERAGE_SUM} type,
+ * but it is retrieved from the {@link CoverageIndex} of the track.
+ * @author Julien Lajugie
+ */
+public class ScoreIslandCoverage implements Operation<IslandCoverageTable> {
+
+	private final GeneList 		islands;			// islands to score
+	private final CoverageIndex sampleS;			// coverage of the sample S track
+	private final CoverageIndex sampleG1;			// coverage of the sample G1 track
+	private final CoverageIndex controlS;			// coverage of the control S track
+	private final CoverageIndex controlG1;			// coverage of the control G1 track
+	private volatile boolean	stopped = false;	// true if the operation must be stopped
+
+
+	/**
+	 * Creates an instance of {@link ScoreIslandCoverage}
+	 * @param islands islands to score
+	 * @param sampleS coverage of the sample S track
+	 * @param sampleG1 coverage of the sample G1 track
+	 * @param controlS coverage of the control S track
+	 * @param controlG1 coverage of the control G1 track
+	 */
+	public ScoreIslandCoverage(GeneList islands, CoverageIndex sampleS, CoverageIndex sampleG1, CoverageIndex controlS, CoverageIndex controlG1) {
+		this.islands = islands;
+		this.sampleS = sampleS;
+		this.sampleG1 = sampleG1;
+		this.controlS = controlS;
+		this.controlG1 = controlG1;
+	}
+
+
+	/**
+	 * Scores the islands. The chromosomes are scored in parallel.
+	 * @return the table with the read counts of the islands
+	 */
+	@Override
+	public IslandCoverageTable compute() throws Exception {
+		int chromosomeCount = islands.size();
+		final int[][] starts = new int[chromosomeCount][];
+		final int[][] stops = new int[chromosomeCount][];
+		final long[][] sampleSCounts = new long[chromosomeCount][];
+		final long[][] sampleG1Counts = new long[chromosomeCount][];
+		final long[][] controlSCounts = new long[chromosomeCount][];
+		final long[][] controlG1Counts = new long[chromosomeCount][];
+		List<Callable<Void>> chromosomeList = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < chromosomeCount; i++) {
+			final int chromosomeIndex = i;
+			final ListView<Gene> currentIslands = islands.get(i);
+			Callable<Void> currentThread = new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					int islandCount = currentIslands.size();
+					starts[chromosomeIndex] = new int[islandCount];
+					stops[chromosomeIndex] = new int[islandCount];
+					sampleSCounts[chromosomeIndex] = new long[islandCount];
+					sampleG1Counts[chromosomeIndex] = new long[islandCount];
+					controlSCounts[chromosomeIndex] = new long[islandCount];
+					controlG1Counts[chromosomeIndex] = new long[islandCount];
+					for (int j = 0; (j < islandCount) && !stopped; j++) {
+						Gene island = currentIslands.get(j);
+						starts[chromosomeIndex][j] = island.getStart();
+						stops[chromosomeIndex][j] = island.getStop();
+						double sampleSCoverage = 0;
+						double sampleG1Coverage = 0;
+						double controlSCoverage = 0;
+						double controlG1Coverage = 0;
+						ListView<ScoredChromosomeWindow> exons = island.getExons();
+						for (int k = 0; (exons != null) && (k < exons.size()); k++) {
+							int exonStart = exons.get(k).getStart();
+							int exonStop = exons.get(k).getStop();
+							sampleSCoverage += sampleS.getCoverage(chromosomeIndex, exonStart, exonStop);
+							sampleG1Coverage += sampleG1.getCoverage(chromosomeIndex, exonStart, exonStop);
+							controlSCoverage += controlS.getCoverage(chromosomeIndex, exonStart, exonStop);
+							controlG1Coverage += controlG1.getCoverage(chromosomeIndex, exonStart, exonStop);
+						}
+						// the GenPlay gene scores are floats so the coverages are rounded the same way before being truncated
+						sampleSCounts[chromosomeIndex][j] = (long) (float) sampleSCoverage;
+						sampleG1Counts[chromosomeIndex][j] = (long) (float) sampleG1Coverage;
+						controlSCounts[chromosomeIndex][j] = (long) (float) controlSCoverage;
+						controlG1Counts[chromosomeIndex][j] = (long) (float) controlG1Coverage;
+					}
+					return null;
+				}
+			};
+			chromosomeList.add(currentThread);
+		}
+		ChunkPool.getInstance().invokeAll(chromosomeList);
+		if (stopped) {
+			return null;
+		}
+		return new IslandCoverageTable(starts, stops, sampleSCounts, sampleG1Counts, controlSCounts, controlG1Counts);
+	}
+
+
+	@Override
+	public String getDescription() {
+		return "Operation: Score Island Coverage";
+	}
+
+
+	@Override
+	public String getProcessingDescription() {
+		return "Scoring Island Coverage";
+	}
+
+
+	@Override
+	public int getStepCount() {
+		return 1;
+	}
+
+
+	@Override
+	public void stop() {
+		stopped = true;
+	}
+}
@@ -0,0 +1,510 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.yu.einstein.genplay.core.operationPool.OperationPool;
+
+/**
+ * Live metrics of the running simulations.
+ * The metrics are published as a JMX MBean and optionally on a local HTTP endpoint (text format, one metric per line).
+ * @author Julien Lajugie
+ */
+public final class SimulationMetrics implements SimulationMetricsMBean {
+
+	/** Name of the MBean */
+	public final static String OBJECT_NAME = "edu.yu.einstein.replicationTimingSimulation:type=SimulationMetrics";
+
+	private static SimulationMetrics instance = null;	// instance of the singleton
+
+	private final AtomicLong 				cellsTotal = new AtomicLong();			// number of simulations scheduled
+	private final AtomicLong 				cellsCompleted = new AtomicLong();		// number of simulations completed
+	private final AtomicLong 				cellsFailed = new AtomicLong();			// number of simulations that failed or timed out
+	private final AtomicLong 				windowsProcessed = new AtomicLong();	// number of windows processed by the resampling
+	private final ConcurrentMap<String, String> cellStages = new ConcurrentHashMap<String, String>();	// stages of the running simulations
+	private final SortedMap<String, StageStatistics> stageStatistics = new TreeMap<String, StageStatistics>();	// statistics of the stages of the simulations indexed by step
+	private volatile long 					startTime = 0;							// time when the first simulation started (ms)
+	private ThreadPoolExecutor 				operationPoolExecutor = null;			// executor of the GenPlay operation pool, null if unavailable
+	private boolean 						operationPoolExecutorRetrieved = false;	// true if we already tried to retrieve the operation pool executor
+	private HttpServer 						httpServer = null;						// http server publishing the metrics, null if not started
+
+
+	/**
+	 * Durations and heap usage of the stages computing a same step of the simulations
+	 * @author Julien Lajugie
+	 */
+	public static class StageStatistics {
+
+		private int 	count = 0;			// number of stages completed
+		private long 	totalTime = 0;		// sum of the durations of the stages (ns)
+		private long 	maxTime = 0;		// longest duration of a stage (ns)
+		private long 	maxHeapUsed = 0;	// largest amount of heap used when a stage completed (bytes)
+
+
+		/**
+		 * Adds a completed stage to the statistics
+		 * @param duration duration of the stage (ns)
+		 * @param heapUsed amount of heap used when the stage completed (bytes)
+		 */
+		private void add(long duration, long heapUsed) {
+			count++;
+			totalTime += duration;
+			maxTime = Math.max(maxTime, duration);
+			maxHeapUsed = Math.max(maxHeapUsed, heapUsed);
+		}
+
+
+		/**
+		 * @return a copy of the statistics
+		 */
+		private StageStatistics copy() {
+			StageStatistics copy = new StageStatistics();
+			copy.count = count;
+			copy.totalTime = totalTime;
+			copy.maxTime = maxTime;
+			copy.maxHeapUsed = maxHeapUsed;
+			return copy;
+		}
+
+
+		/**
+		 * @return the number of stages completed
+		 */
+		public int getCount() {
+			return count;
+		}
+
+
+		/**
+		 * @return the largest amount of heap used when a stage completed, in bytes.
+		 * The stages running concurrently share the heap so it's an upper bound of the memory used by one stage
+		 */
+		public long getMaxHeapUsed() {
+			return maxHeapUsed;
+		}
+
+
+		/**
+		 * @return the longest duration of a stage, in seconds
+		 */
+		public double getMaxSeconds() {
+			return maxTime / 1e9;
+		}
+
+
+		/**
+		 * @return the sum of the durations of the stages, in seconds
+		 */
+		public double getTotalSeconds() {
+			return totalTime / 1e9;
+		}
+
+
+		@Override
+		public String toString() {
+			return "count=" + count
+					+ ", total_seconds=" + getTotalSeconds()
+					+ ", mean_seconds=" + (count == 0 ? 0 : getTotalSeconds() / count)
+					+ ", max_seconds=" + getMaxSeconds()
+					+ ", max_heap_used_bytes=" + maxHeapUsed;
+		}
+	}
+
+
+	/**
+	 * @return the instance of the singleton {@link SimulationMetrics}
+	 */
+	public static synchronized SimulationMetrics getInstance() {
+		if (instance == null) {
+			instance = new SimulationMetrics();
+		}
+		return instance;
+	}
+
+
+	/**
+	 * Private constructor of the singleton
+	 */
+	private SimulationMetrics() {
+		super();
+	}
+
+
+	/**
+	 * Adds simulations to the number of scheduled simulations
+	 * @param cellCount number of simulations to add
+	 */
+	public void addCellsToRun(int cellCount) {
+		cellsTotal.addAndGet(cellCount);
+	}
+
+
+	/**
+	 * Adds windows to the number of windows processed
+	 * @param windowCount number of windows processed
+	 */
+	public void addWindowsProcessed(long windowCount) {
+		windowsProcessed.addAndGet(windowCount);
+	}
+
+
+	/**
+	 * Notifies that a simulation is done
+	 * @param cellName name of the simulation
+	 */
+	public void cellCompleted(String cellName) {
+		cellStages.remove(cellName);
+		cellsCompleted.incrementAndGet();
+	}
+
+
+	/**
+	 * Notifies that a simulation failed or timed out
+	 * @param cellName name of the simulation
+	 */
+	public void cellFailed(String cellName) {
+		cellStages.remove(cellName);
+		cellsFailed.incrementAndGet();
+	}
+
+
+	/**
+	 * Notifies that a simulation started
+	 * @param cellName name of the simulation
+	 */
+	public void cellStarted(String cellName) {
+		synchronized (this) {
+			if (startTime == 0) {
+				startTime = System.currentTimeMillis();
+			}
+		}
+		cellStages.put(cellName, "starting");
+	}
+
+
+	@Override
+	public long getCellsCompleted() {
+		return cellsCompleted.get();
+	}
+
+
+	@Override
+	public long getCellsFailed() {
+		return cellsFailed.get();
+	}
+
+
+	@Override
+	public long getCellsInFlight() {
+		return cellStages.size();
+	}
+
+
+	@Override
+	public long getCellsTotal() {
+		return cellsTotal.get();
+	}
+
+
+	@Override
+	public String[] getCellStages() {
+		List<String> stages = new ArrayList<String>();
+		for (Map.Entry<String, String> entry: cellStages.entrySet()) {
+			stages.add(entry.getKey() + ": " + entry.getValue());
+		}
+		return stages.toArray(new String[stages.size()]);
+	}
+
+
+	@Override
+	public int getChunkPoolActiveWorkers() {
+		return ChunkPool.getInstance().getActiveWorkerCount();
+	}
+
+
+	@Override
+	public int getChunkPoolQueueDepth() {
+		return ChunkPool.getInstance().getQueueDepth();
+	}
+
+
+	@Override
+	public long getEtaSeconds() {
+		long completed = cellsCompleted.get() + cellsFailed.get();
+		long remaining = cellsTotal.get() - completed;
+		if ((completed == 0) || (startTime == 0)) {
+			return -1;
+		}
+		double secondsPerCell = getUptimeSeconds() / (double) completed;
+		return Math.round(secondsPerCell * remaining);
+	}
+
+
+	@Override
+	public long getHeapMax() {
+		return Runtime.getRuntime().maxMemory();
+	}
+
+
+	@Override
+	public long getHeapPeak() {
+		long heapPeak = 0;
+		for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				heapPeak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return heapPeak;
+	}
+
+
+	@Override
+	public long getHeapUsed() {
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+
+	@Override
+	public int getOperationPoolBusyThreads() {
+		ThreadPoolExecutor executor = retrieveOperationPoolExecutor();
+		return executor == null ? -1 : executor.getActiveCount();
+	}
+
+
+	@Override
+	public int getOperationPoolQueueDepth() {
+		ThreadPoolExecutor executor = retrieveOperationPoolExecutor();
+		return executor == null ? -1 : executor.getQueue().size();
+	}
+
+
+	/**
+	 * @return a copy of the statistics of the stages of the simulations indexed by step
+	 */
+	public SortedMap<String, StageStatistics> getStageStatistics() {
+		SortedMap<String, StageStatistics> copy = new TreeMap<String, StageStatistics>();
+		synchronized (stageStatistics) {
+			for (Map.Entry<String, StageStatistics> entry: stageStatistics.entrySet()) {
+				copy.put(entry.getKey(), entry.getValue().copy());
+			}
+		}
+		return copy;
+	}
+
+
+	@Override
+	public String[] getStageTimes() {
+		List<String> stageTimes = new ArrayList<String>();
+		for (Map.Entry<String, StageStatistics> entry: getStageStatistics().entrySet()) {
+			stageTimes.add(entry.getKey() + ": " + entry.getValue());
+		}
+		return stageTimes.toArray(new String[stageTimes.size()]);
+	}
+
+
+	@Override
+	public long getUptimeSeconds() {
+		if (startTime == 0) {
+			return 0;
+		}
+		return (System.currentTimeMillis() - startTime) / 1000;
+	}
+
+
+	@Override
+	public long getWindowsProcessed() {
+		return windowsProcessed.get();
+	}
+
+
+	@Override
+	public double getWindowsPerSecond() {
+		if (startTime == 0) {
+			return 0;
+		}
+		long elapsedTime = System.currentTimeMillis() - startTime;
+		if (elapsedTime == 0) {
+			return 0;
+		}
+		return windowsProcessed.get() / (elapsedTime / 1000d);
+	}
+
+
+	/**
+	 * Registers the metrics in the platform MBean server
+	 * @throws JMException
+	 */
+	public void registerMBean() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if (!server.isRegistered(name)) {
+			server.registerMBean(this, name);
+		}
+	}
+
+
+	/**
+	 * The executor of the GenPlay operation pool is not exposed by its API so we retrieve it by reflection
+	 * @return the executor of the operation pool or null if it can't be retrieved
+	 */
+	private synchronized ThreadPoolExecutor retrieveOperationPoolExecutor() {
+		if (!operationPoolExecutorRetrieved) {
+			operationPoolExecutorRetrieved = true;
+			try {
+				Field executorField = OperationPool.class.getDeclaredField("executor");
+				executorField.setAccessible(true);
+				Object executor = executorField.get(OperationPool.getInstance());
+				if (executor instanceof ThreadPoolExecutor) {
+					operationPoolExecutor = (ThreadPoolExecutor) executor;
+				}
+			} catch (Exception e) {
+				operationPoolExecutor = null;
+			}
+		}
+		return operationPoolExecutor;
+	}
+
+
+	/**
+	 * Sets the current stage of a running simulation.
+	 * Nothing is done once the simulation completed or failed so a stopped simulation still running doesn't come back in the metrics
+	 * @param cellName name of the simulation
+	 * @param stage current stage of the simulation
+	 */
+	public void setCellStage(String cellName, String stage) {
+		cellStages.replace(cellName, stage);
+	}
+
+
+	/**
+	 * Notifies that a stage of a simulation is done
+	 * @param step step computed by the stage
+	 * @param duration duration of the stage (ns)
+	 */
+	public void stageCompleted(String step, long duration) {
+		long heapUsed = getHeapUsed();
+		synchronized (stageStatistics) {
+			StageStatistics statistics = stageStatistics.get(step);
+			if (statistics == null) {
+				statistics = new StageStatistics();
+				stageStatistics.put(step, statistics);
+			}
+			statistics.add(duration, heapUsed);
+		}
+	}
+
+
+	/**
+	 * Starts a http server publishing the metrics on the loopback interface at the address http://localhost:port/metrics
+	 * @param port port of the server
+	 * @throws IOException
+	 */
+	public synchronized void startHttpServer(int port) throws IOException {
+		if (httpServer != null) {
+			return;
+		}
+		httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getByName(null), port), 0);
+		httpServer.createContext("/metrics", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] response = toText().getBytes("UTF-8");
+				exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+				exchange.sendResponseHeaders(200, response.length);
+				OutputStream out = exchange.getResponseBody();
+				try {
+					out.write(response);
+				} finally {
+					out.close();
+				}
+			}
+		});
+		ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "simulation-metrics-http");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		httpServer.setExecutor(executor);
+		httpServer.start();
+	}
+
+
+	/**
+	 * @return the metrics in a text format, one metric per line
+	 */
+	public String toText() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("cells_total ").append(getCellsTotal()).append('\n');
+		sb.append("cells_completed ").append(getCellsCompleted()).append('\n');
+		sb.append("cells_failed ").append(getCellsFailed()).append('\n');
+		sb.append("cells_in_flight ").append(getCellsInFlight()).append('\n');
+		sb.append("windows_processed ").append(getWindowsProcessed()).append('\n');
+		sb.append("windows_per_second ").append(getWindowsPerSecond()).append('\n');
+		sb.append("operation_pool_queue_depth ").append(getOperationPoolQueueDepth()).append('\n');
+		sb.append("operation_pool_busy_threads ").append(getOperationPoolBusyThreads()).append('\n');
+		sb.append("chunk_pool_queue_depth ").append(getChunkPoolQueueDepth()).append('\n');
+		sb.append("chunk_pool_active_workers ").append(getChunkPoolActiveWorkers()).append('\n');
+		sb.append("heap_used_bytes ").append(getHeapUsed()).append('\n');
+		sb.append("heap_peak_bytes ").append(getHeapPeak()).append('\n');
+		sb.append("heap_max_bytes ").append(getHeapMax()).append('\n');
+		sb.append("uptime_seconds ").append(getUptimeSeconds()).append('\n');
+		sb.append("eta_seconds ").append(getEtaSeconds()).append('\n');
+		for (String cellStage: getCellStages()) {
+			sb.append("cell_stage ").append(cellStage).append('\n');
+		}
+		for (String stageTime: getStageTimes()) {
+			sb.append("stage_time ").append(stageTime).append('\n');
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+/**
+ * JMX interface of the live metrics of the running simulations
+ * @author Julien Lajugie
+ */
+public interface SimulationMetricsMBean {
+
+	/**
+	 * @return the number of simulations completed
+	 */
+	public long getCellsCompleted();
+
+
+	/**
+	 * @return the number of simulations that failed or timed out
+	 */
+	public long getCellsFailed();
+
+
+	/**
+	 * @return the number of simulations running
+	 */
+	public long getCellsInFlight();
+
+
+	/**
+	 * @return the number of simulations scheduled since the start of the batch
+	 */
+	public long getCellsTotal();
+
+
+	/**
+	 * @return the current stage of each running simulation
+	 */
+	public String[] getCellStages();
+
+
+	/**
+	 * @return the number of workers of the chunk pool running a task
+	 */
+	public int getChunkPoolActiveWorkers();
+
+
+	/**
+	 * @return the number of tasks waiting in the queues of the chunk pool
+	 */
+	public int getChunkPoolQueueDepth();
+
+
+	/**
+	 * @return the estimated number of seconds before the end of the scheduled simulations. -1 if unknown
+	 */
+	public long getEtaSeconds();
+
+
+	/**
+	 * @return the maximum amount of memory that the JVM will attempt to use, in bytes
+	 */
+	public long getHeapMax();
+
+
+	/**
+	 * @return the sum of the peak usages of the heap memory pools since the start of the JVM, in bytes
+	 */
+	public long getHeapPeak();
+
+
+	/**
+	 * @return the amount of heap memory in use, in bytes
+	 */
+	public long getHeapUsed();
+
+
+	/**
+	 * @return the number of busy threads of the GenPlay operation pool. -1 if unknown
+	 */
+	public int getOperationPoolBusyThreads();
+
+
+	/**
+	 * @return the number of tasks waiting in the queue of the GenPlay operation pool. -1 if unknown
+	 */
+	public int getOperationPoolQueueDepth();
+
+
+	/**
+	 * @return the number, durations and heap usage of the completed stages of the simulations, one line per step
+	 */
+	public String[] getStageTimes();
+
+
+	/**
+	 * @return the number of seconds since the first simulation started
+	 */
+	public long getUptimeSeconds();
+
+
+	/**
+	 * @return the number of windows processed by the resampling since the first simulation started
+	 */
+	public long getWindowsProcessed();
+
+
+	/**
+	 * @return the number of windows processed by the resampling per second
+	 */
+	public double getWindowsPerSecond();
+}
@@ -29,6 +29,9 @@ public class SimulationResult {
 
 	private final int 		islandSize;						// size of the islands used in the simulation
 	private final double 	percentageReadsAdded;			// number of reads added to the island (eg: 0.1 if there were 10% more reads)
+	private final int 		binSize;						// size of the bins used in the simulation
+	private final int 		gaussianWidth;					// moving window width of the gaussian smoothing used in the simulation
+	private final IslandFinderParameters islandFinderParameters;	// parameters of the island finder used in the simulation
 	private final int 		islandCreatedCount;				// number of islands created for the simulation
 	private final int 		islandFoundCount;				// number of island found at the end of the simulation
 	private final int 		falsePositiveCount;				// number of false positives in the simulation
@@ -37,26 +40,36 @@ public class SimulationResult {
 	private final double	islandSizeStdErr;				// standard error of the island size
 	private final double	sampleCtrlAverageDifference;	// average difference between the sample and the control after gaussing
 	private final double	sampleCtrlDifferenceStdErr;		// standard error of the differences between the sample and the control after gaussing
+	private final String	failureReason;					// reason of the failure of the simulation, null if the simulation succeeded
+	private final QValueSweep	qValueSweep;				// false positives and false negatives at every q-value cutoff, null if not available
 
 
 	/**
 	 * Creates an instance of {@link SimulationResult}
 	 * @param islandSize size of the islands used in the simulation
 	 * @param percentageReadsAdded number of reads added to the island (eg: 0.1 if there were 10% more reads)
+	 * @param binSize size of the bins used in the simulation
+	 * @param gaussianWidth moving window width of the gaussian smoothing used in the simulation
+	 * @param islandFinderParameters parameters of the island finder used in the simulation
 	 * @param islandCreatedCount number of island generated for the simulation
 	 * @param islandFoundCount number of island detected during the simulation
 	 * @param falsePositiveCount number of islands found that were not generated
 	 * @param falseNegativeCount number of islands missed
 	 * @param islandAverageSize average size of the island found during the simulation
 	 * @param SG1AverageDifference average difference between the sample and the control after gaussing
+	 * @param qValueSweep false positives and false negatives at every q-value cutoff, null if not available
 	 */
-	public SimulationResult(int islandSize, double percentageReadsAdded,
+	public SimulationResult(int islandSize, double percentageReadsAdded, int binSize, int gaussianWidth, IslandFinderParameters islandFinderParameters,
 			int islandCreatedCount, int islandFoundCount,
 			int falsePositiveCount, int falseNegativeCount,
 			int islandAverageSize, double islandSizeStdErr,
-			double sampleCtrlAverageDifference, double sampleCtrlDifferenceStdErr) {
+			double sampleCtrlAverageDifference, double sampleCtrlDifferenceStdErr,
+			QValueSweep qValueSweep) {
 		this.islandSize = islandSize;
 		this.percentageReadsAdded = percentageReadsAdded;
+		this.binSize = binSize;
+		this.gaussianWidth = gaussianWidth;
+		this.islandFinderParameters = islandFinderParameters;
 		this.islandCreatedCount = islandCreatedCount;
 		this.islandFoundCount = islandFoundCount;
 		this.falsePositiveCount = falsePositiveCount;
@@ -65,6 +78,75 @@ public class SimulationResult {
 		this.islandSizeStdErr = islandSizeStdErr;
 		this.sampleCtrlAverageDifference = sampleCtrlAverageDifference;
 		this.sampleCtrlDifferenceStdErr = sampleCtrlDifferenceStdErr;
+		this.qValueSweep = qValueSweep;
+		failureReason = null;
+	}
+
+
+	/**
+	 * Creates an instance of {@link SimulationResult} for a simulation that failed
+	 * @param islandSize size of the islands used in the simulation
+	 * @param percentageReadsAdded number of reads added to the island (eg: 0.1 if there were 10% more reads)
+	 * @param binSize size of the bins used in the simulation
+	 * @param gaussianWidth moving window width of the gaussian smoothing used in the simulation
+	 * @param islandFinderParameters parameters of the island finder used in the simulation
+	 * @param failureReason reason of the failure of the simulation
+	 */
+	private SimulationResult(int islandSize, double percentageReadsAdded, int binSize, int gaussianWidth, IslandFinderParameters islandFinderParameters, String failureReason) {
+		this.islandSize = islandSize;
+		this.percentageReadsAdded = percentageReadsAdded;
+		this.binSize = binSize;
+		this.gaussianWidth = gaussianWidth;
+		this.islandFinderParameters = islandFinderParameters;
+		islandCreatedCount = 0;
+		islandFoundCount = 0;
+		falsePositiveCount = 0;
+		falseNegativeCount = 0;
+		islandAverageSize = 0;
+		islandSizeStdErr = Double.NaN;
+		sampleCtrlAverageDifference = Double.NaN;
+		sampleCtrlDifferenceStdErr = Double.NaN;
+		qValueSweep = null;
+		this.failureReason = failureReason;
+	}
+
+
+	/**
+	 * Creates the result of a simulation that failed or timed out
+	 * @param islandSize size of the islands used in the simulation
+	 * @param percentageReadsAdded number of reads added to the island (eg: 0.1 if there were 10% more reads)
+	 * @param binSize size of the bins used in the simulation
+	 * @param gaussianWidth moving window width of the gaussian smoothing used in the simulation
+	 * @param islandFinderParameters parameters of the island finder used in the simulation
+	 * @param failureReason reason of the failure of the simulation
+	 * @return a failed {@link SimulationResult}
+	 */
+	public static SimulationResult createFailedResult(int islandSize, double percentageReadsAdded, int binSize, int gaussianWidth, IslandFinderParameters islandFinderParameters, String failureReason) {
+		return new SimulationResult(islandSize, percentageReadsAdded, binSize, gaussianWidth, islandFinderParameters, failureReason);
+	}
+
+
+	/**
+	 * @return the size of the bins used in the simulation
+	 */
+	public int getBinSize() {
+		return binSize;
+	}
+
+
+	/**
+	 * @return the track configuration (bin size, gaussian width and island finder parameters) used in the simulation
+	 */
+	public TrackConfiguration getConfiguration() {
+		return new TrackConfiguration(binSize, gaussianWidth, islandFinderParameters);
+	}
+
+
+	/**
+	 * @return the reason of the failure of the simulation, null if the simulation succeeded
+	 */
+	public String getFailureReason() {
+		return failureReason;
 	}
 
 
@@ -104,6 +186,14 @@ public class SimulationResult {
 	}
 
 
+	/**
+	 * @return the moving window width of the gaussian smoothing used in the simulation
+	 */
+	public int getGaussianWidth() {
+		return gaussianWidth;
+	}
+
+
 	/**
 	 * @return the average size of the island found during the simulation
 	 */
@@ -120,6 +210,14 @@ public class SimulationResult {
 	}
 
 
+	/**
+	 * @return the parameters of the island finder used in the simulation
+	 */
+	public IslandFinderParameters getIslandFinderParameters() {
+		return islandFinderParameters;
+	}
+
+
 	/**
 	 * @return the number of island found at the end of the simulation
 	 */
@@ -152,6 +250,15 @@ public class SimulationResult {
 	}
 
 
+	/**
+	 * @return the false positives and false negatives of the simulation at every q-value cutoff.
+	 * Null if the simulation failed or if the result was read from a {@link ResultStore}
+	 */
+	public QValueSweep getQValueSweep() {
+		return qValueSweep;
+	}
+
+
 	/**
 	 * @return the average difference (after gaussing) between the sample and the control after gaussing
 	 */
@@ -166,4 +273,12 @@ public class SimulationResult {
 	public double getSampleCtrlDifferenceStdErr() {
 		return sampleCtrlDifferenceStdErr;
 	}
+
+
+	/**
+	 * @return true if the simulation failed or timed out
+	 */
+	public boolean isFailed() {
+		return failureReason != null;
+	}
 }
@@ -25,21 +25,19 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 import edu.yu.einstein.genplay.core.operation.Operation;
-import edu.yu.einstein.genplay.core.operation.SCWList.MCWLOInvertMask;
 import edu.yu.einstein.genplay.core.operation.SCWList.SCWLOConvertIntoBinList;
 import edu.yu.einstein.genplay.core.operation.SCWList.SCWLOConvertIntoGeneList;
 import edu.yu.einstein.genplay.core.operation.SCWList.SCWLOConvertIntoSimpleSCWList;
 import edu.yu.einstein.genplay.core.operation.SCWList.SCWLOFilterThreshold;
 import edu.yu.einstein.genplay.core.operation.SCWList.SCWLOOperationWithConstant;
-import edu.yu.einstein.genplay.core.operation.SCWList.SCWLOTwoLayers;
 import edu.yu.einstein.genplay.core.operation.binList.BLOFindIslands;
-import edu.yu.einstein.genplay.core.operation.binList.BLOGauss;
 import edu.yu.einstein.genplay.core.operation.binList.BLOTwoLayers;
 import edu.yu.einstein.genplay.core.operation.geneList.GLOMergeGeneLists;
-import edu.yu.einstein.genplay.core.operation.geneList.GLOScoreFromSCWList;
-import edu.yu.einstein.genplay.dataStructure.enums.GeneScoreType;
 import edu.yu.einstein.genplay.dataStructure.enums.IslandResultType;
 import edu.yu.einstein.genplay.dataStructure.enums.OperationWithConstant;
 import edu.yu.einstein.genplay.dataStructure.enums.SCWListType;
@@ -49,23 +47,22 @@ import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.binList
 import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.geneList.GeneList;
 import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
 import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
+import edu.yu.einstein.replicationTimingSimulation.StageGraph.Stage;
 
 
 /**
  * Runs a simulation for a given island size and a given
  * @author Julien Lajugie
  */
-public class SingleSimulation implements Operation<SimulationResult> {
+public class SingleSimulation implements Operation<List<SimulationResult>> {
 
-	private final static int		ISLAND_DISTANCE 		= 4000000; 	// space between 2 island starts position
 	private final static float		Q_VALUE_CUTOFF 			= 0.05f;	// cutoff for the qValue
 	private final static boolean	USE_ISLAND_FINDER 		= true;		// true to use the island finder to define the island
 	private final static boolean	PRINT_PROGRESS 			= false;	// set to true to print progress info
 	private final static boolean	PRINT_FILES 			= true;		// set to true to print the bed files with the data from the simulation
-	private final static int		GAUSSIAN_MV_WIDTH 		= 400000;	// moving window width of the gaussian smoothing
-	private final static float		IF_MIN_WINDOW 			= 0.02f;	// island finder minimum window score parameter
-	private final static int 		IF_GAP 					= 500;		// island finder gap parameter
-	private final static int 		IF_MIN_LENGTH 			= 50;		// island finder island minimum length parameter
+	final static int				ISLAND_DISTANCE 		= 4000000; 	// space between 2 island starts position of the grid placement
+	final static int				BIN_SIZE 				= 500;		// size of the bins of the binned lists
+	final static int				GAUSSIAN_MV_WIDTH 		= 400000;	// moving window width of the gaussian smoothing
 
 	private final File		outputDir;					// directory for the output data
 	private final int 		islandSize;					// size of the islands to use in the simulation
@@ -73,6 +70,15 @@ public class SingleSimulation implements Operation<SimulationResult> {
 	private final SCWList 	sList;						// s phase data
 	private final SCWList 	g1List;						// g1 phase data
 	private final int 		readIncreaseFactor;			// the read count from the input files will be multiplied by the following factors
+	private final int[] 	binSizes;					// sizes of the bins of the binned lists, a result is computed for each bin size
+	private final int[] 	gaussianWidths;				// moving window widths of the gaussian smoothing, a result is computed for each width
+	private final IslandFinderParameters[] islandFinderParameters;	// parameters of the island finder, a result is computed for each set of parameters
+	private final ControlPool 		controlPool;		// pool of control replicates shared with the other simulations, null to generate a new control
+	private final IslandPlacement	islandPlacement;	// placement of the islands, null to place the islands on a grid
+	private final double 	binomialMaxError;			// maximum error of the normal approximation of the binomial draws of the resampling, 0 to always draw exactly
+	private final long 		seed;						// seed of the resampling
+	private final String 	cellName;					// name of the simulation in the live metrics
+	private final OperationRunner 	runner;				// computes the operations of the simulation, stopped with the simulation
 
 
 	/**
@@ -90,143 +96,361 @@ public class SingleSimulation implements Operation<SimulationResult> {
 			SCWList sList,
 			SCWList g1List,
 			int readIncreaseFactor) {
+		this(outputDir, islandSize, percentageReadToAdd, sList, g1List, readIncreaseFactor, new int[] {BIN_SIZE}, new int[] {GAUSSIAN_MV_WIDTH}, new IslandFinderParameters[] {IslandFinderParameters.DEFAULT}, null, null, 0, new Random().nextLong());
+	}
+
+
+	/**
+	 * Creates an instance of {@link SingleSimulation}
+	 * @param outputDir directory for the output data
+	 * @param islandSize size of the islands to use in the simulation
+	 * @param percentageReadToAdd percentage of reads to add in the S phase in the islands
+	 * @param sList s phase data
+	 * @param g1List g1 phase data
+	 * @param readIncreaseFactor the read count from the input files will be multiplied by the following factors
+	 * @param binSizes sizes of the bins of the binned lists. The simulation returns a result for each bin size
+	 * @param gaussianWidths moving window widths of the gaussian smoothing. The simulation returns a result for each width
+	 * @param islandFinderParameters parameters of the island finder. The simulation returns a result for each set of parameters.
+	 * The difference between the sample and the control is computed once and the sets of parameters are evaluated on it in parallel
+	 * @param controlPool pool of control replicates to draw the control from. Null to generate a new control
+	 * @param islandPlacement placement of the islands. Null to place the islands every {@link #ISLAND_DISTANCE} bases
+	 * @param binomialMaxError maximum distance between the binomial and normal cumulative distributions
+	 * when a binomial draw of the resampling is approximated with a normal deviate, 0 to always draw exactly
+	 * @param seed seed of the resampling. The control and the two resamplings of the sample draw with seeds derived from this seed
+	 */
+	public SingleSimulation(File outputDir,
+			int islandSize,
+			double percentageReadToAdd,
+			SCWList sList,
+			SCWList g1List,
+			int readIncreaseFactor,
+			int[] binSizes,
+			int[] gaussianWidths,
+			IslandFinderParameters[] islandFinderParameters,
+			ControlPool controlPool,
+			IslandPlacement islandPlacement,
+			double binomialMaxError,
+			long seed) {
 		this.outputDir = outputDir;
 		this.islandSize = islandSize;
 		this.percentageReadToAdd = percentageReadToAdd;
 		this.sList = sList;
 		this.g1List = g1List;
 		this.readIncreaseFactor = readIncreaseFactor;
+		this.binSizes = binSizes;
+		this.gaussianWidths = gaussianWidths;
+		this.islandFinderParameters = islandFinderParameters;
+		this.controlPool = controlPool;
+		this.islandPlacement = islandPlacement;
+		this.binomialMaxError = binomialMaxError;
+		this.seed = seed;
+		runner = new OperationRunner();
+		cellName = outputDir.getPath() + " IS=" + islandSize + "bp, RA=" + NumberFormat.getPercentInstance().format(percentageReadToAdd);
 	}
 
 
+	/**
+	 * Runs the simulation. The steps of the simulation are the stages of a {@link StageGraph}
+	 * so the independent steps (eg: the control and the sample, the S and the G1 phases, the positive and the negative islands)
+	 * run concurrently and the intermediate lists are released as soon as the last step using them is done.
+	 * @return a result for each bin size, gaussian width and set of island finder parameters
+	 */
 	@Override
-	public SimulationResult compute() throws Exception {
-		printProgress("SingleSimulation.compute() - 1");
-		// 1 - generate control lists
-		SCWList[] resampledList = new ResampleLayers(sList, g1List, 0, readIncreaseFactor).compute();
-		SCWList controlS = resampledList[0];
-		SCWList controlG1 = resampledList[1];
+	public List<SimulationResult> compute() throws Exception {
+		StageGraph graph = new StageGraph(ChunkPool.getInstance().getThreadCount());
+		// the operations of the other stages are stopped as soon as a stage fails
+		graph.setFailureHandler(new Runnable() {
+			@Override
+			public void run() {
+				runner.stop();
+			}
+		});
+
+		// 1 - generate control lists (resampled, binned, gaussed and S / G1 ratio) or draw them from the pool
+		final Stage<ControlReplicate> control = graph.add(new Stage<ControlReplicate>("1 - control") {
+			@Override
+			protected ControlReplicate compute() throws Exception {
+				printProgress("SingleSimulation.compute() - 1");
+				if (controlPool != null) {
+					return controlPool.drawReplicate();
+				}
+				return runner.compute(new GenerateControlReplicate(sList, g1List, readIncreaseFactor, binSizes, gaussianWidths, binomialMaxError, seed));
+			}
+		});
 
 		// 2 - generate sample lists
 
 		// 2a - generate list with reads added
-		printProgress("SingleSimulation.compute() - 2a");
-		resampledList = new ResampleLayers(sList, g1List, percentageReadToAdd, readIncreaseFactor).compute();
-		SCWList resampledSReadAdded = resampledList[0];
-		SCWList resampledG1ReadAdded = resampledList[1];
+		final Stage<SCWList[]> resampledReadAdded = graph.add(new Stage<SCWList[]>("2a - resample with reads added") {
+			@Override
+			protected SCWList[] compute() throws Exception {
+				printProgress("SingleSimulation.compute() - 2a");
+				return runner.compute(new ResampleLayers(sList, g1List, percentageReadToAdd, readIncreaseFactor, binomialMaxError, seed + 1));
+			}
+		});
 
 		// 2b - generate list with no reads added
-		printProgress("SingleSimulation.compute() - 2b");
-		resampledList = new ResampleLayers(sList, g1List, 0, readIncreaseFactor).compute();
-		SCWList resampledSNoReadAdded = resampledList[0];
-		SCWList resampledG1NoReadAdded = resampledList[1];
-
-		// 2c - generate islands mask list and its inverse
-		printProgress("SingleSimulation.compute() - 2c");
-		SCWList islandMask = new GenerateIslands(ISLAND_DISTANCE, islandSize, g1List).compute();
-		SCWList islandInvertedMask = new MCWLOInvertMask(islandMask).compute();
-
-		// 2d - sum the island with reads added with the baseline
-		printProgress("SingleSimulation.compute() - 2d");
-		resampledSReadAdded = new SCWLOTwoLayers(resampledSReadAdded, islandMask, ScoreOperation.MULTIPLICATION).compute();
-		resampledSNoReadAdded = new SCWLOTwoLayers(resampledSNoReadAdded, islandInvertedMask, ScoreOperation.MULTIPLICATION).compute();
-		SCWList resampledS = new SCWLOTwoLayers(resampledSReadAdded, resampledSNoReadAdded, ScoreOperation.ADDITION).compute();
-
-		resampledG1ReadAdded = new SCWLOTwoLayers(resampledG1ReadAdded, islandMask, ScoreOperation.MULTIPLICATION).compute();
-		resampledG1NoReadAdded = new SCWLOTwoLayers(resampledG1NoReadAdded, islandInvertedMask, ScoreOperation.MULTIPLICATION).compute();
-		SCWList resampledG1 = new SCWLOTwoLayers(resampledG1ReadAdded, resampledG1NoReadAdded, ScoreOperation.ADDITION).compute();
-
-		// 3 - convert into binlist
-		printProgress("SingleSimulation.compute() - 3");
-		BinList binnedControlS = new SCWLOConvertIntoBinList(controlS, 500, ScoreOperation.ADDITION).compute();
-		BinList binnedControlG1 = new SCWLOConvertIntoBinList(controlG1, 500, ScoreOperation.ADDITION).compute();
-		BinList binnedResampledS = new SCWLOConvertIntoBinList(resampledS, 500, ScoreOperation.ADDITION).compute();
-		BinList binnedResampledG1 = new SCWLOConvertIntoBinList(resampledG1, 500, ScoreOperation.ADDITION).compute();
-
-		// 4 - gauss binlists
-		printProgress("SingleSimulation.compute() - 4");
-		binnedControlS = new BLOGauss(binnedControlS, GAUSSIAN_MV_WIDTH, false).compute();
-		binnedControlG1 = new BLOGauss(binnedControlG1, GAUSSIAN_MV_WIDTH, false).compute();
-		binnedResampledS = new BLOGauss(binnedResampledS, GAUSSIAN_MV_WIDTH, false).compute();
-		binnedResampledG1 = new BLOGauss(binnedResampledG1, GAUSSIAN_MV_WIDTH, false).compute();
-
-		// 5 - compute S / G1 ratios
-		printProgress("SingleSimulation.compute() - 5");
-		BinList controlSG1 = (BinList) new BLOTwoLayers(binnedControlS, binnedControlG1, ScoreOperation.DIVISION).compute();
-		BinList sampleSG1 = (BinList) new BLOTwoLayers(binnedResampledS, binnedResampledG1, ScoreOperation.DIVISION).compute();
-
-		// 6 - remove windows that are null in one of the 2 lists
-		printProgress("SingleSimulation.compute() - 6");
-		BinList maskControl = (BinList) new SCWLOOperationWithConstant(controlSG1, OperationWithConstant.UNIQUE_SCORE, 1, false).compute();
-		BinList maskSample = (BinList) new SCWLOOperationWithConstant(sampleSG1, OperationWithConstant.UNIQUE_SCORE, 1, false).compute();
-		controlSG1 = (BinList) new BLOTwoLayers(maskSample, controlSG1, ScoreOperation.MULTIPLICATION).compute();
-		sampleSG1 = (BinList) new BLOTwoLayers(maskControl, sampleSG1, ScoreOperation.MULTIPLICATION).compute();
-		printSCWInTmpFile(controlSG1.get(0), "controlSG1" );
-		printSCWInTmpFile(sampleSG1.get(0), "sampleSG1");
-
-		// 7 - compute sample - control difference
-		printProgress("SingleSimulation.compute() - 7");
-		BinList sampleCtrlDifference = (BinList) new BLOTwoLayers(sampleSG1, controlSG1, ScoreOperation.SUBTRACTION).compute();
-		printSCWInTmpFile(sampleCtrlDifference.get(0), "difference");
-
-		// 8 - call islands
-		printProgress("SingleSimulation.compute() - 8");
-		GeneList islands;
-		if (USE_ISLAND_FINDER) {
-			BinList positiveSampleCtrlDifference = (BinList) new SCWLOFilterThreshold(sampleCtrlDifference, 0, Float.POSITIVE_INFINITY, false).compute();
-			BinList negativesSampleCtrlDifference = (BinList) new SCWLOOperationWithConstant(sampleCtrlDifference, OperationWithConstant.MULTIPLICATION, -1f, false).compute();
-			negativesSampleCtrlDifference = (BinList) new SCWLOFilterThreshold(negativesSampleCtrlDifference, 0, Float.POSITIVE_INFINITY, false).compute();
-			GeneList positiveIslands = findIslandUsingIslandFinder(positiveSampleCtrlDifference);
-			GeneList negativeIslands = findIslandUsingIslandFinder(negativesSampleCtrlDifference);
-			islands = new GLOMergeGeneLists(positiveIslands, negativeIslands).compute();
-			islands = flattenGeneList(islands);
-		} else {
-			islands = new FindIslands(sampleCtrlDifference).compute();
+		final Stage<SCWList[]> resampledNoReadAdded = graph.add(new Stage<SCWList[]>("2b - resample with no reads added") {
+			@Override
+			protected SCWList[] compute() throws Exception {
+				printProgress("SingleSimulation.compute() - 2b");
+				return runner.compute(new ResampleLayers(sList, g1List, 0, readIncreaseFactor, binomialMaxError, seed + 2));
+			}
+		});
+
+		// 2c - generate islands mask list
+		final Stage<SCWList> islandMask = graph.add(new Stage<SCWList>("2c - island mask") {
+			@Override
+			protected SCWList compute() throws Exception {
+				printProgress("SingleSimulation.compute() - 2c");
+				IslandPlacement placement = islandPlacement;
+				if (placement == null) {
+					placement = IslandPlacement.createGridPlacement(ISLAND_DISTANCE, new MappableRegionIndex(g1List));
+				}
+				return runner.compute(placement.createOperation(islandSize));
+			}
+		});
+
+		// 2d - splice the island with reads added in the baseline
+		final Stage<SCWList> resampledS = graph.add(new Stage<SCWList>("2d - splice S", resampledReadAdded, resampledNoReadAdded, islandMask) {
+			@Override
+			protected SCWList compute() throws Exception {
+				printProgress("SingleSimulation.compute() - 2d");
+				return runner.compute(new SpliceWithMask(resampledReadAdded.get()[0], resampledNoReadAdded.get()[0], islandMask.get()));
+			}
+		});
+		final Stage<SCWList> resampledG1 = graph.add(new Stage<SCWList>("2d - splice G1", resampledReadAdded, resampledNoReadAdded, islandMask) {
+			@Override
+			protected SCWList compute() throws Exception {
+				printProgress("SingleSimulation.compute() - 2d");
+				return runner.compute(new SpliceWithMask(resampledReadAdded.get()[1], resampledNoReadAdded.get()[1], islandMask.get()));
+			}
+		});
+		// the islands of all the configurations are scored with the same coverage indexes
+		final Stage<CoverageIndex> resampledSCoverage = graph.add(createCoverageStage("S", resampledS));
+		final Stage<CoverageIndex> resampledG1Coverage = graph.add(createCoverageStage("G1", resampledG1));
+
+		// 3 - convert into binlist with the base bin size, the other bin sizes are read from the pyramids
+		int baseBinSize = BinListPyramid.computeBaseBinSize(binSizes);
+		final Stage<BinListPyramid> resampledSPyramid = graph.add(createPyramidStage("S", resampledS, baseBinSize));
+		final Stage<BinListPyramid> resampledG1Pyramid = graph.add(createPyramidStage("G1", resampledG1, baseBinSize));
+
+		List<Stage<SimulationResult>> resultStages = new ArrayList<Stage<SimulationResult>>();
+		for (final int binSize: binSizes) {
+			// the bin size is added to the name of the output files when there is more than one
+			final String filePrefix = binSizes.length > 1 ? "BIN=" + binSize + " " : "";
+			// the island finder parameters are only added to the name of the files computed before the island calling when they are unique
+			final IslandFinderParameters fileParameters = islandFinderParameters.length == 1 ? islandFinderParameters[0] : null;
+
+			// 4 - gauss binlists with all the widths
+			final Stage<BinList[]> gaussedResampledS = graph.add(createGaussStage("S", resampledSPyramid, binSize));
+			final Stage<BinList[]> gaussedResampledG1 = graph.add(createGaussStage("G1", resampledG1Pyramid, binSize));
+
+			for (int i = 0; i < gaussianWidths.length; i++) {
+				final int widthIndex = i;
+				final TrackConfiguration configuration = new TrackConfiguration(binSize, gaussianWidths[widthIndex]);
+				final Stage<BinList> sampleCtrlDifference = graph.add(new Stage<BinList>("5 to 7 - difference", configuration.toString(), control, gaussedResampledS, gaussedResampledG1) {
+					@Override
+					protected BinList compute() throws Exception {
+						// 5 - compute S / G1 ratios
+						printProgress("SingleSimulation.compute() - 5");
+						BinList controlSG1 = control.get().getControlSG1(configuration);
+						BinList sampleSG1 = (BinList) runner.compute(new BLOTwoLayers(gaussedResampledS.get()[widthIndex], gaussedResampledG1.get()[widthIndex], ScoreOperation.DIVISION));
+
+						// 6 - remove windows that are null in one of the 2 lists
+						printProgress("SingleSimulation.compute() - 6");
+						BinList maskControl = (BinList) runner.compute(new SCWLOOperationWithConstant(controlSG1, OperationWithConstant.UNIQUE_SCORE, 1, false));
+						BinList maskSample = (BinList) runner.compute(new SCWLOOperationWithConstant(sampleSG1, OperationWithConstant.UNIQUE_SCORE, 1, false));
+						controlSG1 = (BinList) runner.compute(new BLOTwoLayers(maskSample, controlSG1, ScoreOperation.MULTIPLICATION));
+						sampleSG1 = (BinList) runner.compute(new BLOTwoLayers(maskControl, sampleSG1, ScoreOperation.MULTIPLICATION));
+						printSCWInTmpFile(controlSG1.get(0), configuration.getGaussianWidth(), fileParameters, filePrefix + "controlSG1");
+						printSCWInTmpFile(sampleSG1.get(0), configuration.getGaussianWidth(), fileParameters, filePrefix + "sampleSG1");
+
+						// 7 - compute sample - control difference
+						printProgress("SingleSimulation.compute() - 7");
+						BinList sampleCtrlDifference = (BinList) runner.compute(new BLOTwoLayers(sampleSG1, controlSG1, ScoreOperation.SUBTRACTION));
+						printSCWInTmpFile(sampleCtrlDifference.get(0), configuration.getGaussianWidth(), fileParameters, filePrefix + "difference");
+						return sampleCtrlDifference;
+					}
+				});
+
+				// 8 to 12 - call and score the islands with each set of island finder parameters, the difference is shared by all the sets
+				for (IslandFinderParameters parameters: islandFinderParameters) {
+					final TrackConfiguration resultConfiguration = new TrackConfiguration(binSize, configuration.getGaussianWidth(), parameters);
+					final Stage<GeneList> islands = addIslandStages(graph, resultConfiguration, sampleCtrlDifference);
+					resultStages.add(graph.addOutput(new Stage<SimulationResult>("9 to 12 - result", resultConfiguration.toString(), islands, sampleCtrlDifference, islandMask, resampledSCoverage, resampledG1Coverage, control) {
+						@Override
+						protected SimulationResult compute() throws Exception {
+							return computeResult(resultConfiguration, filePrefix, islands.get(), sampleCtrlDifference.get(), islandMask.get(),
+									resampledSCoverage.get(), resampledG1Coverage.get(), control.get().getControlS(), control.get().getControlG1());
+						}
+					}));
+				}
+			}
+		}
+		graph.run();
+		List<SimulationResult> simulationResults = new ArrayList<SimulationResult>();
+		for (Stage<SimulationResult> resultStage: resultStages) {
+			simulationResults.add(resultStage.get());
 		}
+		return simulationResults;
+	}
+
 
+	/**
+	 * Scores the islands and computes the result of the simulation for the specified configuration (steps 9 to 12)
+	 * @param configuration bin size, gaussian width and island finder parameters of the result
+	 * @param filePrefix prefix of the name of the output files
+	 * @param islands islands called in the difference between the sample and the control
+	 * @param sampleCtrlDifference difference between the sample and the control S / G1 ratios
+	 * @param islandMask islands generated for the simulation
+	 * @param resampledSCoverage coverage of the sample S phase
+	 * @param resampledG1Coverage coverage of the sample G1 phase
+	 * @param controlSCoverage coverage of the control S phase
+	 * @param controlG1Coverage coverage of the control G1 phase
+	 * @return the result of the simulation for the specified configuration
+	 * @throws Exception
+	 */
+	private SimulationResult computeResult(TrackConfiguration configuration, String filePrefix, GeneList islands, BinList sampleCtrlDifference, SCWList islandMask,
+			CoverageIndex resampledSCoverage, CoverageIndex resampledG1Coverage, CoverageIndex controlSCoverage, CoverageIndex controlG1Coverage) throws Exception {
 		// 9 - score islands
 		printProgress("SingleSimulation.compute() - 9");
-		GeneList controlIslandsS = new GLOScoreFromSCWList(islands, controlS, GeneScoreType.BASE_COVERAGE_SUM).compute();
-		GeneList controlIslandsG1 = new GLOScoreFromSCWList(islands, controlG1, GeneScoreType.BASE_COVERAGE_SUM).compute();
-		GeneList sampleIslandsS = new GLOScoreFromSCWList(islands, resampledS, GeneScoreType.BASE_COVERAGE_SUM).compute();
-		GeneList sampleIslandsG1 = new GLOScoreFromSCWList(islands, resampledG1, GeneScoreType.BASE_COVERAGE_SUM).compute();
+		IslandCoverageTable islandCoverages = runner.compute(new ScoreIslandCoverage(islands, resampledSCoverage, resampledG1Coverage, controlSCoverage, controlG1Coverage));
 
 		// 10 - compute fisher exact test and retrieve qvalues
 		printProgress("SingleSimulation.compute() - 10");
-		SCWList islandsQValues = new ComputeQValues(controlIslandsS, controlIslandsG1, sampleIslandsS, sampleIslandsG1).compute();
-		printSCWInTmpFile(islandsQValues.get(0), "islands");
+		SCWList islandsQValues = runner.compute(new ComputeQValues(islandCoverages));
+		printSCWInTmpFile(islandsQValues.get(0), configuration.getGaussianWidth(), configuration.getIslandFinderParameters(), filePrefix + "islands");
+		// the overlaps of the islands found with the islands generated are computed once for every cutoff
+		QValueSweep qValueSweep = runner.compute(new ComputeQValueSweep(islandMask, islandsQValues));
 
 		// 11 - filter islands with qvalue under 0.05
 		printProgress("SingleSimulation.compute() - 11");
-		SCWList filteredIslands = new SCWLOFilterThreshold(islandsQValues, 0, Q_VALUE_CUTOFF, false).compute();
-		filteredIslands = new SCWLOConvertIntoSimpleSCWList(filteredIslands, SCWListType.MASK).compute();
+		SCWList filteredIslands = runner.compute(new SCWLOFilterThreshold(islandsQValues, 0, Q_VALUE_CUTOFF, false));
+		filteredIslands = runner.compute(new SCWLOConvertIntoSimpleSCWList(filteredIslands, SCWListType.MASK));
 
 		// 12 - compute average difference, false positives and false negatives
 		printProgress("SingleSimulation.compute() - 12");
-		Double[] sampleCtrlDifferenceAvgAndStdErr = new ComputeSampleCtrlDifferenceAverageAndStdErr(sampleCtrlDifference, filteredIslands).compute();
-		SimulationResult simulationResult = new ComputeSimulationResult(islandSize, percentageReadToAdd, islandMask, filteredIslands, sampleCtrlDifferenceAvgAndStdErr[0], sampleCtrlDifferenceAvgAndStdErr[1]).compute();
+		Double[] sampleCtrlDifferenceAvgAndStdErr = runner.compute(new ComputeSampleCtrlDifferenceAverageAndStdErr(sampleCtrlDifference, filteredIslands, configuration.getBinSize()));
+		return runner.compute(new ComputeSimulationResult(islandSize, percentageReadToAdd, configuration.getBinSize(), configuration.getGaussianWidth(), configuration.getIslandFinderParameters(), islandMask, filteredIslands, sampleCtrlDifferenceAvgAndStdErr[0], sampleCtrlDifferenceAvgAndStdErr[1], qValueSweep));
+	}
+
+
+	/**
+	 * Creates the stage indexing the coverage of a sample list
+	 * @param phaseName name of the phase of the list (S or G1)
+	 * @param resampledList stage computing the sample list
+	 * @return a new stage
+	 */
+	private Stage<CoverageIndex> createCoverageStage(String phaseName, final Stage<SCWList> resampledList) {
+		return new Stage<CoverageIndex>("coverage " + phaseName, resampledList) {
+			@Override
+			protected CoverageIndex compute() throws Exception {
+				return new CoverageIndex(resampledList.get());
+			}
+		};
+	}
+
+
+	/**
+	 * Creates the stage smoothing a bin size of a pyramid with all the gaussian widths (step 4)
+	 * @param phaseName name of the phase of the pyramid (S or G1)
+	 * @param pyramid stage computing the pyramid
+	 * @param binSize bin size to smooth
+	 * @return a new stage
+	 */
+	private Stage<BinList[]> createGaussStage(String phaseName, final Stage<BinListPyramid> pyramid, final int binSize) {
+		return new Stage<BinList[]>("4 - gauss " + phaseName, "bin=" + binSize, pyramid) {
+			@Override
+			protected BinList[] compute() throws Exception {
+				printProgress("SingleSimulation.compute() - 4");
+				return runner.compute(new GaussScaleSpace(pyramid.get().getBinList(binSize), gaussianWidths));
+			}
+		};
+	}
+
+
+	/**
+	 * Creates the stage binning a sample list with the base bin size (step 3)
+	 * @param phaseName name of the phase of the list (S or G1)
+	 * @param resampledList stage computing the sample list
+	 * @param baseBinSize base bin size of the pyramid
+	 * @return a new stage
+	 */
+	private Stage<BinListPyramid> createPyramidStage(String phaseName, final Stage<SCWList> resampledList, final int baseBinSize) {
+		return new Stage<BinListPyramid>("3 - bin " + phaseName, resampledList) {
+			@Override
+			protected BinListPyramid compute() throws Exception {
+				printProgress("SingleSimulation.compute() - 3");
+				return new BinListPyramid(runner.compute(new SCWLOConvertIntoBinList(resampledList.get(), baseBinSize, ScoreOperation.ADDITION)));
+			}
+		};
+	}
 
-		return simulationResult;
+
+	/**
+	 * Adds the stages calling the islands in the difference between the sample and the control (step 8).
+	 * With the island finder, the positive and the negative islands are called by two independent stages
+	 * @param graph graph of the simulation
+	 * @param configuration bin size, gaussian width and island finder parameters of the islands
+	 * @param sampleCtrlDifference stage computing the difference between the sample and the control
+	 * @return the stage with the islands
+	 */
+	private Stage<GeneList> addIslandStages(StageGraph graph, final TrackConfiguration configuration, final Stage<BinList> sampleCtrlDifference) {
+		if (!USE_ISLAND_FINDER) {
+			return graph.add(new Stage<GeneList>("8 - islands", configuration.toString(), sampleCtrlDifference) {
+				@Override
+				protected GeneList compute() throws Exception {
+					printProgress("SingleSimulation.compute() - 8");
+					return runner.compute(new FindIslands(sampleCtrlDifference.get()));
+				}
+			});
+		}
+		final Stage<GeneList> positiveIslands = graph.add(new Stage<GeneList>("8 - positive islands", configuration.toString(), sampleCtrlDifference) {
+			@Override
+			protected GeneList compute() throws Exception {
+				printProgress("SingleSimulation.compute() - 8");
+				BinList positiveSampleCtrlDifference = (BinList) runner.compute(new SCWLOFilterThreshold(sampleCtrlDifference.get(), 0, Float.POSITIVE_INFINITY, false));
+				return findIslandUsingIslandFinder(positiveSampleCtrlDifference, configuration.getIslandFinderParameters());
+			}
+		});
+		final Stage<GeneList> negativeIslands = graph.add(new Stage<GeneList>("8 - negative islands", configuration.toString(), sampleCtrlDifference) {
+			@Override
+			protected GeneList compute() throws Exception {
+				printProgress("SingleSimulation.compute() - 8");
+				BinList negativesSampleCtrlDifference = (BinList) runner.compute(new SCWLOOperationWithConstant(sampleCtrlDifference.get(), OperationWithConstant.MULTIPLICATION, -1f, false));
+				negativesSampleCtrlDifference = (BinList) runner.compute(new SCWLOFilterThreshold(negativesSampleCtrlDifference, 0, Float.POSITIVE_INFINITY, false));
+				return findIslandUsingIslandFinder(negativesSampleCtrlDifference, configuration.getIslandFinderParameters());
+			}
+		});
+		return graph.add(new Stage<GeneList>("8 - merge islands", configuration.toString(), positiveIslands, negativeIslands) {
+			@Override
+			protected GeneList compute() throws Exception {
+				GeneList islands = runner.compute(new GLOMergeGeneLists(positiveIslands.get(), negativeIslands.get()));
+				return flattenGeneList(islands);
+			}
+		});
 	}
 
 
 	/**
 	 * Find the islands in the input genelist using the genplay island finder algorithm
 	 * @param input
+	 * @param parameters parameters of the island finder
 	 * @return
 	 * @throws Exception
 	 */
-	private GeneList findIslandUsingIslandFinder(BinList input) throws Exception {
+	private GeneList findIslandUsingIslandFinder(BinList input, IslandFinderParameters parameters) throws Exception {
 		BLOFindIslands bloFindIslands = new BLOFindIslands(input);
-		bloFindIslands.getIsland().setWindowMinValue(IF_MIN_WINDOW);
-		bloFindIslands.getIsland().setGap(IF_GAP);
+		bloFindIslands.getIsland().setWindowMinValue(parameters.getMinWindowScore());
+		bloFindIslands.getIsland().setGap(parameters.getGap());
 		bloFindIslands.getIsland().setIslandMinScore(0);
-		bloFindIslands.getIsland().setIslandMinLength(IF_MIN_LENGTH);
+		bloFindIslands.getIsland().setIslandMinLength(parameters.getMinLength());
 		IslandResultType[] resType = {IslandResultType.IFSCORE};
 		bloFindIslands.setList(resType);
-		BinList resBinList = bloFindIslands.compute()[0];
-		SCWList resMaskList = new SCWLOConvertIntoSimpleSCWList(resBinList, SCWListType.MASK).compute();
-		GeneList resGeneList = new SCWLOConvertIntoGeneList(resMaskList).compute();
+		BinList resBinList = runner.compute(bloFindIslands)[0];
+		SCWList resMaskList = runner.compute(new SCWLOConvertIntoSimpleSCWList(resBinList, SCWListType.MASK));
+		GeneList resGeneList = runner.compute(new SCWLOConvertIntoGeneList(resMaskList));
 		return resGeneList;
 	}
 
@@ -238,8 +462,16 @@ public class SingleSimulation implements Operation<SimulationResult> {
 	 * @throws Exception
 	 */
 	private GeneList flattenGeneList(GeneList geneList) throws Exception {
-		SCWList mask = new SCWLOConvertIntoSimpleSCWList(geneList, SCWListType.MASK).compute();
-		return new SCWLOConvertIntoGeneList(mask).compute();
+		SCWList mask = runner.compute(new SCWLOConvertIntoSimpleSCWList(geneList, SCWListType.MASK));
+		return runner.compute(new SCWLOConvertIntoGeneList(mask));
+	}
+
+
+	/**
+	 * @return the name of the simulation in the live metrics
+	 */
+	public String getCellName() {
+		return cellName;
 	}
 
 
@@ -262,10 +494,12 @@ public class SingleSimulation implements Operation<SimulationResult> {
 
 
 	/**
-	 * Prints the specified string in the standard output if {@link #PRINT_PROGRESS} is set to true
+	 * Reports the current step of the simulation to the live metrics and
+	 * prints the specified string in the standard output if {@link #PRINT_PROGRESS} is set to true
 	 * @param stringToPrint
 	 */
 	private void printProgress(String stringToPrint) {
+		SimulationMetrics.getInstance().setCellStage(cellName, "step " + stringToPrint.substring(stringToPrint.lastIndexOf(' ') + 1));
 		if (PRINT_PROGRESS) {
 			System.out.println(stringToPrint);
 		}
@@ -275,16 +509,18 @@ public class SingleSimulation implements Operation<SimulationResult> {
 	/**
 	 * Prints the specified {@link ListView} in a temporary file with the specified name prefix
 	 * @param data
+	 * @param gaussianWidth moving window width of the gaussian smoothing of the data
+	 * @param parameters parameters of the island finder used to compute the data, null to omit them from the file name
 	 * @param prefix
 	 * @throws IOException
 	 */
-	public void printSCWInTmpFile(ListView<? extends ScoredChromosomeWindow> data, String prefix) throws IOException {
+	public void printSCWInTmpFile(ListView<? extends ScoredChromosomeWindow> data, int gaussianWidth, IslandFinderParameters parameters, String prefix) throws IOException {
 		if (PRINT_FILES) {
-			int sigma = GAUSSIAN_MV_WIDTH / 4;
+			int sigma = gaussianWidth / 4;
 			File file = new File(outputDir, "RIF=" + readIncreaseFactor +
 					", Sigma=" + sigma +
-					", IF=(" +IF_MIN_WINDOW + ", " +IF_MIN_LENGTH + ", " + IF_GAP +
-					"), IS=" + islandSize + "bp, RA=" + NumberFormat.getPercentInstance().format(percentageReadToAdd) + " " + prefix + ".bed");
+					(parameters != null ? ", IF=" + parameters : "") +
+					", IS=" + islandSize + "bp, RA=" + NumberFormat.getPercentInstance().format(percentageReadToAdd) + " " + prefix + ".bed");
 			if (PRINT_PROGRESS) {
 				System.out.println("Writing file: " + file.getPath());
 			}
@@ -301,6 +537,6 @@ public class SingleSimulation implements Operation<SimulationResult> {
 
 	@Override
 	public void stop() {
-		// stop operation not implemented
+		runner.stop();
 	}
 }
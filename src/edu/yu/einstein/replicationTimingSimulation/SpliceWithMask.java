@@ -0,0 +1,239 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import edu.yu.einstein.genplay.core.manager.project.ProjectChromosomes;
+import edu.yu.einstein.genplay.core.manager.project.ProjectManager;
+import edu.yu.einstein.genplay.core.operation.Operation;
+import edu.yu.einstein.genplay.dataStructure.enums.SCWListType;
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWList;
+import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
+
+/**
+ * Splices two lists with a mask: the result has the windows of a first list inside the intervals of the mask
+ * and the windows of a second list outside the intervals of the mask.
+ * The mask is handled as a sorted set of intervals so the inverted mask is never created.
+ * The windows of the inputs lists are located with binary searches on the bounds of the intervals of the mask
+ * and the result is made of {@link MaskedSCWListView} so the windows of the input lists are not copied.
+ * @author Julien Lajugie
+ */
+public class SpliceWithMask implements Operation<SCWList> {
+
+	private final SCWList 		insideList;			// list with the windows kept inside the mask, null to keep nothing
+	private final SCWList 		outsideList;		// list with the windows kept outside the mask, null to keep nothing
+	private final SCWList 		mask;				// mask with the intervals
+	private volatile boolean	stopped = false;	// true if the operation must be stopped
+
+
+	/**
+	 * Creates an instance of {@link SpliceWithMask}
+	 * @param insideList list with the windows kept inside the mask, null to keep nothing inside the mask
+	 * @param outsideList list with the windows kept outside the mask, null to keep nothing outside the mask
+	 * @param mask mask with the intervals. The windows of the mask must be sorted and must not overlap
+	 */
+	public SpliceWithMask(SCWList insideList, SCWList outsideList, SCWList mask) {
+		this.insideList = insideList;
+		this.outsideList = outsideList;
+		this.mask = mask;
+	}
+
+
+	/**
+	 * Splices the lists with the mask. The chromosomes are processed in parallel.
+	 * @return a {@link SCWList} with the windows of the inside list in the mask and the windows of the outside list out of the mask
+	 */
+	@Override
+	public SCWList compute() throws Exception {
+		ProjectChromosomes projectChromosomes = ProjectManager.getInstance().getProjectChromosomes();
+		List<Callable<ListView<ScoredChromosomeWindow>>> chromosomeList = new ArrayList<Callable<ListView<ScoredChromosomeWindow>>>();
+		for (int i = 0; i < projectChromosomes.size(); i++) {
+			final ListView<ScoredChromosomeWindow> currentInsideList = insideList == null ? null : insideList.get(i);
+			final ListView<ScoredChromosomeWindow> currentOutsideList = outsideList == null ? null : outsideList.get(i);
+			final ListView<ScoredChromosomeWindow> currentMask = mask.get(i);
+			Callable<ListView<ScoredChromosomeWindow>> currentThread = new Callable<ListView<ScoredChromosomeWindow>>() {
+
+				@Override
+				public ListView<ScoredChromosomeWindow> call() throws Exception {
+					if (stopped) {
+						return null;
+					}
+					return splice(currentInsideList, currentOutsideList, currentMask);
+				}
+			};
+			chromosomeList.add(currentThread);
+		}
+		List<ListView<ScoredChromosomeWindow>> result = ChunkPool.getInstance().invokeAll(chromosomeList);
+		if (stopped) {
+			return null;
+		}
+		return new PrimitiveSCWList(result, SCWListType.GENERIC);
+	}
+
+
+	/**
+	 * @param list a list
+	 * @param mask a mask
+	 * @return an operation removing the windows of the list inside the mask
+	 */
+	public static SpliceWithMask createExcludeOperation(SCWList list, SCWList mask) {
+		return new SpliceWithMask(null, list, mask);
+	}
+
+
+	/**
+	 * @param list a list
+	 * @param mask a mask
+	 * @return an operation removing the windows of the list outside the mask
+	 */
+	public static SpliceWithMask createRestrictOperation(SCWList list, SCWList mask) {
+		return new SpliceWithMask(list, null, mask);
+	}
+
+
+	/**
+	 * @param listView list view with sorted windows that don't overlap
+	 * @param position a position
+	 * @return the index of the first window of the list view ending after the specified position
+	 */
+	private static int findFirstWindowEndingAfter(ListView<ScoredChromosomeWindow> listView, int position) {
+		int low = 0;
+		int high = listView.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (listView.get(middle).getStop() <= position) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+
+	/**
+	 * @param listView list view with sorted windows that don't overlap
+	 * @param position a position
+	 * @return the index of the first window of the list view starting at or after the specified position
+	 */
+	private static int findFirstWindowStartingFrom(ListView<ScoredChromosomeWindow> listView, int position) {
+		int low = 0;
+		int high = listView.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (listView.get(middle).getStart() < position) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+
+	@Override
+	public String getDescription() {
+		return "Operation: Splice With Mask";
+	}
+
+
+	@Override
+	public String getProcessingDescription() {
+		return "Splicing With Mask";
+	}
+
+
+	@Override
+	public int getStepCount() {
+		return 1;
+	}
+
+
+	/**
+	 * Splices the list views of a chromosome
+	 * @param insideListView list view with the windows kept inside the mask, null to keep nothing
+	 * @param outsideListView list view with the windows kept outside the mask, null to keep nothing
+	 * @param maskListView list view with the intervals of the mask
+	 * @return the spliced list view
+	 */
+	private static MaskedSCWListView splice(ListView<ScoredChromosomeWindow> insideListView, ListView<ScoredChromosomeWindow> outsideListView, ListView<ScoredChromosomeWindow> maskListView) {
+		// the mask intervals and the gaps between them alternate so there are at most 2 * n + 1 ranges
+		int maxRangeCount = (2 * maskListView.size()) + 1;
+		List<ListView<ScoredChromosomeWindow>> sources = new ArrayList<ListView<ScoredChromosomeWindow>>(maxRangeCount);
+		int[] firstIndexes = new int[maxRangeCount];
+		int[] offsets = new int[maxRangeCount + 1];
+		int[] clipStarts = new int[maxRangeCount];
+		int[] clipStops = new int[maxRangeCount];
+		int gapStart = Integer.MIN_VALUE;
+		for (int i = 0; i <= maskListView.size(); i++) {
+			int gapStop = Integer.MAX_VALUE;
+			ScoredChromosomeWindow maskWindow = null;
+			if (i < maskListView.size()) {
+				maskWindow = maskListView.get(i);
+				gapStop = maskWindow.getStart();
+			}
+			// range between the previous interval and the current one
+			if ((outsideListView != null) && (gapStart < gapStop)) {
+				int first = findFirstWindowEndingAfter(outsideListView, gapStart);
+				int last = findFirstWindowStartingFrom(outsideListView, gapStop);
+				if (first < last) {
+					int rangeIndex = sources.size();
+					sources.add(outsideListView);
+					firstIndexes[rangeIndex] = first;
+					clipStarts[rangeIndex] = gapStart;
+					clipStops[rangeIndex] = gapStop;
+					offsets[rangeIndex + 1] = offsets[rangeIndex] + (last - first);
+				}
+			}
+			// range inside the current interval
+			if ((insideListView != null) && (maskWindow != null) && (maskWindow.getStart() < maskWindow.getStop())) {
+				int first = findFirstWindowEndingAfter(insideListView, maskWindow.getStart());
+				int last = findFirstWindowStartingFrom(insideListView, maskWindow.getStop());
+				if (first < last) {
+					int rangeIndex = sources.size();
+					sources.add(insideListView);
+					firstIndexes[rangeIndex] = first;
+					clipStarts[rangeIndex] = maskWindow.getStart();
+					clipStops[rangeIndex] = maskWindow.getStop();
+					offsets[rangeIndex + 1] = offsets[rangeIndex] + (last - first);
+				}
+			}
+			if (maskWindow != null) {
+				gapStart = maskWindow.getStop();
+			}
+		}
+		int rangeCount = sources.size();
+		return new MaskedSCWListView(sources, Arrays.copyOf(firstIndexes, rangeCount), Arrays.copyOf(offsets, rangeCount + 1),
+				Arrays.copyOf(clipStarts, rangeCount), Arrays.copyOf(clipStops, rangeCount));
+	}
+
+
+	@Override
+	public void stop() {
+		stopped = true;
+	}
+}
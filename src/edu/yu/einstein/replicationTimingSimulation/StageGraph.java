@@ -0,0 +1,301 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Directed acyclic graph of the stages of a computation.
+ * A stage is started as soon as all the stages it depends on are done so the independent branches of the graph run concurrently.
+ * The result of a stage is released as soon as the last stage depending on it is done, unless it is kept as an output of the graph.
+ * The stages run on their own threads, not on the {@link ChunkPool}, because they run operations that are themselves split on the {@link ChunkPool}.
+ * The duration of each stage is reported to the {@link SimulationMetrics}.
+ * @author Julien Lajugie
+ */
+public class StageGraph {
+
+	/** Maximum number of seconds to wait for the running stages to stop after a stage failed */
+	public final static int STOP_TIMEOUT = 60;
+
+	private final List<Stage<?>> 	stages;			// stages of the graph in the order they were added
+	private final int 				threadCount;	// maximum number of stages running at the same time
+	private Runnable 				failureHandler;	// stops the computations of the running stages when a stage fails, null if not set
+
+
+	/**
+	 * A stage of a {@link StageGraph}. The result of the stages it depends on are retrieved with {@link #get()} in {@link #compute()}.
+	 * @author Julien Lajugie
+	 * @param <T> type of the result of the stage
+	 */
+	public static abstract class Stage<T> {
+
+		private final String 			step;					// step computed by the stage, the stages of a same step share their statistics
+		private final String 			name;					// name of the stage
+		private final Stage<?>[] 		inputs;					// stages this stage depends on
+		private final List<Stage<?>> 	consumers;				// stages depending on this stage
+		private volatile T 				result = null;			// result of the stage, null if not computed or released
+		private boolean 				isDone = false;			// true if the stage is done
+		private boolean 				isKept = false;			// true if the result must be kept after the last consumer is done
+		private boolean 				isReleased = false;		// true if the result has been released
+		private int 					pendingInputCount;		// number of inputs not done yet
+		private int 					pendingConsumerCount;	// number of consumers not done yet
+
+
+		/**
+		 * Creates an instance of {@link Stage}
+		 * @param name name of the stage
+		 * @param inputs stages this stage depends on. They must be added to the graph before this stage
+		 */
+		public Stage(String name, Stage<?>... inputs) {
+			step = name;
+			this.name = name;
+			this.inputs = inputs;
+			consumers = new ArrayList<Stage<?>>();
+		}
+
+
+		/**
+		 * Creates an instance of {@link Stage} computing a step of a computation for a specific configuration.
+		 * The timings of the stages of a same step are aggregated in the {@link SimulationMetrics}
+		 * @param step step computed by the stage
+		 * @param configuration configuration of the step (eg: bin size and gaussian width), added to the name of the stage
+		 * @param inputs stages this stage depends on. They must be added to the graph before this stage
+		 */
+		public Stage(String step, String configuration, Stage<?>... inputs) {
+			this.step = step;
+			name = step + " " + configuration;
+			this.inputs = inputs;
+			consumers = new ArrayList<Stage<?>>();
+		}
+
+
+		/**
+		 * Computes the result of the stage
+		 * @return the result of the stage
+		 * @throws Exception
+		 */
+		protected abstract T compute() throws Exception;
+
+
+		/**
+		 * @return the result of the stage
+		 * @throws IllegalStateException if the stage is not done or if its result has been released
+		 */
+		public T get() {
+			if (isReleased) {
+				throw new IllegalStateException("The result of the stage " + name + " has been released");
+			}
+			if (!isDone) {
+				throw new IllegalStateException("The stage " + name + " is not done");
+			}
+			return result;
+		}
+
+
+		/**
+		 * @return the name of the stage
+		 */
+		public String getName() {
+			return name;
+		}
+
+
+		/**
+		 * @return the step computed by the stage
+		 */
+		public String getStep() {
+			return step;
+		}
+
+
+		/**
+		 * Releases the result of the stage so it can be garbage collected
+		 */
+		private void release() {
+			isReleased = true;
+			result = null;
+		}
+
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+
+	/**
+	 * Creates an instance of {@link StageGraph}
+	 * @param threadCount maximum number of stages running at the same time
+	 */
+	public StageGraph(int threadCount) {
+		stages = new ArrayList<Stage<?>>();
+		this.threadCount = Math.max(1, threadCount);
+		failureHandler = null;
+	}
+
+
+	/**
+	 * Adds a stage to the graph
+	 * @param <T> type of the result of the stage
+	 * @param stage stage to add. The stages it depends on must have been added before
+	 * @return the stage
+	 */
+	public <T> Stage<T> add(Stage<T> stage) {
+		for (Stage<?> input: stage.inputs) {
+			if (!stages.contains(input)) {
+				throw new IllegalArgumentException("The stage " + stage + " depends on the stage " + input + " that is not in the graph");
+			}
+			input.consumers.add(stage);
+		}
+		stages.add(stage);
+		return stage;
+	}
+
+
+	/**
+	 * Adds a stage to the graph and keeps its result once the graph is done
+	 * @param <T> type of the result of the stage
+	 * @param stage stage to add. The stages it depends on must have been added before
+	 * @return the stage
+	 */
+	public <T> Stage<T> addOutput(Stage<T> stage) {
+		stage.isKept = true;
+		return add(stage);
+	}
+
+
+	/**
+	 * Runs the stages of the graph and waits until they are all done.
+	 * If a stage fails or if the thread running the graph is interrupted, the failure handler is run and the running stages are interrupted,
+	 * the stages not started yet are skipped and the running stages are given {@value #STOP_TIMEOUT} seconds to stop before the exception is thrown,
+	 * so the next computation doesn't start while the stages of this one are still running.
+	 * @throws Exception the exception thrown by the first stage that failed
+	 */
+	public void run() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, Math.max(1, stages.size())));
+		CompletionService<Stage<?>> completionService = new ExecutorCompletionService<Stage<?>>(executor);
+		try {
+			int runningCount = 0;
+			for (Stage<?> stage: stages) {
+				stage.pendingInputCount = stage.inputs.length;
+				stage.pendingConsumerCount = stage.consumers.size();
+				if (stage.pendingInputCount == 0) {
+					submit(completionService, stage);
+					runningCount++;
+				}
+			}
+			while (runningCount > 0) {
+				Future<Stage<?>> future = completionService.take();
+				runningCount--;
+				Stage<?> doneStage;
+				try {
+					doneStage = future.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof Exception) {
+						throw (Exception) e.getCause();
+					}
+					throw e;
+				}
+				doneStage.isDone = true;
+				for (Stage<?> input: doneStage.inputs) {
+					input.pendingConsumerCount--;
+					if ((input.pendingConsumerCount == 0) && !input.isKept) {
+						input.release();
+					}
+				}
+				if ((doneStage.pendingConsumerCount == 0) && !doneStage.isKept) {
+					doneStage.release();
+				}
+				for (Stage<?> consumer: doneStage.consumers) {
+					consumer.pendingInputCount--;
+					if (consumer.pendingInputCount == 0) {
+						submit(completionService, consumer);
+						runningCount++;
+					}
+				}
+			}
+		} catch (Exception e) {
+			stopRunningStages(executor);
+			throw e;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+
+	/**
+	 * Sets the handler run when a stage fails, before the running stages are interrupted.
+	 * The thread interruption doesn't stop the computations that don't check it (eg: the GenPlay operations or an external process)
+	 * so the handler must stop them
+	 * @param failureHandler handler stopping the computations of the running stages, null for no handler
+	 */
+	public void setFailureHandler(Runnable failureHandler) {
+		this.failureHandler = failureHandler;
+	}
+
+
+	/**
+	 * Runs the failure handler, interrupts the running stages and waits until they are stopped
+	 * @param executor executor of the stages
+	 */
+	private void stopRunningStages(ExecutorService executor) {
+		if (failureHandler != null) {
+			failureHandler.run();
+		}
+		executor.shutdownNow();
+		try {
+			executor.awaitTermination(STOP_TIMEOUT, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			// the exception of the failed stage is thrown, the interruption is kept for the caller
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/**
+	 * Submits a stage to the executor of the graph
+	 * @param <T> type of the result of the stage
+	 * @param completionService completion service of the executor
+	 * @param stage stage to submit
+	 */
+	private static <T> void submit(CompletionService<Stage<?>> completionService, final Stage<T> stage) {
+		completionService.submit(new Callable<Stage<?>>() {
+			@Override
+			public Stage<?> call() throws Exception {
+				long startTime = System.nanoTime();
+				stage.result = stage.compute();
+				SimulationMetrics.getInstance().stageCompleted(stage.getStep(), System.nanoTime() - startTime);
+				return stage;
+			}
+		});
+	}
+}
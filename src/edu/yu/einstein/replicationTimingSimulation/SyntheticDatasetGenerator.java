@@ -0,0 +1,312 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+import cern.jet.random.Poisson;
+import cern.jet.random.engine.MersenneTwister;
+import cern.jet.random.engine.RandomEngine;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+
+import edu.yu.einstein.genplay.dataStructure.chromosome.Chromosome;
+
+/**
+ * Writes synthetic S and G1 replication timing tracks in two bedGraph files so the simulations can be benchmarked
+ * on data that can be shared. The tracks are read counts per bin:
+ * <ul>
+ * <li>the chromosomes are split in early and late replicating domains of random lengths.
+ * The timing of the early domains is drawn between {@value #EARLY_TIMING_MIN} and 1, the timing of the late domains between 0 and {@value #LATE_TIMING_MAX},
+ * and the timing of a bin is interpolated between the centers of the domains so the transitions are progressive</li>
+ * <li>the G1 phase has one copy of the genome, the S phase has 1 + timing copies.
+ * The S phase is scaled so the two phases have the same average depth</li>
+ * <li>the counts are Poisson random numbers</li>
+ * <li>random gaps with no read mimic the unmappable regions of the genome</li>
+ * </ul>
+ * The bins without read are not written so the files are sparse and the S and G1 files don't have the same windows.
+ * @author Julien Lajugie
+ */
+public class SyntheticDatasetGenerator {
+
+	/**
+	 * Command line parameters
+	 * @author Julien Lajugie
+	 */
+	public static class Args {
+		@Parameter(names = "-genome", description = "chrom.sizes file or compact genome descriptor file of the assembly (hg19 from the GenPlay assembly list if not specified)")
+		private String genomeFile = null;
+
+		@Parameter(names = "-chrInclude", description = "Regular expression of the names of the chromosomes to generate")
+		private String chrInclude = null;
+
+		@Parameter(names = "-chrExclude", description = "Regular expression of the names of the chromosomes to exclude")
+		private String chrExclude = null;
+
+		@Parameter(names = "-out", description = "Output directory of the " + S_FILE_NAME + " and " + G1_FILE_NAME + " files", required = true)
+		private String outDir;
+
+		@Parameter(names = "-coverage", description = "Sequencing depth of each phase (eg: 0.5 for 0.5x)")
+		private double coverage = 0.5;
+
+		@Parameter(names = "-readLength", description = "Length of the reads, the average number of reads per bin is coverage * binSize / readLength")
+		private int readLength = 50;
+
+		@Parameter(names = "-binSize", description = "Size of the bins of the tracks")
+		private int binSize = 1000;
+
+		@Parameter(names = "-domainSize", description = "Average size of the replication timing domains")
+		private int domainSize = 1000000;
+
+		@Parameter(names = "-gapFraction", description = "Fraction of the genome in unmappable gaps with no read")
+		private double gapFraction = 0.05;
+
+		@Parameter(names = "-seed", description = "Seed of the random generator, the same seed generates the same files")
+		private long seed = 0;
+	}
+
+	/** Name of the file of the S phase */
+	public final static String S_FILE_NAME = "S.bgr";
+
+	/** Name of the file of the G1 phase */
+	public final static String G1_FILE_NAME = "G1.bgr";
+
+	/** Minimum timing of the early replicating domains (1 is the earliest) */
+	public final static double EARLY_TIMING_MIN = 0.7;
+
+	/** Maximum timing of the late replicating domains (0 is the latest) */
+	public final static double LATE_TIMING_MAX = 0.3;
+
+	private final static int 		GAP_AVERAGE_SIZE = 100000;	// average size of the unmappable gaps
+
+	private final GenomeDescriptor 	genome;				// genome of the tracks
+	private final int 				binSize;			// size of the bins
+	private final double 			readsPerBin;		// average number of reads in a bin of each phase
+	private final int 				domainSize;			// average size of the replication timing domains
+	private final double 			gapFraction;		// fraction of the genome in gaps
+	private final long 				seed;				// seed of the random generator
+
+
+	/**
+	 * Creates an instance of {@link SyntheticDatasetGenerator}
+	 * @param genome genome of the tracks
+	 * @param binSize size of the bins
+	 * @param readsPerBin average number of reads in a bin of each phase
+	 * @param domainSize average size of the replication timing domains
+	 * @param gapFraction fraction of the genome in unmappable gaps, in [0, 1[
+	 * @param seed seed of the random generator
+	 */
+	public SyntheticDatasetGenerator(GenomeDescriptor genome, int binSize, double readsPerBin, int domainSize, double gapFraction, long seed) {
+		if (binSize <= 0) {
+			throw new IllegalArgumentException("Invalid bin size: " + binSize);
+		}
+		if (!(readsPerBin > 0)) {
+			throw new IllegalArgumentException("Invalid number of reads per bin: " + readsPerBin);
+		}
+		if (domainSize < binSize) {
+			throw new IllegalArgumentException("The domain size (" + domainSize + ") must be greater than the bin size (" + binSize + ")");
+		}
+		if (!((gapFraction >= 0) && (gapFraction < 1))) {
+			throw new IllegalArgumentException("Invalid gap fraction: " + gapFraction);
+		}
+		this.genome = genome;
+		this.binSize = binSize;
+		this.readsPerBin = readsPerBin;
+		this.domainSize = domainSize;
+		this.gapFraction = gapFraction;
+		this.seed = seed;
+	}
+
+
+	/**
+	 * @param coverage sequencing depth (eg: 0.5 for 0.5x)
+	 * @param readLength length of the reads
+	 * @param binSize size of the bins
+	 * @return the average number of reads per bin of a track with the specified sequencing depth
+	 */
+	public static double computeReadsPerBin(double coverage, int readLength, int binSize) {
+		if (readLength <= 0) {
+			throw new IllegalArgumentException("Invalid read length: " + readLength);
+		}
+		return (coverage * binSize) / readLength;
+	}
+
+
+	/**
+	 * @param random random generator
+	 * @param isEarly true for an early replicating domain
+	 * @return the timing of a new domain
+	 */
+	private static double drawDomainTiming(RandomEngine random, boolean isEarly) {
+		if (isEarly) {
+			return EARLY_TIMING_MIN + (random.raw() * (1 - EARLY_TIMING_MIN));
+		} else {
+			return random.raw() * LATE_TIMING_MAX;
+		}
+	}
+
+
+	/**
+	 * @param random random generator
+	 * @param averageLength average length
+	 * @return a length drawn from an exponential distribution, at least 1
+	 */
+	private static long drawLength(RandomEngine random, double averageLength) {
+		return Math.max(1, Math.round(-averageLength * Math.log(random.raw())));
+	}
+
+
+	/**
+	 * Main method, writes a synthetic dataset
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		Args parameters = new Args();
+		new JCommander(parameters, args);
+		try {
+			File outDir = new File(parameters.outDir);
+			if (!outDir.exists()) {
+				outDir.mkdirs();
+			}
+			GenomeDescriptor genome = RunSimulationBatch.loadGenome(parameters.genomeFile, parameters.chrInclude, parameters.chrExclude);
+			double readsPerBin = computeReadsPerBin(parameters.coverage, parameters.readLength, parameters.binSize);
+			SyntheticDatasetGenerator generator = new SyntheticDatasetGenerator(genome, parameters.binSize, readsPerBin, parameters.domainSize, parameters.gapFraction, parameters.seed);
+			long binCount = generator.write(new File(outDir, S_FILE_NAME), new File(outDir, G1_FILE_NAME));
+			System.out.println(binCount + " mappable bins of " + parameters.binSize + "bp written with an average of " + readsPerBin + " reads per bin");
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			System.exit(0);
+		}
+	}
+
+
+	/**
+	 * Writes the S and the G1 tracks
+	 * @param sFile output bedGraph file of the S phase
+	 * @param g1File output bedGraph file of the G1 phase
+	 * @return the number of mappable bins of the genome (the bins that can have reads)
+	 * @throws IOException
+	 */
+	public long write(File sFile, File g1File) throws IOException {
+		// the seeds of the chromosomes are drawn in the order of the genome so each chromosome has its own sequence
+		Random seedGenerator = new Random(seed);
+		long mappableBinCount = 0;
+		BufferedWriter sWriter = null;
+		BufferedWriter g1Writer = null;
+		try {
+			sWriter = new BufferedWriter(new FileWriter(sFile));
+			g1Writer = new BufferedWriter(new FileWriter(g1File));
+			for (Chromosome chromosome: genome.getChromosomes()) {
+				RandomEngine random = new MersenneTwister(seedGenerator.nextInt());
+				mappableBinCount += writeChromosome(chromosome, random, sWriter, g1Writer);
+			}
+		} finally {
+			if (sWriter != null) {
+				sWriter.close();
+			}
+			if (g1Writer != null) {
+				g1Writer.close();
+			}
+		}
+		return mappableBinCount;
+	}
+
+
+	/**
+	 * Writes the S and the G1 tracks of a chromosome
+	 * @param chromosome a chromosome
+	 * @param random random generator of the chromosome
+	 * @param sWriter writer of the S phase file
+	 * @param g1Writer writer of the G1 phase file
+	 * @return the number of mappable bins of the chromosome
+	 * @throws IOException
+	 */
+	private long writeChromosome(Chromosome chromosome, RandomEngine random, BufferedWriter sWriter, BufferedWriter g1Writer) throws IOException {
+		Poisson poisson = new Poisson(1, random);
+		int chromosomeLength = chromosome.getLength();
+		// gaps: alternating mappable and unmappable segments
+		double mappableAverageSize = gapFraction == 0 ? Double.POSITIVE_INFINITY : (GAP_AVERAGE_SIZE * (1 - gapFraction)) / gapFraction;
+		boolean isGap = false;
+		long nextGapSwitch = drawLength(random, mappableAverageSize);
+		// domains: the timing is interpolated between the centers of the current domain and of the next one
+		boolean isNextEarly = random.raw() < 0.5;
+		long domainStop = drawLength(random, domainSize);
+		double center = domainStop / 2d;
+		double timing = drawDomainTiming(random, isNextEarly);
+		long nextDomainLength = drawLength(random, domainSize);
+		double nextCenter = domainStop + (nextDomainLength / 2d);
+		isNextEarly = !isNextEarly;
+		double nextTiming = drawDomainTiming(random, isNextEarly);
+		domainStop += nextDomainLength;
+		// the average timing is 0.5 so the S phase is scaled by 1 / 1.5 to have the same depth as the G1 phase
+		double sScale = 1 / (1 + ((EARLY_TIMING_MIN + LATE_TIMING_MAX) / 2));
+		long mappableBinCount = 0;
+		for (int binStart = 0; binStart < chromosomeLength; binStart += binSize) {
+			int binStop = Math.min(chromosomeLength, binStart + binSize);
+			while (binStart >= nextGapSwitch) {
+				isGap = !isGap;
+				nextGapSwitch += drawLength(random, isGap ? GAP_AVERAGE_SIZE : mappableAverageSize);
+			}
+			double binCenter = (binStart + binStop) / 2d;
+			while (binCenter > nextCenter) {
+				center = nextCenter;
+				timing = nextTiming;
+				nextDomainLength = drawLength(random, domainSize);
+				nextCenter = domainStop + (nextDomainLength / 2d);
+				isNextEarly = !isNextEarly;
+				nextTiming = drawDomainTiming(random, isNextEarly);
+				domainStop += nextDomainLength;
+			}
+			if (!isGap) {
+				mappableBinCount++;
+				double binTiming = binCenter <= center ? timing : timing + (((nextTiming - timing) * (binCenter - center)) / (nextCenter - center));
+				double g1Mean = (readsPerBin * (binStop - binStart)) / binSize;
+				writeCount(sWriter, chromosome, binStart, binStop, poisson.nextInt(g1Mean * (1 + binTiming) * sScale));
+				writeCount(g1Writer, chromosome, binStart, binStop, poisson.nextInt(g1Mean));
+			}
+		}
+		return mappableBinCount;
+	}
+
+
+	/**
+	 * Writes a bin in a bedGraph file if it has reads
+	 * @param writer writer of the bedGraph file
+	 * @param chromosome chromosome of the bin
+	 * @param binStart start position of the bin (0-based)
+	 * @param binStop stop position of the bin (exclusive)
+	 * @param count read count of the bin
+	 * @throws IOException
+	 */
+	private static void writeCount(BufferedWriter writer, Chromosome chromosome, int binStart, int binStop, int count) throws IOException {
+		if (count > 0) {
+			writer.write(chromosome.getName() + "\t" + binStart + "\t" + binStop + "\t" + count);
+			writer.newLine();
+		}
+	}
+}
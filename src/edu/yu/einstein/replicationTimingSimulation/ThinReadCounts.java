@@ -0,0 +1,156 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import edu.yu.einstein.genplay.core.operation.Operation;
+import edu.yu.einstein.genplay.dataStructure.list.genomeWideList.SCWList.SCWList;
+import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
+
+/**
+ * Down-samples a list of read counts by binomial thinning: each read of a window is kept with the specified probability.
+ * Thinning a thinned list gives a list with the distribution of a list thinned once with the product of the probabilities,
+ * so the lower sequencing depths can be thinned incrementally from the previous depth.
+ * The lists of {@link CountSCWListView} are thinned into lists of {@link CountSCWListView} sharing the positions of the windows of the input list.
+ * The scores of the other lists are truncated to integers before the thinning and their negative scores are set to 0. The chromosomes are thinned in parallel.
+ * The seed of the sampler of each chromosome is derived from the seed of the operation so the thinning is reproducible.
+ * @author Julien Lajugie
+ */
+public class ThinReadCounts implements Operation<SCWList> {
+
+	private final SCWList 		list;				// list to thin
+	private final double 		probability;		// probability to keep each read
+	private final double 		binomialMaxError;	// maximum error of the normal approximation of the binomial draws with a large n, 0 to always draw exactly
+	private final long 			seed;				// seed of the binomial draws
+	private volatile boolean	stopped = false;	// true if the operation must be stopped
+
+
+	/**
+	 * Creates an instance of {@link ThinReadCounts}
+	 * @param list list of read counts to thin
+	 * @param probability probability to keep each read, between 0 and 1
+	 * @param binomialMaxError maximum distance between the binomial and normal cumulative distributions
+	 * when a binomial draw is approximated with a normal deviate, 0 to always draw exactly
+	 * @param seed seed of the binomial draws. Two operations with the same input and seed give the same list
+	 */
+	public ThinReadCounts(SCWList list, double probability, double binomialMaxError, long seed) {
+		if (!((probability >= 0) && (probability <= 1))) {
+			throw new IllegalArgumentException("Invalid thinning probability: " + probability);
+		}
+		this.list = list;
+		this.probability = probability;
+		this.binomialMaxError = binomialMaxError;
+		this.seed = seed;
+	}
+
+
+	/**
+	 * @return a list with the windows of the input list and the thinned read counts
+	 */
+	@Override
+	public SCWList compute() throws Exception {
+		List<Callable<ListView<ScoredChromosomeWindow>>> chromosomeList = new ArrayList<Callable<ListView<ScoredChromosomeWindow>>>();
+		for (int i = 0; i < list.size(); i++) {
+			final int chromosomeIndex = i;
+			final ListView<ScoredChromosomeWindow> currentList = list.get(i);
+			Callable<ListView<ScoredChromosomeWindow>> currentThread = new Callable<ListView<ScoredChromosomeWindow>>() {
+
+				@Override
+				public ListView<ScoredChromosomeWindow> call() throws Exception {
+					int size = currentList.size();
+					// binomial draws of the windows with reads
+					int[] drawIndexes = new int[size];
+					int[] drawNs = new int[size];
+					double[] drawPs = new double[size];
+					int drawCount = 0;
+					for (int j = 0; (j < size) && !stopped; j++) {
+						int count = (int) currentList.get(j).getScore();
+						if (count > 0) {
+							drawIndexes[drawCount] = j;
+							drawNs[drawCount] = count;
+							drawPs[drawCount] = probability;
+							drawCount++;
+						}
+					}
+					if (stopped) {
+						return null;
+					}
+					int[] draws = new int[drawCount];
+					new BinomialSampler(BinomialSampler.computeSeed(seed, chromosomeIndex, 0), binomialMaxError).nextInts(drawNs, drawPs, draws, drawCount);
+					if (currentList instanceof CountSCWListView) {
+						CountSCWListView.CountBuilder counts = new CountSCWListView.CountBuilder(size);
+						for (int j = 0; j < drawCount; j++) {
+							counts.set(drawIndexes[j], draws[j]);
+						}
+						return ((CountSCWListView) currentList).withCounts(counts);
+					}
+					int[] starts = new int[size];
+					int[] stops = new int[size];
+					float[] scores = new float[size];
+					for (int j = 0; j < size; j++) {
+						ScoredChromosomeWindow currentWindow = currentList.get(j);
+						starts[j] = currentWindow.getStart();
+						stops[j] = currentWindow.getStop();
+					}
+					for (int j = 0; j < drawCount; j++) {
+						scores[drawIndexes[j]] = draws[j];
+					}
+					return new PrimitiveSCWListView(starts, stops, scores, size);
+				}
+			};
+			chromosomeList.add(currentThread);
+		}
+		List<ListView<ScoredChromosomeWindow>> result = ChunkPool.getInstance().invokeAll(chromosomeList);
+		if (stopped) {
+			return null;
+		}
+		return new PrimitiveSCWList(result, list.getSCWListType());
+	}
+
+
+	@Override
+	public String getDescription() {
+		return "Operation: Thin Read Counts";
+	}
+
+
+	@Override
+	public String getProcessingDescription() {
+		return "Thinning Read Counts";
+	}
+
+
+	@Override
+	public int getStepCount() {
+		return 1;
+	}
+
+
+	@Override
+	public void stop() {
+		stopped = true;
+	}
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+/**
+ * Bin size and gaussian smoothing width used to build the binned tracks of a simulation
+ * and parameters of the island finder used to call the islands on these tracks.
+ * A simulation computes a result for each configuration of the batch.
+ * @author Julien Lajugie
+ */
+public class TrackConfiguration {
+
+	private final int 						binSize;				// size of the bins of the binned tracks
+	private final int 						gaussianWidth;			// moving window width of the gaussian smoothing
+	private final IslandFinderParameters 	islandFinderParameters;	// parameters of the island finder
+
+
+	/**
+	 * Creates an instance of {@link TrackConfiguration}
+	 * @param binSize size of the bins of the binned tracks
+	 * @param gaussianWidth moving window width of the gaussian smoothing
+	 */
+	public TrackConfiguration(int binSize, int gaussianWidth) {
+		this(binSize, gaussianWidth, IslandFinderParameters.DEFAULT);
+	}
+
+
+	/**
+	 * Creates an instance of {@link TrackConfiguration}
+	 * @param binSize size of the bins of the binned tracks
+	 * @param gaussianWidth moving window width of the gaussian smoothing
+	 * @param islandFinderParameters parameters of the island finder
+	 */
+	public TrackConfiguration(int binSize, int gaussianWidth, IslandFinderParameters islandFinderParameters) {
+		this.binSize = binSize;
+		this.gaussianWidth = gaussianWidth;
+		this.islandFinderParameters = islandFinderParameters;
+	}
+
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof TrackConfiguration)) {
+			return false;
+		}
+		TrackConfiguration other = (TrackConfiguration) obj;
+		return (binSize == other.binSize) && (gaussianWidth == other.gaussianWidth) && islandFinderParameters.equals(other.islandFinderParameters);
+	}
+
+
+	/**
+	 * @return the size of the bins of the binned tracks
+	 */
+	public int getBinSize() {
+		return binSize;
+	}
+
+
+	/**
+	 * @return the moving window width of the gaussian smoothing
+	 */
+	public int getGaussianWidth() {
+		return gaussianWidth;
+	}
+
+
+	/**
+	 * @return the parameters of the island finder
+	 */
+	public IslandFinderParameters getIslandFinderParameters() {
+		return islandFinderParameters;
+	}
+
+
+	@Override
+	public int hashCode() {
+		return (31 * ((31 * binSize) + gaussianWidth)) + islandFinderParameters.hashCode();
+	}
+
+
+	@Override
+	public String toString() {
+		return "bin=" + binSize + ", width=" + gaussianWidth + ", IF=" + islandFinderParameters;
+	}
+}
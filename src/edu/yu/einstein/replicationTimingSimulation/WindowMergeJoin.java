@@ -0,0 +1,213 @@
+/*******************************************************************************
+ *     GenPlay, Einstein Genome Analyzer
+ *     Copyright (C) 2009, 2011 Albert Einstein College of Medicine
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *     Authors:	Julien Lajugie <julien.lajugie@einstein.yu.edu>
+ *     			Nicolas Fourel <nicolas.fourel@einstein.yu.edu>
+ *     Website: <http://genplay.einstein.yu.edu>
+ *******************************************************************************/
+package edu.yu.einstein.replicationTimingSimulation;
+
+import edu.yu.einstein.genplay.dataStructure.list.listView.ListView;
+import edu.yu.einstein.genplay.dataStructure.scoredChromosomeWindow.ScoredChromosomeWindow;
+
+/**
+ * Streaming merge-join of the windows of two lists of the same chromosome with different windows (eg: sparse S and G1 phase lists).
+ * The join walks the two lists in parallel and returns the intervals delimited by the bounds of the windows of both lists
+ * with the score of each list on the interval (0 if the list has no window on the interval).
+ * A window split in several intervals shares its score between them in proportion of their lengths so the reads are not duplicated.
+ * The integer scores (read counts) are rounded on the cumulated length of the intervals so the intervals of a window keep its total.
+ * The intervals where both scores are 0 are skipped so the join of sparse lists stays sparse.
+ * The windows of each list must be sorted and must not overlap. Nothing is copied: the join only keeps its position in the lists.
+ * @author Julien Lajugie
+ */
+public class WindowMergeJoin {
+
+	private final ListView<ScoredChromosomeWindow> 	list1;		// first list
+	private final ListView<ScoredChromosomeWindow> 	list2;		// second list
+	private int 									index1;		// index of the first window of the first list ending after the position
+	private int 									index2;		// index of the first window of the second list ending after the position
+	private int 									position;	// position of the join, the next interval starts at or after this position
+	private int 									start;		// start of the current interval
+	private int 									stop;		// stop of the current interval
+	private float 									score1;		// score of the first list on the current interval
+	private float 									score2;		// score of the second list on the current interval
+
+
+	/**
+	 * Creates an instance of {@link WindowMergeJoin} positioned before the first window of the lists
+	 * @param list1 first list
+	 * @param list2 second list
+	 */
+	public WindowMergeJoin(ListView<ScoredChromosomeWindow> list1, ListView<ScoredChromosomeWindow> list2) {
+		this.list1 = list1;
+		this.list2 = list2;
+		index1 = 0;
+		index2 = 0;
+		position = Integer.MIN_VALUE;
+	}
+
+
+	/**
+	 * @param window a window overlapping the current interval
+	 * @return the part of the score of the window on the current interval, in proportion of the length of the interval
+	 */
+	private float computeIntervalScore(ScoredChromosomeWindow window) {
+		float score = window.getScore();
+		int windowStart = window.getStart();
+		int windowStop = window.getStop();
+		if ((score == 0) || ((start == windowStart) && (stop == windowStop))) {
+			return score;
+		}
+		double windowLength = windowStop - windowStart;
+		if (score == Math.rint(score)) {
+			// rounding the cumulated score at both bounds of the interval keeps the total of the window
+			return Math.round((score * (stop - windowStart)) / windowLength) - Math.round((score * (start - windowStart)) / windowLength);
+		}
+		return (float) ((score * (stop - start)) / windowLength);
+	}
+
+
+	/**
+	 * @param listView a list view with sorted windows that don't overlap
+	 * @param position a position on the chromosome
+	 * @return the index of the first window of the list view ending after the position
+	 */
+	private static int findFirstWindowEndingAfter(ListView<ScoredChromosomeWindow> listView, int position) {
+		int low = 0;
+		int high = listView.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (listView.get(middle).getStop() <= position) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+
+	/**
+	 * @return the score of the first list on the current interval
+	 */
+	public float getScore1() {
+		return score1;
+	}
+
+
+	/**
+	 * @return the score of the second list on the current interval
+	 */
+	public float getScore2() {
+		return score2;
+	}
+
+
+	/**
+	 * @return the start of the current interval
+	 */
+	public int getStart() {
+		return start;
+	}
+
+
+	/**
+	 * @return the stop of the current interval
+	 */
+	public int getStop() {
+		return stop;
+	}
+
+
+	/**
+	 * @param list1 a list view
+	 * @param list2 another list view
+	 * @return true if the two list views have the same windows so they can be read index by index without join
+	 */
+	public static boolean isAligned(ListView<ScoredChromosomeWindow> list1, ListView<ScoredChromosomeWindow> list2) {
+		if (list1.size() != list2.size()) {
+			return false;
+		}
+		for (int i = 0; i < list1.size(); i++) {
+			ScoredChromosomeWindow window1 = list1.get(i);
+			ScoredChromosomeWindow window2 = list2.get(i);
+			if ((window1.getStart() != window2.getStart()) || (window1.getStop() != window2.getStop())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Moves the join to the specified position. The next interval starts at or after the position.
+	 * Moving to the start of an interval returned by a previous join of the same lists returns the same intervals from there
+	 * so the intervals can be joined by several threads, each one from its own position
+	 * @param position a position on the chromosome
+	 */
+	public void moveTo(int position) {
+		this.position = position;
+		index1 = findFirstWindowEndingAfter(list1, position);
+		index2 = findFirstWindowEndingAfter(list2, position);
+	}
+
+
+	/**
+	 * Moves to the next interval where one of the lists has a score different from 0
+	 * @return true if there is a next interval, false if the join is at the end of the lists
+	 */
+	public boolean next() {
+		while ((index1 < list1.size()) || (index2 < list2.size())) {
+			ScoredChromosomeWindow window1 = index1 < list1.size() ? list1.get(index1) : null;
+			ScoredChromosomeWindow window2 = index2 < list2.size() ? list2.get(index2) : null;
+			int start1 = window1 == null ? Integer.MAX_VALUE : Math.max(window1.getStart(), position);
+			int start2 = window2 == null ? Integer.MAX_VALUE : Math.max(window2.getStart(), position);
+			start = Math.min(start1, start2);
+			// the interval stops at the next bound of a window of one of the lists
+			stop = Integer.MAX_VALUE;
+			score1 = 0;
+			score2 = 0;
+			if (start1 == start) {
+				stop = Math.min(stop, window1.getStop());
+			} else if (window1 != null) {
+				stop = Math.min(stop, start1);
+			}
+			if (start2 == start) {
+				stop = Math.min(stop, window2.getStop());
+			} else if (window2 != null) {
+				stop = Math.min(stop, start2);
+			}
+			if (start1 == start) {
+				score1 = computeIntervalScore(window1);
+			}
+			if (start2 == start) {
+				score2 = computeIntervalScore(window2);
+			}
+			position = stop;
+			if ((window1 != null) && (window1.getStop() <= position)) {
+				index1++;
+			}
+			if ((window2 != null) && (window2.getStop() <= position)) {
+				index2++;
+			}
+			if ((score1 != 0) || (score2 != 0)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}